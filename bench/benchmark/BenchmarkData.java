@@ -0,0 +1,77 @@
+package benchmark;
+
+import io.ImportFormat;
+import service.ContactService;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Synthetic contacts shared by the benchmarks
+ */
+final class BenchmarkData {
+    private static final String[] FIRST_NAMES = { "James", "Mary", "Robert", "Patricia", "John", "Jennifer",
+            "Michael", "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica" };
+    private static final String[] LAST_NAMES = { "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+            "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson" };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Imports the same size contacts into a service on every run, with IDs
+     * 1 to size
+     */
+    static void populate(ContactService service, int size) throws IOException {
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder(size * 64);
+        csv.append("name,phone,email,address\n");
+        for (int i = 0; i < size; i++) {
+            String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            csv.append(first).append(' ').append(last).append(',')
+                    .append("+1 (").append(100 + random.nextInt(900)).append(") ")
+                    .append(1_000_000 + random.nextInt(9_000_000)).append(',')
+                    .append(first.toLowerCase()).append('.').append(i).append("@example.com,")
+                    .append(i).append(" Main Street\n");
+        }
+
+        try (Reader reader = new StringReader(csv.toString())) {
+            service.importContacts(reader, ImportFormat.CSV, 50_000);
+        }
+    }
+
+    static String randomName(ThreadLocalRandom random) {
+        return FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + randomLastName(random);
+    }
+
+    static String randomLastName(ThreadLocalRandom random) {
+        return LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+    }
+
+    static String randomPhone(ThreadLocalRandom random) {
+        return "+1 (" + (100 + random.nextInt(900)) + ") " + (1_000_000 + random.nextInt(9_000_000));
+    }
+
+    static String randomDigits(ThreadLocalRandom random, int count) {
+        StringBuilder digits = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            digits.append((char) ('0' + random.nextInt(10)));
+        }
+        return digits.toString();
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,138 @@
+package benchmark;
+
+import model.Contact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import service.ContactService;
+import service.ContactServiceConfig;
+import storage.Durability;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-threaded JMH benchmarks against a service in concurrent mode:
+ * read/write mixes, concurrent name searches, and adds that each wait for
+ * an fsync, alone and from several threads sharing group commits.
+ *
+ * The thread count of every benchmark can be changed with JMH's -t option.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ConcurrentContactBenchmark {
+    @Param({ "10000", "100000", "1000000" })
+    private int size;
+
+    private Path dir;
+    private ContactService service;
+
+    /**
+     * Service whose every add waits for its journal record to be synced
+     */
+    @State(Scope.Benchmark)
+    public static class Durable {
+        private Path dir;
+        private ContactService service;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("contact-bench-fsync");
+            service = new ContactService(new ContactServiceConfig()
+                    .setDataFile(dir.resolve("fsync.dat").toString())
+                    .setJournalFile(dir.resolve("fsync.log").toString())
+                    .setConcurrent(true)
+                    .setDurability(Durability.FSYNC));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            service.close();
+            BenchmarkData.deleteRecursively(dir.toFile());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("contact-bench-multi");
+        service = new ContactService(new ContactServiceConfig()
+                .setDataFile(dir.resolve("multi.dat").toString())
+                .setJournalFile(dir.resolve("multi.log").toString())
+                .setConcurrent(true));
+        BenchmarkData.populate(service, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+        BenchmarkData.deleteRecursively(dir.toFile());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object mixedRead90Write10() {
+        return mixedOperation(90);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object mixedRead50Write50() {
+        return mixedOperation(50);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<Contact> concurrentSearchByName() {
+        return service.searchByName(BenchmarkData.randomLastName(ThreadLocalRandom.current()));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean addContactFsync(Durable durable) {
+        return addDurably(durable);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean addContactFsyncShared(Durable durable) {
+        return addDurably(durable);
+    }
+
+    private Object mixedOperation(int readPercent) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(100) < readPercent) {
+            return service.searchByName(BenchmarkData.randomLastName(random));
+        }
+        if (random.nextBoolean()) {
+            return service.addContact(BenchmarkData.randomName(random), BenchmarkData.randomPhone(random),
+                    "mixed@example.com", "Mixed");
+        }
+        return service.updateContact(1 + random.nextInt(size), BenchmarkData.randomName(random),
+                BenchmarkData.randomPhone(random), "mixed@example.com", "Mixed");
+    }
+
+    private static boolean addDurably(Durable durable) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return durable.service.addContact(BenchmarkData.randomName(random), BenchmarkData.randomPhone(random),
+                "fsync@example.com", "Fsync");
+    }
+}
@@ -0,0 +1,124 @@
+package benchmark;
+
+import model.Contact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import service.ContactService;
+import service.ContactServiceConfig;
+import storage.ContactFileFormat;
+import store.StoreType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded JMH benchmarks for the ContactService hot paths: add,
+ * update, name and phone search, listing, and file save and load, over
+ * synthetic data sets of every size and store type given as parameters.
+ *
+ * Run with gradle jmh; see the README for selecting benchmarks and
+ * parameters.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ContactServiceBenchmark {
+    @Param({ "10000", "100000", "1000000" })
+    private int size;
+
+    @Param({ "OBJECTS" })
+    private StoreType store;
+
+    private Path dir;
+    private ContactService service;
+    private File saveTarget;
+    private ContactServiceConfig loadConfig;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("contact-bench");
+        service = new ContactService(new ContactServiceConfig()
+                .setDataFile(dir.resolve("single.dat").toString())
+                .setJournalFile(dir.resolve("single.log").toString())
+                .setStoreType(store));
+        BenchmarkData.populate(service, size);
+        saveTarget = dir.resolve("save.dat").toFile();
+
+        // Loaded from a snapshot of its own, so loading never replays or
+        // appends to the journal of the service being measured
+        List<Contact> all = service.getAllContacts();
+        ContactFileFormat.write(dir.resolve("load.dat").toFile(), all, all.size() + 1);
+        loadConfig = new ContactServiceConfig()
+                .setDataFile(dir.resolve("load.dat").toString())
+                .setJournalFile(dir.resolve("load.log").toString())
+                .setStoreType(store);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+        BenchmarkData.deleteRecursively(dir.toFile());
+    }
+
+    @Benchmark
+    public boolean addContact() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return service.addContact(BenchmarkData.randomName(random), BenchmarkData.randomPhone(random),
+                "bench@example.com", "Bench Street");
+    }
+
+    @Benchmark
+    public boolean updateContact() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return service.updateContact(1 + random.nextInt(size), BenchmarkData.randomName(random),
+                BenchmarkData.randomPhone(random), "updated@example.com", "Updated");
+    }
+
+    @Benchmark
+    public List<Contact> searchByName() {
+        return service.searchByName(BenchmarkData.randomLastName(ThreadLocalRandom.current()));
+    }
+
+    @Benchmark
+    public List<Contact> searchByPhone() {
+        return service.searchByPhone(BenchmarkData.randomDigits(ThreadLocalRandom.current(), 4));
+    }
+
+    @Benchmark
+    public List<Contact> getAllContacts() {
+        return service.getAllContacts();
+    }
+
+    @Benchmark
+    public int saveContactsToFile() throws IOException {
+        List<Contact> all = service.getAllContacts();
+        ContactFileFormat.write(saveTarget, all, all.size() + 1);
+        return all.size();
+    }
+
+    @Benchmark
+    public int loadContactsFromFile() {
+        try (ContactService loaded = new ContactService(loadConfig)) {
+            return loaded.getContactCount();
+        }
+    }
+}
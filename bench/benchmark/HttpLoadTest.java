@@ -0,0 +1,269 @@
+package benchmark;
+
+import http.ContactHttpServer;
+import io.ImportFormat;
+import metrics.LatencyHistogram;
+import service.ContactService;
+import service.ContactServiceConfig;
+import storage.Durability;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test for the HTTP API
+ *
+ * A fixed number of client threads send requests back to back over
+ * keep-alive connections: 80% get a random contact by ID, 15% search by last
+ * name and 5% add a contact. After a warmup period the throughput and the
+ * latency percentiles of each request type are reported.
+ *
+ * Without --url an embedded server on a free port is started over a
+ * temporary data directory holding --contacts contacts.
+ *
+ * Usage:
+ * java -cp build/libs/contact-management-system-jmh.jar benchmark.HttpLoadTest
+ * [--url http://localhost:8080] [--contacts 100000] [--threads 32]
+ * [--seconds 10] [--warmup-seconds 3]
+ */
+public class HttpLoadTest {
+    private static final String[] FIRST_NAMES = { "James", "Mary", "Robert", "Patricia", "John", "Jennifer",
+            "Michael", "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica" };
+    private static final String[] LAST_NAMES = { "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+            "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson" };
+
+    private String url;
+    private int contacts = 100_000;
+    private int threads = 32;
+    private int seconds = 10;
+    private int warmupSeconds = 3;
+
+    /**
+     * Latencies and failures of one request type
+     */
+    private static class Stats {
+        final String name;
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void reset() {
+            latencies.reset();
+            errors.reset();
+        }
+    }
+
+    private final Stats getById = new Stats("getById");
+    private final Stats search = new Stats("search");
+    private final Stats add = new Stats("add");
+    private final Stats total = new Stats("total");
+    private final Stats[] all = { getById, search, add, total };
+
+    public static void main(String[] args) throws Exception {
+        HttpLoadTest test = new HttpLoadTest();
+        test.parseArguments(args);
+        test.run();
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--url":
+                    url = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                    break;
+                case "--contacts":
+                    contacts = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(value);
+                    break;
+                case "--warmup-seconds":
+                    warmupSeconds = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        if (url != null) {
+            drive();
+            return;
+        }
+
+        Path dir = Files.createTempDirectory("contact-http");
+        try (ContactService service = new ContactService(new ContactServiceConfig()
+                .setDataFile(dir.resolve("contacts.dat").toString())
+                .setJournalFile(dir.resolve("contacts.log").toString())
+                .setConcurrent(true))) {
+            populate(service, contacts);
+            try (ContactHttpServer server = new ContactHttpServer(service,
+                    new InetSocketAddress("localhost", 0), Durability.NONE)) {
+                server.start();
+                url = "http://localhost:" + server.getAddress().getPort();
+                System.out.println("Embedded server with " + contacts + " contacts at " + url
+                        + (server.isUsingVirtualThreads() ? " (virtual threads)" : " (thread pool)"));
+                drive();
+            }
+        } finally {
+            deleteRecursively(dir.toFile());
+        }
+    }
+
+    /**
+     * Runs the warmup and the measured period against the server at url
+     */
+    private void drive() throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (running.get()) {
+                    request(client, random);
+                }
+            });
+            workers[t].start();
+        }
+
+        start.countDown();
+        Thread.sleep(warmupSeconds * 1000L);
+        for (Stats stats : all) {
+            stats.reset();
+        }
+        long begin = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long elapsed = System.nanoTime() - begin;
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        report(elapsed);
+    }
+
+    /**
+     * Sends one request of a randomly chosen type and records its latency
+     */
+    private void request(HttpClient client, ThreadLocalRandom random) {
+        int roll = random.nextInt(100);
+        Stats stats;
+        HttpRequest request;
+        if (roll < 80) {
+            stats = getById;
+            request = HttpRequest.newBuilder(URI.create(url + "/contacts/" + (1 + random.nextInt(contacts)))).build();
+        } else if (roll < 95) {
+            stats = search;
+            request = HttpRequest.newBuilder(URI.create(url + "/contacts/search?name="
+                    + LAST_NAMES[random.nextInt(LAST_NAMES.length)])).build();
+        } else {
+            stats = add;
+            String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String body = "{\"name\":\"" + first + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)]
+                    + "\",\"phone\":\"+1 (" + (100 + random.nextInt(900)) + ") "
+                    + (1_000_000 + random.nextInt(9_000_000)) + "\",\"email\":\"" + first.toLowerCase()
+                    + "@example.com\",\"address\":\"Load Street\"}";
+            request = HttpRequest.newBuilder(URI.create(url + "/contacts"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+
+        long begin = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            // A contact deleted by someone else is not a server error
+            record(stats, System.nanoTime() - begin, response.statusCode() >= 400 && response.statusCode() != 404);
+        } catch (IOException e) {
+            record(stats, System.nanoTime() - begin, true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(Stats stats, long nanos, boolean failed) {
+        stats.latencies.record(nanos);
+        total.latencies.record(nanos);
+        if (failed) {
+            stats.errors.increment();
+            total.errors.increment();
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        double elapsedSeconds = elapsedNanos / 1e9;
+        System.out.printf("%d threads, %d s measured after %d s warmup%n", threads, seconds, warmupSeconds);
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %8s%n", "request", "req/s", "p50 ms", "p99 ms",
+                "p99.9 ms", "max ms", "errors");
+        for (Stats stats : all) {
+            LatencyHistogram latencies = stats.latencies;
+            System.out.printf("%-10s %10.0f %10.3f %10.3f %10.3f %10.3f %8d%n", stats.name,
+                    latencies.getCount() / elapsedSeconds, latencies.getPercentile(50) / 1e6,
+                    latencies.getPercentile(99) / 1e6, latencies.getPercentile(99.9) / 1e6,
+                    latencies.getMax() / 1e6, stats.errors.sum());
+        }
+    }
+
+    private static void populate(ContactService service, int size) throws IOException {
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder(size * 64);
+        csv.append("name,phone,email,address\n");
+        for (int i = 0; i < size; i++) {
+            String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            csv.append(first).append(' ').append(last).append(',')
+                    .append("+1 (").append(100 + random.nextInt(900)).append(") ")
+                    .append(1_000_000 + random.nextInt(9_000_000)).append(',')
+                    .append(first.toLowerCase()).append('.').append(i).append("@example.com,")
+                    .append(i).append(" Main Street\n");
+        }
+
+        try (Reader reader = new StringReader(csv.toString())) {
+            service.importContacts(reader, ImportFormat.CSV, 50_000);
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
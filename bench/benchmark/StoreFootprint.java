@@ -0,0 +1,94 @@
+package benchmark;
+
+import io.Json;
+import service.ContactService;
+import service.ContactServiceConfig;
+import store.StoreType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Measures how much memory each store type needs per contact
+ *
+ * Loads the same contacts into a service of each store type and reports
+ * the store's own estimate and the measured heap growth per contact. The
+ * heap figure includes the search indexes, which are the same for every
+ * store type. Memory is not a timing, so this runs outside JMH; the results
+ * are written as a JSON array.
+ *
+ * Usage:
+ * java -cp build/libs/contact-management-system-jmh.jar benchmark.StoreFootprint
+ * [--sizes 10000,100000,1000000] [--out footprint.json]
+ */
+public class StoreFootprint {
+    public static void main(String[] args) throws IOException {
+        int[] sizes = { 10_000, 100_000, 1_000_000 };
+        String outputFile = "footprint.json";
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes": {
+                    String[] parts = args[i + 1].split(",");
+                    sizes = new int[parts.length];
+                    for (int p = 0; p < parts.length; p++) {
+                        sizes[p] = Integer.parseInt(parts[p].trim());
+                    }
+                    break;
+                }
+                case "--out":
+                    outputFile = args[i + 1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        StringBuilder json = new StringBuilder("[\n");
+        for (int size : sizes) {
+            Path dir = Files.createTempDirectory("contact-footprint");
+            try {
+                for (StoreType type : StoreType.values()) {
+                    String name = type.name().toLowerCase();
+                    long heapBefore = usedHeap();
+                    ContactService service = new ContactService(new ContactServiceConfig()
+                            .setDataFile(dir.resolve(name + ".dat").toString())
+                            .setJournalFile(dir.resolve(name + ".log").toString())
+                            .setStoreType(type));
+                    BenchmarkData.populate(service, size);
+                    service.checkpoint().join(); // Let the checkpoint of the import release its copy
+                    double heapPerContact = (double) (usedHeap() - heapBefore) / size;
+                    double storePerContact = service.getMetrics().getStoreBytesPerContact();
+                    service.close();
+
+                    System.out.printf("size=%-8d store=%-18s %.1f bytes/contact (%.1f heap)%n", size, type,
+                            storePerContact, heapPerContact);
+                    json.append(json.length() > 2 ? ",\n" : "")
+                            .append("  { \"size\": ").append(size)
+                            .append(", \"store\": ").append(Json.quote(type.name()))
+                            .append(", \"storeBytesPerContact\": ").append(storePerContact)
+                            .append(", \"heapBytesPerContact\": ").append(heapPerContact).append(" }");
+                }
+            } finally {
+                BenchmarkData.deleteRecursively(dir.toFile());
+            }
+        }
+        json.append("\n]\n");
+
+        try (Writer writer = Files.newBufferedWriter(Paths.get(outputFile), StandardCharsets.UTF_8)) {
+            writer.write(json.toString());
+        }
+        System.out.println("Results written to " + outputFile);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
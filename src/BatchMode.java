@@ -0,0 +1,339 @@
+import io.Json;
+import model.Contact;
+import service.ContactQuery;
+import service.ContactService;
+import service.DuplicateCluster;
+import storage.Durability;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * BatchMode runs a stream of commands against a ContactService without any
+ * prompts, for scripts and scheduled jobs
+ *
+ * Input is newline-delimited JSON, one command per line:
+ * {"op":"add","name":"...","phone":"...","email":"...","address":"..."}
+ * {"op":"update","id":3,"name":"...","phone":"...","email":"...","address":"..."}
+ *   with an optional "version":N to update only if the contact is still at
+ *   version N, failing with a version conflict otherwise
+ * {"op":"delete","id":3}
+ * {"op":"search","name":"..."} or "email", "domain", "phone", "phonePrefix", "phoneSuffix", "address"
+ * {"op":"query","name":"...","domain":"...","sort":"-name","offset":0,"limit":20}
+ *   with any of the fields of {@link ContactQuery#fromParameters}
+ * {"op":"suggest","name":"...","limit":10}
+ * {"op":"duplicates"}
+ * {"op":"list","offset":0,"limit":100}
+ *
+ * Output is newline-delimited JSON as well. Every command produces one
+ * status line, {"line":N,"op":"...","ok":true,...} or {..."ok":false,
+ * "error":"..."}; search, query, suggest and list first print each matching
+ * contact as {"line":N,"id":...,"name":...,"phone":...,"email":...,
+ * "address":...,"version":...}, the keys the NDJSON import reads plus the
+ * contact's version. duplicates first prints each cluster of
+ * contacts sharing an email or phone number as
+ * {"line":N,"ids":[...],"emails":[...],"phones":[...]}.
+ *
+ * Mutations are submitted without waiting for the journal. Once a batch of
+ * them has been submitted, all of their journal writes are awaited together,
+ * so the journal writer commits the whole batch at once, and the results
+ * collected so far are written to the output in one go, in command order.
+ */
+public class BatchMode {
+    private static final int MAX_BUFFERED_CHARS = 1 << 20;
+    private static final int DEFAULT_SUGGESTIONS = 10;
+
+    private final ContactService contactService;
+    private final Durability durability;
+    private final int batchSize;
+    private final List<Supplier<String>> results; // Output of each command not yet written
+    private final StringBuilder buffer;
+    private int pendingMutations;
+    private int bufferedChars;
+    private int commands;
+    private int failures;
+
+    /**
+     * Creates a batch runner
+     *
+     * @param contactService Service to run the commands against
+     * @param durability     Persistence each batch waits for
+     * @param batchSize      Mutations per persisted batch
+     */
+    public BatchMode(ContactService contactService, Durability durability, int batchSize) {
+        this.contactService = contactService;
+        this.durability = durability;
+        this.batchSize = batchSize;
+        this.results = new ArrayList<>();
+        this.buffer = new StringBuilder(64 * 1024);
+    }
+
+    /**
+     * Runs every command of the input and writes the results
+     *
+     * @param in  Command stream
+     * @param out Destination of the results
+     * @throws IOException if the input cannot be read or the output written
+     */
+    public void run(BufferedReader in, Writer out) throws IOException {
+        int lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            commands++;
+            results.add(execute(lineNumber, line));
+            if (pendingMutations >= batchSize || bufferedChars >= MAX_BUFFERED_CHARS) {
+                flush(out);
+            }
+        }
+        flush(out);
+    }
+
+    /**
+     * Returns the number of commands run so far
+     *
+     * @return Command count
+     */
+    public int getCommandCount() {
+        return commands;
+    }
+
+    /**
+     * Returns the number of commands that failed so far
+     *
+     * @return Failure count
+     */
+    public int getFailureCount() {
+        return failures;
+    }
+
+    /**
+     * Runs one command. Reads are rendered right away so they reflect the
+     * state at their position in the stream; mutations are rendered once
+     * their journal write has completed.
+     *
+     * @return Supplies the command's output, waiting for persistence if needed
+     */
+    private Supplier<String> execute(int lineNumber, String line) {
+        String op = "";
+        String output;
+        try {
+            Map<String, String> command = Json.parseObject(line);
+            op = command.getOrDefault("op", "");
+            String name = op;
+            switch (op) {
+                case "add": {
+                    CompletableFuture<Contact> added = contactService.addContactAsync(text(command, "name"),
+                            text(command, "phone"), text(command, "email"), text(command, "address"), durability);
+                    pendingMutations++;
+                    return () -> persisted(lineNumber, name, added, () -> added.join().getId());
+                }
+                case "update": {
+                    int id = number(command, "id");
+                    CompletableFuture<?> updated = command.containsKey("version")
+                            ? contactService.updateIfVersionAsync(id, longNumber(command, "version"),
+                                    text(command, "name"), text(command, "phone"), text(command, "email"),
+                                    text(command, "address"), durability).thenApply(contact -> contact != null)
+                            : contactService.updateContactAsync(id, text(command, "name"), text(command, "phone"),
+                                    text(command, "email"), text(command, "address"), durability);
+                    pendingMutations++;
+                    return () -> persisted(lineNumber, name, updated, () -> id);
+                }
+                case "delete": {
+                    int id = number(command, "id");
+                    CompletableFuture<Void> deleted = contactService.deleteContactAsync(id, durability);
+                    pendingMutations++;
+                    return () -> persisted(lineNumber, name, deleted, () -> id);
+                }
+                case "search":
+                    output = listing(lineNumber, op, search(command));
+                    break;
+                case "query":
+                    output = listing(lineNumber, op, contactService.query(ContactQuery.fromParameters(command)));
+                    break;
+                case "suggest": {
+                    int limit = command.containsKey("limit") ? number(command, "limit") : DEFAULT_SUGGESTIONS;
+                    output = listing(lineNumber, op, contactService.suggestByName(text(command, "name"), limit));
+                    break;
+                }
+                case "duplicates":
+                    output = clusters(lineNumber, op, contactService.findDuplicateClusters());
+                    break;
+                case "list": {
+                    int offset = command.containsKey("offset") ? number(command, "offset") : 0;
+                    int limit = command.containsKey("limit") ? number(command, "limit") : Integer.MAX_VALUE;
+                    output = listing(lineNumber, op, contactService.getContactsPage(offset, limit));
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown op: " + op);
+            }
+        } catch (IllegalArgumentException e) {
+            output = failure(lineNumber, op, e.getMessage());
+        }
+        String rendered = output;
+        return () -> rendered;
+    }
+
+    /**
+     * Runs a search command on whichever field it names
+     */
+    private List<Contact> search(Map<String, String> command) {
+        if (command.containsKey("name")) {
+            return contactService.searchByName(command.get("name"));
+        }
+        if (command.containsKey("email")) {
+            return contactService.findByEmail(command.get("email"));
+        }
+        if (command.containsKey("domain")) {
+            return contactService.findByEmailDomain(command.get("domain"));
+        }
+        if (command.containsKey("phone")) {
+            return contactService.searchByPhone(command.get("phone"));
+        }
+        if (command.containsKey("phonePrefix")) {
+            return contactService.searchByPhonePrefix(command.get("phonePrefix"));
+        }
+        if (command.containsKey("phoneSuffix")) {
+            return contactService.searchByPhoneSuffix(command.get("phoneSuffix"));
+        }
+        if (command.containsKey("address")) {
+            return contactService.searchByAddress(command.get("address"));
+        }
+        throw new IllegalArgumentException(
+                "Search needs one of name, email, domain, phone, phonePrefix, phoneSuffix or address.");
+    }
+
+    /**
+     * Waits for every submitted mutation and writes all collected results
+     */
+    private void flush(Writer out) throws IOException {
+        for (Supplier<String> result : results) {
+            buffer.append(result.get());
+        }
+        out.append(buffer);
+        out.flush();
+
+        results.clear();
+        buffer.setLength(0);
+        pendingMutations = 0;
+        bufferedChars = 0;
+    }
+
+    /**
+     * Waits for a mutation's journal write and renders its outcome. A
+     * versioned update that completes with false lost to another update.
+     */
+    private String persisted(int lineNumber, String op, CompletableFuture<?> written, IntSupplier id) {
+        try {
+            if (Boolean.FALSE.equals(written.join())) {
+                return failure(lineNumber, op, "Version conflict: contact " + id.getAsInt()
+                        + " has been changed since that version.");
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return failure(lineNumber, op, "Not persisted: " + cause.getMessage());
+        }
+        StringBuilder line = new StringBuilder(64);
+        status(line, lineNumber, op, true).append(",\"id\":").append(id.getAsInt()).append("}\n");
+        return line.toString();
+    }
+
+    /**
+     * Renders the matching contacts of a search or list command and its
+     * status line
+     */
+    private String listing(int lineNumber, String op, List<Contact> contacts) {
+        StringBuilder lines = new StringBuilder(contacts.size() * 128 + 64);
+        for (Contact contact : contacts) {
+            lines.append("{\"line\":").append(lineNumber).append(',');
+            Json.appendContactMembers(lines, contact);
+            lines.append("}\n");
+        }
+        status(lines, lineNumber, op, true).append(",\"count\":").append(contacts.size()).append("}\n");
+        bufferedChars += lines.length();
+        return lines.toString();
+    }
+
+    /**
+     * Renders the clusters of a duplicates command and its status line
+     */
+    private String clusters(int lineNumber, String op, List<DuplicateCluster> clusters) {
+        StringBuilder lines = new StringBuilder(clusters.size() * 96 + 64);
+        for (DuplicateCluster cluster : clusters) {
+            lines.append("{\"line\":").append(lineNumber).append(",\"ids\":[");
+            List<Contact> contacts = cluster.getContacts();
+            for (int i = 0; i < contacts.size(); i++) {
+                lines.append(i == 0 ? "" : ",").append(contacts.get(i).getId());
+            }
+            lines.append("],\"emails\":");
+            appendStrings(lines, cluster.getSharedEmails());
+            lines.append(",\"phones\":");
+            appendStrings(lines, cluster.getSharedPhoneNumbers());
+            lines.append("}\n");
+        }
+        status(lines, lineNumber, op, true).append(",\"count\":").append(clusters.size()).append("}\n");
+        bufferedChars += lines.length();
+        return lines.toString();
+    }
+
+    private static void appendStrings(StringBuilder out, List<String> values) {
+        out.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            Json.appendString(out, values.get(i));
+        }
+        out.append(']');
+    }
+
+    private String failure(int lineNumber, String op, String message) {
+        failures++;
+        StringBuilder line = new StringBuilder(128);
+        status(line, lineNumber, op, false).append(",\"error\":");
+        Json.appendString(line, message);
+        return line.append("}\n").toString();
+    }
+
+    private static StringBuilder status(StringBuilder line, int lineNumber, String op, boolean ok) {
+        line.append("{\"line\":").append(lineNumber).append(",\"op\":");
+        Json.appendString(line, op);
+        return line.append(",\"ok\":").append(ok);
+    }
+
+    private static String text(Map<String, String> command, String key) {
+        String value = command.get(key);
+        return value == null ? "" : value.trim();
+    }
+
+    private static int number(Map<String, String> command, String key) {
+        String value = command.get(key);
+        try {
+            return Integer.parseInt(value == null ? "" : value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("\"" + key + "\" must be a whole number.");
+        }
+    }
+
+    private static long longNumber(Map<String, String> command, String key) {
+        String value = command.get(key);
+        try {
+            return Long.parseLong(value == null ? "" : value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("\"" + key + "\" must be a whole number.");
+        }
+    }
+}
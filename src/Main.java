@@ -1,34 +1,309 @@
+import http.ContactHttpServer;
+import io.ContactFormatter;
+import io.ExportFormat;
+import metrics.OperationStats;
+import metrics.ServiceMetrics;
 import model.Contact;
 import service.ContactService;
-
+import service.ContactServiceConfig;
+import service.DuplicatePolicy;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Scanner;
+import java.util.function.BiFunction;
 
 /**
  * Main class for the Contact Management System
  * Provides a console-based menu-driven interface
  */
 public class Main {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int MAX_CLOSE_MATCHES = 10;
+
     private ContactService contactService;
     private Scanner scanner;
+    private final PrintWriter out; // Listings are rendered into pageBuffer and written here at once
+    private final StringBuilder pageBuffer;
+    private final ContactFormatter formatter;
+    private int pageSize;
 
     /**
      * Constructor initializes the contact service and scanner
      */
     public Main() {
-        this.contactService = new ContactService();
+        this(new ContactServiceConfig());
+    }
+
+    /**
+     * Constructor initializes the contact service with the given settings
+     * 
+     * @param config Service settings
+     */
+    public Main(ContactServiceConfig config) {
+        this(config, DEFAULT_PAGE_SIZE, ContactFormatter.Layout.BOX);
+    }
+
+    /**
+     * Constructor initializes the contact service and the listing settings
+     * 
+     * @param config   Service settings
+     * @param pageSize Contacts shown per page
+     * @param layout   BOX or COMPACT rendering of listed contacts
+     */
+    public Main(ContactServiceConfig config, int pageSize, ContactFormatter.Layout layout) {
+        this.contactService = new ContactService(config);
         this.scanner = new Scanner(System.in);
+        this.out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 64 * 1024));
+        this.pageBuffer = new StringBuilder(16 * 1024);
+        this.formatter = new ContactFormatter(layout);
+        this.pageSize = pageSize;
     }
 
     /**
      * Main method to start the application
+     * 
+     * Options:
+     * --fast-start   load contacts on first access, so the menu appears
+     * immediately regardless of the size of contacts.dat
+     * --page-size N  contacts shown per page of a listing (default 20)
+     * --compact      list contacts one per line instead of in boxes
+     * --batch [file] run the NDJSON commands in the file, or on standard
+     * input, without prompts and print the results as NDJSON
+     * --batch-size N mutations persisted together in batch mode (default 1000)
+     * --duplicates P allow, flag or reject contacts whose email or phone
+     * number is already used (default allow)
+     * --http PORT    serve the JSON API of {@link ContactHttpServer} on the
+     * port instead of showing the menu, until the process is stopped
+     * --scan-threshold N  smallest list that unindexed searches scan in
+     * parallel (default 10000)
+     * --export FILE  write every contact to the file and exit; the format
+     * follows the extension, .csv or .ndjson, plus .gz to compress it
      */
     public static void main(String[] args) {
-        Main app = new Main();
+        ContactServiceConfig config = new ContactServiceConfig();
+        int pageSize = DEFAULT_PAGE_SIZE;
+        ContactFormatter.Layout layout = ContactFormatter.Layout.BOX;
+        boolean batch = false;
+        String batchFile = null;
+        int batchSize = DEFAULT_BATCH_SIZE;
+        int httpPort = -1;
+        String exportFile = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--fast-start":
+                    config.setLazyLoad(true);
+                    break;
+                case "--compact":
+                    layout = ContactFormatter.Layout.COMPACT;
+                    break;
+                case "--page-size":
+                    pageSize = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                    if (pageSize <= 0) {
+                        System.err.println("--page-size needs a positive number.");
+                        return;
+                    }
+                    break;
+                case "--batch":
+                    batch = true;
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                        batchFile = args[++i];
+                    }
+                    break;
+                case "--batch-size":
+                    batchSize = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                    if (batchSize <= 0) {
+                        System.err.println("--batch-size needs a positive number.");
+                        return;
+                    }
+                    break;
+                case "--duplicates":
+                    try {
+                        config.setDuplicatePolicy(DuplicatePolicy.valueOf(
+                                (i + 1 < args.length ? args[++i] : "").toUpperCase()));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("--duplicates needs allow, flag or reject.");
+                        return;
+                    }
+                    break;
+                case "--http":
+                    httpPort = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                    if (httpPort < 0 || httpPort > 65535) {
+                        System.err.println("--http needs a port number.");
+                        return;
+                    }
+                    break;
+                case "--export":
+                    if (i + 1 >= args.length) {
+                        System.err.println("--export needs a file name.");
+                        return;
+                    }
+                    exportFile = args[++i];
+                    break;
+                case "--scan-threshold": {
+                    int threshold = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                    if (threshold <= 0) {
+                        System.err.println("--scan-threshold needs a positive number.");
+                        return;
+                    }
+                    config.setParallelScanThreshold(threshold);
+                    break;
+                }
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+
+        if (exportFile != null) {
+            System.exit(runExport(config, exportFile));
+        }
+        if (batch) {
+            System.exit(runBatch(config, batchFile, batchSize));
+        }
+        if (httpPort >= 0) {
+            serveHttp(config, httpPort);
+            return;
+        }
+
+        Main app;
+        try {
+            app = new Main(config, pageSize, layout);
+        } catch (UncheckedIOException e) {
+            System.err.println("Cannot open the contact store: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
         app.run();
     }
 
+    /**
+     * Runs a command stream without prompts, see {@link BatchMode}
+     * 
+     * @param config    Service settings
+     * @param batchFile File to read the commands from, or null for standard input
+     * @param batchSize Mutations persisted together
+     * @return Exit status: 0 if every command succeeded, 1 if some failed, 2 if
+     *         the commands could not be read
+     */
+    private static int runBatch(ContactServiceConfig config, String batchFile, int batchSize) {
+        try (ContactService service = new ContactService(config);
+                BufferedReader in = batchFile == null
+                        ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                        : Files.newBufferedReader(Paths.get(batchFile), StandardCharsets.UTF_8)) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 64 * 1024);
+            BatchMode batch = new BatchMode(service, config.getDurability(), batchSize);
+            batch.run(in, out);
+            System.err.println("Batch finished: " + batch.getCommandCount() + " command(s), "
+                    + batch.getFailureCount() + " failed.");
+            return batch.getFailureCount() == 0 ? 0 : 1;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Batch failed: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    /**
+     * Writes every contact to a file in the format its extension names
+     * 
+     * @param config     Service settings
+     * @param exportFile File to write, e.g. contacts.csv or contacts.ndjson.gz
+     * @return Exit status: 0 on success, 2 if the file could not be written
+     */
+    private static int runExport(ContactServiceConfig config, String exportFile) {
+        String name = exportFile.toLowerCase();
+        boolean gzip = name.endsWith(".gz");
+        if (gzip) {
+            name = name.substring(0, name.length() - 3);
+        }
+        ExportFormat format;
+        if (name.endsWith(".csv")) {
+            format = ExportFormat.CSV;
+        } else if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            format = ExportFormat.NDJSON;
+        } else {
+            System.err.println("--export needs a .csv or .ndjson file, optionally ending in .gz.");
+            return 2;
+        }
+
+        try (ContactService service = new ContactService(config);
+                FileChannel out = FileChannel.open(Paths.get(exportFile), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long count = service.exportContacts(out, format, gzip);
+            System.err.println("Exported " + count + " contact(s) to " + exportFile + ".");
+            return 0;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    /**
+     * Serves the HTTP API until the process is stopped. The service runs in
+     * concurrent mode and is closed by a shutdown hook, so stopping the
+     * process with Ctrl+C or SIGTERM flushes the journal.
+     * 
+     * @param config Service settings
+     * @param port   Port to listen on, 0 for any free port
+     */
+    private static void serveHttp(ContactServiceConfig config, int port) {
+        config.setConcurrent(true);
+        ContactService service;
+        ContactHttpServer server;
+        try {
+            service = new ContactService(config);
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            System.err.println("Cannot start the HTTP API: " + e.getMessage());
+            return;
+        }
+        try {
+            server = new ContactHttpServer(service, new InetSocketAddress(port), config.getDurability());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cannot start the HTTP API: " + e.getMessage());
+            service.close();
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            service.close();
+        }, "contact-http-shutdown"));
+        server.start();
+        System.out.println("Serving " + service.getContactCount() + " contact(s) on http://localhost:"
+                + server.getAddress().getPort() + "/contacts"
+                + (server.isUsingVirtualThreads() ? " (virtual threads)" : ""));
+    }
+
+    /**
+     * Parses a positive count given on the command line or at a prompt
+     * 
+     * @param value Text to parse
+     * @return Parsed number, or -1 if the text is not a number
+     */
+    private static int parseCount(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     /**
      * Main application loop
      */
@@ -58,11 +333,15 @@ public class Main {
                         displayAllContacts();
                         break;
                     case 6:
+                        displayStatistics();
+                        break;
+                    case 7:
                         running = false;
+                        contactService.close();
                         displayExitMessage();
                         break;
                     default:
-                        System.out.println("❌ Invalid choice. Please select 1-6.");
+                        System.out.println("❌ Invalid choice. Please select 1-7.");
                 }
 
                 if (running) {
@@ -104,10 +383,11 @@ public class Main {
         System.out.println("│  3. 🗑️  Delete Contact                                     │");
         System.out.println("│  4. 🔍 Search Contact                                     │");
         System.out.println("│  5. 📋 Display All Contacts                               │");
-        System.out.println("│  6. 🚪 Exit                                               │");
+        System.out.println("│  6. 📊 Statistics                                         │");
+        System.out.println("│  7. 🚪 Exit                                               │");
         System.out.println("└───────────────────────────────────────────────────────────┘");
         System.out.printf("   Total Contacts: %d\n", contactService.getContactCount());
-        System.out.print("\nEnter your choice (1-6): ");
+        System.out.print("\nEnter your choice (1-7): ");
     }
 
     /**
@@ -145,7 +425,7 @@ public class Main {
             contactService.addContact(name, phoneNumber, email, address);
             System.out.println("\n✅ Contact added successfully!");
 
-        } catch (IllegalArgumentException e) {
+        } catch (IllegalArgumentException | UncheckedIOException e) {
             System.out.println("\n❌ Error: " + e.getMessage());
         }
     }
@@ -163,6 +443,12 @@ public class Main {
             int id = scanner.nextInt();
             scanner.nextLine(); // Consume newline
 
+            Contact current = contactService.getContact(id);
+            if (current == null) {
+                System.out.println("\n❌ Error: Contact with ID " + id + " not found.");
+                return;
+            }
+
             System.out.print("Enter New Name: ");
             String name = scanner.nextLine().trim();
 
@@ -175,10 +461,14 @@ public class Main {
             System.out.print("Enter New Address: ");
             String address = scanner.nextLine().trim();
 
-            contactService.updateContact(id, name, phoneNumber, email, address);
-            System.out.println("\n✅ Contact updated successfully!");
+            // Refuse to overwrite changes made by someone else while the new details were typed
+            if (contactService.updateIfVersion(id, current.getVersion(), name, phoneNumber, email, address)) {
+                System.out.println("\n✅ Contact updated successfully!");
+            } else {
+                System.out.println("\n❌ Contact was changed by someone else in the meantime. Please try again.");
+            }
 
-        } catch (IllegalArgumentException e) {
+        } catch (IllegalArgumentException | UncheckedIOException e) {
             System.out.println("\n❌ Error: " + e.getMessage());
         } catch (InputMismatchException e) {
             System.out.println("\n❌ Error: Invalid ID format. Please enter a number.");
@@ -209,7 +499,7 @@ public class Main {
                 System.out.println("\n❌ Deletion cancelled.");
             }
 
-        } catch (IllegalArgumentException e) {
+        } catch (IllegalArgumentException | UncheckedIOException e) {
             System.out.println("\n❌ Error: " + e.getMessage());
         } catch (InputMismatchException e) {
             System.out.println("\n❌ Error: Invalid ID format. Please enter a number.");
@@ -226,7 +516,9 @@ public class Main {
         System.out.println(repeat("=", 60));
         System.out.println("1. Search by Name");
         System.out.println("2. Search by Phone Number");
-        System.out.print("\nEnter search type (1-2): ");
+        System.out.println("3. Search by Last Digits of Phone Number");
+        System.out.println("4. Search by Address");
+        System.out.print("\nEnter search type (1-4): ");
 
         try {
             int searchType = scanner.nextInt();
@@ -239,6 +531,15 @@ public class Main {
                     System.out.print("Enter name to search: ");
                     String name = scanner.nextLine().trim();
                     results = contactService.searchByName(name);
+                    if (results.isEmpty() && !name.isEmpty()) {
+                        // Nothing contains the text as typed, so try it with typos
+                        results = contactService.searchByNameFuzzy(name, name.length() < 4 ? 1 : 2,
+                                MAX_CLOSE_MATCHES);
+                        if (!results.isEmpty()) {
+                            displaySearchResults(results, "Names close to: " + name);
+                            break;
+                        }
+                    }
                     displaySearchResults(results, "Name: " + name);
                     break;
                 case 2:
@@ -247,10 +548,24 @@ public class Main {
                     results = contactService.searchByPhone(phone);
                     displaySearchResults(results, "Phone: " + phone);
                     break;
+                case 3:
+                    System.out.print("Enter last digits to search: ");
+                    String lastDigits = scanner.nextLine().trim();
+                    results = contactService.searchByPhoneSuffix(lastDigits);
+                    displaySearchResults(results, "Phone ending in: " + lastDigits);
+                    break;
+                case 4:
+                    System.out.print("Enter address to search: ");
+                    String address = scanner.nextLine().trim();
+                    results = contactService.searchByAddress(address);
+                    displaySearchResults(results, "Address: " + address);
+                    break;
                 default:
                     System.out.println("❌ Invalid search type.");
             }
 
+        } catch (IllegalArgumentException e) {
+            System.out.println("\n❌ Error: " + e.getMessage());
         } catch (InputMismatchException e) {
             System.out.println("\n❌ Error: Invalid input.");
             scanner.nextLine(); // Clear invalid input
@@ -272,9 +587,9 @@ public class Main {
             System.out.println("No contacts found.");
         } else {
             System.out.println("Found " + results.size() + " contact(s):\n");
-            for (Contact contact : results) {
-                System.out.println(contact);
-            }
+            int total = results.size();
+            pageThrough(total, (offset, limit) -> results.subList(Math.min(offset, total),
+                    Math.min(offset + limit, total)));
         }
     }
 
@@ -286,18 +601,121 @@ public class Main {
         System.out.println("                    📋 ALL CONTACTS");
         System.out.println(repeat("=", 60));
 
-        List<Contact> contacts = contactService.getAllContacts();
+        int total = contactService.getContactCount();
 
-        if (contacts.isEmpty()) {
+        if (total == 0) {
             System.out.println("\n📭 No contacts available. Add some contacts to get started!");
         } else {
-            System.out.println("\nTotal Contacts: " + contacts.size() + "\n");
-            for (Contact contact : contacts) {
-                System.out.println(contact);
+            System.out.println("\nTotal Contacts: " + total + "\n");
+            pageThrough(total, contactService::getContactsPage);
+        }
+    }
+
+    /**
+     * Shows a list one page at a time. Each page is fetched on its own,
+     * rendered into one buffer and written with a single flush; between pages
+     * the user can move forward and back, switch the layout or change the
+     * page size. A list that fits on one page is shown without prompting.
+     * 
+     * @param total Number of contacts in the list
+     * @param pages Returns the contacts of the page at an offset with a size
+     */
+    private void pageThrough(int total, BiFunction<Integer, Integer, List<Contact>> pages) {
+        int offset = 0;
+        while (true) {
+            List<Contact> page = pages.apply(offset, pageSize);
+            pageBuffer.setLength(0);
+            for (Contact contact : page) {
+                formatter.append(contact, pageBuffer);
+            }
+            if (total > pageSize) {
+                pageBuffer.append("\nShowing ").append(offset + 1).append('-').append(offset + page.size())
+                        .append(" of ").append(total).append('\n');
+            }
+            out.print(pageBuffer);
+            out.flush();
+
+            if (total <= pageSize) {
+                return;
+            }
+
+            System.out.print("[n]ext, [p]revious, [l]ayout, [s]ize <n>, [q]uit: ");
+            String command = scanner.nextLine().trim().toLowerCase();
+            if (command.isEmpty() || command.equals("n")) {
+                if (offset + pageSize < total) {
+                    offset += pageSize;
+                } else {
+                    System.out.println("Already on the last page.");
+                }
+            } else if (command.equals("p")) {
+                if (offset > 0) {
+                    offset = Math.max(0, offset - pageSize);
+                } else {
+                    System.out.println("Already on the first page.");
+                }
+            } else if (command.equals("l")) {
+                formatter.setLayout(formatter.getLayout() == ContactFormatter.Layout.BOX
+                        ? ContactFormatter.Layout.COMPACT
+                        : ContactFormatter.Layout.BOX);
+            } else if (command.startsWith("s")) {
+                int size = parseCount(command.substring(1));
+                if (size > 0) {
+                    pageSize = size;
+                    offset -= offset % pageSize;
+                } else {
+                    System.out.println("❌ Page size must be a positive number.");
+                }
+            } else if (command.equals("q")) {
+                return;
+            } else {
+                System.out.println("❌ Unknown command.");
             }
         }
     }
 
+    /**
+     * Displays operation latencies, persistence and index statistics
+     */
+    private void displayStatistics() {
+        System.out.println("\n" + repeat("=", 60));
+        System.out.println("                    📊 STATISTICS");
+        System.out.println(repeat("=", 60));
+
+        ServiceMetrics metrics = contactService.getMetrics();
+        System.out.println("\nTotal Contacts: " + metrics.getContactCount());
+        System.out.printf("Store memory:   %d bytes (%.1f bytes per contact)%n", metrics.getStoreMemoryBytes(),
+                metrics.getStoreBytesPerContact());
+
+        System.out.println("\nLatency (µs)");
+        System.out.printf("%-16s %8s %10s %10s %10s %10s%n", "Operation", "Count", "Mean", "p50", "p99", "Max");
+        for (OperationStats stats : metrics.getOperations()) {
+            if (stats.getCount() > 0) {
+                System.out.printf("%-16s %8d %10.1f %10.1f %10.1f %10.1f%n", stats.getOperation(), stats.getCount(),
+                        stats.getMeanMicros(), stats.getP50Micros(), stats.getP99Micros(), stats.getMaxMicros());
+            }
+        }
+
+        System.out.println("\nPersistence");
+        System.out.println("Journal writes:   " + metrics.getJournalWrites() + " (" + metrics.getJournalBytesWritten()
+                + " bytes)");
+        System.out.println("Snapshot writes:  " + metrics.getSnapshotWrites() + " ("
+                + metrics.getSnapshotBytesWritten() + " bytes)");
+        System.out.printf("Fsync calls:      %d (mean %.1f µs, p99 %.1f µs)%n", metrics.getSyncCount(),
+                metrics.getSyncMeanMicros(), metrics.getSyncP99Micros());
+        System.out.println("Errors:           " + metrics.getPersistenceErrors());
+        if (metrics.getPersistenceErrors() > 0) {
+            System.out.println("Last error:       " + metrics.getLastPersistenceError());
+        }
+
+        System.out.println("\nIndexes (hits / misses)");
+        System.out.println("ID lookups:       " + metrics.getIdLookupHits() + " / " + metrics.getIdLookupMisses());
+        System.out.println("Name searches:    " + metrics.getNameIndexHits() + " / " + metrics.getNameIndexMisses());
+        System.out.println("Phone searches:   " + metrics.getPhoneIndexHits() + " / " + metrics.getPhoneIndexMisses());
+        System.out.println("Duplicates:       " + metrics.getDuplicatesFlagged() + " flagged, "
+                + metrics.getDuplicatesRejected() + " rejected");
+        System.out.println("Conflicts:        " + metrics.getVersionConflicts() + " version mismatches");
+    }
+
     /**
      * Displays exit message
      */
@@ -0,0 +1,681 @@
+package http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.ExportFormat;
+import io.Json;
+import model.Contact;
+import service.ChangeEvent;
+import service.ChangeFeed;
+import service.ContactQuery;
+import service.ContactService;
+import storage.Durability;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ContactHttpServer exposes a ContactService as a JSON API over HTTP, using
+ * the JDK's built-in com.sun.net.httpserver
+ *
+ * Routes:
+ * GET    /contacts?offset=0&limit=100   list contacts
+ * POST   /contacts                      add a contact, 201 with the new contact
+ * GET    /contacts/{id}                 get one contact
+ * PUT    /contacts/{id}                 replace a contact's fields, only if
+ *                                       it is still at the version given in
+ *                                       If-Match when that header is sent
+ * DELETE /contacts/{id}                 delete a contact, 204
+ * GET    /contacts/search?name=...      or email, domain, phone, phonePrefix, phoneSuffix, address
+ * GET    /contacts/query?name=...&domain=...&sort=-name&offset=0&limit=20
+ *                                       contacts matching every given field, see
+ *                                       {@link ContactQuery#fromParameters}
+ * GET    /contacts/suggest?name=...&limit=10    contacts whose name starts so
+ * GET    /contacts/suggest?domain=...&limit=10  email domains starting so
+ * GET    /contacts/export?format=csv    stream every contact as CSV or
+ *                                       NDJSON (default), gzip-compressed if
+ *                                       the client accepts it
+ * GET    /contacts/changes?from=N       stream changes from sequence N, or
+ *                                       from now on without "from"
+ *
+ * Contacts are flat objects with the keys "id", "name", "phone", "email",
+ * "address" and "version"; request bodies use the same keys without "id"
+ * and "version". A single contact is sent with its version as the ETag, and
+ * a PUT whose If-Match no longer matches it is refused with 412. Errors are
+ * returned as {"error":"..."} with status 400, 404 or 405, 410 when a
+ * change stream asks for changes that are no longer retained, or 412 on a
+ * version conflict.
+ *
+ * The change stream is newline-delimited JSON, one line per change,
+ * {"sequence":N,"type":"UPDATE","id":...,"before":{...},"after":{...}},
+ * with null for a missing image. It runs until the client disconnects and
+ * sends a blank line when idle, so dead connections are noticed. A client
+ * that reconnects passes the sequence after the last line it processed.
+ *
+ * Each request runs on its own virtual thread when the JDK provides them and
+ * on a cached thread pool otherwise. Connections are kept alive between
+ * requests. Lists longer than a few contacts are streamed with chunked
+ * encoding through a buffered writer instead of being rendered into one
+ * string first.
+ *
+ * The service must be in concurrent mode, since requests run in parallel.
+ */
+public class ContactHttpServer implements Closeable {
+    private static final String CONTEXT = "/contacts";
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final int BACKLOG = 1024;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int STREAM_THRESHOLD = 64; // Longer lists are streamed
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_SUGGESTIONS = 10;
+    private static final String NDJSON_TYPE = "application/x-ndjson; charset=utf-8";
+    private static final String CSV_TYPE = "text/csv; charset=utf-8";
+    private static final int CHANGE_WINDOW = 256; // Events requested ahead of the client
+    private static final long HEARTBEAT_SECONDS = 15;
+
+    static {
+        // The server writes the headers and the body of a response separately;
+        // with Nagle's algorithm the body then waits for the client's delayed
+        // ACK, adding about 40 ms to every request on a kept-alive connection
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final ContactService contactService;
+    private final Durability durability;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    /**
+     * Creates a server bound to an address. Call {@link #start()} to accept
+     * requests.
+     *
+     * @param contactService Service in concurrent mode
+     * @param address        Address to listen on, port 0 for any free port
+     * @param durability     How far mutations are persisted before responding
+     * @throws IOException              if the address cannot be bound
+     * @throws IllegalArgumentException if the service is not in concurrent mode
+     */
+    public ContactHttpServer(ContactService contactService, InetSocketAddress address, Durability durability)
+            throws IOException {
+        if (!contactService.isConcurrent()) {
+            throw new IllegalArgumentException("The HTTP API needs a ContactService in concurrent mode.");
+        }
+        this.contactService = contactService;
+        this.durability = durability;
+
+        ExecutorService perRequest = newVirtualThreadPerTaskExecutor();
+        this.virtualThreads = perRequest != null;
+        this.executor = perRequest != null ? perRequest : newCachedThreadPool();
+
+        this.server = HttpServer.create(address, BACKLOG);
+        this.server.createContext(CONTEXT, this::handle);
+        this.server.setExecutor(executor);
+    }
+
+    /**
+     * Starts accepting requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the address the server is bound to
+     *
+     * @return Bound address, with the actual port if port 0 was requested
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Returns whether requests run on virtual threads
+     *
+     * @return false if the JDK has no virtual threads
+     */
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Stops accepting requests and closes all connections. The service is
+     * left open.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /**
+     * Looks up Executors.newVirtualThreadPerTaskExecutor() reflectively, so
+     * the server uses virtual threads where the JDK has them and still runs
+     * on JDKs without them
+     *
+     * @return Virtual thread executor, or null if unavailable
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newCachedThreadPool() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "contact-http-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Routes one request
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            if (path.isEmpty() || path.equals("/")) {
+                if (method.equals("GET")) {
+                    int offset = intParameter(query, "offset", 0);
+                    int limit = intParameter(query, "limit", Integer.MAX_VALUE);
+                    sendContacts(exchange, contactService.getContactsPage(offset, limit));
+                } else if (method.equals("POST")) {
+                    addContact(exchange);
+                } else {
+                    sendError(exchange, 405, "Method not allowed.");
+                }
+            } else if (path.equals("/search")) {
+                if (method.equals("GET")) {
+                    sendContacts(exchange, search(query));
+                } else {
+                    sendError(exchange, 405, "Method not allowed.");
+                }
+            } else if (path.equals("/query")) {
+                if (method.equals("GET")) {
+                    sendContacts(exchange, contactService.query(ContactQuery.fromParameters(query)));
+                } else {
+                    sendError(exchange, 405, "Method not allowed.");
+                }
+            } else if (path.equals("/export")) {
+                if (method.equals("GET")) {
+                    export(exchange, query);
+                } else {
+                    sendError(exchange, 405, "Method not allowed.");
+                }
+            } else if (path.equals("/changes")) {
+                if (method.equals("GET")) {
+                    streamChanges(exchange, query);
+                } else {
+                    sendError(exchange, 405, "Method not allowed.");
+                }
+            } else if (path.equals("/suggest")) {
+                if (method.equals("GET")) {
+                    suggest(exchange, query);
+                } else {
+                    sendError(exchange, 405, "Method not allowed.");
+                }
+            } else {
+                handleContact(exchange, method, path.substring(1));
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            sendError(exchange, 500, "The change was applied but could not be persisted: " + cause.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "Internal error: " + e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Handles GET, PUT and DELETE on /contacts/{id}
+     */
+    private void handleContact(HttpExchange exchange, String method, String idText) throws IOException {
+        int id;
+        try {
+            id = Integer.parseInt(idText);
+        } catch (NumberFormatException e) {
+            sendError(exchange, 404, "No such resource.");
+            return;
+        }
+
+        switch (method) {
+            case "GET": {
+                Contact contact = contactService.getContact(id);
+                if (contact == null) {
+                    sendError(exchange, 404, "Contact with ID " + id + " not found.");
+                } else {
+                    sendContact(exchange, 200, contact);
+                }
+                break;
+            }
+            case "PUT": {
+                Map<String, String> body = readBody(exchange);
+                String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+                CompletableFuture<Contact> update;
+                try {
+                    if (ifMatch == null || ifMatch.trim().equals("*")) {
+                        update = contactService.updateContactAsync(id, field(body, "name"), field(body, "phone"),
+                                field(body, "email"), field(body, "address"), durability);
+                    } else {
+                        update = contactService.updateIfVersionAsync(id, parseVersion(ifMatch), field(body, "name"),
+                                field(body, "phone"), field(body, "email"), field(body, "address"), durability);
+                    }
+                } catch (IllegalArgumentException e) {
+                    sendMissingOr(exchange, id, e);
+                    break;
+                }
+                Contact updated = update.join();
+                if (updated == null) {
+                    sendError(exchange, 412, "Contact with ID " + id + " has been changed since that version.");
+                    break;
+                }
+                sendContact(exchange, 200, updated);
+                break;
+            }
+            case "DELETE": {
+                CompletableFuture<Void> deletion;
+                try {
+                    deletion = contactService.deleteContactAsync(id, durability);
+                } catch (IllegalArgumentException e) {
+                    sendMissingOr(exchange, id, e);
+                    break;
+                }
+                deletion.join();
+                exchange.sendResponseHeaders(204, -1);
+                break;
+            }
+            default:
+                sendError(exchange, 405, "Method not allowed.");
+        }
+    }
+
+    /**
+     * Sends 404 if a mutation failed because the contact does not exist,
+     * e.g. after a concurrent delete, or rethrows the failure to be sent as
+     * a 400
+     */
+    private void sendMissingOr(HttpExchange exchange, int id, IllegalArgumentException failure) throws IOException {
+        if (contactService.getContact(id) != null) {
+            throw failure;
+        }
+        sendError(exchange, 404, "Contact with ID " + id + " not found.");
+    }
+
+    private void addContact(HttpExchange exchange) throws IOException {
+        Map<String, String> body = readBody(exchange);
+        Contact added = contactService.addContactAsync(field(body, "name"), field(body, "phone"),
+                field(body, "email"), field(body, "address"), durability).join();
+        exchange.getResponseHeaders().set("Location", CONTEXT + "/" + added.getId());
+        sendContact(exchange, 201, added);
+    }
+
+    /**
+     * Runs a search on whichever parameter the query names
+     */
+    private List<Contact> search(Map<String, String> query) {
+        if (query.containsKey("name")) {
+            return contactService.searchByName(query.get("name"));
+        }
+        if (query.containsKey("email")) {
+            return contactService.findByEmail(query.get("email"));
+        }
+        if (query.containsKey("domain")) {
+            return contactService.findByEmailDomain(query.get("domain"));
+        }
+        if (query.containsKey("phone")) {
+            return contactService.searchByPhone(query.get("phone"));
+        }
+        if (query.containsKey("phonePrefix")) {
+            return contactService.searchByPhonePrefix(query.get("phonePrefix"));
+        }
+        if (query.containsKey("phoneSuffix")) {
+            return contactService.searchByPhoneSuffix(query.get("phoneSuffix"));
+        }
+        if (query.containsKey("address")) {
+            return contactService.searchByAddress(query.get("address"));
+        }
+        throw new IllegalArgumentException(
+                "Search needs one of name, email, domain, phone, phonePrefix, phoneSuffix or address.");
+    }
+
+    /**
+     * Sends type-ahead suggestions for a name or an email domain
+     */
+    private void suggest(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int limit = intParameter(query, "limit", DEFAULT_SUGGESTIONS);
+        if (query.containsKey("name")) {
+            sendContacts(exchange, contactService.suggestByName(query.get("name"), limit));
+            return;
+        }
+        if (!query.containsKey("domain")) {
+            throw new IllegalArgumentException("Suggest needs name or domain.");
+        }
+
+        StringBuilder json = new StringBuilder(256).append('[');
+        List<String> domains = contactService.suggestEmailDomains(query.get("domain"), limit);
+        for (int i = 0; i < domains.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            Json.appendString(json, domains.get(i));
+        }
+        send(exchange, 200, json.append(']').toString());
+    }
+
+    /**
+     * Sends a list of contacts as a JSON array. Short lists are sent with a
+     * content length; longer ones are streamed in chunks as they are
+     * rendered.
+     */
+    private void sendContacts(HttpExchange exchange, List<Contact> contacts) throws IOException {
+        StringBuilder item = new StringBuilder(256);
+        if (contacts.size() <= STREAM_THRESHOLD) {
+            item.append('[');
+            for (int i = 0; i < contacts.size(); i++) {
+                item.append(i == 0 ? "{" : ",{");
+                Json.appendContactMembers(item, contacts.get(i));
+                item.append('}');
+            }
+            send(exchange, 200, item.append(']').toString());
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), STREAM_BUFFER_SIZE)) {
+            out.write('[');
+            for (int i = 0; i < contacts.size(); i++) {
+                item.setLength(0);
+                item.append(i == 0 ? "{" : ",{");
+                Json.appendContactMembers(item, contacts.get(i));
+                item.append('}');
+                out.append(item);
+            }
+            out.write(']');
+        }
+    }
+
+    /**
+     * Streams every contact as CSV or NDJSON, compressed if the client
+     * accepts gzip
+     */
+    private void export(HttpExchange exchange, Map<String, String> query) throws IOException {
+        ExportFormat format;
+        try {
+            format = ExportFormat.valueOf(query.getOrDefault("format", "ndjson").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("\"format\" must be csv or ndjson.");
+        }
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+
+        exchange.getResponseHeaders().set("Content-Type", format == ExportFormat.CSV ? CSV_TYPE : NDJSON_TYPE);
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream body = exchange.getResponseBody()) {
+            contactService.exportContacts(Channels.newChannel(body), format, gzip);
+        }
+    }
+
+    /**
+     * Streams the change feed as NDJSON until the client disconnects or the
+     * service is closed. Events are requested from the feed in windows, so a
+     * slow client holds back only its own subscription.
+     */
+    private void streamChanges(HttpExchange exchange, Map<String, String> query) throws IOException {
+        ChangeFeed feed = contactService.getChangeFeed();
+        ChangeStream stream = new ChangeStream();
+        if (query.containsKey("from")) {
+            feed.subscribe(stream, longParameter(query, "from"));
+        } else {
+            feed.subscribe(stream);
+        }
+        Object first = stream.inbox.peek();
+        if (first instanceof Throwable) {
+            sendError(exchange, first instanceof IllegalStateException ? 410 : 400, ((Throwable) first).getMessage());
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", NDJSON_TYPE);
+        exchange.sendResponseHeaders(200, 0);
+        StringBuilder line = new StringBuilder(512);
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), STREAM_BUFFER_SIZE)) {
+            while (true) {
+                Object item = stream.inbox.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                if (item == null) {
+                    out.write('\n');
+                    out.flush();
+                    continue;
+                }
+                if (item == ChangeStream.END) {
+                    return;
+                }
+
+                line.setLength(0);
+                if (item instanceof Throwable) {
+                    line.append("{\"error\":").append(Json.quote(((Throwable) item).getMessage())).append("}\n");
+                    out.append(line);
+                    return;
+                }
+                appendChange(line, (ChangeEvent) item);
+                out.append(line);
+                stream.consumed();
+                if (stream.inbox.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stream.cancel();
+        }
+    }
+
+    private static void appendChange(StringBuilder line, ChangeEvent event) {
+        line.append("{\"sequence\":").append(event.getSequence())
+                .append(",\"type\":\"").append(event.getType())
+                .append("\",\"id\":").append(event.getContactId())
+                .append(",\"before\":");
+        appendImage(line, event.getBefore());
+        line.append(",\"after\":");
+        appendImage(line, event.getAfter());
+        line.append("}\n");
+    }
+
+    private static void appendImage(StringBuilder line, Contact contact) {
+        if (contact == null) {
+            line.append("null");
+            return;
+        }
+        line.append('{');
+        Json.appendContactMembers(line, contact);
+        line.append('}');
+    }
+
+    /**
+     * Hands the events of one change subscription to the request thread that
+     * writes them, and keeps up to a window of them requested ahead
+     */
+    private static final class ChangeStream implements Flow.Subscriber<ChangeEvent> {
+        static final Object END = new Object();
+
+        final BlockingQueue<Object> inbox = new LinkedBlockingQueue<>(); // Bounded by the requested window
+        private volatile Flow.Subscription subscription;
+        private int consumed; // Only touched by the request thread
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(CHANGE_WINDOW);
+        }
+
+        @Override
+        public void onNext(ChangeEvent event) {
+            inbox.add(event);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            inbox.add(error);
+        }
+
+        @Override
+        public void onComplete() {
+            inbox.add(END);
+        }
+
+        /**
+         * Records that one event was written and tops up the window once
+         * half of it has been used
+         */
+        void consumed() {
+            if (++consumed == CHANGE_WINDOW / 2) {
+                consumed = 0;
+                subscription.request(CHANGE_WINDOW / 2);
+            }
+        }
+
+        void cancel() {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Reads the version from an If-Match header such as "3" or W/"3". A value
+     * that is not a version of ours can never match.
+     */
+    private static long parseVersion(String ifMatch) {
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            long version = Long.parseLong(tag);
+            return version > 0 ? version : 0;
+        } catch (NumberFormatException e) {
+            return 0; // Contacts start at version 1
+        }
+    }
+
+    private void sendContact(HttpExchange exchange, int status, Contact contact) throws IOException {
+        exchange.getResponseHeaders().set("ETag", "\"" + contact.getVersion() + "\"");
+        StringBuilder json = new StringBuilder(256).append('{');
+        Json.appendContactMembers(json, contact);
+        send(exchange, status, json.append('}').toString());
+    }
+
+    /**
+     * Sends an error unless the response has already started, in which case
+     * the connection is just closed
+     */
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+        send(exchange, status, "{\"error\":" + Json.quote(message) + "}");
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a request body holding one flat JSON object
+     *
+     * @throws IllegalArgumentException if the body is too large or not a JSON object
+     */
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body is larger than " + MAX_BODY_BYTES + " bytes.");
+            }
+            return Json.parseObject(new String(body, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("\"" + name + "\" must be a whole number.");
+        }
+    }
+
+    private static long longParameter(Map<String, String> query, String name) {
+        try {
+            return Long.parseLong(query.get(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("\"" + name + "\" must be a whole number.");
+        }
+    }
+
+    private static String field(Map<String, String> body, String key) {
+        String value = body.get(key);
+        return value == null ? "" : value.trim();
+    }
+}
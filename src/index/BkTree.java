@@ -0,0 +1,249 @@
+package index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BkTree is a metric index over normalized terms under the Levenshtein
+ * distance, for typo-tolerant lookups. Every node holds one distinct term
+ * and the IDs indexed under it; a node's children are keyed by their
+ * distance to it.
+ *
+ * By the triangle inequality, a term within distance t of the query can only
+ * be found below children whose key lies within t of the node's own
+ * distance to the query, so a search with a small t visits only a fraction
+ * of the terms.
+ *
+ * Terms whose last ID is removed stay in the tree as empty nodes, since
+ * removing a node would orphan its subtree. The tree is rebuilt from the
+ * live terms once empty nodes outnumber them.
+ */
+public class BkTree {
+    private static final int MIN_REBUILD_NODES = 1024;
+
+    private final Map<String, Node> nodes;
+    private Node root;
+    private int liveTerms;
+
+    /**
+     * Creates an empty tree
+     */
+    public BkTree() {
+        this.nodes = new HashMap<>();
+    }
+
+    /**
+     * Indexes a normalized term under an ID
+     *
+     * @param id   Owner of the term
+     * @param term Normalized term, e.g. a lowercased name
+     */
+    public void add(int id, String term) {
+        Node node = nodes.get(term);
+        if (node == null) {
+            node = new Node(term);
+            nodes.put(term, node);
+            insert(node);
+        }
+        if (node.size == 0) {
+            liveTerms++;
+        }
+        node.add(id);
+    }
+
+    /**
+     * Removes a previously indexed term
+     *
+     * @param id   Owner of the term
+     * @param term The same normalized term that was passed to add
+     */
+    public void remove(int id, String term) {
+        Node node = nodes.get(term);
+        if (node == null || !node.remove(id) || node.size > 0) {
+            return;
+        }
+
+        liveTerms--;
+        if (nodes.size() >= MIN_REBUILD_NODES && nodes.size() - liveTerms > liveTerms) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Removes everything from the index
+     */
+    public void clear() {
+        nodes.clear();
+        root = null;
+        liveTerms = 0;
+    }
+
+    /**
+     * Finds every ID with a term within a distance of the query
+     *
+     * @param query       Normalized query
+     * @param maxDistance Largest edit distance to accept
+     * @return Smallest distance of any matching term, by ID
+     */
+    public Map<Integer, Integer> search(String query, int maxDistance) {
+        Map<Integer, Integer> matches = new HashMap<>();
+        if (root == null) {
+            return matches;
+        }
+
+        Distance distance = new Distance(query);
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int d = distance.to(node.term);
+            if (d <= maxDistance) {
+                for (int i = 0; i < node.size; i++) {
+                    matches.merge(node.ids[i], d, Math::min);
+                }
+            }
+            int from = Math.max(1, d - maxDistance);
+            int to = Math.min(node.children.length - 1, d + maxDistance);
+            for (int key = from; key <= to; key++) {
+                if (node.children[key] != null) {
+                    pending.push(node.children[key]);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the Levenshtein distance between two strings
+     *
+     * @param a First string
+     * @param b Second string
+     * @return Number of single-character insertions, deletions and
+     *         substitutions that turn a into b
+     */
+    public static int distance(String a, String b) {
+        return new Distance(a).to(b);
+    }
+
+    private void insert(Node node) {
+        if (root == null) {
+            root = node;
+            return;
+        }
+
+        Distance distance = new Distance(node.term);
+        Node parent = root;
+        while (true) {
+            int d = distance.to(parent.term);
+            if (d >= parent.children.length) {
+                parent.children = Arrays.copyOf(parent.children, Math.max(d + 1, parent.children.length * 2));
+            }
+            Node child = parent.children[d];
+            if (child == null) {
+                parent.children[d] = node;
+                return;
+            }
+            parent = child;
+        }
+    }
+
+    /**
+     * Reinserts the live terms into a fresh tree, dropping empty nodes
+     */
+    private void rebuild() {
+        List<Node> live = new ArrayList<>(liveTerms);
+        for (Node node : nodes.values()) {
+            if (node.size > 0) {
+                live.add(node);
+            }
+        }
+
+        nodes.clear();
+        root = null;
+        for (Node node : live) {
+            node.children = Node.NO_CHILDREN;
+            nodes.put(node.term, node);
+            insert(node);
+        }
+    }
+
+    /**
+     * One distinct term with its sorted, duplicate-free IDs
+     */
+    private static class Node {
+        static final Node[] NO_CHILDREN = new Node[0];
+
+        final String term;
+        Node[] children = NO_CHILDREN; // Indexed by distance to this term
+        int[] ids = new int[1];
+        int size;
+
+        Node(String term) {
+            this.term = term;
+        }
+
+        void add(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+    }
+
+    /**
+     * Computes distances from one fixed string, reusing the two rows of the
+     * dynamic programming table between calls
+     */
+    private static class Distance {
+        private final String source;
+        private int[] previous;
+        private int[] current;
+
+        Distance(String source) {
+            this.source = source;
+            this.previous = new int[source.length() + 1];
+            this.current = new int[source.length() + 1];
+        }
+
+        int to(String target) {
+            int n = source.length();
+            for (int i = 0; i <= n; i++) {
+                previous[i] = i;
+            }
+            for (int j = 1; j <= target.length(); j++) {
+                char c = target.charAt(j - 1);
+                current[0] = j;
+                for (int i = 1; i <= n; i++) {
+                    int substitution = previous[i - 1] + (source.charAt(i - 1) == c ? 0 : 1);
+                    current[i] = Math.min(substitution, Math.min(previous[i], current[i - 1]) + 1);
+                }
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return previous[n];
+        }
+    }
+}
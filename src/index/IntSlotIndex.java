@@ -0,0 +1,210 @@
+package index;
+
+import java.util.Arrays;
+
+/**
+ * IntSlotIndex is an open-addressing hash map from int keys to int slots.
+ * Keys and values live in two parallel primitive arrays, so lookups never box
+ * and never chase pointers. Collisions are resolved by linear probing and
+ * removals use backward-shift deletion, so the table never fills up with
+ * deleted markers.
+ */
+public class IntSlotIndex {
+    public static final int NOT_FOUND = -1;
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    /**
+     * Creates an empty index
+     */
+    public IntSlotIndex() {
+        this(16);
+    }
+
+    /**
+     * Creates an index sized for the expected number of keys
+     *
+     * @param expectedSize Number of keys expected
+     */
+    public IntSlotIndex(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Returns the slot stored for a key
+     *
+     * @param key Key to look up
+     * @return Slot, or {@link #NOT_FOUND}
+     */
+    public int get(int key) {
+        int i = hash(key) & mask;
+        while (true) {
+            int k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == EMPTY) {
+                return NOT_FOUND;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Checks whether a key is present
+     *
+     * @param key Key to look up
+     * @return true if the key is present
+     */
+    public boolean containsKey(int key) {
+        return get(key) != NOT_FOUND;
+    }
+
+    /**
+     * Stores or replaces the slot for a key
+     *
+     * @param key   Key, any int except Integer.MIN_VALUE
+     * @param value Slot to store
+     * @throws IllegalArgumentException if the key is Integer.MIN_VALUE
+     */
+    public void put(int key, int value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key " + key + " is reserved.");
+        }
+
+        int i = hash(key) & mask;
+        while (true) {
+            int k = keys[i];
+            if (k == key) {
+                values[i] = value;
+                return;
+            }
+            if (k == EMPTY) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size >= resizeAt) {
+                    rehash(keys.length << 1);
+                }
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Removes a key
+     *
+     * @param key Key to remove
+     * @return Slot that was stored, or {@link #NOT_FOUND}
+     */
+    public int remove(int key) {
+        int i = hash(key) & mask;
+        while (true) {
+            int k = keys[i];
+            if (k == EMPTY) {
+                return NOT_FOUND;
+            }
+            if (k == key) {
+                int removed = values[i];
+                shiftBack(i);
+                size--;
+                return removed;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the number of keys
+     *
+     * @return Key count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all keys, keeping the current capacity
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Closes the gap left at a removed position by moving later entries of the
+     * same probe run back, so lookups never need deleted markers
+     */
+    private void shiftBack(int gap) {
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            int k = keys[i];
+            if (k == EMPTY) {
+                break;
+            }
+            int home = hash(k) & mask;
+            // Move the entry if its home position is not cyclically within (gap, i]
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = k;
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            int k = oldKeys[i];
+            if (k != EMPTY) {
+                int j = hash(k) & mask;
+                while (keys[j] != EMPTY) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = k;
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR <= expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Murmur3 finalizer, spreads sequential IDs across the table
+     */
+    private static int hash(int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
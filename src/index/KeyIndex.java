@@ -0,0 +1,118 @@
+package index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * KeyIndex is a hash index from a normalized key, e.g. a lowercased email
+ * address, to the IDs that have it. Lookups and updates are O(1).
+ *
+ * Most keys belong to a single ID, so the IDs of a key are kept as an
+ * Integer until a second ID arrives, and as a sorted int array from then on.
+ */
+public class KeyIndex {
+    private static final int[] NONE = new int[0];
+
+    private final Map<String, Object> owners; // Integer or int[]
+
+    /**
+     * Creates an empty index
+     */
+    public KeyIndex() {
+        this.owners = new HashMap<>();
+    }
+
+    /**
+     * Indexes a normalized key under an ID
+     *
+     * @param id  Owner of the key
+     * @param key Normalized key
+     */
+    public void add(int id, String key) {
+        owners.merge(key, id, (current, added) -> {
+            int[] ids = idsOf(current);
+            int pos = Arrays.binarySearch(ids, id);
+            if (pos >= 0) {
+                return current;
+            }
+            pos = -pos - 1;
+            int[] grown = new int[ids.length + 1];
+            System.arraycopy(ids, 0, grown, 0, pos);
+            grown[pos] = id;
+            System.arraycopy(ids, pos, grown, pos + 1, ids.length - pos);
+            return grown;
+        });
+    }
+
+    /**
+     * Removes a previously indexed key
+     *
+     * @param id  Owner of the key
+     * @param key The same normalized key that was passed to add
+     */
+    public void remove(int id, String key) {
+        owners.computeIfPresent(key, (ignored, current) -> {
+            int[] ids = idsOf(current);
+            int pos = Arrays.binarySearch(ids, id);
+            if (pos < 0) {
+                return current;
+            }
+            if (ids.length == 1) {
+                return null;
+            }
+            if (ids.length == 2) {
+                return ids[1 - pos];
+            }
+            int[] shrunk = new int[ids.length - 1];
+            System.arraycopy(ids, 0, shrunk, 0, pos);
+            System.arraycopy(ids, pos + 1, shrunk, pos, ids.length - pos - 1);
+            return shrunk;
+        });
+    }
+
+    /**
+     * Removes everything from the index
+     */
+    public void clear() {
+        owners.clear();
+    }
+
+    /**
+     * Returns the IDs that have a key
+     *
+     * @param key Normalized key
+     * @return IDs in ascending order, empty if none
+     */
+    public int[] get(String key) {
+        Object current = owners.get(key);
+        if (current == null) {
+            return NONE;
+        }
+        return current instanceof Integer ? new int[] { (Integer) current } : ((int[]) current).clone();
+    }
+
+    /**
+     * Returns an ID other than the given one that has a key
+     *
+     * @param key     Normalized key
+     * @param ignored ID to skip, e.g. the contact being updated
+     * @return Another owner of the key, or IntSlotIndex.NOT_FOUND if none
+     */
+    public int findOther(String key, int ignored) {
+        Object current = owners.get(key);
+        if (current == null) {
+            return IntSlotIndex.NOT_FOUND;
+        }
+        for (int id : idsOf(current)) {
+            if (id != ignored) {
+                return id;
+            }
+        }
+        return IntSlotIndex.NOT_FOUND;
+    }
+
+    private static int[] idsOf(Object owner) {
+        return owner instanceof Integer ? new int[] { (Integer) owner } : (int[]) owner;
+    }
+}
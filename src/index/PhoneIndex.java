@@ -0,0 +1,517 @@
+package index;
+
+import java.util.Arrays;
+
+/**
+ * PhoneIndex is a suffix array over digit-normalized phone numbers, kept
+ * entirely in primitive arrays.
+ *
+ * Every indexed number is stored once as a run of digits in a shared byte
+ * arena under a key. Each suffix of a number becomes one long entry
+ * (key << 16 | offset) and the entries are kept sorted by the digits they
+ * point at. All suffixes that start with a query form one contiguous range
+ * found by binary search, which answers:
+ * - infix queries: any entry in the range
+ * - prefix queries: entries in the range at offset 0
+ * - suffix queries: entries in the range that end exactly at the number's end
+ *
+ * Entries are kept in a few sorted runs, oldest and largest first, as in a
+ * log-structured merge tree. New entries form a run of their own, which is
+ * merged with the runs before it as long as they are no more than twice its
+ * size. Every run is then more than twice the size of the next, so there are
+ * O(log n) runs to search and each entry takes part in O(log n) merges,
+ * however adds and queries are interleaved. Newly added numbers are only
+ * turned into entries when the next query arrives, so bulk loading sorts
+ * everything once instead of merging repeatedly. Removed numbers are marked
+ * dead and dropped on merge.
+ *
+ * Because queries flush pending numbers, they modify the index. An index
+ * read by several threads at once must be flushed by the writer after every
+ * change; queries then find nothing pending and only read.
+ */
+public class PhoneIndex {
+    private static final int OFFSET_BITS = 16;
+    private static final int MAX_DIGITS = (1 << OFFSET_BITS) - 1;
+    private static final long OFFSET_MASK = MAX_DIGITS;
+    private static final int NO_OWNER = Integer.MIN_VALUE;
+    private static final int RUN_GROWTH = 2;
+    private static final int MIN_DEAD_KEYS_FOR_COMPACTION = 1024;
+    private static final int INSERTION_SORT_THRESHOLD = 12;
+
+    private static final int MODE_INFIX = 0;
+    private static final int MODE_PREFIX = 1;
+    private static final int MODE_SUFFIX = 2;
+
+    private byte[] arena;
+    private int arenaSize;
+    private int[] keyStart;
+    private int[] keyLength;
+    private int[] keyOwner;
+    private int keyCount;
+    private int deadKeys;
+    private final IntSlotIndex keyById;
+
+    private long[][] runs; // Sorted entries, each run more than RUN_GROWTH times the next
+    private int runCount;
+    private int[] pending;
+    private int pendingSize;
+
+    /**
+     * Creates an empty index
+     */
+    public PhoneIndex() {
+        this.keyById = new IntSlotIndex();
+        clear();
+    }
+
+    /**
+     * Strips everything but the digits from a phone number, so that
+     * "555-1234", "(555) 1234" and "5551234" all normalize to the same value
+     *
+     * @param phoneNumber Phone number as entered
+     * @return Digits only, possibly empty
+     */
+    public static String normalize(String phoneNumber) {
+        StringBuilder digits = new StringBuilder(phoneNumber.length());
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    /**
+     * Indexes the phone number of an ID, replacing any number it had before
+     *
+     * @param id          Owner of the number
+     * @param phoneNumber Phone number in any format
+     */
+    public void add(int id, String phoneNumber) {
+        remove(id);
+
+        String digits = normalize(phoneNumber);
+        int length = Math.min(digits.length(), MAX_DIGITS);
+        if (length == 0) {
+            return;
+        }
+
+        ensureKeyCapacity();
+        ensureArenaCapacity(length);
+        int key = keyCount++;
+        keyStart[key] = arenaSize;
+        keyLength[key] = length;
+        keyOwner[key] = id;
+        for (int i = 0; i < length; i++) {
+            arena[arenaSize++] = (byte) (digits.charAt(i) - '0');
+        }
+
+        keyById.put(id, key);
+        if (pendingSize == pending.length) {
+            pending = Arrays.copyOf(pending, pendingSize * 2);
+        }
+        pending[pendingSize++] = key;
+    }
+
+    /**
+     * Removes the phone number of an ID
+     *
+     * @param id Owner of the number
+     */
+    public void remove(int id) {
+        int key = keyById.remove(id);
+        if (key != IntSlotIndex.NOT_FOUND) {
+            keyOwner[key] = NO_OWNER;
+            deadKeys++;
+        }
+    }
+
+    /**
+     * Removes everything from the index
+     */
+    public void clear() {
+        arena = new byte[1024];
+        arenaSize = 0;
+        keyStart = new int[64];
+        keyLength = new int[64];
+        keyOwner = new int[64];
+        keyCount = 0;
+        deadKeys = 0;
+        keyById.clear();
+        runs = new long[8][];
+        runCount = 0;
+        pending = new int[64];
+        pendingSize = 0;
+    }
+
+    /**
+     * Turns the numbers added since the last flush into entries, which
+     * queries otherwise do on first use
+     */
+    public void flush() {
+        flushPending();
+    }
+
+    /**
+     * Finds the IDs whose number contains the given digits anywhere
+     *
+     * @param digits Normalized, non-empty query
+     * @return Matching IDs in ascending order
+     */
+    public int[] findContaining(String digits) {
+        return find(digits, MODE_INFIX);
+    }
+
+    /**
+     * Finds the IDs whose number starts with the given digits
+     *
+     * @param digits Normalized, non-empty query
+     * @return Matching IDs in ascending order
+     */
+    public int[] findByPrefix(String digits) {
+        return find(digits, MODE_PREFIX);
+    }
+
+    /**
+     * Finds the IDs whose number ends with the given digits, e.g. the last
+     * four digits of a number
+     *
+     * @param digits Normalized, non-empty query
+     * @return Matching IDs in ascending order
+     */
+    public int[] findBySuffix(String digits) {
+        return find(digits, MODE_SUFFIX);
+    }
+
+    /**
+     * Estimates how many IDs a query matches without collecting them
+     *
+     * @param digits Normalized, non-empty query
+     * @return Number of suffixes that start with the digits, an upper bound
+     *         on the matches of every kind of query
+     */
+    public int estimate(String digits) {
+        byte[] q = toDigits(digits);
+        flushPending();
+        int count = 0;
+        for (int r = 0; r < runCount; r++) {
+            count += upperBound(runs[r], runs[r].length, q) - lowerBound(runs[r], runs[r].length, q);
+        }
+        return count;
+    }
+
+    private int[] find(String query, int mode) {
+        byte[] q = toDigits(query);
+        flushPending();
+
+        int[] ids = new int[16];
+        int count = 0;
+
+        for (int r = 0; r < runCount; r++) {
+            long[] entries = runs[r];
+            int from = lowerBound(entries, entries.length, q);
+            for (int i = from; i < entries.length && compareToQuery(entries[i], q) == 0; i++) {
+                int key = (int) (entries[i] >>> OFFSET_BITS);
+                int offset = (int) (entries[i] & OFFSET_MASK);
+                int owner = keyOwner[key];
+                if (owner == NO_OWNER
+                        || (mode == MODE_PREFIX && offset != 0)
+                        || (mode == MODE_SUFFIX && offset + q.length != keyLength[key])) {
+                    continue;
+                }
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = owner;
+            }
+        }
+
+        // A number can contain the same digits more than once
+        Arrays.sort(ids, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || ids[unique - 1] != ids[i]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, unique);
+    }
+
+    /**
+     * Turns pending keys into a sorted run of suffix entries and merges it
+     * with the newest runs while they are not much larger than it
+     */
+    private void flushPending() {
+        if (pendingSize == 0) {
+            return;
+        }
+
+        int total = 0;
+        for (int i = 0; i < pendingSize; i++) {
+            int key = pending[i];
+            if (keyOwner[key] != NO_OWNER) {
+                total += keyLength[key];
+            }
+        }
+
+        long[] fresh = new long[total];
+        int n = 0;
+        for (int i = 0; i < pendingSize; i++) {
+            int key = pending[i];
+            if (keyOwner[key] != NO_OWNER) {
+                for (int offset = 0; offset < keyLength[key]; offset++) {
+                    fresh[n++] = ((long) key << OFFSET_BITS) | offset;
+                }
+            }
+        }
+        pendingSize = 0;
+        if (n == 0) {
+            return;
+        }
+        sort(fresh, 0, n, 0);
+
+        long[] run = fresh;
+        while (runCount > 0 && runs[runCount - 1].length <= RUN_GROWTH * run.length) {
+            long[] previous = runs[--runCount];
+            runs[runCount] = null;
+            run = merge(previous, previous.length, run, run.length);
+        }
+        if (runCount == runs.length) {
+            runs = Arrays.copyOf(runs, runCount * 2);
+        }
+        runs[runCount++] = run;
+
+        if (deadKeys > MIN_DEAD_KEYS_FOR_COMPACTION && deadKeys > keyCount - deadKeys) {
+            // Dead keys may only be renumbered once no run refers to them
+            while (runCount > 1) {
+                long[] last = runs[--runCount];
+                runs[runCount] = null;
+                runs[runCount - 1] = merge(runs[runCount - 1], runs[runCount - 1].length, last, last.length);
+            }
+            if (runCount == 1) {
+                runs[0] = merge(runs[0], runs[0].length, new long[0], 0);
+            }
+            compactArena();
+        }
+    }
+
+    /**
+     * Merges two sorted entry arrays, dropping entries of dead keys
+     */
+    private long[] merge(long[] a, int aSize, long[] b, int bSize) {
+        long[] out = new long[aSize + bSize];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < aSize || j < bSize) {
+            long next;
+            if (j >= bSize || (i < aSize && compareEntries(a[i], b[j]) <= 0)) {
+                next = a[i++];
+            } else {
+                next = b[j++];
+            }
+            if (keyOwner[(int) (next >>> OFFSET_BITS)] != NO_OWNER) {
+                out[n++] = next;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Rewrites the arena and key tables without dead keys. Entry order is by
+     * digit content, which renumbering keys does not change, so the sorted
+     * arrays stay valid once their keys are remapped.
+     */
+    private void compactArena() {
+        int[] remap = new int[keyCount];
+        byte[] newArena = new byte[Math.max(1024, arenaSize)];
+        int newArenaSize = 0;
+        int live = 0;
+
+        for (int key = 0; key < keyCount; key++) {
+            if (keyOwner[key] == NO_OWNER) {
+                remap[key] = -1;
+                continue;
+            }
+            System.arraycopy(arena, keyStart[key], newArena, newArenaSize, keyLength[key]);
+            keyStart[live] = newArenaSize;
+            keyLength[live] = keyLength[key];
+            keyOwner[live] = keyOwner[key];
+            keyById.put(keyOwner[live], live);
+            newArenaSize += keyLength[key];
+            remap[key] = live++;
+        }
+
+        arena = newArena;
+        arenaSize = newArenaSize;
+        keyCount = live;
+        deadKeys = 0;
+        for (int r = 0; r < runCount; r++) {
+            remapEntries(runs[r], runs[r].length, remap);
+        }
+    }
+
+    private static void remapEntries(long[] entries, int size, int[] remap) {
+        for (int i = 0; i < size; i++) {
+            int key = remap[(int) (entries[i] >>> OFFSET_BITS)];
+            entries[i] = ((long) key << OFFSET_BITS) | (entries[i] & OFFSET_MASK);
+        }
+    }
+
+    private static byte[] toDigits(String query) {
+        if (query.isEmpty()) {
+            throw new IllegalArgumentException("Query must contain at least one digit.");
+        }
+
+        byte[] q = new byte[query.length()];
+        for (int i = 0; i < q.length; i++) {
+            char c = query.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Query must contain digits only.");
+            }
+            q[i] = (byte) (c - '0');
+        }
+        return q;
+    }
+
+    /**
+     * Returns the index after the last entry whose suffix starts with the query
+     */
+    private int upperBound(long[] entries, int size, byte[] q) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareToQuery(entries[mid], q) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the first entry whose suffix is not less than the query
+     */
+    private int lowerBound(long[] entries, int size, byte[] q) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareToQuery(entries[mid], q) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Compares the suffix of an entry with a query, returning 0 when the
+     * suffix starts with the query
+     */
+    private int compareToQuery(long entry, byte[] q) {
+        int key = (int) (entry >>> OFFSET_BITS);
+        int offset = (int) (entry & OFFSET_MASK);
+        int start = keyStart[key] + offset;
+        int length = keyLength[key] - offset;
+
+        for (int i = 0; i < q.length; i++) {
+            if (i >= length) {
+                return -1;
+            }
+            int diff = arena[start + i] - q[i];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    private int compareEntries(long a, long b) {
+        int depth = 0;
+        while (true) {
+            int da = digitAt(a, depth);
+            int db = digitAt(b, depth);
+            if (da != db || da < 0) {
+                return da - db;
+            }
+            depth++;
+        }
+    }
+
+    /**
+     * Returns the digit of an entry's suffix at a depth, or -1 past its end
+     */
+    private int digitAt(long entry, int depth) {
+        int key = (int) (entry >>> OFFSET_BITS);
+        int offset = (int) (entry & OFFSET_MASK) + depth;
+        return offset < keyLength[key] ? arena[keyStart[key] + offset] : -1;
+    }
+
+    /**
+     * Multikey quicksort (Bentley-Sedgewick): partitions on the digit at the
+     * current depth and only descends a level for the equal partition
+     */
+    private void sort(long[] entries, int from, int to, int depth) {
+        while (to - from > INSERTION_SORT_THRESHOLD) {
+            int pivot = digitAt(entries[(from + to) >>> 1], depth);
+            int lt = from;
+            int gt = to - 1;
+            int i = from;
+            while (i <= gt) {
+                int d = digitAt(entries[i], depth);
+                if (d < pivot) {
+                    swap(entries, lt++, i++);
+                } else if (d > pivot) {
+                    swap(entries, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+
+            sort(entries, from, lt, depth);
+            sort(entries, gt + 1, to, depth);
+            if (pivot < 0) {
+                return; // Equal partition holds suffixes that have all ended
+            }
+            from = lt;
+            to = gt + 1;
+            depth++;
+        }
+
+        for (int i = from + 1; i < to; i++) {
+            long entry = entries[i];
+            int j = i - 1;
+            while (j >= from && compareEntries(entries[j], entry) > 0) {
+                entries[j + 1] = entries[j];
+                j--;
+            }
+            entries[j + 1] = entry;
+        }
+    }
+
+    private static void swap(long[] entries, int i, int j) {
+        long tmp = entries[i];
+        entries[i] = entries[j];
+        entries[j] = tmp;
+    }
+
+    private void ensureKeyCapacity() {
+        if (keyCount == keyStart.length) {
+            int capacity = keyCount * 2;
+            keyStart = Arrays.copyOf(keyStart, capacity);
+            keyLength = Arrays.copyOf(keyLength, capacity);
+            keyOwner = Arrays.copyOf(keyOwner, capacity);
+        }
+    }
+
+    private void ensureArenaCapacity(int extra) {
+        if (arenaSize + extra > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + extra));
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/**
+ * PrefixIndex is a sorted term dictionary for prefix lookups, e.g. name
+ * autocompletion. Every distinct normalized term is stored once with the
+ * sorted IDs indexed under it.
+ *
+ * The terms live in a sorted array, so all terms starting with a prefix form
+ * one contiguous run found by binary search, and a lookup can stop after the
+ * first k IDs without touching the rest of the run. New terms go to a small
+ * sorted delta map that is merged into the array once it holds an eighth as
+ * many terms, so bulk loading merges only a logarithmic number of times.
+ * Terms whose last ID is removed stay in the array until the next merge.
+ * The IDs of a term are kept in an array that grows by doubling; IDs are
+ * handed out in increasing order, so adding one is an amortized O(1) append.
+ */
+public class PrefixIndex {
+    private static final int[] NONE = new int[0];
+    private static final int MIN_MERGE_TERMS = 1024;
+
+    private String[] terms;
+    private PostingList[] postings;
+    private int size;
+    private int emptyTerms;
+    private final TreeMap<String, PostingList> delta;
+
+    /**
+     * Visits the terms of a prefix run in order
+     */
+    private interface TermVisitor {
+        /**
+         * @return false to stop the walk
+         */
+        boolean visit(String term, PostingList ids);
+    }
+
+    /**
+     * Creates an empty index
+     */
+    public PrefixIndex() {
+        this.delta = new TreeMap<>();
+        clear();
+    }
+
+    /**
+     * Indexes a normalized term under an ID
+     *
+     * @param id   Owner of the term
+     * @param term Normalized term, e.g. a lowercased name
+     */
+    public void add(int id, String term) {
+        int pos = Arrays.binarySearch(terms, 0, size, term);
+        if (pos >= 0) {
+            if (postings[pos].size == 0) {
+                emptyTerms--;
+            }
+            postings[pos].add(id);
+            return;
+        }
+
+        delta.computeIfAbsent(term, ignored -> new PostingList()).add(id);
+        if (delta.size() >= Math.max(MIN_MERGE_TERMS, size / 8)) {
+            merge();
+        }
+    }
+
+    /**
+     * Removes a previously indexed term
+     *
+     * @param id   Owner of the term
+     * @param term The same normalized term that was passed to add
+     */
+    public void remove(int id, String term) {
+        int pos = Arrays.binarySearch(terms, 0, size, term);
+        if (pos < 0) {
+            PostingList ids = delta.get(term);
+            if (ids != null && ids.remove(id) && ids.size == 0) {
+                delta.remove(term);
+            }
+            return;
+        }
+
+        if (postings[pos].remove(id) && postings[pos].size == 0) {
+            emptyTerms++;
+        }
+        if (emptyTerms >= MIN_MERGE_TERMS && emptyTerms > size / 2) {
+            merge();
+        }
+    }
+
+    /**
+     * Removes everything from the index
+     */
+    public void clear() {
+        terms = new String[0];
+        postings = new PostingList[0];
+        size = 0;
+        emptyTerms = 0;
+        delta.clear();
+    }
+
+    /**
+     * Returns the IDs indexed under exactly one term
+     *
+     * @param term Normalized term
+     * @return IDs in ascending order, empty if none
+     */
+    public int[] get(String term) {
+        PostingList ids = find(term);
+        return ids == null ? NONE : Arrays.copyOf(ids.ids, ids.size);
+    }
+
+    /**
+     * Counts the IDs indexed under exactly one term
+     *
+     * @param term Normalized term
+     * @return Number of IDs, 0 if none
+     */
+    public int count(String term) {
+        PostingList ids = find(term);
+        return ids == null ? 0 : ids.size;
+    }
+
+    private PostingList find(String term) {
+        int pos = Arrays.binarySearch(terms, 0, size, term);
+        return pos >= 0 ? postings[pos] : delta.get(term);
+    }
+
+    /**
+     * Counts the IDs of the terms that start with a prefix, stopping early
+     *
+     * @param prefix Normalized prefix
+     * @param limit  Count at which to stop
+     * @return Number of IDs visited by {@link #forEachId}, at most limit
+     */
+    public int countIds(String prefix, int limit) {
+        int[] count = new int[1];
+        if (limit > 0) {
+            walk(prefix, (term, ids) -> {
+                count[0] = (int) Math.min(limit, (long) count[0] + ids.size);
+                return count[0] < limit;
+            });
+        }
+        return count[0];
+    }
+
+    /**
+     * Returns the terms that start with a prefix and still have IDs
+     *
+     * @param prefix Normalized prefix, empty for all terms
+     * @param limit  Maximum number of terms to return
+     * @return Terms in ascending order
+     */
+    public List<String> terms(String prefix, int limit) {
+        List<String> found = new ArrayList<>(Math.min(limit, 64));
+        if (limit > 0) {
+            walk(prefix, (term, ids) -> {
+                found.add(term);
+                return found.size() < limit;
+            });
+        }
+        return found;
+    }
+
+    /**
+     * Visits the IDs of the terms that start with a prefix, term by term in
+     * ascending order, until the visitor returns false. An ID indexed under
+     * several matching terms is visited once per term.
+     *
+     * @param prefix  Normalized prefix
+     * @param visitor Receives each ID, returns false to stop
+     */
+    public void forEachId(String prefix, IntPredicate visitor) {
+        walk(prefix, (term, ids) -> {
+            for (int i = 0; i < ids.size; i++) {
+                if (!visitor.test(ids.ids[i])) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Walks the non-empty terms of a prefix run in the array and the delta
+     * together, in ascending order
+     */
+    private void walk(String prefix, TermVisitor visitor) {
+        int pos = Arrays.binarySearch(terms, 0, size, prefix);
+        if (pos < 0) {
+            pos = -pos - 1;
+        }
+        Iterator<Map.Entry<String, PostingList>> pending = delta.tailMap(prefix, true).entrySet().iterator();
+        Map.Entry<String, PostingList> next = nextMatch(pending, prefix);
+
+        while (true) {
+            boolean inArray = pos < size && terms[pos].startsWith(prefix);
+            if (!inArray && next == null) {
+                return;
+            }
+            if (inArray && (next == null || terms[pos].compareTo(next.getKey()) < 0)) {
+                if (postings[pos].size > 0 && !visitor.visit(terms[pos], postings[pos])) {
+                    return;
+                }
+                pos++;
+            } else {
+                if (!visitor.visit(next.getKey(), next.getValue())) {
+                    return;
+                }
+                next = nextMatch(pending, prefix);
+            }
+        }
+    }
+
+    private static Map.Entry<String, PostingList> nextMatch(Iterator<Map.Entry<String, PostingList>> pending,
+            String prefix) {
+        if (!pending.hasNext()) {
+            return null;
+        }
+        Map.Entry<String, PostingList> entry = pending.next();
+        return entry.getKey().startsWith(prefix) ? entry : null;
+    }
+
+    /**
+     * Merges the delta into the sorted array and drops empty terms
+     */
+    private void merge() {
+        int capacity = size - emptyTerms + delta.size();
+        String[] mergedTerms = new String[capacity];
+        PostingList[] mergedPostings = new PostingList[capacity];
+        int count = 0;
+
+        int pos = 0;
+        Iterator<Map.Entry<String, PostingList>> pending = delta.entrySet().iterator();
+        Map.Entry<String, PostingList> next = pending.hasNext() ? pending.next() : null;
+        while (pos < size || next != null) {
+            if (pos < size && (next == null || terms[pos].compareTo(next.getKey()) < 0)) {
+                if (postings[pos].size > 0) {
+                    mergedTerms[count] = terms[pos];
+                    mergedPostings[count++] = postings[pos];
+                }
+                pos++;
+            } else {
+                mergedTerms[count] = next.getKey();
+                mergedPostings[count++] = next.getValue();
+                next = pending.hasNext() ? pending.next() : null;
+            }
+        }
+
+        terms = mergedTerms;
+        postings = mergedPostings;
+        size = count;
+        emptyTerms = 0;
+        delta.clear();
+    }
+
+    /**
+     * Sorted, duplicate-free array of IDs that grows by doubling
+     */
+    private static final class PostingList {
+        private int[] ids = new int[1];
+        private int size;
+
+        void add(int id) {
+            // IDs are handed out in increasing order, so this is usually an append
+            int pos = size;
+            if (size > 0 && ids[size - 1] >= id) {
+                pos = Arrays.binarySearch(ids, 0, size, id);
+                if (pos >= 0) {
+                    return;
+                }
+                pos = -pos - 1;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TrigramIndex is an inverted index from every three-character window of a
+ * normalized string to the sorted list of IDs whose string contains it.
+ *
+ * A substring query of three or more characters can only match strings that
+ * contain every trigram of the query, so intersecting those posting lists
+ * yields a small candidate set. Candidates still have to be verified by the
+ * caller, since sharing all trigrams does not guarantee the exact substring.
+ */
+public class TrigramIndex {
+    public static final int GRAM_LENGTH = 3;
+
+    private final Map<Long, PostingList> postings;
+
+    /**
+     * Creates an empty index
+     */
+    public TrigramIndex() {
+        this.postings = new HashMap<>();
+    }
+
+    /**
+     * Indexes a normalized value under an ID
+     *
+     * @param id    Owner of the value
+     * @param value Normalized value, e.g. a lowercased name
+     */
+    public void add(int id, String value) {
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            Long gram = gramAt(value, i);
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                list = new PostingList();
+                postings.put(gram, list);
+            }
+            list.add(id);
+        }
+    }
+
+    /**
+     * Removes a previously indexed value
+     *
+     * @param id    Owner of the value
+     * @param value The same normalized value that was passed to add
+     */
+    public void remove(int id, String value) {
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            Long gram = gramAt(value, i);
+            PostingList list = postings.get(gram);
+            if (list != null) {
+                list.remove(id);
+                if (list.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes everything from the index
+     */
+    public void clear() {
+        postings.clear();
+    }
+
+    /**
+     * Checks whether a query is long enough to be answered by the index
+     *
+     * @param query Normalized query
+     * @return true if the query has at least one trigram
+     */
+    public static boolean canSearch(String query) {
+        return query.length() >= GRAM_LENGTH;
+    }
+
+    /**
+     * Returns the sorted IDs of every value that contains all trigrams of the
+     * query. These are candidates only and must be verified by the caller.
+     *
+     * @param query Normalized query of at least three characters
+     * @return Candidate IDs in ascending order
+     * @throws IllegalArgumentException if the query is shorter than a trigram
+     */
+    public int[] candidates(String query) {
+        if (!canSearch(query)) {
+            throw new IllegalArgumentException("Query must have at least " + GRAM_LENGTH + " characters.");
+        }
+
+        int gramCount = query.length() - GRAM_LENGTH + 1;
+        PostingList[] lists = new PostingList[gramCount];
+        for (int i = 0; i < gramCount; i++) {
+            PostingList list = postings.get(gramAt(query, i));
+            if (list == null) {
+                return new int[0];
+            }
+            lists[i] = list;
+        }
+
+        // Intersect starting from the rarest trigram so the working set stays small
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int[] result = Arrays.copyOf(lists[0].ids, lists[0].size);
+        int resultSize = result.length;
+
+        for (int i = 1; i < lists.length && resultSize > 0; i++) {
+            if (lists[i] == lists[i - 1]) {
+                continue; // Repeated trigram in the query
+            }
+            resultSize = lists[i].retainAll(result, resultSize);
+        }
+
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    /**
+     * Estimates how many candidates a query has without intersecting the
+     * posting lists
+     *
+     * @param query Normalized query of at least three characters
+     * @return Size of the rarest posting list among the query's trigrams, an
+     *         upper bound on the candidates
+     * @throws IllegalArgumentException if the query is shorter than a trigram
+     */
+    public int estimate(String query) {
+        if (!canSearch(query)) {
+            throw new IllegalArgumentException("Query must have at least " + GRAM_LENGTH + " characters.");
+        }
+
+        int smallest = Integer.MAX_VALUE;
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            PostingList list = postings.get(gramAt(query, i));
+            if (list == null) {
+                return 0;
+            }
+            smallest = Math.min(smallest, list.size);
+        }
+        return smallest;
+    }
+
+    private static Long gramAt(String value, int start) {
+        return ((long) value.charAt(start) << 32)
+                | ((long) value.charAt(start + 1) << 16)
+                | value.charAt(start + 2);
+    }
+
+    /**
+     * Sorted, duplicate-free array of IDs
+     */
+    private static class PostingList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            // IDs are handed out in increasing order, so this is usually an append
+            if (size > 0 && ids[size - 1] >= id) {
+                int pos = Arrays.binarySearch(ids, 0, size, id);
+                if (pos >= 0) {
+                    return;
+                }
+                insertAt(-pos - 1, id);
+                return;
+            }
+            insertAt(size, id);
+        }
+
+        void remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+            }
+        }
+
+        /**
+         * Keeps only the IDs of the given sorted prefix that are also in this
+         * list, compacting them in place
+         *
+         * @return New size of the prefix
+         */
+        int retainAll(int[] candidates, int count) {
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < count; i++) {
+                int pos = Arrays.binarySearch(ids, from, size, candidates[i]);
+                if (pos >= 0) {
+                    candidates[kept++] = candidates[i];
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+            }
+            return kept;
+        }
+
+        private void insertAt(int pos, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+    }
+}
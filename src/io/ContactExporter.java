@@ -0,0 +1,286 @@
+package io;
+
+import model.Contact;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+/**
+ * ContactExporter streams contacts to a channel as CSV or NDJSON, optionally
+ * gzip-compressed. Fields are encoded as UTF-8 straight into a pooled direct
+ * buffer, with CSV quoting or JSON escaping applied on the way, so no
+ * per-record strings or byte arrays are created and memory use does not
+ * depend on the number of contacts exported.
+ *
+ * {@link #finish()} flushes the last buffer and completes the gzip stream;
+ * the channel itself is left open. The channel must be a blocking channel.
+ */
+public class ContactExporter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_CHAR_BYTES = 6; // Longest encoding of one char, a JSON unicode escape
+    private static final DirectBufferPool BUFFERS = new DirectBufferPool(BUFFER_SIZE, 8);
+
+    private static final byte[] CSV_HEADER = ascii("id,name,phone,email,address\r\n");
+    private static final byte[] JSON_ID = ascii("{\"id\":");
+    private static final byte[] JSON_NAME = ascii(",\"name\":");
+    private static final byte[] JSON_PHONE = ascii(",\"phone\":");
+    private static final byte[] JSON_EMAIL = ascii(",\"email\":");
+    private static final byte[] JSON_ADDRESS = ascii(",\"address\":");
+    private static final byte[] JSON_NULL = ascii("null");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    private final ExportFormat format;
+    private final WritableByteChannel channel; // The caller's channel or a gzip stream on it
+    private final GzipChannel gzip;
+    private ByteBuffer buffer;
+    private long count;
+
+    /**
+     * Starts an export. For CSV the header row is written first.
+     *
+     * @param channel Destination, left open
+     * @param format  CSV or NDJSON
+     * @param gzip    true to compress the output with gzip
+     */
+    public ContactExporter(WritableByteChannel channel, ExportFormat format, boolean gzip) {
+        this.format = format;
+        this.gzip = gzip ? new GzipChannel(channel, BUFFERS, Deflater.DEFAULT_COMPRESSION) : null;
+        this.channel = gzip ? this.gzip : channel;
+        this.buffer = BUFFERS.acquire();
+        if (format == ExportFormat.CSV) {
+            buffer.put(CSV_HEADER);
+        }
+    }
+
+    /**
+     * Writes one contact
+     *
+     * @param contact Contact to write
+     */
+    public void write(Contact contact) throws IOException {
+        write(contact.getId(), contact.getName(), contact.getPhoneNumber(), contact.getEmail(), contact.getAddress());
+    }
+
+    /**
+     * Writes one contact given by its fields, for stores that can read
+     * fields without building a Contact
+     *
+     * @param id          Contact ID
+     * @param name        Name
+     * @param phoneNumber Phone number
+     * @param email       Email
+     * @param address     Address
+     */
+    public void write(int id, String name, String phoneNumber, String email, String address) throws IOException {
+        if (format == ExportFormat.CSV) {
+            putInt(id);
+            putCsv(name);
+            putCsv(phoneNumber);
+            putCsv(email);
+            putCsv(address);
+            ensure(2);
+            buffer.put((byte) '\r').put((byte) '\n');
+        } else {
+            put(JSON_ID);
+            putInt(id);
+            put(JSON_NAME);
+            putJson(name);
+            put(JSON_PHONE);
+            putJson(phoneNumber);
+            put(JSON_EMAIL);
+            putJson(email);
+            put(JSON_ADDRESS);
+            putJson(address);
+            ensure(2);
+            buffer.put((byte) '}').put((byte) '\n');
+        }
+        count++;
+    }
+
+    /**
+     * Returns the number of contacts written
+     *
+     * @return Contact count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes everything buffered and completes the gzip stream. The buffer is
+     * returned to the pool, so nothing can be written afterwards.
+     */
+    public void finish() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flush();
+            if (gzip != null) {
+                gzip.finish();
+            }
+        } finally {
+            BUFFERS.release(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Same as {@link #finish()}; the channel stays open
+     */
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    /**
+     * Writes a CSV field preceded by a comma, quoted only if it contains a
+     * comma, quote or line break
+     */
+    private void putCsv(String value) throws IOException {
+        ensure(1);
+        buffer.put((byte) ',');
+        if (value == null) {
+            return;
+        }
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (quoted) {
+            ensure(1);
+            buffer.put((byte) '"');
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            ensure(MAX_CHAR_BYTES);
+            if (c == '"') {
+                buffer.put((byte) '"').put((byte) '"');
+            } else {
+                i = putChar(value, i);
+            }
+        }
+        if (quoted) {
+            ensure(1);
+            buffer.put((byte) '"');
+        }
+    }
+
+    /**
+     * Writes a JSON string literal, or null
+     */
+    private void putJson(String value) throws IOException {
+        if (value == null) {
+            put(JSON_NULL);
+            return;
+        }
+        ensure(1);
+        buffer.put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            ensure(MAX_CHAR_BYTES);
+            switch (c) {
+                case '"':
+                case '\\':
+                    buffer.put((byte) '\\').put((byte) c);
+                    break;
+                case '\n':
+                    buffer.put((byte) '\\').put((byte) 'n');
+                    break;
+                case '\r':
+                    buffer.put((byte) '\\').put((byte) 'r');
+                    break;
+                case '\t':
+                    buffer.put((byte) '\\').put((byte) 't');
+                    break;
+                default:
+                    if (c < 0x20) {
+                        buffer.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                                .put(HEX[c >> 4]).put(HEX[c & 0xF]);
+                    } else {
+                        i = putChar(value, i);
+                    }
+            }
+        }
+        ensure(1);
+        buffer.put((byte) '"');
+    }
+
+    /**
+     * Encodes the char at an index as UTF-8, combining a surrogate pair into
+     * one code point. Unpaired surrogates are written as '?', as
+     * String.getBytes does. The caller has ensured room for four bytes.
+     *
+     * @return Index of the last char consumed
+     */
+    private int putChar(String value, int index) {
+        char c = value.charAt(index);
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+        } else if (!Character.isSurrogate(c)) {
+            buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && index + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(index + 1))) {
+            int codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+            buffer.put((byte) (0xF0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                    .put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+            return index + 1;
+        } else {
+            buffer.put((byte) '?');
+        }
+        return index;
+    }
+
+    /**
+     * Writes an int in decimal without creating a String
+     */
+    private void putInt(int value) throws IOException {
+        ensure(11);
+        long remaining = value;
+        if (remaining < 0) {
+            buffer.put((byte) '-');
+            remaining = -remaining;
+        }
+        long divisor = 1;
+        while (divisor <= remaining / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + remaining / divisor % 10));
+        }
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Flushes the buffer if fewer than the given number of bytes are free
+     */
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,104 @@
+package io;
+
+import model.Contact;
+
+/**
+ * ContactFormatter renders contacts for the console, either in the box layout
+ * of {@link Contact#toString()} or in the single-line layout of
+ * {@link Contact#toCompactString()}, producing the same text without going
+ * through String.format. It appends to a caller-owned StringBuilder so a
+ * whole page can be rendered into one reused buffer and written at once.
+ */
+public class ContactFormatter {
+    /**
+     * Available layouts
+     */
+    public enum Layout {
+        /** Six-line box per contact */
+        BOX,
+        /** One line per contact */
+        COMPACT
+    }
+
+    private static final String BOX_TOP = "┌─────────────────────────────────────────────────────────┐";
+    private static final String BOX_BOTTOM = "└─────────────────────────────────────────────────────────┘";
+    private static final int LINE_WIDTH = 58; // Up to the closing border
+    private static final String SPACES = "                                                    ";
+
+    private Layout layout;
+
+    /**
+     * Creates a formatter for the given layout
+     *
+     * @param layout BOX or COMPACT
+     */
+    public ContactFormatter(Layout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Returns the current layout
+     *
+     * @return BOX or COMPACT
+     */
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Changes the layout used by later calls
+     *
+     * @param layout BOX or COMPACT
+     */
+    public void setLayout(Layout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Appends one contact followed by a line break
+     *
+     * @param contact Contact to render
+     * @param out     Buffer to append to
+     */
+    public void append(Contact contact, StringBuilder out) {
+        if (layout == Layout.COMPACT) {
+            out.append("ID: ").append(contact.getId())
+                    .append(" | Name: ").append(contact.getName())
+                    .append(" | Phone: ").append(contact.getPhoneNumber())
+                    .append(" | Email: ").append(contact.getEmail())
+                    .append('\n');
+            return;
+        }
+
+        out.append(BOX_TOP).append('\n');
+        int start = out.length();
+        out.append("│ ID: ").append(contact.getId());
+        padLine(out, start);
+        appendField(out, "│ Name: ", contact.getName());
+        appendField(out, "│ Phone: ", contact.getPhoneNumber());
+        appendField(out, "│ Email: ", contact.getEmail());
+        appendField(out, "│ Address: ", contact.getAddress());
+        out.append(BOX_BOTTOM).append('\n');
+    }
+
+    private static void appendField(StringBuilder out, String label, String value) {
+        int start = out.length();
+        out.append(label).append(value);
+        padLine(out, start);
+    }
+
+    /**
+     * Pads the line started at the given position and closes the box.
+     * Longer values are not cut, matching the %-Ns conversions of
+     * Contact.toString().
+     */
+    private static void padLine(StringBuilder out, int start) {
+        int padding = LINE_WIDTH - (out.length() - start);
+        while (padding > 0) {
+            int chunk = Math.min(padding, SPACES.length());
+            out.append(SPACES, 0, chunk);
+            padding -= chunk;
+        }
+        out.append("│\n");
+    }
+}
@@ -0,0 +1,70 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * ContactRowReader streams contact rows out of an import file, one row at a
+ * time, so an import never has to hold the whole file in memory.
+ *
+ * Every row is returned as {name, phone, email, address}. A row that cannot
+ * be parsed throws an IllegalArgumentException after it has been consumed,
+ * so the caller can record the error and keep reading.
+ */
+public abstract class ContactRowReader implements Closeable {
+    public static final int NAME = 0;
+    public static final int PHONE = 1;
+    public static final int EMAIL = 2;
+    public static final int ADDRESS = 3;
+    public static final int FIELD_COUNT = 4;
+
+    protected final Reader reader;
+    protected int rowNumber;
+
+    protected ContactRowReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next row
+     *
+     * @return The row's fields, or null at end of input
+     * @throws IOException              if the input cannot be read
+     * @throws IllegalArgumentException if the row is malformed
+     */
+    public abstract String[] next() throws IOException;
+
+    /**
+     * Returns the 1-based number of the row most recently read, not counting
+     * a header
+     *
+     * @return Row number
+     */
+    public int getRowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * Opens a row reader for the given format
+     *
+     * @param reader Source of the import data
+     * @param format Format of the data
+     * @return Row reader
+     */
+    public static ContactRowReader open(Reader reader, ImportFormat format) {
+        switch (format) {
+            case CSV:
+                return new CsvContactRowReader(reader);
+            case NDJSON:
+                return new NdjsonContactRowReader(reader);
+            default:
+                throw new IllegalArgumentException("Unsupported import format: " + format);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,158 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CsvContactRowReader reads contacts from RFC 4180 style CSV: fields are
+ * separated by commas, may be quoted, and quoted fields may contain commas,
+ * doubled quotes and line breaks.
+ *
+ * If the first record names the columns (it contains a "name" column), it is
+ * used to map columns in any order. Otherwise columns are taken positionally
+ * as name, phone, email, address.
+ */
+public class CsvContactRowReader extends ContactRowReader {
+    private final BufferedReader in;
+    private int[] columnToField;
+    private boolean started;
+
+    /**
+     * Creates a CSV row reader
+     *
+     * @param reader Source of the CSV data
+     */
+    public CsvContactRowReader(Reader reader) {
+        super(reader);
+        this.in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    @Override
+    public String[] next() throws IOException {
+        if (!started) {
+            started = true;
+            List<String> first = readRecord();
+            if (first == null) {
+                return null;
+            }
+            columnToField = headerMapping(first);
+            if (columnToField == null) {
+                columnToField = new int[] { NAME, PHONE, EMAIL, ADDRESS };
+                return toRow(first);
+            }
+        }
+
+        List<String> record = readRecord();
+        return record == null ? null : toRow(record);
+    }
+
+    private String[] toRow(List<String> record) {
+        rowNumber++;
+        if (record.size() == 1 && record.get(0).isEmpty()) {
+            throw new IllegalArgumentException("Empty row.");
+        }
+
+        String[] row = new String[FIELD_COUNT];
+        for (int column = 0; column < record.size() && column < columnToField.length; column++) {
+            int field = columnToField[column];
+            if (field >= 0) {
+                row[field] = record.get(column).trim();
+            }
+        }
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (row[field] == null) {
+                row[field] = "";
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Reads one CSV record, or returns null at end of input
+     */
+    private List<String> readRecord() throws IOException {
+        int c = in.read();
+        if (c == -1) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>(FIELD_COUNT);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    rowNumber++;
+                    throw new IllegalArgumentException("Unterminated quoted field.");
+                }
+                if (c == '"') {
+                    in.mark(1);
+                    int peek = in.read();
+                    if (peek == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        in.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                break;
+            } else if (c == '\r') {
+                in.mark(1);
+                if (in.read() != '\n') {
+                    in.reset();
+                }
+                break;
+            } else {
+                field.append((char) c);
+            }
+            c = in.read();
+        }
+
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Maps header columns to fields, or returns null if the record is not a
+     * header
+     */
+    private static int[] headerMapping(List<String> record) {
+        int[] mapping = new int[record.size()];
+        boolean hasName = false;
+
+        for (int column = 0; column < record.size(); column++) {
+            String header = record.get(column).trim().toLowerCase().replace("_", "").replace(" ", "").replace("-", "");
+            switch (header) {
+                case "name":
+                    mapping[column] = NAME;
+                    hasName = true;
+                    break;
+                case "phone":
+                case "phonenumber":
+                    mapping[column] = PHONE;
+                    break;
+                case "email":
+                    mapping[column] = EMAIL;
+                    break;
+                case "address":
+                    mapping[column] = ADDRESS;
+                    break;
+                default:
+                    mapping[column] = -1;
+            }
+        }
+        return hasName ? mapping : null;
+    }
+}
@@ -0,0 +1,73 @@
+package io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * DirectBufferPool hands out direct ByteBuffers of one size and keeps a few
+ * returned ones for reuse. Direct buffers are costly to allocate and are only
+ * freed by the garbage collector, so streaming code should borrow them here
+ * rather than allocate one per call.
+ *
+ * The pool is safe to share between threads. Buffers beyond the retained
+ * count are simply dropped when released.
+ */
+public class DirectBufferPool {
+    private final int bufferSize;
+    private final int maxRetained;
+    private final ArrayDeque<ByteBuffer> free; // Guarded by this
+
+    /**
+     * Creates an empty pool
+     *
+     * @param bufferSize  Capacity of every buffer in bytes
+     * @param maxRetained Largest number of idle buffers kept
+     */
+    public DirectBufferPool(int bufferSize, int maxRetained) {
+        if (bufferSize < 1 || maxRetained < 0) {
+            throw new IllegalArgumentException("Buffer size must be positive and the retained count not negative.");
+        }
+        this.bufferSize = bufferSize;
+        this.maxRetained = maxRetained;
+        this.free = new ArrayDeque<>(maxRetained);
+    }
+
+    /**
+     * Borrows a buffer
+     *
+     * @return Cleared buffer of the pool's size
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = free.pollFirst();
+        }
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Returns a borrowed buffer. It must not be used afterwards.
+     *
+     * @param buffer Buffer from {@link #acquire()}
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize || !buffer.isDirect()) {
+            return;
+        }
+        buffer.clear();
+        synchronized (this) {
+            if (free.size() < maxRetained) {
+                free.addFirst(buffer);
+            }
+        }
+    }
+
+    /**
+     * Returns the capacity of the pool's buffers
+     *
+     * @return Buffer size in bytes
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
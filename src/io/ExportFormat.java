@@ -0,0 +1,11 @@
+package io;
+
+/**
+ * Formats written by the export, both readable by the bulk import
+ */
+public enum ExportFormat {
+    /** Comma-separated values with an id,name,phone,email,address header row */
+    CSV,
+    /** One flat JSON object per line with the keys id, name, phone, email and address */
+    NDJSON
+}
@@ -0,0 +1,133 @@
+package io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * GzipChannel compresses everything written to it into the gzip format
+ * (RFC 1952) on another channel. The deflater reads the caller's buffers and
+ * writes into a pooled direct buffer, so no data passes through the heap.
+ *
+ * {@link #finish()} completes the gzip stream and leaves the target open;
+ * {@link #close()} also closes it. The target must be a blocking channel.
+ */
+public class GzipChannel implements WritableByteChannel {
+    private static final byte[] NO_INPUT = new byte[0];
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private final WritableByteChannel target;
+    private final DirectBufferPool pool;
+    private final Deflater deflater;
+    private final CRC32 crc;
+    private ByteBuffer out;
+    private long uncompressedBytes;
+    private boolean finished;
+
+    /**
+     * Starts a gzip stream on a channel
+     *
+     * @param target Channel that receives the compressed bytes
+     * @param pool   Pool to borrow the output buffer from
+     * @param level  Deflater compression level, 0 to 9
+     */
+    public GzipChannel(WritableByteChannel target, DirectBufferPool pool, int level) {
+        this.target = target;
+        this.pool = pool;
+        this.deflater = new Deflater(level, true);
+        this.crc = new CRC32();
+        this.out = pool.acquire();
+        out.put(HEADER);
+    }
+
+    /**
+     * Compresses the remaining bytes of a buffer. Compressed output is
+     * written to the target whenever the internal buffer fills up.
+     *
+     * @param src Bytes to compress, fully consumed
+     * @return Number of bytes consumed
+     */
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (finished) {
+            throw new ClosedChannelException();
+        }
+        int length = src.remaining();
+        crc.update(src.duplicate());
+        uncompressedBytes += length;
+        deflater.setInput(src);
+        while (!deflater.needsInput()) {
+            deflate();
+        }
+        deflater.setInput(NO_INPUT); // The deflater reads a buffer lazily, and the caller reuses it
+        return length;
+    }
+
+    /**
+     * Writes the rest of the compressed data and the gzip trailer, leaving
+     * the target open. Does nothing if already finished.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+            if (out.remaining() < 8) {
+                drain();
+            }
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt((int) crc.getValue());
+            out.putInt((int) uncompressedBytes);
+            out.order(ByteOrder.BIG_ENDIAN);
+            drain();
+        } finally {
+            deflater.end();
+            pool.release(out);
+            out = null;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !finished && target.isOpen();
+    }
+
+    /**
+     * Finishes the gzip stream and closes the target
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            target.close();
+        }
+    }
+
+    /**
+     * Runs the deflater once, draining the output buffer when it is full
+     */
+    private void deflate() throws IOException {
+        if (!out.hasRemaining()) {
+            drain();
+        }
+        deflater.deflate(out);
+    }
+
+    private void drain() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            target.write(out);
+        }
+        out.clear();
+    }
+}
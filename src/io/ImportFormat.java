@@ -0,0 +1,11 @@
+package io;
+
+/**
+ * Formats accepted by the bulk import
+ */
+public enum ImportFormat {
+    /** Comma-separated values, optionally with a header row */
+    CSV,
+    /** One flat JSON object per line */
+    NDJSON
+}
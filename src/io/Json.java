@@ -0,0 +1,249 @@
+package io;
+
+import model.Contact;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Json is a minimal reader and writer for the flat JSON objects used to
+ * exchange contacts: one level of keys whose values are strings, numbers,
+ * booleans or null. Nested objects and arrays are rejected.
+ */
+public final class Json {
+    private Json() {
+    }
+
+    /**
+     * Parses a flat JSON object. Non-string values are returned as their
+     * literal text, and null as a Java null.
+     *
+     * @param text JSON object text
+     * @return Keys and values in document order
+     * @throws IllegalArgumentException if the text is not a flat JSON object
+     */
+    public static Map<String, String> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, String> values = parser.object();
+        parser.skipWhitespace();
+        if (parser.pos != text.length()) {
+            throw parser.error("Unexpected trailing characters");
+        }
+        return values;
+    }
+
+    /**
+     * Appends a value as a quoted, escaped JSON string, or null
+     *
+     * @param out   Destination
+     * @param value Value to write
+     */
+    public static void appendString(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Appends the members of a contact object, "id", "name", "phone",
+     * "email", "address" and "version", without the surrounding braces so
+     * callers can add members of their own. The keys are the ones the NDJSON
+     * import reads, which ignores "version".
+     *
+     * @param out     Destination
+     * @param contact Contact to write
+     */
+    public static void appendContactMembers(StringBuilder out, Contact contact) {
+        out.append("\"id\":").append(contact.getId());
+        out.append(",\"name\":");
+        appendString(out, contact.getName());
+        out.append(",\"phone\":");
+        appendString(out, contact.getPhoneNumber());
+        out.append(",\"email\":");
+        appendString(out, contact.getEmail());
+        out.append(",\"address\":");
+        appendString(out, contact.getAddress());
+        out.append(",\"version\":").append(contact.getVersion());
+    }
+
+    /**
+     * Returns a value as a quoted, escaped JSON string
+     *
+     * @param value Value to quote
+     * @return JSON string literal
+     */
+    public static String quote(String value) {
+        StringBuilder out = new StringBuilder(value == null ? 4 : value.length() + 2);
+        appendString(out, value);
+        return out.toString();
+    }
+
+    private static class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> object() {
+            Map<String, String> values = new LinkedHashMap<>();
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return values;
+            }
+
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                values.put(key, value());
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return values;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        String value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '{' || c == '[') {
+                throw error("Nested values are not supported");
+            }
+
+            int start = pos;
+            while (pos < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (literal.isEmpty()) {
+                throw error("Expected a value");
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return out.toString();
+                }
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+
+                char escape = next();
+                switch (escape) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        out.append(escape);
+                        break;
+                    case 'b':
+                        out.append('\b');
+                        break;
+                    case 'f':
+                        out.append('\f');
+                        break;
+                    case 'n':
+                        out.append('\n');
+                        break;
+                    case 'r':
+                        out.append('\r');
+                        break;
+                    case 't':
+                        out.append('\t');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("Truncated unicode escape");
+                        }
+                        try {
+                            out.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("Invalid escape '\\" + escape + "'");
+                }
+            }
+        }
+
+        void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        char peek() {
+            if (pos >= text.length()) {
+                throw error("Unexpected end of input");
+            }
+            return text.charAt(pos);
+        }
+
+        char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        void expect(char expected) {
+            if (next() != expected) {
+                pos--;
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos + ".");
+        }
+    }
+}
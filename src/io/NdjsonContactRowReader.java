@@ -0,0 +1,51 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+
+/**
+ * NdjsonContactRowReader reads contacts from newline-delimited JSON: one flat
+ * object per line with the keys "name", "phone" (or "phoneNumber"), "email"
+ * and "address". Blank lines are skipped.
+ */
+public class NdjsonContactRowReader extends ContactRowReader {
+    private final BufferedReader in;
+
+    /**
+     * Creates an NDJSON row reader
+     *
+     * @param reader Source of the NDJSON data
+     */
+    public NdjsonContactRowReader(Reader reader) {
+        super(reader);
+        this.in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    @Override
+    public String[] next() throws IOException {
+        String line;
+        do {
+            line = in.readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (line.trim().isEmpty());
+
+        rowNumber++;
+        Map<String, String> object = Json.parseObject(line);
+
+        String[] row = new String[FIELD_COUNT];
+        row[NAME] = field(object, "name");
+        row[PHONE] = object.containsKey("phoneNumber") ? field(object, "phoneNumber") : field(object, "phone");
+        row[EMAIL] = field(object, "email");
+        row[ADDRESS] = field(object, "address");
+        return row;
+    }
+
+    private static String field(Map<String, String> object, String key) {
+        String value = object.get(key);
+        return value == null ? "" : value.trim();
+    }
+}
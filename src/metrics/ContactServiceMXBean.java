@@ -0,0 +1,55 @@
+package metrics;
+
+import java.util.List;
+
+/**
+ * Management interface of a ContactService, registered with the platform
+ * MBean server under the "ContactManagement" domain
+ */
+public interface ContactServiceMXBean {
+    int getContactCount();
+
+    long getStoreMemoryBytes();
+
+    double getStoreBytesPerContact();
+
+    List<OperationStats> getOperations();
+
+    long getJournalWrites();
+
+    long getJournalBytesWritten();
+
+    long getSnapshotWrites();
+
+    long getSnapshotBytesWritten();
+
+    long getSyncCount();
+
+    double getSyncMeanMicros();
+
+    double getSyncP99Micros();
+
+    long getPersistenceErrors();
+
+    String getLastPersistenceError();
+
+    long getIdLookupHits();
+
+    long getIdLookupMisses();
+
+    long getNameIndexHits();
+
+    long getNameIndexMisses();
+
+    long getPhoneIndexHits();
+
+    long getPhoneIndexMisses();
+
+    long getDuplicatesFlagged();
+
+    long getDuplicatesRejected();
+
+    long getVersionConflicts();
+
+    void reset();
+}
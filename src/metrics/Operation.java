@@ -0,0 +1,26 @@
+package metrics;
+
+/**
+ * The ContactService operations whose latency is recorded
+ */
+public enum Operation {
+    ADD,
+    UPDATE,
+    DELETE,
+    SEARCH_BY_NAME,
+    SEARCH_BY_NAME_FUZZY,
+    SUGGEST,
+    SEARCH_BY_PHONE,
+    SEARCH_BY_ADDRESS,
+    GET_BY_ID,
+    FIND_BY_EMAIL,
+    FIND_BY_EMAIL_DOMAIN,
+    GET_ALL,
+    GET_PAGE,
+    FIND_DUPLICATES,
+    QUERY,
+    IMPORT,
+    EXPORT,
+    LOAD,
+    SNAPSHOT
+}
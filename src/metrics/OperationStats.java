@@ -0,0 +1,53 @@
+package metrics;
+
+/**
+ * Point-in-time latency summary of one operation. Exposed over JMX as
+ * composite data, so it only has getters.
+ */
+public class OperationStats {
+    private final String operation;
+    private final long count;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+
+    public OperationStats(String operation, LatencyHistogram histogram) {
+        this.operation = operation;
+        this.count = histogram.getCount();
+        this.meanMicros = histogram.getMean() / 1000.0;
+        this.p50Micros = histogram.getPercentile(50) / 1000.0;
+        this.p99Micros = histogram.getPercentile(99) / 1000.0;
+        this.p999Micros = histogram.getPercentile(99.9) / 1000.0;
+        this.maxMicros = histogram.getMax() / 1000.0;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getP999Micros() {
+        return p999Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+}
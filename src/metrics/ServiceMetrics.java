@@ -0,0 +1,311 @@
+package metrics;
+
+import storage.PersistenceListener;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * ServiceMetrics collects the instrumentation of one ContactService: a
+ * latency histogram per operation, persistence volume and fsync timings, and
+ * index hit/miss counts. Every recording method is lock-free and cheap
+ * enough to stay enabled permanently.
+ *
+ * An index "hit" means a query was answered from an index; a "miss" means it
+ * had to fall back to scanning, or that an ID lookup found nothing.
+ */
+public class ServiceMetrics implements ContactServiceMXBean, PersistenceListener {
+    private static final String JMX_DOMAIN = "ContactManagement";
+
+    private final IntSupplier contactCount;
+    private final LongSupplier storeMemoryBytes;
+    private final Map<Operation, LatencyHistogram> latencies;
+    private final LatencyHistogram syncs;
+    private final LongAdder journalWrites = new LongAdder();
+    private final LongAdder journalBytes = new LongAdder();
+    private final LongAdder snapshotWrites = new LongAdder();
+    private final LongAdder snapshotBytes = new LongAdder();
+    private final LongAdder persistenceErrors = new LongAdder();
+    private final LongAdder idLookupHits = new LongAdder();
+    private final LongAdder idLookupMisses = new LongAdder();
+    private final LongAdder nameIndexHits = new LongAdder();
+    private final LongAdder nameIndexMisses = new LongAdder();
+    private final LongAdder phoneIndexHits = new LongAdder();
+    private final LongAdder phoneIndexMisses = new LongAdder();
+    private final LongAdder duplicatesFlagged = new LongAdder();
+    private final LongAdder duplicatesRejected = new LongAdder();
+    private final LongAdder versionConflicts = new LongAdder();
+    private volatile String lastPersistenceError = "";
+    private ObjectName registeredName;
+
+    /**
+     * Creates an empty set of metrics
+     *
+     * @param contactCount     Supplies the current number of contacts
+     * @param storeMemoryBytes Supplies the estimated size of the contact store
+     */
+    public ServiceMetrics(IntSupplier contactCount, LongSupplier storeMemoryBytes) {
+        this.contactCount = contactCount;
+        this.storeMemoryBytes = storeMemoryBytes;
+        this.latencies = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+        this.syncs = new LatencyHistogram();
+    }
+
+    /**
+     * Records the latency of one operation
+     *
+     * @param operation Operation that ran
+     * @param nanos     Time it took
+     */
+    public void record(Operation operation, long nanos) {
+        latencies.get(operation).record(nanos);
+    }
+
+    /**
+     * Returns the latency histogram of an operation
+     *
+     * @param operation Operation
+     * @return Its histogram
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies.get(operation);
+    }
+
+    /**
+     * Records a failed persistence call
+     *
+     * @param message Description of the failure
+     */
+    public void recordPersistenceError(String message) {
+        persistenceErrors.increment();
+        lastPersistenceError = message;
+    }
+
+    public void recordIdLookup(boolean found) {
+        (found ? idLookupHits : idLookupMisses).increment();
+    }
+
+    public void recordNameSearch(boolean indexed) {
+        (indexed ? nameIndexHits : nameIndexMisses).increment();
+    }
+
+    public void recordPhoneSearch(boolean indexed) {
+        (indexed ? phoneIndexHits : phoneIndexMisses).increment();
+    }
+
+    public void recordDuplicate(boolean rejected) {
+        (rejected ? duplicatesRejected : duplicatesFlagged).increment();
+    }
+
+    public void recordVersionConflict() {
+        versionConflicts.increment();
+    }
+
+    @Override
+    public void onJournalWrite(long bytes, long nanos) {
+        journalWrites.increment();
+        journalBytes.add(bytes);
+    }
+
+    @Override
+    public void onSnapshotWrite(long bytes, long nanos) {
+        snapshotWrites.increment();
+        snapshotBytes.add(bytes);
+    }
+
+    @Override
+    public void onSync(long nanos) {
+        syncs.record(nanos);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, replacing a
+     * previous registration under the same name
+     *
+     * @param name Distinguishes this service, e.g. its data file
+     */
+    public void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=ContactService,name=" + ObjectName.quote(name));
+            try {
+                server.registerMBean(this, objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(objectName);
+                server.registerMBean(this, objectName);
+            }
+            registeredName = objectName;
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the JMX registration made by {@link #register(String)}
+     */
+    public void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(registeredName)) {
+                server.unregisterMBean(registeredName);
+            }
+        } catch (JMException e) {
+            System.err.println("Error unregistering metrics MBean: " + e.getMessage());
+        }
+        registeredName = null;
+    }
+
+    @Override
+    public int getContactCount() {
+        return contactCount.getAsInt();
+    }
+
+    @Override
+    public long getStoreMemoryBytes() {
+        return storeMemoryBytes.getAsLong();
+    }
+
+    @Override
+    public double getStoreBytesPerContact() {
+        int count = contactCount.getAsInt();
+        return count == 0 ? 0 : (double) storeMemoryBytes.getAsLong() / count;
+    }
+
+    @Override
+    public List<OperationStats> getOperations() {
+        List<OperationStats> stats = new ArrayList<>(latencies.size());
+        for (Map.Entry<Operation, LatencyHistogram> entry : latencies.entrySet()) {
+            stats.add(new OperationStats(entry.getKey().name(), entry.getValue()));
+        }
+        return stats;
+    }
+
+    @Override
+    public long getJournalWrites() {
+        return journalWrites.sum();
+    }
+
+    @Override
+    public long getJournalBytesWritten() {
+        return journalBytes.sum();
+    }
+
+    @Override
+    public long getSnapshotWrites() {
+        return snapshotWrites.sum();
+    }
+
+    @Override
+    public long getSnapshotBytesWritten() {
+        return snapshotBytes.sum();
+    }
+
+    @Override
+    public long getSyncCount() {
+        return syncs.getCount();
+    }
+
+    @Override
+    public double getSyncMeanMicros() {
+        return syncs.getMean() / 1000.0;
+    }
+
+    @Override
+    public double getSyncP99Micros() {
+        return syncs.getPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public long getPersistenceErrors() {
+        return persistenceErrors.sum();
+    }
+
+    @Override
+    public String getLastPersistenceError() {
+        return lastPersistenceError;
+    }
+
+    @Override
+    public long getIdLookupHits() {
+        return idLookupHits.sum();
+    }
+
+    @Override
+    public long getIdLookupMisses() {
+        return idLookupMisses.sum();
+    }
+
+    @Override
+    public long getNameIndexHits() {
+        return nameIndexHits.sum();
+    }
+
+    @Override
+    public long getNameIndexMisses() {
+        return nameIndexMisses.sum();
+    }
+
+    @Override
+    public long getPhoneIndexHits() {
+        return phoneIndexHits.sum();
+    }
+
+    @Override
+    public long getPhoneIndexMisses() {
+        return phoneIndexMisses.sum();
+    }
+
+    @Override
+    public long getDuplicatesFlagged() {
+        return duplicatesFlagged.sum();
+    }
+
+    @Override
+    public long getDuplicatesRejected() {
+        return duplicatesRejected.sum();
+    }
+
+    @Override
+    public long getVersionConflicts() {
+        return versionConflicts.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : latencies.values()) {
+            histogram.reset();
+        }
+        syncs.reset();
+        journalWrites.reset();
+        journalBytes.reset();
+        snapshotWrites.reset();
+        snapshotBytes.reset();
+        persistenceErrors.reset();
+        idLookupHits.reset();
+        idLookupMisses.reset();
+        nameIndexHits.reset();
+        nameIndexMisses.reset();
+        phoneIndexHits.reset();
+        phoneIndexMisses.reset();
+        duplicatesFlagged.reset();
+        duplicatesRejected.reset();
+        versionConflicts.reset();
+        lastPersistenceError = "";
+    }
+}
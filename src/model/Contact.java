@@ -5,15 +5,21 @@ import java.io.Serializable; // Serialization: It allows you to "freeze" an obje
 /**
  * Contact class represents a single contact with all necessary details
  * Implements Serializable for file persistence
+ *
+ * A Contact is immutable once created. Updates replace it with a new
+ * instance carrying the next version number, so readers always see one
+ * consistent state and writers can detect that a contact changed since they
+ * read it.
  */
 public class Contact implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private int id;
-    private String name;
-    private String phoneNumber;
-    private String email;
-    private String address;
+    private final int id;
+    private final String name;
+    private final String phoneNumber;
+    private final String email;
+    private final String address;
+    private final long version; // 0 in contacts serialized before versions existed
 
     /**
      * Constructor to create a new Contact
@@ -25,11 +31,27 @@ public class Contact implements Serializable {
      * @param address     Contact's physical address
      */
     public Contact(int id, String name, String phoneNumber, String email, String address) {
+        this(id, name, phoneNumber, email, address, 1);
+    }
+
+    /**
+     * Constructor to create a specific version of a Contact
+     * 
+     * @param id          Unique identifier for the contact
+     * @param name        Contact's name
+     * @param phoneNumber Contact's phone number
+     * @param email       Contact's email address
+     * @param address     Contact's physical address
+     * @param version     Version number, 1 for a new contact and one more
+     *                    for every update
+     */
+    public Contact(int id, String name, String phoneNumber, String email, String address, long version) {
         this.id = id;
         this.name = name;
         this.phoneNumber = phoneNumber;
         this.email = email;
         this.address = address;
+        this.version = version;
     }
 
     // Getters
@@ -53,25 +75,8 @@ public class Contact implements Serializable {
         return address;
     }
 
-    // Setters
-    public void setId(int id) {
-        this.id = id;
-    }
-
-    public void setName(String name) {
-        this.name = name;
-    }
-
-    public void setPhoneNumber(String phoneNumber) {
-        this.phoneNumber = phoneNumber;
-    }
-
-    public void setEmail(String email) {
-        this.email = email;
-    }
-
-    public void setAddress(String address) {
-        this.address = address;
+    public long getVersion() {
+        return version;
     }
 
     /**
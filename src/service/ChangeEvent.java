@@ -0,0 +1,82 @@
+package service;
+
+import model.Contact;
+
+/**
+ * ChangeEvent describes one committed add, update or delete, with the
+ * contact as it was before and after the change. Events are numbered in
+ * commit order by the journal position of their record, so the numbers
+ * have gaps but stay the same across restarts.
+ */
+public class ChangeEvent {
+    /**
+     * Kind of mutation
+     */
+    public enum Type {
+        ADD,
+        UPDATE,
+        DELETE
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final Contact before;
+    private final Contact after;
+
+    ChangeEvent(long sequence, Type type, Contact before, Contact after) {
+        this.sequence = sequence;
+        this.type = type;
+        this.before = before;
+        this.after = after;
+    }
+
+    /**
+     * Returns the position of the change in commit order
+     *
+     * @return Journal position of the change's record
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the kind of mutation
+     *
+     * @return ADD, UPDATE or DELETE
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the ID of the changed contact
+     *
+     * @return Contact ID
+     */
+    public int getContactId() {
+        return after != null ? after.getId() : before.getId();
+    }
+
+    /**
+     * Returns the contact as it was before the change
+     *
+     * @return Previous image, or null for ADD
+     */
+    public Contact getBefore() {
+        return before;
+    }
+
+    /**
+     * Returns the contact as it is after the change
+     *
+     * @return New image, or null for DELETE
+     */
+    public Contact getAfter() {
+        return after;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + type + " contact ID " + getContactId();
+    }
+}
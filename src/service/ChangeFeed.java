@@ -0,0 +1,339 @@
+package service;
+
+import model.Contact;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ChangeFeed publishes every add, update and delete of a ContactService as a
+ * {@link ChangeEvent}, in commit order, to any number of
+ * {@link Flow.Subscriber}s. An event is published once the change's journal
+ * record has been written, in the same order as the journal records; a
+ * change whose record could not be written is not published.
+ *
+ * The most recent events are retained in a ring buffer, so a subscriber can
+ * resume from the sequence number after the last event it processed. Every
+ * subscription has its own position and demand and is delivered to on a
+ * background thread, one signal at a time; writers never wait for
+ * subscribers. A subscriber that falls further behind than the retained
+ * events, or resumes from an event that is no longer retained, gets
+ * onError and has to reload the contacts before subscribing again.
+ *
+ * The sequence number of an event is the position of its journal record
+ * (see {@link storage.ContactJournal#position(long, int)}). Sequences grow
+ * in commit order but are not contiguous, and they survive a restart: the
+ * changes replayed from the journal at startup are retained again, so a
+ * consumer can resume after the last event it processed unless a
+ * checkpoint has discarded that part of the journal in the meantime.
+ */
+public class ChangeFeed implements Flow.Publisher<ChangeEvent> {
+    private final ChangeEvent[] retained; // Ring buffer in sequence order, guarded by this
+    private int oldest; // Index of the oldest retained event, guarded by this
+    private int count; // Guarded by this
+    private long lastSequence; // Guarded by this
+    private long discardedSequence; // Newest sequence no longer retained, guarded by this
+    private boolean closed; // Guarded by this
+    private final List<ChangeSubscription> subscriptions;
+    private ExecutorService deliverer; // Started by the first subscription, guarded by this
+
+    ChangeFeed(int retainedEvents) {
+        if (retainedEvents < 1) {
+            throw new IllegalArgumentException("At least one change event must be retained.");
+        }
+        this.retained = new ChangeEvent[retainedEvents];
+        this.subscriptions = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Subscribes to the changes committed from now on
+     *
+     * @param subscriber Receives the events
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super ChangeEvent> subscriber) {
+        long from;
+        synchronized (this) {
+            from = lastSequence + 1;
+        }
+        subscribe(subscriber, from);
+    }
+
+    /**
+     * Subscribes to the changes starting at a sequence number, e.g. one past
+     * the last event a consumer processed. Events still retained are
+     * delivered first, followed by new ones as they are committed. The
+     * subscriber gets onError right away if the sequence is no longer
+     * retained or has not been reached yet.
+     *
+     * @param subscriber   Receives the events
+     * @param fromSequence Lowest sequence to deliver; the first event
+     *                     delivered is the first one at or after it
+     */
+    public void subscribe(Flow.Subscriber<? super ChangeEvent> subscriber, long fromSequence) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        ChangeSubscription subscription = new ChangeSubscription(subscriber, fromSequence);
+        RuntimeException problem = null;
+        synchronized (this) {
+            if (fromSequence < 1 || fromSequence > lastSequence + 1) {
+                problem = new IllegalArgumentException("Sequence " + fromSequence
+                        + " does not exist, the last change is " + lastSequence + ".");
+            } else if (fromSequence <= discardedSequence) {
+                problem = new IllegalStateException(
+                        "Changes before sequence " + getOldestSequence() + " are no longer retained.");
+            } else {
+                if (deliverer == null) {
+                    deliverer = newDeliverer();
+                }
+                subscriptions.add(subscription);
+            }
+        }
+
+        if (problem != null) {
+            subscription.cancelled = true;
+            subscriber.onSubscribe(subscription);
+            subscriber.onError(problem);
+            return;
+        }
+        subscriber.onSubscribe(subscription);
+        subscription.signal();
+    }
+
+    /**
+     * Returns the sequence of the most recent change
+     *
+     * @return Sequence number, 0 if nothing has changed yet
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns the lowest sequence a subscription can still resume from
+     *
+     * @return Sequence number, lastSequence + 1 if no change is retained
+     */
+    public synchronized long getOldestSequence() {
+        return discardedSequence + 1;
+    }
+
+    /**
+     * Returns the number of active subscriptions
+     *
+     * @return Subscription count
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Marks every change up to a journal position as not retained, before
+     * anything is published. Used at startup for the changes already folded
+     * into the loaded snapshot.
+     *
+     * @param position Position before the first change that can be published
+     */
+    synchronized void startAfter(long position) {
+        lastSequence = position;
+        discardedSequence = position;
+    }
+
+    /**
+     * Retains a change and signals the subscribers. Called once the change's
+     * journal record is written, in journal order.
+     *
+     * @param sequence Journal position of the change, above every earlier one
+     * @param type     Kind of mutation
+     * @param before   Previous image, null for ADD
+     * @param after    New image, null for DELETE
+     */
+    void publish(long sequence, ChangeEvent.Type type, Contact before, Contact after) {
+        synchronized (this) {
+            if (count == retained.length) {
+                discardedSequence = retained[oldest].getSequence();
+                retained[oldest] = null;
+                oldest = (oldest + 1) % retained.length;
+                count--;
+            }
+            retained[(oldest + count) % retained.length] = new ChangeEvent(sequence, type, before, after);
+            count++;
+            lastSequence = sequence;
+        }
+        for (ChangeSubscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    /**
+     * Completes every subscription once it has received the changes
+     * published so far
+     */
+    void close() {
+        ExecutorService stopping;
+        synchronized (this) {
+            closed = true;
+            stopping = deliverer;
+        }
+        for (ChangeSubscription subscription : subscriptions) {
+            subscription.signal();
+        }
+        if (stopping != null) {
+            stopping.shutdown();
+        }
+    }
+
+    /**
+     * Returns the first retained event at or after a sequence, found by
+     * binary search since sequences are not contiguous
+     *
+     * @param sequence Lowest sequence wanted, at most lastSequence
+     * @return Event, or null if events from the sequence on are no longer
+     *         retained
+     */
+    private synchronized ChangeEvent eventFrom(long sequence) {
+        if (sequence <= discardedSequence) {
+            return null;
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (retained[(oldest + middle) % retained.length].getSequence() < sequence) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return retained[(oldest + low) % retained.length];
+    }
+
+    private static ExecutorService newDeliverer() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "contact-changes-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Position and demand of one subscriber. Signals are serialized by the
+     * pending counter: whoever raises it from zero runs the delivery loop,
+     * and everyone else only makes that loop go around once more.
+     */
+    private final class ChangeSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ChangeEvent> subscriber;
+        private final AtomicLong demand;
+        private final AtomicInteger pending;
+        private long next; // Lowest sequence not yet delivered, only touched by the delivery loop
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+
+        ChangeSubscription(Flow.Subscriber<? super ChangeEvent> subscriber, long next) {
+            this.subscriber = subscriber;
+            this.next = next;
+            this.demand = new AtomicLong();
+            this.pending = new AtomicInteger();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested " + n + " events, must be positive.");
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void signal() {
+            if (cancelled || pending.getAndIncrement() != 0) {
+                return;
+            }
+            ExecutorService executor;
+            synchronized (ChangeFeed.this) {
+                executor = deliverer;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drain(); // The feed is closed, finish on the caller's thread
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                deliver();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            if (cancelled) {
+                return;
+            }
+            if (invalidRequest != null) {
+                fail(invalidRequest);
+                return;
+            }
+
+            while (demand.get() > 0) {
+                ChangeEvent event;
+                synchronized (ChangeFeed.this) {
+                    if (next > lastSequence) {
+                        break;
+                    }
+                    event = eventFrom(next);
+                }
+                if (event == null) {
+                    fail(new IllegalStateException("Subscriber fell behind, changes before sequence "
+                            + getOldestSequence() + " are no longer retained."));
+                    return;
+                }
+
+                try {
+                    subscriber.onNext(event);
+                } catch (RuntimeException e) {
+                    cancel();
+                    System.err.println("Change subscriber failed and was cancelled: " + e);
+                    return;
+                }
+                next = event.getSequence() + 1;
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                if (cancelled) {
+                    return;
+                }
+            }
+
+            boolean complete;
+            synchronized (ChangeFeed.this) {
+                complete = closed && next > lastSequence;
+            }
+            if (complete) {
+                cancel();
+                subscriber.onComplete();
+            }
+        }
+
+        private void fail(Throwable error) {
+            cancel();
+            subscriber.onError(error);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package service;
+
+import index.PhoneIndex;
+import model.Contact;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * ContactQuery describes a search for {@link ContactService#query}: a
+ * condition on the contacts, an optional sort order, and the window of
+ * results to return. Every setter returns the query itself so settings can
+ * be chained.
+ */
+public class ContactQuery {
+    /**
+     * Field to sort the results by. Text fields are compared ignoring case,
+     * phone numbers by their digits.
+     */
+    public enum SortKey {
+        ID(Comparator.comparingInt(Contact::getId)),
+        NAME(Comparator.comparing(Contact::getName, String.CASE_INSENSITIVE_ORDER)),
+        PHONE(Comparator.comparing(contact -> PhoneIndex.normalize(contact.getPhoneNumber()))),
+        EMAIL(Comparator.comparing(Contact::getEmail, String.CASE_INSENSITIVE_ORDER)),
+        ADDRESS(Comparator.comparing(Contact::getAddress, String.CASE_INSENSITIVE_ORDER));
+
+        private final Comparator<Contact> order;
+
+        SortKey(Comparator<Contact> order) {
+            this.order = order;
+        }
+    }
+
+    private Criterion where = Criterion.all();
+    private SortKey sortKey;
+    private boolean descending;
+    private int offset;
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * Returns the condition the results must satisfy
+     *
+     * @return Condition, {@link Criterion#all()} by default
+     */
+    public Criterion getWhere() {
+        return where;
+    }
+
+    /**
+     * Sets the condition the results must satisfy
+     *
+     * @param where Condition
+     * @return This query
+     */
+    public ContactQuery where(Criterion where) {
+        this.where = Objects.requireNonNull(where, "where");
+        return this;
+    }
+
+    /**
+     * Returns the sort field
+     *
+     * @return Sort field, or null to keep list order
+     */
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    /**
+     * Returns whether the results are sorted in descending order
+     *
+     * @return true for descending
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * Sorts the results in ascending order of a field. Contacts with equal
+     * values stay in list order.
+     *
+     * @param sortKey Sort field, null to keep list order
+     * @return This query
+     */
+    public ContactQuery sortBy(SortKey sortKey) {
+        return sortBy(sortKey, false);
+    }
+
+    /**
+     * Sorts the results by a field. Contacts with equal values stay in list
+     * order.
+     *
+     * @param sortKey    Sort field, null to keep list order
+     * @param descending true for descending order
+     * @return This query
+     */
+    public ContactQuery sortBy(SortKey sortKey, boolean descending) {
+        this.sortKey = sortKey;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * Returns the number of results skipped
+     *
+     * @return Offset
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Sets the number of results to skip
+     *
+     * @param offset Offset, 0 to start at the first result
+     * @return This query
+     * @throws IllegalArgumentException if the offset is negative
+     */
+    public ContactQuery offset(int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative.");
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of results
+     *
+     * @return Limit, Integer.MAX_VALUE if unlimited
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sets the maximum number of results
+     *
+     * @param limit Limit
+     * @return This query
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    public ContactQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative.");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Returns the order of the results
+     *
+     * @return Comparator, or null to keep list order
+     */
+    Comparator<Contact> order() {
+        if (sortKey == null) {
+            return null;
+        }
+        return descending ? sortKey.order.reversed() : sortKey.order;
+    }
+
+    /**
+     * Returns how many results from the start of the order are needed
+     *
+     * @return offset + limit, capped at Integer.MAX_VALUE
+     */
+    int window() {
+        return (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+    }
+
+    /**
+     * Builds a query from request parameters, as used by batch mode and the
+     * HTTP API. Every field parameter adds one condition and all of them
+     * must hold:
+     * name, nameStartsWith, phone, phonePrefix, phoneSuffix, email, domain,
+     * emailContains, address.
+     * "sort" names a {@link SortKey}, prefixed with "-" for descending
+     * order; "offset" and "limit" select the window.
+     *
+     * @param parameters Parameter values by name
+     * @return Query
+     * @throws IllegalArgumentException if a parameter is invalid
+     */
+    public static ContactQuery fromParameters(Map<String, String> parameters) {
+        List<Criterion> criteria = new ArrayList<>();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            String value = parameter.getValue();
+            switch (parameter.getKey()) {
+                case "name":
+                    criteria.add(Criterion.nameContains(value));
+                    break;
+                case "nameStartsWith":
+                    criteria.add(Criterion.nameStartsWith(value));
+                    break;
+                case "phone":
+                    criteria.add(Criterion.phoneContains(value));
+                    break;
+                case "phonePrefix":
+                    criteria.add(Criterion.phoneStartsWith(value));
+                    break;
+                case "phoneSuffix":
+                    criteria.add(Criterion.phoneEndsWith(value));
+                    break;
+                case "email":
+                    criteria.add(Criterion.emailIs(value));
+                    break;
+                case "domain":
+                    criteria.add(Criterion.emailDomain(value));
+                    break;
+                case "emailContains":
+                    criteria.add(Criterion.emailContains(value));
+                    break;
+                case "address":
+                    criteria.add(Criterion.addressContains(value));
+                    break;
+                default:
+                    break; // "op" in batch mode, sorting and paging below
+            }
+        }
+
+        ContactQuery query = new ContactQuery().where(Criterion.allOf(criteria.toArray(new Criterion[0])));
+        String sort = parameters.get("sort");
+        if (sort != null && !sort.isEmpty()) {
+            boolean descending = sort.startsWith("-");
+            String field = descending ? sort.substring(1) : sort;
+            try {
+                query.sortBy(SortKey.valueOf(field.trim().toUpperCase(Locale.ROOT)), descending);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown sort field: " + field);
+            }
+        }
+        query.offset(number(parameters, "offset", 0));
+        query.limit(number(parameters, "limit", Integer.MAX_VALUE));
+        return query;
+    }
+
+    private static int number(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("\"" + name + "\" must be a whole number.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("where ").append(where);
+        if (sortKey != null) {
+            text.append(" sort by ").append(sortKey).append(descending ? " descending" : "");
+        }
+        if (offset > 0) {
+            text.append(" offset ").append(offset);
+        }
+        if (limit != Integer.MAX_VALUE) {
+            text.append(" limit ").append(limit);
+        }
+        return text.toString();
+    }
+}
@@ -1,30 +1,252 @@
 package service;
 
+import index.BkTree;
+import index.IntSlotIndex;
+import index.KeyIndex;
+import io.ContactExporter;
+import io.ContactRowReader;
+import io.ExportFormat;
+import io.ImportFormat;
+import index.PhoneIndex;
+import index.PrefixIndex;
+import index.TrigramIndex;
+import metrics.Operation;
+import metrics.ServiceMetrics;
 import model.Contact;
+import store.ContactStore;
+import store.LazyContactStore;
+import store.StoreType;
+import storage.ContactFileFormat;
+import storage.ContactJournal;
+import storage.Durability;
+import storage.SnapshotIndex;
+import validation.ContactValidator;
+import validation.FieldError;
+
 import java.io.*;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * ContactService class handles all CRUD operations for contacts
- * Manages file persistence using serialization
+ * Manages file persistence using a binary snapshot file plus an append-only
+ * journal: every mutation appends one record to the journal, and a checkpoint
+ * thread rewrites the snapshot in the background once the journal has grown
+ * past a configured size, record count or age.
+ *
+ * Journal records are written by a background thread that commits
+ * everything queued at once with a single write and fsync (group commit).
+ * Each mutation waits only as long as its {@link Durability} requires; the
+ * *Async variants return a future instead of waiting.
+ *
+ * Writes are serialized through one lock, except updates in concurrent mode
+ * (see {@link #updateIfVersion}). In concurrent mode every write also
+ * publishes an immutable {@link ContactSnapshot} and a concurrent map from
+ * ID to contact, so one instance can be shared by any number of threads.
+ * Lookups by ID, listing, sorting and the scanning searches (name,
+ * phone, address, and queries the planner does not answer from an index)
+ * run against them without locking; searchByName scans the snapshot instead
+ * of using the trigram index. Lookups that need a search index (email,
+ * email domain, suggestions, fuzzy names and query planning) take the read
+ * side of the lock, so they run in parallel with each other but wait for a
+ * write in progress. Writers leave the indexes with nothing pending (the
+ * phone index is flushed after every change), so those lookups only read
+ * them. Outside concurrent mode reads use the search indexes directly and
+ * must not overlap with writes.
+ *
+ * In fast-start mode the snapshot is not decoded at construction: contacts
+ * are read from the mapped file through its ID index the first time they are
+ * accessed, the service's own ID index is built by the first lookup by ID
+ * (replaying the journal counts as one), and the search indexes are built by
+ * the first search.
  */
-public class ContactService {
-    private ArrayList<Contact> contacts;
-    private int nextId;
-    private static final String FILE_NAME = "contacts.dat";
+public class ContactService implements Closeable {
+    private ContactStore contacts; // Deleted slots are tombstones until compacted
+    private final StoreType storeType;
+    private final IntSlotIndex idIndex;
+    private final TrigramIndex nameIndex;
+    private final BkTree fuzzyNameIndex;
+    private final PrefixIndex namePrefixIndex;
+    private final PhoneIndex phoneIndex;
+    private final PrefixIndex domainIndex; // Lowercased domain of each email
+    private final KeyIndex emailIndex; // Only maintained unless duplicates are allowed
+    private final KeyIndex phoneNumberIndex; // Digits of the whole number, likewise
+    private final DuplicatePolicy duplicatePolicy;
+    private boolean searchIndexed; // false until the first search in fast-start mode
+    private boolean idIndexed; // false until the first lookup by ID in fast-start mode
+    private int liveCount;
+    private final AtomicInteger nextId;
+    private final String fileName;
+    private final ContactJournal journal;
+    private final ContactValidator validator;
+    private final ReentrantReadWriteLock.WriteLock writeLock;
+    private final ReentrantReadWriteLock.ReadLock indexReadLock; // Index lookups in concurrent mode
+    private final boolean concurrent;
+    private final boolean lazyLoad;
+    private volatile ContactSnapshot snapshot; // Only maintained in concurrent mode
+    private final ConcurrentHashMap<Integer, Contact> contactsById; // Likewise, ahead of the rest by pending swaps
+    private final Queue<PendingSwap> swaps; // Concurrent mode: updates swapped in, not yet applied
+    private final AtomicBoolean swapsScheduled;
+    private final ExecutorService swapApplier;
+    private final ServiceMetrics metrics;
+    private final ChangeFeed changes;
+    private final SlotScanner scanner;
+    private final Durability durability;
+    private final ScheduledExecutorService checkpointer;
+    private final int checkpointMutations;
+    private final long checkpointLogBytes;
+    private volatile CompletableFuture<Void> checkpointInFlight;
+    private static final int MIN_CHECKPOINT_RECORDS = 1000;
+    private static final int MIN_COMPACTION_TOMBSTONES = 64;
+    private static final int TOP_K_SORT_LIMIT = 1024; // Larger windows are sorted in full
+    private static final long ANY_VERSION = -1;
+    private static final PendingSwap KEYS_CHANGED = new PendingSwap(null, null, null);
+
+    /**
+     * Update swapped into the ID map in concurrent mode, waiting to be
+     * applied to the store, the search indexes, the journal and the change
+     * feed
+     */
+    private static final class PendingSwap {
+        final Contact previous;
+        final Contact updated;
+        final Durability durability;
+        final CompletableFuture<Void> applied = new CompletableFuture<>();
+        final CompletableFuture<Contact> written = new CompletableFuture<>();
+
+        PendingSwap(Contact previous, Contact updated, Durability durability) {
+            this.previous = previous;
+            this.updated = updated;
+            this.durability = durability;
+        }
+    }
 
     /**
      * Constructor initializes the service and loads existing contacts
      */
     public ContactService() {
-        this.contacts = new ArrayList<>();
-        this.nextId = 1;
-        loadContactsFromFile();
+        this(new ContactServiceConfig());
+    }
+
+    /**
+     * Constructor initializes the service against the given files and loads
+     * existing contacts: the snapshot first, then the journal replayed over it
+     * 
+     * @param fileName        Snapshot file
+     * @param journalFileName Journal file
+     */
+    public ContactService(String fileName, String journalFileName) {
+        this(new ContactServiceConfig().setDataFile(fileName).setJournalFile(journalFileName));
+    }
+
+    /**
+     * Constructor initializes the service with the given settings and loads
+     * existing contacts
+     * 
+     * @param config Service settings
+     * @throws UncheckedIOException if the journal cannot be read or opened
+     */
+    public ContactService(ContactServiceConfig config) {
+        this.storeType = config.getStoreType();
+        if (storeType != StoreType.OBJECTS && config.isConcurrent()) {
+            throw new IllegalArgumentException("A columnar store cannot be combined with concurrent mode.");
+        }
+        if (config.isLazyLoad() && (config.isConcurrent() || storeType != StoreType.OBJECTS)) {
+            throw new IllegalArgumentException(
+                    "Fast-start mode cannot be combined with concurrent mode or a columnar store.");
+        }
+        this.contacts = storeType.create(Collections.<Contact>emptyList());
+        this.idIndex = new IntSlotIndex();
+        this.nameIndex = new TrigramIndex();
+        this.fuzzyNameIndex = new BkTree();
+        this.namePrefixIndex = new PrefixIndex();
+        this.phoneIndex = new PhoneIndex();
+        this.domainIndex = new PrefixIndex();
+        this.emailIndex = new KeyIndex();
+        this.phoneNumberIndex = new KeyIndex();
+        this.duplicatePolicy = config.getDuplicatePolicy();
+        this.nextId = new AtomicInteger(1);
+        this.fileName = config.getDataFile();
+        this.journal = new ContactJournal(config.getJournalFile());
+        this.validator = config.getValidator();
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        this.writeLock = lock.writeLock();
+        this.indexReadLock = lock.readLock();
+        this.concurrent = config.isConcurrent();
+        this.lazyLoad = config.isLazyLoad();
+        this.searchIndexed = true;
+        this.idIndexed = true;
+        this.snapshot = concurrent ? ContactSnapshot.EMPTY : null;
+        this.contactsById = concurrent ? new ConcurrentHashMap<>() : null;
+        this.swaps = new ConcurrentLinkedQueue<>();
+        this.swapsScheduled = new AtomicBoolean();
+        this.swapApplier = concurrent ? Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "contact-swap-applier");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        this.durability = config.getDurability();
+        this.metrics = new ServiceMetrics(this::getContactCount, this::getStoreMemoryBytes);
+        this.changes = new ChangeFeed(config.getRetainedChanges());
+        this.scanner = new SlotScanner(ForkJoinPool.commonPool(), config.getParallelScanThreshold());
+        this.journal.setListener(metrics);
+        this.journal.setErrorHandler(e -> reportPersistenceError("Journal error: " + e.getMessage()));
+        this.journal.setGroupCommitWindow(TimeUnit.MICROSECONDS.toNanos(config.getGroupCommitWindowMicros()));
+        this.checkpointMutations = config.getCheckpointMutations();
+        this.checkpointLogBytes = config.getCheckpointLogBytes();
+        this.checkpointer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "contact-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long start = System.nanoTime();
+        long coveredSegment = loadContactsFromFile();
+        replayJournal(coveredSegment);
+        metrics.record(Operation.LOAD, System.nanoTime() - start);
+        metrics.register(new File(fileName).getAbsolutePath());
+
+        long interval = config.getCheckpointIntervalSeconds();
+        if (interval > 0) {
+            checkpointer.scheduleWithFixedDelay(this::checkpointOnSchedule, interval, interval, TimeUnit.SECONDS);
+        }
     }
 
     /**
-     * Adds a new contact to the system
+     * Adds a new contact to the system and waits for it to be persisted as
+     * far as the service's durability setting requires
      * 
      * @param name        Contact's name
      * @param phoneNumber Contact's phone number
@@ -32,22 +254,236 @@ public class ContactService {
      * @param address     Contact's address
      * @return true if contact was added successfully
      * @throws IllegalArgumentException if validation fails
+     * @throws UncheckedIOException if the change could not be persisted; it
+     *         stays applied in memory and the failure has been reported
      */
     public boolean addContact(String name, String phoneNumber, String email, String address) {
+        long start = System.nanoTime();
         try {
-            validateContactDetails(name, phoneNumber, email);
-
-            Contact newContact = new Contact(nextId++, name, phoneNumber, email, address);
-            contacts.add(newContact);
-            saveContactsToFile();
+            awaitPersisted(submitAdd(name, phoneNumber, email, address, durability), durability);
             return true;
-        } catch (IllegalArgumentException e) {
-            throw e;
+        } finally {
+            metrics.record(Operation.ADD, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Adds a new contact to the system without waiting for it to be persisted
+     * 
+     * @param name        Contact's name
+     * @param phoneNumber Contact's phone number
+     * @param email       Contact's email
+     * @param address     Contact's address
+     * @param durability  FSYNC to have the journal record forced to disk
+     * @return Completes with the added contact, including its new ID, once it
+     *         is written, or synced for FSYNC
+     * @throws IllegalArgumentException if validation fails
+     */
+    public CompletableFuture<Contact> addContactAsync(String name, String phoneNumber, String email, String address,
+            Durability durability) {
+        long start = System.nanoTime();
+        try {
+            return submitAdd(name, phoneNumber, email, address, durability);
+        } finally {
+            metrics.record(Operation.ADD, System.nanoTime() - start);
+        }
+    }
+
+    private CompletableFuture<Contact> submitAdd(String name, String phoneNumber, String email, String address,
+            Durability durability) {
+        validateContactDetails(name, phoneNumber, email, address);
+
+        writeLock.lock();
+        try {
+            checkDuplicates(IntSlotIndex.NOT_FOUND, phoneNumber, email);
+            Contact newContact = new Contact(nextId.getAndIncrement(), name, phoneNumber, email, address);
+            insert(newContact);
+            CompletableFuture<Void> written = publishWhenWritten(journal.appendAdd(newContact, durability),
+                    ChangeEvent.Type.ADD, null, newContact);
+            checkpointIfNeeded();
+            return written.thenApply(ignored -> newContact);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Imports contacts from a CSV or NDJSON stream. Rows are read in batches;
+     * each batch is validated in parallel, gets one contiguous block of IDs
+     * and is persisted with a single journal write. Invalid rows are reported
+     * and skipped without aborting the rest of the import.
+     * 
+     * @param reader    Source of the import data
+     * @param format    Format of the data
+     * @param batchSize Rows per persisted batch, or 0 to persist once at the end
+     * @return Report of imported and rejected rows
+     * @throws IOException if the input cannot be read
+     * @throws UncheckedIOException if a batch could not be persisted; the
+     *         batches up to and including it stay imported in memory
+     */
+    public ImportReport importContacts(Reader reader, ImportFormat format, int batchSize) throws IOException {
+        long start = System.nanoTime();
+        try {
+            int limit = batchSize > 0 ? batchSize : Integer.MAX_VALUE;
+            ImportReport report = new ImportReport();
+            ContactRowReader rows = ContactRowReader.open(reader, format);
+
+            List<String[]> batch = new ArrayList<>(Math.min(limit, 4096));
+            List<Integer> rowNumbers = new ArrayList<>(Math.min(limit, 4096));
+            while (true) {
+                String[] row;
+                try {
+                    row = rows.next();
+                } catch (IllegalArgumentException e) {
+                    report.addError(rows.getRowNumber(), e.getMessage());
+                    continue;
+                }
+                if (row == null) {
+                    break;
+                }
+
+                batch.add(row);
+                rowNumbers.add(rows.getRowNumber());
+                if (batch.size() == limit) {
+                    importBatch(batch, rowNumbers, report);
+                    batch.clear();
+                    rowNumbers.clear();
+                }
+            }
+            importBatch(batch, rowNumbers, report);
+            return report;
+        } finally {
+            metrics.record(Operation.IMPORT, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Imports contacts from a UTF-8 CSV or NDJSON file
+     * 
+     * @param path      File to import
+     * @param format    Format of the file
+     * @param batchSize Rows per persisted batch, or 0 to persist once at the end
+     * @return Report of imported and rejected rows
+     * @throws IOException if the file cannot be read
+     * @throws UncheckedIOException if a batch could not be persisted
+     */
+    public ImportReport importContacts(Path path, ImportFormat format, int batchSize) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return importContacts(reader, format, batchSize);
+        }
+    }
+
+    /**
+     * Validates one batch of rows in parallel, then inserts the valid ones
+     * under a single lock acquisition and journal write, and waits for the
+     * batch to be persisted as far as the durability setting requires
+     */
+    private void importBatch(List<String[]> batch, List<Integer> rowNumbers, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        String[] errors = new String[batch.size()];
+        IntStream.range(0, batch.size()).parallel().forEach(i -> {
+            String[] row = batch.get(i);
+            List<FieldError> fieldErrors = validator.validate(row[ContactRowReader.NAME],
+                    row[ContactRowReader.PHONE], row[ContactRowReader.EMAIL], row[ContactRowReader.ADDRESS]);
+            if (!fieldErrors.isEmpty()) {
+                errors[i] = ContactValidator.describe(fieldErrors);
+            }
+        });
+
+        CompletableFuture<Void> written;
+        writeLock.lock();
+        try {
+            checkDuplicates(batch, errors);
+            int valid = 0;
+            for (int i = 0; i < errors.length; i++) {
+                if (errors[i] == null) {
+                    valid++;
+                } else {
+                    report.addError(rowNumbers.get(i), errors[i]);
+                }
+            }
+            if (valid == 0) {
+                return;
+            }
+
+            int id = nextId.getAndAdd(valid);
+            List<Contact> added = new ArrayList<>(valid);
+            for (int i = 0; i < errors.length; i++) {
+                if (errors[i] == null) {
+                    String[] row = batch.get(i);
+                    added.add(new Contact(id++, row[ContactRowReader.NAME], row[ContactRowReader.PHONE],
+                            row[ContactRowReader.EMAIL], row[ContactRowReader.ADDRESS]));
+                }
+            }
+
+            insertAll(added);
+            written = journal.appendAddAll(added, durability);
+            long firstPosition = journal.getLastPosition() - added.size() + 1;
+            written = written.thenRun(() -> {
+                for (int i = 0; i < added.size(); i++) {
+                    changes.publish(firstPosition + i, ChangeEvent.Type.ADD, null, added.get(i));
+                }
+            });
+            checkpointIfNeeded();
+            report.addImported(valid);
+        } finally {
+            writeLock.unlock();
+        }
+        awaitPersisted(written, durability);
+    }
+
+    /**
+     * Applies the duplicate policy to the valid rows of an import batch,
+     * checking them against the existing contacts and against earlier rows of
+     * the same batch. Rejected rows get an error message. Must be called
+     * under the write lock.
+     * 
+     * @param batch  Rows of the batch
+     * @param errors Error per row, null for valid rows
+     */
+    private void checkDuplicates(List<String[]> batch, String[] errors) {
+        if (duplicatePolicy == DuplicatePolicy.ALLOW) {
+            return;
+        }
+
+        Set<String> batchEmails = new HashSet<>();
+        Set<String> batchPhones = new HashSet<>();
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] != null) {
+                continue;
+            }
+            String[] row = batch.get(i);
+            String email = row[ContactRowReader.EMAIL];
+            String phoneNumber = row[ContactRowReader.PHONE];
+            String emailKey = emailKey(email);
+            String digits = PhoneIndex.normalize(phoneNumber);
+            String conflict = findConflict(IntSlotIndex.NOT_FOUND, phoneNumber, email);
+            if (conflict == null && batchEmails.contains(emailKey)) {
+                conflict = "Email " + email.trim() + " is already used by an earlier row.";
+            } else if (conflict == null && !digits.isEmpty() && batchPhones.contains(digits)) {
+                conflict = "Phone number " + phoneNumber.trim() + " is already used by an earlier row.";
+            }
+
+            if (conflict != null) {
+                metrics.recordDuplicate(duplicatePolicy == DuplicatePolicy.REJECT);
+                if (duplicatePolicy == DuplicatePolicy.REJECT) {
+                    errors[i] = conflict;
+                    continue;
+                }
+            }
+            batchEmails.add(emailKey);
+            if (!digits.isEmpty()) {
+                batchPhones.add(digits);
+            }
         }
     }
 
     /**
-     * Updates an existing contact
+     * Updates an existing contact and waits for the change to be persisted as
+     * far as the service's durability setting requires
      * 
      * @param id          Contact ID to update
      * @param name        New name
@@ -56,179 +492,1922 @@ public class ContactService {
      * @param address     New address
      * @return true if contact was updated successfully
      * @throws IllegalArgumentException if validation fails or contact not found
+     * @throws UncheckedIOException if the change could not be persisted; it
+     *         stays applied in memory and the failure has been reported
      */
     public boolean updateContact(int id, String name, String phoneNumber, String email, String address) {
+        long start = System.nanoTime();
+        try {
+            awaitPersisted(submitUpdate(id, ANY_VERSION, name, phoneNumber, email, address, durability, true),
+                    durability);
+            return true;
+        } finally {
+            metrics.record(Operation.UPDATE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Updates an existing contact without waiting for the change to be
+     * persisted
+     * 
+     * @param id          Contact ID to update
+     * @param name        New name
+     * @param phoneNumber New phone number
+     * @param email       New email
+     * @param address     New address
+     * @param durability  FSYNC to have the journal record forced to disk
+     * @return Completes with the updated contact, including its new version,
+     *         once the change is written, or synced for FSYNC
+     * @throws IllegalArgumentException if validation fails or contact not found
+     */
+    public CompletableFuture<Contact> updateContactAsync(int id, String name, String phoneNumber, String email,
+            String address, Durability durability) {
+        long start = System.nanoTime();
+        try {
+            return submitUpdate(id, ANY_VERSION, name, phoneNumber, email, address, durability, false);
+        } finally {
+            metrics.record(Operation.UPDATE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Updates a contact only if it is still at the version the caller read
+     * (compare-and-set), and waits for the change to be persisted as far as
+     * the service's durability setting requires. Nothing is locked between
+     * reading the contact and calling this; a concurrent update in between
+     * makes this call fail instead of being silently overwritten. The caller
+     * can then read the contact again and retry.
+     * 
+     * In concurrent mode no global lock is taken. The new image is swapped
+     * into the map from ID to contact with a compare-and-set on that one
+     * contact, so lookups by ID see it at once and a conflicting update fails
+     * without waiting for anything. A background thread then applies swapped
+     * updates to the store, the search indexes, the journal and the change
+     * feed in the order they were swapped in; this call returns once its own
+     * update has been applied. With the REJECT duplicate policy an update
+     * that changes the email or phone number still takes the write lock,
+     * because the new values have to be checked and claimed in one step.
+     * 
+     * @param id              Contact ID to update
+     * @param expectedVersion Version returned by {@link Contact#getVersion()}
+     *                        when the contact was read
+     * @param name            New name
+     * @param phoneNumber     New phone number
+     * @param email           New email
+     * @param address         New address
+     * @return true if the contact was updated, false if its version has moved on
+     * @throws IllegalArgumentException if validation fails or contact not found
+     * @throws UncheckedIOException if the change could not be persisted; it
+     *         stays applied in memory and the failure has been reported
+     */
+    public boolean updateIfVersion(int id, long expectedVersion, String name, String phoneNumber, String email,
+            String address) {
+        long start = System.nanoTime();
+        try {
+            // Versions start at 1, so a negative version never matches instead of meaning any version
+            CompletableFuture<Contact> written = submitUpdate(id, Math.max(expectedVersion, 0), name, phoneNumber,
+                    email, address, durability, true);
+            if (written == null) {
+                return false;
+            }
+            awaitPersisted(written, durability);
+            return true;
+        } finally {
+            metrics.record(Operation.UPDATE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Updates a contact only if it is still at the version the caller read,
+     * without waiting for the change to be persisted
+     * 
+     * @param id              Contact ID to update
+     * @param expectedVersion Version returned by {@link Contact#getVersion()}
+     *                        when the contact was read
+     * @param name            New name
+     * @param phoneNumber     New phone number
+     * @param email           New email
+     * @param address         New address
+     * @param durability      FSYNC to have the journal record forced to disk
+     * @return Completes with the updated contact once the change is written,
+     *         or synced for FSYNC; already completed with null if the version
+     *         has moved on
+     * @throws IllegalArgumentException if validation fails or contact not found
+     */
+    public CompletableFuture<Contact> updateIfVersionAsync(int id, long expectedVersion, String name,
+            String phoneNumber, String email, String address, Durability durability) {
+        long start = System.nanoTime();
         try {
-            validateContactDetails(name, phoneNumber, email);
+            CompletableFuture<Contact> written = submitUpdate(id, Math.max(expectedVersion, 0), name, phoneNumber,
+                    email, address, durability, false);
+            return written == null ? CompletableFuture.completedFuture(null) : written;
+        } finally {
+            metrics.record(Operation.UPDATE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Replaces a contact with its next version
+     * 
+     * @param expectedVersion Version the contact must be at, or ANY_VERSION
+     * @param untilApplied    true to return only once every read sees the
+     *                        update, not just lookups by ID
+     * @return Completes with the new image once the change is written, or
+     *         null if the contact is not at the expected version
+     */
+    private CompletableFuture<Contact> submitUpdate(int id, long expectedVersion, String name, String phoneNumber,
+            String email, String address, Durability durability, boolean untilApplied) {
+        validateContactDetails(name, phoneNumber, email, address);
+        if (concurrent) {
+            return swapUpdate(id, expectedVersion, name, phoneNumber, email, address, durability, untilApplied);
+        }
 
-            Contact contact = findContactById(id);
-            if (contact == null) {
+        writeLock.lock();
+        try {
+            int slot = slotOf(id);
+            metrics.recordIdLookup(slot != IntSlotIndex.NOT_FOUND);
+            if (slot == IntSlotIndex.NOT_FOUND) {
                 throw new IllegalArgumentException("Contact with ID " + id + " not found.");
             }
+            long version = contacts.getVersion(slot);
+            if (expectedVersion != ANY_VERSION && version != expectedVersion) {
+                metrics.recordVersionConflict();
+                return null;
+            }
+            checkDuplicates(id, phoneNumber, email);
 
-            contact.setName(name);
-            contact.setPhoneNumber(phoneNumber);
-            contact.setEmail(email);
-            contact.setAddress(address);
-            saveContactsToFile();
-            return true;
-        } catch (IllegalArgumentException e) {
-            throw e;
+            // Swap in a new instance so readers never see a half-updated contact
+            Contact previous = contacts.get(slot);
+            Contact updated = new Contact(id, name, phoneNumber, email, address, version + 1);
+            replaceSlot(slot, updated);
+            CompletableFuture<Void> written = publishWhenWritten(journal.appendUpdate(updated, durability),
+                    ChangeEvent.Type.UPDATE, previous, updated);
+            checkpointIfNeeded();
+            return written.thenApply(ignored -> updated);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Updates a contact in concurrent mode by swapping its next version into
+     * the ID map and leaving the rest to the swap applier
+     * 
+     * @return Completes with the new image once the change is written, or
+     *         null if the contact is not at the expected version
+     */
+    private CompletableFuture<Contact> swapUpdate(int id, long expectedVersion, String name, String phoneNumber,
+            String email, String address, Durability durability, boolean untilApplied) {
+        boolean keysFixed = duplicatePolicy == DuplicatePolicy.REJECT;
+        PendingSwap swap = swap(id, expectedVersion, name, phoneNumber, email, address, durability, keysFixed);
+        if (swap == KEYS_CHANGED) {
+            writeLock.lock();
+            try {
+                // Emails and phone numbers only change under the lock, so the check stays true until applied
+                checkDuplicates(id, phoneNumber, email);
+                swap = swap(id, expectedVersion, name, phoneNumber, email, address, durability, false);
+                applySwaps();
+            } finally {
+                writeLock.unlock();
+            }
+        } else if (swap != null) {
+            scheduleSwaps();
+        }
+
+        if (swap == null) {
+            return null;
+        }
+        if (untilApplied) {
+            swap.applied.join();
+        }
+        return swap.written;
+    }
+
+    /**
+     * Swaps the next version of a contact into the ID map with a
+     * compare-and-set on that contact, and queues it for the applier in the
+     * same step, so swaps of one contact are queued in the order they won
+     * 
+     * @param keysFixed true to refuse a swap that changes the email or phone
+     *                  number of the contact it replaces
+     * @return Queued swap, null if the contact is not at the expected
+     *         version, or KEYS_CHANGED if keysFixed refused the swap
+     * @throws IllegalArgumentException if the contact does not exist
+     */
+    private PendingSwap swap(int id, long expectedVersion, String name, String phoneNumber, String email,
+            String address, Durability durability, boolean keysFixed) {
+        PendingSwap[] made = new PendingSwap[1];
+        Contact result = contactsById.computeIfPresent(id, (key, current) -> {
+            if (expectedVersion != ANY_VERSION && current.getVersion() != expectedVersion) {
+                return current;
+            }
+            if (keysFixed && !(emailKey(current.getEmail()).equals(emailKey(email))
+                    && PhoneIndex.normalize(current.getPhoneNumber()).equals(PhoneIndex.normalize(phoneNumber)))) {
+                made[0] = KEYS_CHANGED;
+                return current;
+            }
+            Contact updated = new Contact(id, name, phoneNumber, email, address, current.getVersion() + 1);
+            made[0] = new PendingSwap(current, updated, durability);
+            swaps.add(made[0]);
+            return updated;
+        });
+        metrics.recordIdLookup(result != null);
+        if (result == null) {
+            throw new IllegalArgumentException("Contact with ID " + id + " not found.");
         }
+        if (made[0] == null) {
+            metrics.recordVersionConflict();
+        }
+        return made[0];
     }
 
     /**
-     * Deletes a contact by ID
+     * Deletes a contact by ID and waits for the deletion to be persisted as
+     * far as the service's durability setting requires
      * 
      * @param id Contact ID to delete
      * @return true if contact was deleted successfully
      * @throws IllegalArgumentException if contact not found
+     * @throws UncheckedIOException if the change could not be persisted; it
+     *         stays applied in memory and the failure has been reported
      */
     public boolean deleteContact(int id) {
-        Contact contact = findContactById(id);
-        if (contact == null) {
-            throw new IllegalArgumentException("Contact with ID " + id + " not found.");
+        long start = System.nanoTime();
+        try {
+            awaitPersisted(submitDelete(id, durability), durability);
+            return true;
+        } finally {
+            metrics.record(Operation.DELETE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Deletes a contact by ID without waiting for the deletion to be persisted
+     * 
+     * @param id         Contact ID to delete
+     * @param durability FSYNC to have the journal record forced to disk
+     * @return Completes once the deletion is written, or synced for FSYNC
+     * @throws IllegalArgumentException if contact not found
+     */
+    public CompletableFuture<Void> deleteContactAsync(int id, Durability durability) {
+        long start = System.nanoTime();
+        try {
+            return submitDelete(id, durability);
+        } finally {
+            metrics.record(Operation.DELETE, System.nanoTime() - start);
         }
+    }
+
+    private CompletableFuture<Void> submitDelete(int id, Durability durability) {
+        writeLock.lock();
+        try {
+            if (concurrent) {
+                // Nothing more can be swapped in once the contact has left the ID map
+                contactsById.remove(id);
+                applySwaps();
+            }
+            int slot = slotOf(id);
+            metrics.recordIdLookup(slot != IntSlotIndex.NOT_FOUND);
+            if (slot == IntSlotIndex.NOT_FOUND) {
+                throw new IllegalArgumentException("Contact with ID " + id + " not found.");
+            }
 
-        contacts.remove(contact);
-        saveContactsToFile();
-        return true;
+            Contact previous = contacts.get(slot);
+            removeSlot(slot);
+            CompletableFuture<Void> written = publishWhenWritten(journal.appendDelete(id, durability),
+                    ChangeEvent.Type.DELETE, previous, null);
+            checkpointIfNeeded();
+            return written;
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
-     * Searches for contacts by name (case-insensitive, partial match)
+     * Publishes a change to the feed once its journal record is written,
+     * numbered by the record's position. Must be called under the write lock
+     * right after the append, so the position is the record's and the
+     * callbacks run in journal order.
      * 
-     * @param name Name to search for
-     * @return List of matching contacts
+     * @param written Future of the journal append
+     * @return Completes after the change is published, or with the write
+     *         failure, in which case nothing is published
      */
-    public List<Contact> searchByName(String name) {
-        List<Contact> results = new ArrayList<>();
-        String searchTerm = name.toLowerCase().trim();
+    private CompletableFuture<Void> publishWhenWritten(CompletableFuture<Void> written, ChangeEvent.Type type,
+            Contact before, Contact after) {
+        long position = journal.getLastPosition();
+        return written.thenRun(() -> changes.publish(position, type, before, after));
+    }
 
-        for (Contact contact : contacts) {
-            if (contact.getName().toLowerCase().contains(searchTerm)) {
-                results.add(contact);
+    /**
+     * Applies every queued swap, in queue order, to the store, the search
+     * indexes, the journal and the change feed. Must be called with the write
+     * lock held.
+     */
+    private void applySwaps() {
+        boolean applied = false;
+        PendingSwap swap;
+        while ((swap = swaps.poll()) != null) {
+            PendingSwap current = swap;
+            try {
+                if (duplicatePolicy == DuplicatePolicy.FLAG) {
+                    checkDuplicates(current.updated.getId(), current.updated.getPhoneNumber(),
+                            current.updated.getEmail());
+                }
+                replaceSlot(slotOf(current.updated.getId()), current.updated);
+                publishWhenWritten(journal.appendUpdate(current.updated, current.durability), ChangeEvent.Type.UPDATE,
+                        current.previous, current.updated).whenComplete((ignored, failure) -> {
+                            if (failure == null) {
+                                current.written.complete(current.updated);
+                            } else {
+                                current.written.completeExceptionally(failure);
+                            }
+                        });
+                current.applied.complete(null);
+                applied = true;
+            } catch (RuntimeException e) {
+                current.applied.completeExceptionally(e);
+                current.written.completeExceptionally(e);
             }
         }
+        if (applied) {
+            checkpointIfNeeded();
+        }
+    }
 
-        return results;
+    /**
+     * Has the swap applier apply the queued swaps unless it is already about
+     * to
+     */
+    private void scheduleSwaps() {
+        if (swapsScheduled.compareAndSet(false, true)) {
+            swapApplier.execute(() -> {
+                writeLock.lock();
+                try {
+                    swapsScheduled.set(false); // Swaps queued from here on schedule another run
+                    applySwaps();
+                } finally {
+                    writeLock.unlock();
+                }
+            });
+        }
     }
 
     /**
-     * Searches for contacts by phone number (partial match)
+     * Searches for contacts by name (case-insensitive, partial match).
+     * Queries of three or more characters are answered from the trigram index
+     * and only the candidates it returns are checked. In concurrent mode the
+     * trigram index is not used: every contact in the snapshot is scanned,
+     * without locking.
      * 
-     * @param phoneNumber Phone number to search for
+     * @param name Name to search for
      * @return List of matching contacts
      */
-    public List<Contact> searchByPhone(String phoneNumber) {
-        List<Contact> results = new ArrayList<>();
-        String searchTerm = phoneNumber.trim();
+    public List<Contact> searchByName(String name) {
+        long start = System.nanoTime();
+        try {
+            String searchTerm = name.toLowerCase().trim();
+            metrics.recordNameSearch(!concurrent && TrigramIndex.canSearch(searchTerm));
+            if (concurrent) {
+                return scanSnapshot(contact -> contact.getName().toLowerCase().contains(searchTerm));
+            }
 
-        for (Contact contact : contacts) {
-            if (contact.getPhoneNumber().contains(searchTerm)) {
-                results.add(contact);
+            ensureSearchIndexes();
+            List<Contact> results = new ArrayList<>();
+            if (TrigramIndex.canSearch(searchTerm)) {
+                for (Contact contact : inListOrder(nameIndex.candidates(searchTerm))) {
+                    if (contact.getName().toLowerCase().contains(searchTerm)) {
+                        results.add(contact);
+                    }
+                }
+                return results;
             }
-        }
 
-        return results;
+            return scanStore(slot -> contacts.getName(slot).toLowerCase().contains(searchTerm));
+        } finally {
+            metrics.record(Operation.SEARCH_BY_NAME, System.nanoTime() - start);
+        }
     }
 
     /**
-     * Returns all contacts
+     * Searches for contacts whose name is within an edit distance of the
+     * query, closest first
      * 
-     * @return List of all contacts
+     * @param name        Name or part of a name, possibly misspelled
+     * @param maxDistance Largest number of typos to accept
+     * @return Matching contacts, see {@link #searchByNameFuzzy(String, int, int)}
+     * @throws IllegalArgumentException if maxDistance is negative
      */
-    public List<Contact> getAllContacts() {
-        return new ArrayList<>(contacts);
+    public List<Contact> searchByNameFuzzy(String name, int maxDistance) {
+        return searchByNameFuzzy(name, maxDistance, Integer.MAX_VALUE);
     }
 
     /**
-     * Finds a contact by ID
+     * Searches for contacts whose name is within an edit distance of the
+     * query, closest first. The query is compared case-insensitively with
+     * the whole name and with each of its words, so "jon" finds
+     * "John Smith". The names are held in a BK-tree, so only a fraction of
+     * them is compared with the query. In concurrent mode the search takes the
+     * read lock, because the tree is maintained by writers, so it waits for a
+     * write in progress.
      * 
-     * @param id Contact ID
-     * @return Contact object or null if not found
+     * @param name        Name or part of a name, possibly misspelled
+     * @param maxDistance Largest number of typos to accept
+     * @param limit       Maximum number of contacts to return
+     * @return Matching contacts ordered by distance, ties in list order
+     * @throws IllegalArgumentException if maxDistance or limit is negative
      */
-    private Contact findContactById(int id) {
-        for (Contact contact : contacts) {
-            if (contact.getId() == id) {
-                return contact;
+    public List<Contact> searchByNameFuzzy(String name, int maxDistance, int limit) {
+        long start = System.nanoTime();
+        if (maxDistance < 0 || limit < 0) {
+            throw new IllegalArgumentException("Distance and limit must not be negative.");
+        }
+        if (concurrent) {
+            indexReadLock.lock();
+        }
+        try {
+            ensureSearchIndexes();
+            Map<Integer, Integer> matches = fuzzyNameIndex.search(name.toLowerCase().trim(), maxDistance);
+
+            // Sort by distance, then slot, packed into one long per match
+            long[] ranked = new long[matches.size()];
+            int count = 0;
+            for (Map.Entry<Integer, Integer> match : matches.entrySet()) {
+                int slot = slotOf(match.getKey());
+                if (slot != IntSlotIndex.NOT_FOUND) {
+                    ranked[count++] = ((long) match.getValue() << 32) | slot;
+                }
+            }
+            Arrays.sort(ranked, 0, count);
+
+            List<Contact> results = new ArrayList<>(Math.min(count, limit));
+            for (int i = 0; i < count && results.size() < limit; i++) {
+                results.add(contacts.get((int) ranked[i]));
+            }
+            return results;
+        } finally {
+            if (concurrent) {
+                indexReadLock.unlock();
             }
+            metrics.record(Operation.SEARCH_BY_NAME_FUZZY, System.nanoTime() - start);
         }
-        return null;
     }
 
     /**
-     * Validates contact details
+     * Suggests contacts for a name being typed: contacts whose whole name or
+     * one of its words starts with the prefix, ignoring case. The names are
+     * held in a sorted term dictionary, so the lookup is a binary search and
+     * stops after the first matches instead of scanning every contact. In
+     * concurrent mode the lookup takes the read lock, because the dictionary
+     * is maintained by writers, so it waits for a write in progress.
      * 
-     * @param name        Contact name
-     * @param phoneNumber Phone number
-     * @param email       Email address
-     * @throws IllegalArgumentException if validation fails
+     * @param prefix Beginning of a name or of one of its words
+     * @param limit  Maximum number of contacts to return
+     * @return Matching contacts ordered by the matching name or word
+     * @throws IllegalArgumentException if limit is negative
      */
-    private void validateContactDetails(String name, String phoneNumber, String email) {
-        if (name == null || name.trim().isEmpty()) {
-            throw new IllegalArgumentException("Name cannot be empty.");
+    public List<Contact> suggestByName(String prefix, int limit) {
+        long start = System.nanoTime();
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative.");
         }
-
-        if (phoneNumber == null || phoneNumber.trim().isEmpty()) {
-            throw new IllegalArgumentException("Phone number cannot be empty.");
+        if (concurrent) {
+            indexReadLock.lock();
         }
-
-        // Basic phone number validation (digits, spaces, hyphens, parentheses, plus)
-        if (!phoneNumber.matches("[0-9\\s\\-()+]+")) {
-            throw new IllegalArgumentException("Phone number contains invalid characters.");
+        try {
+            ensureSearchIndexes();
+            List<Contact> results = new ArrayList<>(Math.min(limit, 64));
+            if (limit == 0) {
+                return results;
+            }
+            Set<Integer> seen = new HashSet<>();
+            namePrefixIndex.forEachId(prefix.toLowerCase().trim(), id -> {
+                int slot = slotOf(id);
+                if (slot != IntSlotIndex.NOT_FOUND && seen.add(id)) {
+                    results.add(contacts.get(slot));
+                }
+                return results.size() < limit;
+            });
+            return results;
+        } finally {
+            if (concurrent) {
+                indexReadLock.unlock();
+            }
+            metrics.record(Operation.SUGGEST, System.nanoTime() - start);
         }
+    }
 
-        if (email == null || email.trim().isEmpty()) {
-            throw new IllegalArgumentException("Email cannot be empty.");
+    /**
+     * Suggests email domains for a domain being typed
+     * 
+     * @param prefix Beginning of a domain, e.g. "exa"
+     * @param limit  Maximum number of domains to return
+     * @return Lowercased domains used by at least one contact, in
+     *         alphabetical order
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public List<String> suggestEmailDomains(String prefix, int limit) {
+        long start = System.nanoTime();
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative.");
         }
-
-        // Basic email validation
-        if (!email.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$")) {
-            throw new IllegalArgumentException("Invalid email format.");
+        if (concurrent) {
+            indexReadLock.lock();
+        }
+        try {
+            ensureSearchIndexes();
+            return domainIndex.terms(emailDomain(prefix), limit);
+        } finally {
+            if (concurrent) {
+                indexReadLock.unlock();
+            }
+            metrics.record(Operation.SUGGEST, System.nanoTime() - start);
         }
     }
 
     /**
-     * Saves contacts to file using serialization
+     * Looks up the contacts whose email is at a domain, ignoring case, from
+     * the domain index. In concurrent mode the lookup takes the read lock,
+     * because the index is maintained by writers, so it waits for a write in
+     * progress.
+     * 
+     * @param domain Domain such as "example.com"; a leading "@" or a whole
+     *               email address is accepted too
+     * @return Contacts at the domain in list order
      */
-    private void saveContactsToFile() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(FILE_NAME))) {
-            oos.writeObject(contacts);
-            oos.writeInt(nextId);
-        } catch (IOException e) {
-            System.err.println("Error saving contacts to file: " + e.getMessage());
+    public List<Contact> findByEmailDomain(String domain) {
+        long start = System.nanoTime();
+        if (concurrent) {
+            indexReadLock.lock();
+        }
+        try {
+            ensureSearchIndexes();
+            return inListOrder(domainIndex.get(emailDomain(domain)));
+        } finally {
+            if (concurrent) {
+                indexReadLock.unlock();
+            }
+            metrics.record(Operation.FIND_BY_EMAIL_DOMAIN, System.nanoTime() - start);
         }
     }
 
     /**
-     * Loads contacts from file using serialization
+     * Searches for contacts by phone number (partial match). Only the digits
+     * are compared, so "555-1234" also finds "5551234". A query without any
+     * digits falls back to matching the stored text.
+     * 
+     * @param phoneNumber Phone number to search for
+     * @return List of matching contacts
      */
-    @SuppressWarnings("unchecked")
-    private void loadContactsFromFile() {
-        File file = new File(FILE_NAME);
+    public List<Contact> searchByPhone(String phoneNumber) {
+        long start = System.nanoTime();
+        try {
+            String digits = PhoneIndex.normalize(phoneNumber);
+            String searchTerm = phoneNumber.trim();
+            metrics.recordPhoneSearch(!concurrent && !digits.isEmpty());
+            if (concurrent) {
+                if (digits.isEmpty()) {
+                    return scanSnapshot(contact -> contact.getPhoneNumber().contains(searchTerm));
+                }
+                return scanSnapshot(contact -> PhoneIndex.normalize(contact.getPhoneNumber()).contains(digits));
+            }
 
-        if (!file.exists()) {
-            return; // No file exists yet, start with empty list
+            if (!digits.isEmpty()) {
+                ensureSearchIndexes();
+                return inListOrder(phoneIndex.findContaining(digits));
+            }
+
+            return scanStore(slot -> contacts.getPhoneNumber(slot).contains(searchTerm));
+        } finally {
+            metrics.record(Operation.SEARCH_BY_PHONE, System.nanoTime() - start);
         }
+    }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(FILE_NAME))) {
-            contacts = (ArrayList<Contact>) ois.readObject();
-            nextId = ois.readInt();
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Error loading contacts from file: " + e.getMessage());
-            System.err.println("Starting with empty contact list.");
-            contacts = new ArrayList<>();
-            nextId = 1;
+    /**
+     * Searches for contacts whose phone number starts with the given digits
+     * 
+     * @param prefix Leading digits, formatting characters are ignored
+     * @return List of matching contacts
+     * @throws IllegalArgumentException if the prefix contains no digits
+     */
+    public List<Contact> searchByPhonePrefix(String prefix) {
+        long start = System.nanoTime();
+        try {
+            String digits = requireDigits(prefix);
+            metrics.recordPhoneSearch(!concurrent);
+            if (concurrent) {
+                return scanSnapshot(contact -> PhoneIndex.normalize(contact.getPhoneNumber()).startsWith(digits));
+            }
+            ensureSearchIndexes();
+            return inListOrder(phoneIndex.findByPrefix(digits));
+        } finally {
+            metrics.record(Operation.SEARCH_BY_PHONE, System.nanoTime() - start);
         }
     }
 
     /**
-     * Returns the total number of contacts
+     * Searches for contacts whose phone number ends with the given digits,
+     * e.g. the last four digits
      * 
-     * @return Number of contacts
+     * @param suffix Trailing digits, formatting characters are ignored
+     * @return List of matching contacts
+     * @throws IllegalArgumentException if the suffix contains no digits
      */
-    public int getContactCount() {
-        return contacts.size();
+    public List<Contact> searchByPhoneSuffix(String suffix) {
+        long start = System.nanoTime();
+        try {
+            String digits = requireDigits(suffix);
+            metrics.recordPhoneSearch(!concurrent);
+            if (concurrent) {
+                return scanSnapshot(contact -> PhoneIndex.normalize(contact.getPhoneNumber()).endsWith(digits));
+            }
+            ensureSearchIndexes();
+            return inListOrder(phoneIndex.findBySuffix(digits));
+        } finally {
+            metrics.record(Operation.SEARCH_BY_PHONE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Searches for contacts by address (case-insensitive, partial match).
+     * Addresses are not indexed, so every contact is checked, in parallel on
+     * large lists.
+     * 
+     * @param address Part of an address, e.g. a street or city
+     * @return List of matching contacts
+     */
+    public List<Contact> searchByAddress(String address) {
+        long start = System.nanoTime();
+        try {
+            String searchTerm = address.toLowerCase().trim();
+            if (concurrent) {
+                return scanSnapshot(contact -> contact.getAddress().toLowerCase().contains(searchTerm));
+            }
+            return scanStore(slot -> contacts.getAddress(slot).toLowerCase().contains(searchTerm));
+        } finally {
+            metrics.record(Operation.SEARCH_BY_ADDRESS, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Looks up a contact by ID. In concurrent mode the lookup reads a
+     * concurrent map that writers keep in step with the snapshot, without
+     * locking.
+     * 
+     * @param id Contact ID
+     * @return Contact, or null if no contact has the ID
+     */
+    public Contact getContact(int id) {
+        long start = System.nanoTime();
+        try {
+            if (concurrent) {
+                Contact contact = contactsById.get(id);
+                metrics.recordIdLookup(contact != null);
+                return contact;
+            }
+            int slot = slotOf(id);
+            metrics.recordIdLookup(slot != IntSlotIndex.NOT_FOUND);
+            return slot == IntSlotIndex.NOT_FOUND ? null : contacts.get(slot);
+        } finally {
+            metrics.record(Operation.GET_BY_ID, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Looks up the contacts with an email address, ignoring case. Answered
+     * from a hash index unless the duplicate policy is ALLOW, in which case
+     * every contact is checked. In concurrent mode the indexed lookup takes the
+     * read lock, because the index is maintained by writers, so it waits for a
+     * write in progress.
+     * 
+     * @param email Email address
+     * @return Contacts with the address in list order; more than one only if
+     *         duplicates are allowed or flagged
+     */
+    public List<Contact> findByEmail(String email) {
+        long start = System.nanoTime();
+        String key = emailKey(email);
+        try {
+            if (duplicatePolicy == DuplicatePolicy.ALLOW) {
+                if (concurrent) {
+                    return scanSnapshot(contact -> emailKey(contact.getEmail()).equals(key));
+                }
+                return scanStore(slot -> emailKey(contacts.getEmail(slot)).equals(key));
+            }
+
+            if (concurrent) {
+                indexReadLock.lock();
+            }
+            try {
+                ensureSearchIndexes();
+                return inListOrder(emailIndex.get(key));
+            } finally {
+                if (concurrent) {
+                    indexReadLock.unlock();
+                }
+            }
+        } finally {
+            metrics.record(Operation.FIND_BY_EMAIL, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Groups all contacts that share an email address or phone number,
+     * directly or through other contacts, in one pass over the list. Emails
+     * are compared ignoring case and phone numbers by their digits. Works
+     * under every duplicate policy.
+     * 
+     * @return Clusters of two or more contacts, ordered by their first member
+     */
+    public List<DuplicateCluster> findDuplicateClusters() {
+        long start = System.nanoTime();
+        try {
+            List<Contact> all = concurrent ? snapshot.toList() : contacts.toList();
+            int[] parent = new int[all.size()];
+            for (int i = 0; i < parent.length; i++) {
+                parent[i] = i;
+            }
+
+            // Link every contact to the first contact with the same key
+            Map<String, Integer> firstByEmail = new HashMap<>();
+            Map<String, Integer> firstByPhone = new HashMap<>();
+            Set<String> sharedEmails = new LinkedHashSet<>();
+            Set<String> sharedPhones = new LinkedHashSet<>();
+            for (int i = 0; i < parent.length; i++) {
+                Contact contact = all.get(i);
+                String email = emailKey(contact.getEmail());
+                Integer first = email.isEmpty() ? null : firstByEmail.putIfAbsent(email, i);
+                if (first != null) {
+                    union(parent, first, i);
+                    sharedEmails.add(email);
+                }
+                String digits = PhoneIndex.normalize(contact.getPhoneNumber());
+                first = digits.isEmpty() ? null : firstByPhone.putIfAbsent(digits, i);
+                if (first != null) {
+                    union(parent, first, i);
+                    sharedPhones.add(digits);
+                }
+            }
+
+            int[] size = new int[parent.length];
+            for (int i = 0; i < parent.length; i++) {
+                size[find(parent, i)]++;
+            }
+            Map<Integer, List<Contact>> members = new LinkedHashMap<>();
+            for (int i = 0; i < parent.length; i++) {
+                int root = find(parent, i);
+                if (size[root] > 1) {
+                    members.computeIfAbsent(root, ignored -> new ArrayList<>(size[root])).add(all.get(i));
+                }
+            }
+            Map<Integer, List<String>> emailsByRoot = new HashMap<>();
+            for (String email : sharedEmails) {
+                emailsByRoot.computeIfAbsent(find(parent, firstByEmail.get(email)), ignored -> new ArrayList<>())
+                        .add(email);
+            }
+            Map<Integer, List<String>> phonesByRoot = new HashMap<>();
+            for (String digits : sharedPhones) {
+                phonesByRoot.computeIfAbsent(find(parent, firstByPhone.get(digits)), ignored -> new ArrayList<>())
+                        .add(digits);
+            }
+
+            List<DuplicateCluster> clusters = new ArrayList<>();
+            for (Map.Entry<Integer, List<Contact>> entry : members.entrySet()) {
+                clusters.add(new DuplicateCluster(entry.getValue(),
+                        emailsByRoot.getOrDefault(entry.getKey(), Collections.emptyList()),
+                        phonesByRoot.getOrDefault(entry.getKey(), Collections.emptyList())));
+            }
+            return clusters;
+        } finally {
+            metrics.record(Operation.FIND_DUPLICATES, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Finds the representative of an element of a union-find forest,
+     * halving the path on the way
+     */
+    private static int find(int[] parent, int element) {
+        while (parent[element] != element) {
+            parent[element] = parent[parent[element]];
+            element = parent[element];
+        }
+        return element;
+    }
+
+    /**
+     * Merges the sets of two elements, keeping the smaller representative so
+     * a cluster is keyed by its first member
+     */
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Returns all contacts
+     * 
+     * @return List of all contacts
+     */
+    public List<Contact> getAllContacts() {
+        long start = System.nanoTime();
+        try {
+            if (concurrent) {
+                return snapshot.toList();
+            }
+
+            return contacts.toList();
+        } finally {
+            metrics.record(Operation.GET_ALL, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns one page of the list returned by {@link #getAllContacts()},
+     * without copying or, in fast-start mode, decoding the rest of it
+     * 
+     * @param offset Number of contacts to skip
+     * @param limit  Maximum number of contacts to return
+     * @return Contacts of the page, empty past the end of the list
+     * @throws IllegalArgumentException if offset or limit is negative
+     */
+    public List<Contact> getContactsPage(int offset, int limit) {
+        long start = System.nanoTime();
+        try {
+            if (offset < 0 || limit < 0) {
+                throw new IllegalArgumentException("Page offset and size must not be negative.");
+            }
+            if (concurrent) {
+                return snapshot.page(offset, limit);
+            }
+
+            List<Contact> page = new ArrayList<>(Math.max(0, Math.min(limit, liveCount - offset)));
+            // Without tombstones the offset is the slot to start at
+            int slot = liveCount == contacts.size() ? offset : 0;
+            int skip = liveCount == contacts.size() ? 0 : offset;
+            for (; slot < contacts.size() && page.size() < limit; slot++) {
+                if (!contacts.isLive(slot)) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    page.add(contacts.get(slot));
+                }
+            }
+            return page;
+        } finally {
+            metrics.record(Operation.GET_PAGE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Streams every contact to a channel as CSV or NDJSON, in list order,
+     * without copying the list; the output can be read back with
+     * {@link #importContacts}. Records are encoded straight into pooled
+     * direct buffers, so heap use stays flat however many contacts there are.
+     * In concurrent mode the export reads one snapshot, so it is consistent
+     * and never blocks writers; otherwise it must not overlap with writes.
+     * Fields are read from the store one at a time, which keeps a fast-start
+     * store from caching every contact it exports.
+     * 
+     * @param channel Blocking channel to write to, left open
+     * @param format  CSV or NDJSON
+     * @param gzip    true to compress the output with gzip
+     * @return Number of contacts written
+     * @throws IOException if writing to the channel fails
+     */
+    public long exportContacts(WritableByteChannel channel, ExportFormat format, boolean gzip) throws IOException {
+        long start = System.nanoTime();
+        try (ContactExporter exporter = new ContactExporter(channel, format, gzip)) {
+            if (concurrent) {
+                ContactSnapshot view = snapshot;
+                for (int slot = 0; slot < view.slotCount(); slot++) {
+                    Contact contact = view.get(slot);
+                    if (contact != null) {
+                        exporter.write(contact);
+                    }
+                }
+            } else {
+                ContactStore store = contacts;
+                for (int slot = 0; slot < store.size(); slot++) {
+                    if (store.isLive(slot)) {
+                        exporter.write(store.getId(slot), store.getName(slot), store.getPhoneNumber(slot),
+                                store.getEmail(slot), store.getAddress(slot));
+                    }
+                }
+            }
+            exporter.finish();
+            return exporter.getCount();
+        } finally {
+            metrics.record(Operation.EXPORT, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs a query that combines conditions on any fields, with optional
+     * sorting and paging. The query planner answers the condition from the
+     * most selective search index that applies, intersecting the candidates
+     * of further indexed conditions while that pays off, and checks only those
+     * candidates against the whole condition. Without a selective index every
+     * contact is scanned, in parallel on large lists. In concurrent mode the
+     * planning takes the read lock, because the indexes are maintained by
+     * writers, so it waits for a write in progress; scans read the current
+     * snapshot without locking.
+     * 
+     * @param query Condition, order and window of the results
+     * @return Matching contacts, in list order unless a sort field is given
+     */
+    public List<Contact> query(ContactQuery query) {
+        long start = System.nanoTime();
+        try {
+            QueryPlanner planner = newQueryPlanner();
+            List<Contact> matches = planQuery(query, planner);
+            if (matches == null) {
+                int wanted = query.getSortKey() == null ? query.window() : Integer.MAX_VALUE;
+                matches = scanQuery(query.getWhere(), wanted);
+            }
+            return window(matches, query);
+        } finally {
+            metrics.record(Operation.QUERY, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Describes how {@link #query(ContactQuery)} would answer a query: which
+     * indexes it reads, how many candidates they return, and whether it scans
+     * instead. The indexes are consulted, but no contact is checked.
+     * 
+     * @param query Query to plan
+     * @return One planning step per line
+     */
+    public String explain(ContactQuery query) {
+        QueryPlanner planner = newQueryPlanner();
+        List<Contact> candidates = planQuery(query, planner);
+        if (candidates == null) {
+            int slots = concurrent ? snapshot.slotCount() : contacts.size();
+            int wanted = query.getSortKey() == null ? query.window() : Integer.MAX_VALUE;
+            planner.note("scan " + slots + " slots" + (queryScansInParallel(wanted) ? " in parallel" : ""));
+        } else {
+            planner.note("check " + candidates.size() + " contacts against " + query.getWhere());
+        }
+        if (query.getSortKey() != null) {
+            planner.note("sort by " + query.getSortKey() + (query.isDescending() ? " descending" : ""));
+        }
+        if (query.getOffset() > 0 || query.getLimit() != Integer.MAX_VALUE) {
+            planner.note("return " + (query.getLimit() == Integer.MAX_VALUE ? "all" : "up to " + query.getLimit())
+                    + " from offset " + query.getOffset());
+        }
+        return planner.describe();
+    }
+
+    /**
+     * Creates a planner over the current search indexes
+     */
+    private QueryPlanner newQueryPlanner() {
+        return new QueryPlanner(nameIndex, namePrefixIndex, phoneIndex, domainIndex,
+                duplicatePolicy == DuplicatePolicy.ALLOW ? null : emailIndex, liveCount);
+    }
+
+    /**
+     * Resolves the candidates of a query's condition from the indexes
+     * 
+     * @return Candidates in list order, not yet checked against the
+     *         condition, or null if the planner chose to scan
+     */
+    private List<Contact> planQuery(ContactQuery query, QueryPlanner planner) {
+        if (concurrent) {
+            indexReadLock.lock();
+        }
+        try {
+            ensureSearchIndexes();
+            int[] ids = planner.plan(query.getWhere());
+            return ids == null ? null : inListOrder(ids);
+        } finally {
+            if (concurrent) {
+                indexReadLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Checks candidates against a query and applies its order and window
+     */
+    private List<Contact> window(List<Contact> candidates, ContactQuery query) {
+        Criterion where = query.getWhere();
+        Comparator<Contact> order = query.order();
+        int window = query.window();
+        List<Contact> matches = new ArrayList<>();
+        for (Contact contact : candidates) {
+            if (order == null && matches.size() >= window) {
+                break;
+            }
+            if (where.test(contact)) {
+                matches.add(contact);
+            }
+        }
+
+        if (order != null) {
+            if (window <= TOP_K_SORT_LIMIT && window < matches.size() / 4) {
+                matches = smallest(matches, order, window);
+            } else {
+                matches.sort(order); // Stable, so ties keep list order
+            }
+        }
+        int from = Math.min(query.getOffset(), matches.size());
+        int to = Math.min(window, matches.size());
+        return new ArrayList<>(matches.subList(from, to));
+    }
+
+    /**
+     * Returns the first k contacts of an order without sorting the whole
+     * list, using a bounded heap. Ties keep list order.
+     */
+    private static List<Contact> smallest(List<Contact> contacts, Comparator<Contact> order, int k) {
+        // Heap of list positions, largest first, so the root is the one to evict
+        Comparator<Integer> byOrder = (a, b) -> {
+            int compared = order.compare(contacts.get(a), contacts.get(b));
+            return compared != 0 ? compared : Integer.compare(a, b);
+        };
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1, byOrder.reversed());
+        for (int i = 0; i < contacts.size(); i++) {
+            if (heap.size() < k) {
+                heap.add(i);
+            } else if (k > 0 && byOrder.compare(i, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        Integer[] positions = heap.toArray(new Integer[0]);
+        Arrays.sort(positions, byOrder);
+        List<Contact> first = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            first.add(contacts.get(position));
+        }
+        return first;
+    }
+
+    /**
+     * Scans every live contact for a query's condition
+     * 
+     * @param where  Condition
+     * @param wanted Number of matches after which the scan may stop
+     * @return Matching contacts in list order
+     */
+    private List<Contact> scanQuery(Criterion where, int wanted) {
+        if (queryScansInParallel(wanted)) {
+            return concurrent ? scanSnapshot(where::test) : scanStore(slot -> where.test(contacts.get(slot)));
+        }
+
+        ContactSnapshot view = concurrent ? snapshot : null;
+        int slots = concurrent ? view.slotCount() : contacts.size();
+        IntFunction<Contact> read = concurrent ? view::get : contacts::get;
+        List<Contact> matches = new ArrayList<>();
+        for (int slot = 0; slot < slots && matches.size() < wanted; slot++) {
+            Contact contact = read.apply(slot);
+            if (contact != null && where.test(contact)) {
+                matches.add(contact);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns whether a query scan is split across threads. A bounded window
+     * is scanned sequentially so it can stop early, and fast-start stores
+     * cache whole contacts as they are decoded, so those are only read from
+     * one thread.
+     */
+    private boolean queryScansInParallel(int wanted) {
+        int slots = concurrent ? snapshot.slotCount() : contacts.size();
+        return wanted == Integer.MAX_VALUE && scanner.isParallel(slots)
+                && (concurrent || !(contacts instanceof LazyContactStore));
+    }
+
+    /**
+     * Scans the current snapshot, in parallel on large lists
+     * 
+     * @param filter Condition on a contact
+     * @return Matching contacts in list order
+     */
+    private List<Contact> scanSnapshot(Predicate<Contact> filter) {
+        ContactSnapshot view = snapshot;
+        int[] slots = scanner.scan(view.slotCount(), slot -> {
+            Contact contact = view.get(slot);
+            return contact != null && filter.test(contact);
+        });
+        List<Contact> results = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            results.add(view.get(slot));
+        }
+        return results;
+    }
+
+    /**
+     * Scans the live slots of the store, in parallel on large lists. Tests
+     * that read single fields work on every store, because field reads do not
+     * cache; the matching contacts are then read on the calling thread.
+     * 
+     * @param test Condition on a live slot
+     * @return Matching contacts in list order
+     */
+    private List<Contact> scanStore(IntPredicate test) {
+        ContactStore store = contacts;
+        int[] slots = scanner.scan(store.size(), slot -> store.isLive(slot) && test.test(slot));
+        List<Contact> results = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            results.add(store.get(slot));
+        }
+        return results;
+    }
+
+    /**
+     * Normalizes a phone query to its digits
+     * 
+     * @param phoneNumber Phone query
+     * @return Digits of the query
+     * @throws IllegalArgumentException if the query contains no digits
+     */
+    private String requireDigits(String phoneNumber) {
+        String digits = PhoneIndex.normalize(phoneNumber);
+        if (digits.isEmpty()) {
+            throw new IllegalArgumentException("Phone search must contain at least one digit.");
+        }
+        return digits;
+    }
+
+    /**
+     * Resolves IDs to contacts, ordered by list position so results come back
+     * in the same order as a full scan would produce
+     * 
+     * @param ids Contact IDs
+     * @return Contacts in list order
+     */
+    private List<Contact> inListOrder(int[] ids) {
+        int[] slots = new int[ids.length];
+        int count = 0;
+        for (int id : ids) {
+            int slot = slotOf(id);
+            if (slot != IntSlotIndex.NOT_FOUND) {
+                slots[count++] = slot;
+            }
+        }
+        Arrays.sort(slots, 0, count);
+
+        List<Contact> ordered = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ordered.add(contacts.get(slots[i]));
+        }
+        return ordered;
+    }
+
+    /**
+     * Adds a contact's fields to the search indexes
+     * 
+     * @param contact Contact to index
+     */
+    private void indexFields(Contact contact) {
+        if (!searchIndexed) {
+            return;
+        }
+        nameIndex.add(contact.getId(), contact.getName().toLowerCase());
+        for (String term : nameTerms(contact.getName())) {
+            fuzzyNameIndex.add(contact.getId(), term);
+            namePrefixIndex.add(contact.getId(), term);
+        }
+        phoneIndex.add(contact.getId(), contact.getPhoneNumber());
+        indexDomain(contact.getId(), contact.getEmail());
+        if (duplicatePolicy != DuplicatePolicy.ALLOW) {
+            indexKeys(contact.getId(), contact.getPhoneNumber(), contact.getEmail());
+        }
+    }
+
+    /**
+     * Removes a contact's current fields from the search indexes. Must be
+     * called before the fields are changed.
+     * 
+     * @param contact Contact to unindex
+     */
+    private void unindexFields(Contact contact) {
+        if (!searchIndexed) {
+            return;
+        }
+        nameIndex.remove(contact.getId(), contact.getName().toLowerCase());
+        for (String term : nameTerms(contact.getName())) {
+            fuzzyNameIndex.remove(contact.getId(), term);
+            namePrefixIndex.remove(contact.getId(), term);
+        }
+        phoneIndex.remove(contact.getId());
+        String domain = emailDomain(contact.getEmail());
+        if (!domain.isEmpty()) {
+            domainIndex.remove(contact.getId(), domain);
+        }
+        if (duplicatePolicy != DuplicatePolicy.ALLOW) {
+            emailIndex.remove(contact.getId(), emailKey(contact.getEmail()));
+            phoneNumberIndex.remove(contact.getId(), PhoneIndex.normalize(contact.getPhoneNumber()));
+        }
+    }
+
+    /**
+     * Adds a contact's email and phone number to the duplicate indexes
+     * 
+     * @param id          Contact ID
+     * @param phoneNumber Phone number as entered
+     * @param email       Email as entered
+     */
+    private void indexKeys(int id, String phoneNumber, String email) {
+        emailIndex.add(id, emailKey(email));
+        String digits = PhoneIndex.normalize(phoneNumber);
+        if (!digits.isEmpty()) {
+            phoneNumberIndex.add(id, digits);
+        }
+    }
+
+    /**
+     * Adds the domain of a contact's email to the domain index
+     * 
+     * @param id    Contact ID
+     * @param email Email as entered
+     */
+    private void indexDomain(int id, String email) {
+        String domain = emailDomain(email);
+        if (!domain.isEmpty()) {
+            domainIndex.add(id, domain);
+        }
+    }
+
+    /**
+     * Extracts the normalized domain of an email address
+     * 
+     * @param email Email as entered, or a bare domain
+     * @return Lowercased part after the last "@", empty if there is none
+     */
+    static String emailDomain(String email) {
+        String normalized = emailKey(email);
+        return normalized.substring(normalized.lastIndexOf('@') + 1);
+    }
+
+    /**
+     * Normalizes an email address for duplicate detection
+     * 
+     * @param email Email as entered
+     * @return Trimmed, lowercased email
+     */
+    static String emailKey(String email) {
+        return email.trim().toLowerCase();
+    }
+
+    /**
+     * Applies the duplicate policy to a contact about to be added or updated.
+     * Must be called under the write lock.
+     * 
+     * @param id          ID of the contact being updated, or NOT_FOUND for an add
+     * @param phoneNumber New phone number
+     * @param email       New email
+     * @throws IllegalArgumentException if the policy is REJECT and another
+     *                                  contact has the email or phone number
+     */
+    private void checkDuplicates(int id, String phoneNumber, String email) {
+        String conflict = findConflict(id, phoneNumber, email);
+        if (conflict == null) {
+            return;
+        }
+        metrics.recordDuplicate(duplicatePolicy == DuplicatePolicy.REJECT);
+        if (duplicatePolicy == DuplicatePolicy.REJECT) {
+            throw new IllegalArgumentException(conflict);
+        }
+    }
+
+    /**
+     * Looks up another contact with the same email or phone number
+     * 
+     * @return Description of the conflict, or null if there is none or
+     *         duplicates are allowed
+     */
+    private String findConflict(int id, String phoneNumber, String email) {
+        if (duplicatePolicy == DuplicatePolicy.ALLOW) {
+            return null;
+        }
+        ensureSearchIndexes();
+
+        int other = emailIndex.findOther(emailKey(email), id);
+        if (other != IntSlotIndex.NOT_FOUND) {
+            return "Email " + email.trim() + " is already used by contact ID " + other + ".";
+        }
+        String digits = PhoneIndex.normalize(phoneNumber);
+        other = digits.isEmpty() ? IntSlotIndex.NOT_FOUND : phoneNumberIndex.findOther(digits, id);
+        if (other != IntSlotIndex.NOT_FOUND) {
+            return "Phone number " + phoneNumber.trim() + " is already used by contact ID " + other + ".";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the terms a name is indexed under for fuzzy and prefix search:
+     * the whole lowercased name and each of its words
+     * 
+     * @param name Contact name
+     * @return Distinct terms
+     */
+    static Set<String> nameTerms(String name) {
+        String normalized = name.toLowerCase().trim();
+        Set<String> terms = new LinkedHashSet<>();
+        terms.add(normalized);
+        for (String word : normalized.split("\\s+")) {
+            if (!word.isEmpty()) {
+                terms.add(word);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Builds the search indexes if fast-start mode has deferred them. Only the
+     * names, phone numbers and emails are decoded, not whole contacts.
+     */
+    private void ensureSearchIndexes() {
+        if (!searchIndexed) {
+            rebuildSearchIndexes();
+        }
+    }
+
+    /**
+     * Rebuilds the search indexes from the current list
+     */
+    private void rebuildSearchIndexes() {
+        searchIndexed = true;
+        nameIndex.clear();
+        fuzzyNameIndex.clear();
+        namePrefixIndex.clear();
+        phoneIndex.clear();
+        domainIndex.clear();
+        emailIndex.clear();
+        phoneNumberIndex.clear();
+        for (int slot = 0; slot < contacts.size(); slot++) {
+            if (contacts.isLive(slot)) {
+                int id = contacts.getId(slot);
+                String name = contacts.getName(slot);
+                nameIndex.add(id, name.toLowerCase());
+                for (String term : nameTerms(name)) {
+                    fuzzyNameIndex.add(id, term);
+                    namePrefixIndex.add(id, term);
+                }
+                String phoneNumber = contacts.getPhoneNumber(slot);
+                String email = contacts.getEmail(slot);
+                phoneIndex.add(id, phoneNumber);
+                indexDomain(id, email);
+                if (duplicatePolicy != DuplicatePolicy.ALLOW) {
+                    indexKeys(id, phoneNumber, email);
+                }
+            }
+        }
+        if (concurrent) {
+            phoneIndex.flush();
+        }
+    }
+
+    /**
+     * Appends a contact to the list and indexes its slot
+     * 
+     * @param contact Contact to insert
+     */
+    private void insert(Contact contact) {
+        idIndex.put(contact.getId(), contacts.add(contact));
+        indexFields(contact);
+        liveCount++;
+        if (concurrent) {
+            phoneIndex.flush();
+            snapshot = snapshot.withAppended(contact);
+            contactsById.put(contact.getId(), contact);
+        }
+    }
+
+    /**
+     * Appends several contacts and publishes the read snapshot once
+     * 
+     * @param added Contacts to insert
+     */
+    private void insertAll(List<Contact> added) {
+        for (Contact contact : added) {
+            idIndex.put(contact.getId(), contacts.add(contact));
+            indexFields(contact);
+            liveCount++;
+        }
+        if (concurrent) {
+            phoneIndex.flush();
+            snapshot = snapshot.withAppendedAll(added);
+            for (Contact contact : added) {
+                contactsById.put(contact.getId(), contact);
+            }
+        }
+    }
+
+    /**
+     * Replaces the contact in a slot with a new instance and reindexes it.
+     * The ID map is up to the caller; for a swapped update it already holds
+     * this image or a newer one.
+     * 
+     * @param slot    Slot to replace
+     * @param updated New image of the contact, with the same ID
+     */
+    private void replaceSlot(int slot, Contact updated) {
+        if (searchIndexed) {
+            unindexFields(contacts.get(slot));
+        }
+        contacts.set(slot, updated);
+        indexFields(updated);
+        if (concurrent) {
+            phoneIndex.flush();
+            snapshot = snapshot.withSlot(slot, updated);
+        }
+    }
+
+    /**
+     * Tombstones a slot instead of shifting the rest of the list. The list is
+     * compacted once tombstones outnumber live contacts, so the cost stays
+     * amortized O(1).
+     * 
+     * @param slot Slot of the contact to remove
+     */
+    private void removeSlot(int slot) {
+        int id = contacts.getId(slot);
+        if (searchIndexed) {
+            unindexFields(contacts.get(slot));
+        }
+        contacts.remove(slot);
+        idIndex.remove(id);
+        liveCount--;
+        if (concurrent) {
+            snapshot = snapshot.withSlot(slot, null);
+            contactsById.remove(id);
+        }
+
+        int tombstones = contacts.size() - liveCount;
+        if (tombstones >= MIN_COMPACTION_TOMBSTONES && tombstones > liveCount) {
+            compactSlots();
+        }
+    }
+
+    /**
+     * Drops tombstoned slots and re-indexes the remaining contacts, keeping
+     * their order
+     */
+    private void compactSlots() {
+        if (contacts.size() == liveCount) {
+            return;
+        }
+
+        contacts.compact();
+        rebuildIdIndex();
+        publishSnapshot();
+    }
+
+    /**
+     * Republishes the whole list as the read snapshot in concurrent mode.
+     * The ID map is left alone, because swapped updates may be ahead of the
+     * list.
+     */
+    private void publishSnapshot() {
+        if (concurrent) {
+            snapshot = ContactSnapshot.of(contacts);
+        }
+    }
+
+    /**
+     * Returns the slot of a contact, building the ID index first if
+     * fast-start mode has deferred it
+     * 
+     * @param id Contact ID
+     * @return Slot, or {@link IntSlotIndex#NOT_FOUND}
+     */
+    private int slotOf(int id) {
+        if (!idIndexed) {
+            rebuildIdIndex();
+        }
+        return idIndex.get(id);
+    }
+
+    /**
+     * Rebuilds the ID index from the current list
+     */
+    private void rebuildIdIndex() {
+        idIndexed = true;
+        idIndex.clear();
+        liveCount = 0;
+        for (int slot = 0; slot < contacts.size(); slot++) {
+            if (contacts.isLive(slot)) {
+                idIndex.put(contacts.getId(slot), slot);
+                liveCount++;
+            }
+        }
+    }
+
+    /**
+     * Validates contact details
+     * 
+     * @param name        Contact name
+     * @param phoneNumber Phone number
+     * @param email       Email address
+     * @param address     Address
+     * @throws IllegalArgumentException listing every invalid field
+     */
+    private void validateContactDetails(String name, String phoneNumber, String email, String address) {
+        validator.validateOrThrow(name, phoneNumber, email, address);
+    }
+
+    /**
+     * Replays the journal segments the loaded snapshot does not cover.
+     * Records are applied as upserts so that replaying a record already
+     * contained in the snapshot is harmless. Every replayed change is
+     * retained in the change feed under its journal position, so
+     * subscribers can resume across a restart. Records lost to a torn or
+     * corrupt write are reported by the journal's error handler.
+     * 
+     * @param fromSegment First segment not covered by the snapshot
+     * @throws UncheckedIOException if the journal cannot be read or opened;
+     *                              the service cannot persist anything then
+     */
+    private void replayJournal(long fromSegment) {
+        changes.startAfter(ContactJournal.position(fromSegment, 0));
+        try {
+            journal.replay(new ContactJournal.ReplayHandler() {
+                @Override
+                public void onAdd(long position, Contact contact) {
+                    putReplayed(position, contact);
+                }
+
+                @Override
+                public void onUpdate(long position, Contact contact) {
+                    putReplayed(position, contact);
+                }
+
+                @Override
+                public void onDelete(long position, int id) {
+                    int slot = slotOf(id);
+                    if (slot != IntSlotIndex.NOT_FOUND) {
+                        Contact previous = contacts.get(slot);
+                        removeSlot(slot);
+                        changes.publish(position, ChangeEvent.Type.DELETE, previous, null);
+                    }
+                }
+            }, fromSegment);
+        } catch (IOException e) {
+            reportPersistenceError("Error opening journal: " + e.getMessage());
+            throw new UncheckedIOException("Cannot open the journal: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Applies a replayed add or update record and retains it in the change
+     * feed, as an ADD if the contact did not exist yet
+     * 
+     * @param position Journal position of the record
+     * @param replayed Full image of the contact
+     */
+    private void putReplayed(long position, Contact replayed) {
+        int slot = slotOf(replayed.getId());
+        Contact previous = slot == IntSlotIndex.NOT_FOUND ? null : contacts.get(slot);
+        if (slot == IntSlotIndex.NOT_FOUND) {
+            insert(replayed);
+        } else {
+            replaceSlot(slot, replayed);
+            if (concurrent) {
+                contactsById.put(replayed.getId(), replayed);
+            }
+        }
+        changes.publish(position, previous == null ? ChangeEvent.Type.ADD : ChangeEvent.Type.UPDATE, previous,
+                replayed);
+        if (replayed.getId() >= nextId.get()) {
+            nextId.set(replayed.getId() + 1);
+        }
+    }
+
+    /**
+     * Starts a background checkpoint once the current journal segment reaches
+     * the configured record count or size. By default a checkpoint is taken
+     * once the segment holds more records than there are contacts, which
+     * keeps the amortized cost per mutation constant. Must be called with the
+     * write lock held.
+     */
+    private void checkpointIfNeeded() {
+        int recordLimit = checkpointMutations > 0 ? checkpointMutations
+                : Math.max(MIN_CHECKPOINT_RECORDS, liveCount);
+        if (journal.getRecordCount() >= recordLimit || journal.getSegmentBytes() >= checkpointLogBytes) {
+            startCheckpoint();
+        }
+    }
+
+    /**
+     * Takes a checkpoint if anything was written since the last one, run by
+     * the interval trigger
+     */
+    private void checkpointOnSchedule() {
+        writeLock.lock();
+        try {
+            if (journal.getRecordCount() > 0) {
+                startCheckpoint();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes a checkpoint in the background: a snapshot of every contact and
+     * nextId, after which the journal segments it covers are discarded.
+     * Writers keep going while the snapshot is written.
+     * 
+     * @return Completes once the snapshot has been written and swapped in
+     */
+    public CompletableFuture<Void> checkpoint() {
+        writeLock.lock();
+        try {
+            return startCheckpoint();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Captures the contact set and rotates the journal under the write lock,
+     * then hands the snapshot write to the checkpoint thread. While one
+     * checkpoint is in flight further triggers return it instead of starting
+     * another.
+     * 
+     * @return Future of the running checkpoint
+     */
+    private CompletableFuture<Void> startCheckpoint() {
+        CompletableFuture<Void> running = checkpointInFlight;
+        if (running != null && !running.isDone()) {
+            return running;
+        }
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (checkpointer.isShutdown()) {
+            done.completeExceptionally(new IOException("Service is closed."));
+            return done;
+        }
+
+        // The new segment starts exactly where the captured state ends
+        Supplier<List<Contact>> captured = captureContacts();
+        int capturedNextId = nextId.get();
+        long segment = journal.rotate();
+        checkpointInFlight = done;
+
+        checkpointer.execute(() -> {
+            try {
+                saveContactsToFile(captured.get(), capturedNextId, segment);
+                journal.discardSegmentsBefore(segment);
+                done.complete(null);
+            } catch (IOException e) {
+                reportPersistenceError("Error saving contacts to file: " + e.getMessage());
+                done.completeExceptionally(e);
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Captures the current contact set for a checkpoint. In concurrent mode
+     * this is the published snapshot; otherwise the store is copied, which
+     * only copies references to its chunks, so the write lock is held for a
+     * moment whatever the number of contacts.
+     * 
+     * @return Supplies the live contacts of the captured state
+     */
+    private Supplier<List<Contact>> captureContacts() {
+        if (concurrent) {
+            ContactSnapshot captured = snapshot;
+            return captured::toList;
+        }
+
+        ContactStore captured = contacts.copy();
+        return captured::toList;
+    }
+
+    /**
+     * Saves contacts to file in the binary snapshot format, replacing the
+     * previous snapshot atomically
+     * 
+     * @param live           Contacts to save
+     * @param savedNextId    Next ID to hand out
+     * @param journalSegment First journal segment not covered by the snapshot
+     * @throws IOException if the snapshot could not be written
+     */
+    private void saveContactsToFile(List<Contact> live, int savedNextId, long journalSegment) throws IOException {
+        long start = System.nanoTime();
+        try {
+            ContactFileFormat.write(new File(fileName), live, savedNextId, journalSegment, metrics, lazyLoad);
+        } finally {
+            metrics.record(Operation.SNAPSHOT, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Blocks until a journal write has reached the requested durability. The
+     * journal reports every failed write through its error handler, which
+     * prints it and counts it in the metrics, before failing the future.
+     * 
+     * @param written    Future of the journal write
+     * @param durability Durability the caller asked for
+     * @throws UncheckedIOException if the write failed
+     */
+    private static void awaitPersisted(CompletableFuture<?> written, Durability durability) {
+        if (durability == Durability.NONE) {
+            return;
+        }
+        try {
+            written.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            IOException failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            throw new UncheckedIOException("The change was applied but could not be persisted: "
+                    + failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Prints a persistence failure and counts it in the metrics
+     * 
+     * @param message Description of the failure
+     */
+    private void reportPersistenceError(String message) {
+        System.err.println(message);
+        metrics.recordPersistenceError(message);
+    }
+
+    /**
+     * Loads contacts from file. A file still in the old serialization format is
+     * read once and immediately rewritten in the binary format. A file that
+     * cannot be read is moved aside rather than overwritten by later
+     * checkpoints.
+     * 
+     * @return First journal segment not covered by the loaded snapshot
+     */
+    private long loadContactsFromFile() {
+        File file = new File(fileName);
+
+        if (!file.exists()) {
+            return 0; // No file exists yet, start with empty list
+        }
+
+        try {
+            ContactFileFormat.Snapshot stored;
+            boolean legacy = ContactFileFormat.isLegacy(file);
+            if (lazyLoad && !legacy) {
+                SnapshotIndex index = SnapshotIndex.open(file);
+                contacts = new LazyContactStore(index);
+                nextId.set(index.getNextId());
+                liveCount = index.size(); // A snapshot holds no deleted records
+                idIndexed = false;
+                searchIndexed = false;
+                return index.getJournalSegment();
+            }
+            if (legacy) {
+                stored = ContactFileFormat.readLegacy(file);
+            } else {
+                stored = ContactFileFormat.read(file);
+            }
+
+            contacts = storeType.create(stored.getContacts());
+            nextId.set(stored.getNextId());
+            rebuildIdIndex();
+            rebuildSearchIndexes();
+            publishSnapshot();
+            if (concurrent) {
+                for (Contact contact : stored.getContacts()) {
+                    contactsById.put(contact.getId(), contact);
+                }
+            }
+
+            if (legacy) {
+                saveContactsToFile(stored.getContacts(), nextId.get(), stored.getJournalSegment());
+            }
+            return stored.getJournalSegment();
+        } catch (IOException e) {
+            reportPersistenceError("Error loading contacts from file: " + e.getMessage());
+            File unreadable = new File(fileName + ".corrupt");
+            if (file.renameTo(unreadable)) {
+                System.err.println("Starting with empty contact list; the unreadable file was kept as "
+                        + unreadable.getName() + ".");
+            } else {
+                System.err.println("Starting with empty contact list.");
+            }
+            contacts = storeType.create(Collections.<Contact>emptyList());
+            nextId.set(1);
+            rebuildIdIndex();
+            rebuildSearchIndexes();
+            publishSnapshot();
+            return 0;
+        }
+    }
+
+    /**
+     * Returns whether the service may be shared between threads
+     * 
+     * @return true in concurrent mode
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Returns the total number of contacts
+     * 
+     * @return Number of contacts
+     */
+    public int getContactCount() {
+        if (concurrent) {
+            return snapshot.size();
+        }
+        return liveCount;
+    }
+
+    /**
+     * Estimates the memory held by the stored contacts, not counting the
+     * search indexes
+     * 
+     * @return Size in bytes
+     */
+    public long getStoreMemoryBytes() {
+        writeLock.lock();
+        try {
+            return contacts.memoryBytes();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the latency, persistence and index metrics of this service. The
+     * same object is registered as an MBean with the platform MBean server.
+     * 
+     * @return Service metrics
+     */
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the stream of committed adds, updates and deletes, for
+     * downstream caches and indexes that follow the contact list
+     * incrementally instead of reloading it. Changes replayed from the
+     * journal at startup are retained under their original sequence numbers;
+     * contacts loaded from the snapshot are not published.
+     * 
+     * @return Change feed of this service
+     */
+    public ChangeFeed getChangeFeed() {
+        return changes;
+    }
+
+    /**
+     * Waits for a running checkpoint, writes and syncs every pending journal
+     * record, stops the background threads and unregisters the metrics
+     * MBean. Change subscribers complete once they have received every
+     * change. The service must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            checkpointer.shutdown();
+        } finally {
+            writeLock.unlock();
+        }
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (checkpointer.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        writeLock.lock();
+        try {
+            if (concurrent) {
+                applySwaps();
+                swapApplier.shutdown();
+            }
+            journal.close();
+        } catch (IOException e) {
+            reportPersistenceError("Error closing journal: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+            metrics.unregister();
+            changes.close();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
\ No newline at end of file
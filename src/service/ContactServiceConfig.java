@@ -0,0 +1,336 @@
+package service;
+
+import storage.Durability;
+import store.StoreType;
+import validation.ContactValidator;
+
+/**
+ * ContactServiceConfig holds the settings a ContactService is created with.
+ * Every setter returns the config itself so settings can be chained.
+ */
+public class ContactServiceConfig {
+    private String dataFile = "contacts.dat";
+    private String journalFile = "contacts.log";
+    private boolean concurrent = false;
+    private ContactValidator validator = ContactValidator.standard();
+    private Durability durability = Durability.WRITE;
+    private long groupCommitWindowMicros = 500;
+    private int checkpointMutations = 0;
+    private long checkpointLogBytes = 64L * 1024 * 1024;
+    private long checkpointIntervalSeconds = 300;
+    private StoreType storeType = StoreType.OBJECTS;
+    private boolean lazyLoad = false;
+    private DuplicatePolicy duplicatePolicy = DuplicatePolicy.ALLOW;
+    private int retainedChanges = 10_000;
+    private int parallelScanThreshold = 10_000;
+
+    /**
+     * Returns the snapshot file
+     *
+     * @return Snapshot file name
+     */
+    public String getDataFile() {
+        return dataFile;
+    }
+
+    /**
+     * Sets the snapshot file
+     *
+     * @param dataFile Snapshot file name
+     * @return This config
+     */
+    public ContactServiceConfig setDataFile(String dataFile) {
+        this.dataFile = dataFile;
+        return this;
+    }
+
+    /**
+     * Returns the journal file
+     *
+     * @return Journal file name
+     */
+    public String getJournalFile() {
+        return journalFile;
+    }
+
+    /**
+     * Sets the journal file
+     *
+     * @param journalFile Journal file name
+     * @return This config
+     */
+    public ContactServiceConfig setJournalFile(String journalFile) {
+        this.journalFile = journalFile;
+        return this;
+    }
+
+    /**
+     * Returns whether the service is shared between threads
+     *
+     * @return true for concurrent mode
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Enables concurrent mode. Lookups by ID, listing and the scanning
+     * searches then run lock-free against an immutable snapshot that is
+     * republished after every write; name searches scan it instead of using
+     * the trigram index. Lookups that need a search index (email, email
+     * domain, suggestions, fuzzy names and query planning) take a read lock
+     * and wait for a write in progress.
+     *
+     * @param concurrent true to share the service between threads
+     * @return This config
+     */
+    public ContactServiceConfig setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+        return this;
+    }
+
+    /**
+     * Returns the validator applied to added, updated and imported contacts
+     *
+     * @return Contact validator
+     */
+    public ContactValidator getValidator() {
+        return validator;
+    }
+
+    /**
+     * Sets the validator applied to added, updated and imported contacts,
+     * e.g. one with length limits or allowed country codes
+     *
+     * @param validator Contact validator
+     * @return This config
+     */
+    public ContactServiceConfig setValidator(ContactValidator validator) {
+        this.validator = validator;
+        return this;
+    }
+
+    /**
+     * Returns how far add, update, delete and import wait for persistence
+     *
+     * @return Default durability
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Sets how far add, update, delete and import wait for persistence. The
+     * *Async methods of the service take a durability per call instead.
+     *
+     * @param durability NONE, WRITE or FSYNC
+     * @return This config
+     */
+    public ContactServiceConfig setDurability(Durability durability) {
+        this.durability = durability;
+        return this;
+    }
+
+    /**
+     * Returns how long the journal writer collects records before syncing
+     *
+     * @return Group commit window in microseconds
+     */
+    public long getGroupCommitWindowMicros() {
+        return groupCommitWindowMicros;
+    }
+
+    /**
+     * Sets how long the journal writer waits for more records before it
+     * commits a batch that has to be synced. A longer window lets more
+     * FSYNC writers share one sync at the cost of latency.
+     *
+     * @param groupCommitWindowMicros Window in microseconds, 0 for none
+     * @return This config
+     */
+    public ContactServiceConfig setGroupCommitWindowMicros(long groupCommitWindowMicros) {
+        this.groupCommitWindowMicros = groupCommitWindowMicros;
+        return this;
+    }
+
+    /**
+     * Returns after how many journal records a checkpoint is taken
+     *
+     * @return Record count, 0 for the default rule
+     */
+    public int getCheckpointMutations() {
+        return checkpointMutations;
+    }
+
+    /**
+     * Sets after how many journal records a checkpoint is taken. By default a
+     * checkpoint is taken once the journal holds more records than there are
+     * contacts, and at least 1000.
+     *
+     * @param checkpointMutations Record count, 0 for the default rule
+     * @return This config
+     */
+    public ContactServiceConfig setCheckpointMutations(int checkpointMutations) {
+        this.checkpointMutations = checkpointMutations;
+        return this;
+    }
+
+    /**
+     * Returns the journal size at which a checkpoint is taken
+     *
+     * @return Size in bytes
+     */
+    public long getCheckpointLogBytes() {
+        return checkpointLogBytes;
+    }
+
+    /**
+     * Sets the journal size at which a checkpoint is taken
+     *
+     * @param checkpointLogBytes Size in bytes
+     * @return This config
+     */
+    public ContactServiceConfig setCheckpointLogBytes(long checkpointLogBytes) {
+        this.checkpointLogBytes = checkpointLogBytes;
+        return this;
+    }
+
+    /**
+     * Returns how often a checkpoint is taken if anything changed
+     *
+     * @return Interval in seconds, 0 if disabled
+     */
+    public long getCheckpointIntervalSeconds() {
+        return checkpointIntervalSeconds;
+    }
+
+    /**
+     * Sets how often a checkpoint is taken if anything changed since the last
+     * one, regardless of the journal size
+     *
+     * @param checkpointIntervalSeconds Interval in seconds, 0 to disable
+     * @return This config
+     */
+    public ContactServiceConfig setCheckpointIntervalSeconds(long checkpointIntervalSeconds) {
+        this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+        return this;
+    }
+
+    /**
+     * Returns how contacts are laid out in memory
+     *
+     * @return Store type
+     */
+    public StoreType getStoreType() {
+        return storeType;
+    }
+
+    /**
+     * Sets how contacts are laid out in memory. The columnar types keep the
+     * text of all contacts in a few large UTF-8 buffers, which takes a
+     * fraction of the heap of OBJECTS for large contact lists but builds a
+     * Contact object on every read. They cannot be combined with concurrent
+     * mode.
+     *
+     * @param storeType OBJECTS, COLUMNAR or COLUMNAR_OFF_HEAP
+     * @return This config
+     */
+    public ContactServiceConfig setStoreType(StoreType storeType) {
+        this.storeType = storeType;
+        return this;
+    }
+
+    /**
+     * Returns whether contacts are loaded on first access
+     *
+     * @return true for fast-start mode
+     */
+    public boolean isLazyLoad() {
+        return lazyLoad;
+    }
+
+    /**
+     * Enables fast-start mode. Only the ID index of the snapshot is loaded at
+     * construction; each contact is decoded from the mapped snapshot the first
+     * time it is read, and the search indexes are built by the first search.
+     * Cannot be combined with concurrent mode or a columnar store type.
+     *
+     * @param lazyLoad true to load contacts on first access
+     * @return This config
+     */
+    public ContactServiceConfig setLazyLoad(boolean lazyLoad) {
+        this.lazyLoad = lazyLoad;
+        return this;
+    }
+
+    /**
+     * Returns how contacts with the email or phone number of another contact
+     * are treated
+     *
+     * @return Duplicate policy
+     */
+    public DuplicatePolicy getDuplicatePolicy() {
+        return duplicatePolicy;
+    }
+
+    /**
+     * Sets how contacts with the email or phone number of another contact are
+     * treated. FLAG and REJECT keep hash indexes on both fields, so the check
+     * and {@link ContactService#findByEmail(String)} take constant time, at
+     * the cost of holding every email and phone number in the indexes.
+     *
+     * @param duplicatePolicy ALLOW, FLAG or REJECT
+     * @return This config
+     */
+    public ContactServiceConfig setDuplicatePolicy(DuplicatePolicy duplicatePolicy) {
+        this.duplicatePolicy = duplicatePolicy;
+        return this;
+    }
+
+    /**
+     * Returns how many recent change events are kept for resuming
+     * subscriptions
+     *
+     * @return Event count
+     */
+    public int getRetainedChanges() {
+        return retainedChanges;
+    }
+
+    /**
+     * Sets how many recent change events the {@link ChangeFeed} keeps, which
+     * is how far a subscriber can fall behind, or resume from, before it has
+     * to reload the contacts
+     *
+     * @param retainedChanges Event count, at least 1
+     * @return This config
+     */
+    public ContactServiceConfig setRetainedChanges(int retainedChanges) {
+        this.retainedChanges = retainedChanges;
+        return this;
+    }
+
+    /**
+     * Returns the smallest number of slots scanned in parallel
+     *
+     * @return Slot count
+     */
+    public int getParallelScanThreshold() {
+        return parallelScanThreshold;
+    }
+
+    /**
+     * Sets the smallest list that searches without an index scan on the
+     * common fork-join pool instead of the calling thread. Results are in the
+     * same order either way.
+     *
+     * @param parallelScanThreshold Slot count, at least 1;
+     *                              Integer.MAX_VALUE to always scan
+     *                              sequentially
+     * @return This config
+     */
+    public ContactServiceConfig setParallelScanThreshold(int parallelScanThreshold) {
+        this.parallelScanThreshold = parallelScanThreshold;
+        return this;
+    }
+}
@@ -0,0 +1,197 @@
+package service;
+
+import model.Contact;
+import store.ContactStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ContactSnapshot is an immutable, slot-for-slot copy of the contact list
+ * that readers can use without taking any lock.
+ *
+ * Slots are split into fixed-size chunks. A change copies only the chunk it
+ * touches plus the small array of chunk references, and shares every other
+ * chunk with the previous snapshot, so publishing a new snapshot after each
+ * write stays cheap even for large lists. Deleted slots hold null, exactly as
+ * in the service's list.
+ */
+final class ContactSnapshot {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    static final ContactSnapshot EMPTY = new ContactSnapshot(new Contact[0][], 0, 0);
+
+    private final Contact[][] chunks;
+    private final int slotCount;
+    private final int size;
+
+    private ContactSnapshot(Contact[][] chunks, int slotCount, int size) {
+        this.chunks = chunks;
+        this.slotCount = slotCount;
+        this.size = size;
+    }
+
+    /**
+     * Creates a snapshot of a contact store
+     *
+     * @param slots Contact store
+     * @return Snapshot with the same slots
+     */
+    static ContactSnapshot of(ContactStore slots) {
+        int slotCount = slots.size();
+        Contact[][] chunks = new Contact[(slotCount + CHUNK_MASK) >>> CHUNK_BITS][];
+        int size = 0;
+
+        for (int c = 0; c < chunks.length; c++) {
+            int from = c << CHUNK_BITS;
+            Contact[] chunk = new Contact[Math.min(CHUNK_SIZE, slotCount - from)];
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = slots.get(from + i);
+                if (chunk[i] != null) {
+                    size++;
+                }
+            }
+            chunks[c] = chunk;
+        }
+
+        return new ContactSnapshot(chunks, slotCount, size);
+    }
+
+    /**
+     * Returns the contact in a slot, or null if the slot was deleted
+     */
+    Contact get(int slot) {
+        return chunks[slot >>> CHUNK_BITS][slot & CHUNK_MASK];
+    }
+
+    /**
+     * Returns the number of slots, including deleted ones
+     */
+    int slotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Returns the number of live contacts
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns a snapshot with one more slot at the end
+     */
+    ContactSnapshot withAppended(Contact contact) {
+        int chunkIndex = slotCount >>> CHUNK_BITS;
+        Contact[][] newChunks;
+        Contact[] chunk;
+
+        if (chunkIndex == chunks.length) {
+            newChunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunk = new Contact[1];
+        } else {
+            newChunks = chunks.clone();
+            chunk = Arrays.copyOf(chunks[chunkIndex], chunks[chunkIndex].length + 1);
+        }
+
+        chunk[slotCount & CHUNK_MASK] = contact;
+        newChunks[chunkIndex] = chunk;
+        return new ContactSnapshot(newChunks, slotCount + 1, contact == null ? size : size + 1);
+    }
+
+    /**
+     * Returns a snapshot with several slots appended at the end, copying each
+     * touched chunk only once
+     */
+    ContactSnapshot withAppendedAll(List<Contact> appended) {
+        if (appended.isEmpty()) {
+            return this;
+        }
+
+        int newSlotCount = slotCount + appended.size();
+        Contact[][] newChunks = Arrays.copyOf(chunks, (newSlotCount + CHUNK_MASK) >>> CHUNK_BITS);
+        int newSize = size;
+        int slot = slotCount;
+
+        for (Contact contact : appended) {
+            int chunkIndex = slot >>> CHUNK_BITS;
+            int offset = slot & CHUNK_MASK;
+            int chunkLength = Math.min(CHUNK_SIZE, newSlotCount - (chunkIndex << CHUNK_BITS));
+            Contact[] chunk = newChunks[chunkIndex];
+            if (chunk == null) {
+                chunk = new Contact[chunkLength];
+                newChunks[chunkIndex] = chunk;
+            } else if (chunk.length != chunkLength) {
+                // First slot written into an existing, partially filled chunk
+                chunk = Arrays.copyOf(chunk, chunkLength);
+                newChunks[chunkIndex] = chunk;
+            }
+            chunk[offset] = contact;
+            if (contact != null) {
+                newSize++;
+            }
+            slot++;
+        }
+
+        return new ContactSnapshot(newChunks, newSlotCount, newSize);
+    }
+
+    /**
+     * Returns a snapshot with one slot replaced; null marks it deleted
+     */
+    ContactSnapshot withSlot(int slot, Contact contact) {
+        Contact previous = get(slot);
+        Contact[][] newChunks = chunks.clone();
+        Contact[] chunk = chunks[slot >>> CHUNK_BITS].clone();
+        chunk[slot & CHUNK_MASK] = contact;
+        newChunks[slot >>> CHUNK_BITS] = chunk;
+
+        int newSize = size;
+        if (previous == null && contact != null) {
+            newSize++;
+        } else if (previous != null && contact == null) {
+            newSize--;
+        }
+        return new ContactSnapshot(newChunks, slotCount, newSize);
+    }
+
+    /**
+     * Returns up to limit live contacts after skipping offset of them
+     */
+    List<Contact> page(int offset, int limit) {
+        List<Contact> page = new ArrayList<>(Math.max(0, Math.min(limit, size - offset)));
+        // Without deleted slots the offset is the slot to start at
+        int slot = size == slotCount ? offset : 0;
+        int skip = size == slotCount ? 0 : offset;
+        for (; slot < slotCount && page.size() < limit; slot++) {
+            Contact contact = get(slot);
+            if (contact == null) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+            } else {
+                page.add(contact);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Returns all live contacts in slot order
+     */
+    List<Contact> toList() {
+        List<Contact> all = new ArrayList<>(size);
+        for (Contact[] chunk : chunks) {
+            for (Contact contact : chunk) {
+                if (contact != null) {
+                    all.add(contact);
+                }
+            }
+        }
+        return all;
+    }
+}
@@ -0,0 +1,491 @@
+package service;
+
+import index.PhoneIndex;
+import index.TrigramIndex;
+import model.Contact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Criterion is a condition on the fields of a contact, used by
+ * {@link ContactService#query(ContactQuery)}. Conditions are created with the
+ * static factories and combined with {@link #and}, {@link #or},
+ * {@link #allOf}, {@link #anyOf} and {@link #not}. Text is compared ignoring
+ * case and surrounding whitespace, phone numbers by their digits only.
+ *
+ * Conditions a search index can answer estimate how many contacts they
+ * match and list candidate IDs, which the query planner uses to pick the
+ * most selective index. Every candidate is still checked against the whole
+ * condition, so candidates only have to be a superset of the matches.
+ */
+public abstract class Criterion {
+    static final int NOT_INDEXED = -1;
+
+    private static final Criterion ALL = new Criterion() {
+        @Override
+        boolean test(Contact contact) {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "all";
+        }
+    };
+
+    Criterion() {
+    }
+
+    /**
+     * Checks a contact against the condition
+     */
+    abstract boolean test(Contact contact);
+
+    /**
+     * Estimates how many candidates the indexes would return
+     *
+     * @param planner Indexes of the service
+     * @param cap     Count beyond which the exact estimate does not matter
+     * @return Estimated candidate count, or NOT_INDEXED if no index applies
+     */
+    int estimate(QueryPlanner planner, int cap) {
+        return NOT_INDEXED;
+    }
+
+    /**
+     * Lists the candidate IDs from the indexes. Only called when
+     * {@link #estimate} did not return NOT_INDEXED.
+     *
+     * @param planner Indexes of the service
+     * @return Candidate IDs in ascending order
+     */
+    int[] candidates(QueryPlanner planner) {
+        throw new IllegalStateException(this + " cannot be answered from an index.");
+    }
+
+    /**
+     * Combines this condition with another one that must hold as well
+     *
+     * @param other Second condition
+     * @return Condition matching contacts that satisfy both
+     */
+    public Criterion and(Criterion other) {
+        return allOf(this, other);
+    }
+
+    /**
+     * Combines this condition with an alternative
+     *
+     * @param other Second condition
+     * @return Condition matching contacts that satisfy either
+     */
+    public Criterion or(Criterion other) {
+        return anyOf(this, other);
+    }
+
+    /**
+     * Matches every contact
+     *
+     * @return Condition that always holds
+     */
+    public static Criterion all() {
+        return ALL;
+    }
+
+    /**
+     * Matches contacts whose name contains some text
+     *
+     * @param text Part of a name
+     * @return Condition on the name
+     */
+    public static Criterion nameContains(String text) {
+        return new FieldMatch(Kind.NAME_CONTAINS, text.toLowerCase().trim());
+    }
+
+    /**
+     * Matches contacts whose whole name or one of its words starts with a
+     * prefix, like {@link ContactService#suggestByName(String, int)}
+     *
+     * @param prefix Beginning of a name or word
+     * @return Condition on the name
+     */
+    public static Criterion nameStartsWith(String prefix) {
+        return new FieldMatch(Kind.NAME_STARTS_WITH, prefix.toLowerCase().trim());
+    }
+
+    /**
+     * Matches contacts whose phone number contains some digits
+     *
+     * @param digits Digits, formatting characters are ignored
+     * @return Condition on the phone number
+     * @throws IllegalArgumentException if there are no digits
+     */
+    public static Criterion phoneContains(String digits) {
+        return new FieldMatch(Kind.PHONE_CONTAINS, requireDigits(digits));
+    }
+
+    /**
+     * Matches contacts whose phone number starts with some digits
+     *
+     * @param digits Leading digits, formatting characters are ignored
+     * @return Condition on the phone number
+     * @throws IllegalArgumentException if there are no digits
+     */
+    public static Criterion phoneStartsWith(String digits) {
+        return new FieldMatch(Kind.PHONE_STARTS_WITH, requireDigits(digits));
+    }
+
+    /**
+     * Matches contacts whose phone number ends with some digits
+     *
+     * @param digits Trailing digits, formatting characters are ignored
+     * @return Condition on the phone number
+     * @throws IllegalArgumentException if there are no digits
+     */
+    public static Criterion phoneEndsWith(String digits) {
+        return new FieldMatch(Kind.PHONE_ENDS_WITH, requireDigits(digits));
+    }
+
+    /**
+     * Matches contacts with an email address
+     *
+     * @param email Whole email address
+     * @return Condition on the email
+     */
+    public static Criterion emailIs(String email) {
+        return new FieldMatch(Kind.EMAIL_IS, ContactService.emailKey(email));
+    }
+
+    /**
+     * Matches contacts whose email is at a domain
+     *
+     * @param domain Domain such as "example.com"; a leading "@" is accepted
+     * @return Condition on the email
+     */
+    public static Criterion emailDomain(String domain) {
+        return new FieldMatch(Kind.EMAIL_DOMAIN, ContactService.emailDomain(domain));
+    }
+
+    /**
+     * Matches contacts whose email contains some text
+     *
+     * @param text Part of an email address
+     * @return Condition on the email
+     */
+    public static Criterion emailContains(String text) {
+        return new FieldMatch(Kind.EMAIL_CONTAINS, text.toLowerCase().trim());
+    }
+
+    /**
+     * Matches contacts whose address contains some text
+     *
+     * @param text Part of an address
+     * @return Condition on the address
+     */
+    public static Criterion addressContains(String text) {
+        return new FieldMatch(Kind.ADDRESS_CONTAINS, text.toLowerCase().trim());
+    }
+
+    /**
+     * Matches contacts accepted by an arbitrary predicate. Such a condition
+     * is never answered from an index.
+     *
+     * @param description Text shown in query plans
+     * @param predicate   Check to apply; may be called from several threads
+     * @return Condition wrapping the predicate
+     */
+    public static Criterion matching(String description, Predicate<Contact> predicate) {
+        Objects.requireNonNull(predicate, "predicate");
+        return new Criterion() {
+            @Override
+            boolean test(Contact contact) {
+                return predicate.test(contact);
+            }
+
+            @Override
+            public String toString() {
+                return description;
+            }
+        };
+    }
+
+    /**
+     * Matches contacts that satisfy every condition
+     *
+     * @param criteria Conditions, none for all contacts
+     * @return Conjunction of the conditions
+     */
+    public static Criterion allOf(Criterion... criteria) {
+        return criteria.length == 1 ? criteria[0] : new AllOf(flatten(criteria, AllOf.class));
+    }
+
+    /**
+     * Matches contacts that satisfy at least one condition
+     *
+     * @param criteria Conditions, none for no contacts
+     * @return Disjunction of the conditions
+     */
+    public static Criterion anyOf(Criterion... criteria) {
+        return criteria.length == 1 ? criteria[0] : new AnyOf(flatten(criteria, AnyOf.class));
+    }
+
+    /**
+     * Matches contacts that do not satisfy a condition
+     *
+     * @param criterion Condition to negate
+     * @return Negation of the condition
+     */
+    public static Criterion not(Criterion criterion) {
+        Objects.requireNonNull(criterion, "criterion");
+        return new Criterion() {
+            @Override
+            boolean test(Contact contact) {
+                return !criterion.test(contact);
+            }
+
+            @Override
+            public String toString() {
+                return "not " + criterion;
+            }
+        };
+    }
+
+    private static String requireDigits(String phoneNumber) {
+        String digits = PhoneIndex.normalize(phoneNumber);
+        if (digits.isEmpty()) {
+            throw new IllegalArgumentException("Phone search must contain at least one digit.");
+        }
+        return digits;
+    }
+
+    /**
+     * Copies the conditions, inlining nested conjunctions or disjunctions of
+     * the same kind so (a and b) and c is planned like a and b and c
+     */
+    private static Criterion[] flatten(Criterion[] criteria, Class<? extends Composite> kind) {
+        List<Criterion> flat = new ArrayList<>(criteria.length);
+        for (Criterion criterion : criteria) {
+            Objects.requireNonNull(criterion, "criterion");
+            if (criterion.getClass() == kind) {
+                flat.addAll(Arrays.asList(((Composite) criterion).parts));
+            } else {
+                flat.add(criterion);
+            }
+        }
+        return flat.toArray(new Criterion[0]);
+    }
+
+    private enum Kind {
+        NAME_CONTAINS("name contains"),
+        NAME_STARTS_WITH("name starts with"),
+        PHONE_CONTAINS("phone contains"),
+        PHONE_STARTS_WITH("phone starts with"),
+        PHONE_ENDS_WITH("phone ends with"),
+        EMAIL_IS("email is"),
+        EMAIL_DOMAIN("email domain is"),
+        EMAIL_CONTAINS("email contains"),
+        ADDRESS_CONTAINS("address contains");
+
+        final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Condition on a single field against a normalized value
+     */
+    private static final class FieldMatch extends Criterion {
+        private final Kind kind;
+        private final String value;
+
+        FieldMatch(Kind kind, String value) {
+            this.kind = kind;
+            this.value = value;
+        }
+
+        @Override
+        boolean test(Contact contact) {
+            switch (kind) {
+                case NAME_CONTAINS:
+                    return contact.getName().toLowerCase().contains(value);
+                case NAME_STARTS_WITH:
+                    for (String term : ContactService.nameTerms(contact.getName())) {
+                        if (term.startsWith(value)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                case PHONE_CONTAINS:
+                    return PhoneIndex.normalize(contact.getPhoneNumber()).contains(value);
+                case PHONE_STARTS_WITH:
+                    return PhoneIndex.normalize(contact.getPhoneNumber()).startsWith(value);
+                case PHONE_ENDS_WITH:
+                    return PhoneIndex.normalize(contact.getPhoneNumber()).endsWith(value);
+                case EMAIL_IS:
+                    return ContactService.emailKey(contact.getEmail()).equals(value);
+                case EMAIL_DOMAIN:
+                    return ContactService.emailDomain(contact.getEmail()).equals(value);
+                case EMAIL_CONTAINS:
+                    return contact.getEmail().toLowerCase().contains(value);
+                default:
+                    return contact.getAddress().toLowerCase().contains(value);
+            }
+        }
+
+        @Override
+        int estimate(QueryPlanner planner, int cap) {
+            switch (kind) {
+                case NAME_CONTAINS:
+                    return TrigramIndex.canSearch(value) ? planner.names.estimate(value) : NOT_INDEXED;
+                case NAME_STARTS_WITH:
+                    return value.isEmpty() ? NOT_INDEXED : planner.namePrefixes.countIds(value, cap);
+                case PHONE_CONTAINS:
+                case PHONE_STARTS_WITH:
+                case PHONE_ENDS_WITH:
+                    return planner.phones.estimate(value);
+                case EMAIL_IS:
+                    return planner.emails == null ? NOT_INDEXED : planner.emails.get(value).length;
+                case EMAIL_DOMAIN:
+                    return value.isEmpty() ? NOT_INDEXED : planner.domains.count(value);
+                default:
+                    return NOT_INDEXED;
+            }
+        }
+
+        @Override
+        int[] candidates(QueryPlanner planner) {
+            switch (kind) {
+                case NAME_CONTAINS:
+                    return planner.names.candidates(value);
+                case NAME_STARTS_WITH:
+                    return planner.namePrefixIds(value);
+                case PHONE_CONTAINS:
+                    return planner.phones.findContaining(value);
+                case PHONE_STARTS_WITH:
+                    return planner.phones.findByPrefix(value);
+                case PHONE_ENDS_WITH:
+                    return planner.phones.findBySuffix(value);
+                case EMAIL_IS:
+                    return planner.emails.get(value);
+                case EMAIL_DOMAIN:
+                    return planner.domains.get(value);
+                default:
+                    return super.candidates(planner);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return kind.label + " \"" + value + "\"";
+        }
+    }
+
+    /**
+     * Condition made of several others
+     */
+    private abstract static class Composite extends Criterion {
+        final Criterion[] parts;
+
+        Composite(Criterion[] parts) {
+            this.parts = parts;
+        }
+
+        String join(String operator) {
+            StringBuilder text = new StringBuilder("(");
+            for (int i = 0; i < parts.length; i++) {
+                text.append(i == 0 ? "" : operator).append(parts[i]);
+            }
+            return text.append(')').toString();
+        }
+    }
+
+    /**
+     * Conjunction: planned from its most selective indexed part, intersected
+     * with further indexed parts while they are small enough to pay off
+     */
+    private static final class AllOf extends Composite {
+        AllOf(Criterion[] parts) {
+            super(parts);
+        }
+
+        @Override
+        boolean test(Contact contact) {
+            for (Criterion part : parts) {
+                if (!part.test(contact)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int estimate(QueryPlanner planner, int cap) {
+            int best = NOT_INDEXED;
+            for (Criterion part : parts) {
+                int estimate = part.estimate(planner, best == NOT_INDEXED ? cap : best);
+                if (estimate != NOT_INDEXED && (best == NOT_INDEXED || estimate < best)) {
+                    best = estimate;
+                }
+            }
+            return best;
+        }
+
+        @Override
+        int[] candidates(QueryPlanner planner) {
+            return planner.allOf(parts);
+        }
+
+        @Override
+        public String toString() {
+            return join(" and ");
+        }
+    }
+
+    /**
+     * Disjunction: indexed only if every part is, as the union of the parts
+     */
+    private static final class AnyOf extends Composite {
+        AnyOf(Criterion[] parts) {
+            super(parts);
+        }
+
+        @Override
+        boolean test(Contact contact) {
+            for (Criterion part : parts) {
+                if (part.test(contact)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int estimate(QueryPlanner planner, int cap) {
+            long total = 0;
+            for (Criterion part : parts) {
+                int estimate = part.estimate(planner, cap);
+                if (estimate == NOT_INDEXED) {
+                    return NOT_INDEXED;
+                }
+                total += estimate;
+            }
+            return (int) Math.min(total, cap);
+        }
+
+        @Override
+        int[] candidates(QueryPlanner planner) {
+            return planner.anyOf(parts);
+        }
+
+        @Override
+        public String toString() {
+            return join(" or ");
+        }
+    }
+}
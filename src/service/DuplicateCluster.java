@@ -0,0 +1,66 @@
+package service;
+
+import model.Contact;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * DuplicateCluster is a group of contacts that are linked, directly or
+ * through other members, by a shared email address or phone number. Emails
+ * are compared case-insensitively and phone numbers by their digits only.
+ */
+public class DuplicateCluster {
+    private final List<Contact> contacts;
+    private final List<String> sharedEmails;
+    private final List<String> sharedPhoneNumbers;
+
+    DuplicateCluster(List<Contact> contacts, List<String> sharedEmails, List<String> sharedPhoneNumbers) {
+        this.contacts = Collections.unmodifiableList(contacts);
+        this.sharedEmails = Collections.unmodifiableList(sharedEmails);
+        this.sharedPhoneNumbers = Collections.unmodifiableList(sharedPhoneNumbers);
+    }
+
+    /**
+     * Returns the members of the cluster
+     *
+     * @return Contacts in list order
+     */
+    public List<Contact> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * Returns the emails used by more than one member
+     *
+     * @return Lowercased email addresses
+     */
+    public List<String> getSharedEmails() {
+        return sharedEmails;
+    }
+
+    /**
+     * Returns the phone numbers used by more than one member
+     *
+     * @return Digits of the phone numbers
+     */
+    public List<String> getSharedPhoneNumbers() {
+        return sharedPhoneNumbers;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("IDs");
+        for (int i = 0; i < contacts.size(); i++) {
+            text.append(i == 0 ? " " : ", ").append(contacts.get(i).getId());
+        }
+        if (!sharedEmails.isEmpty()) {
+            text.append(" share email ").append(String.join(", ", sharedEmails));
+        }
+        if (!sharedPhoneNumbers.isEmpty()) {
+            text.append(sharedEmails.isEmpty() ? " share phone " : " and phone ")
+                    .append(String.join(", ", sharedPhoneNumbers));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,15 @@
+package service;
+
+/**
+ * What a ContactService does when an added or updated contact has the email
+ * address or phone number of another contact. Emails are compared
+ * case-insensitively and phone numbers by their digits only.
+ */
+public enum DuplicatePolicy {
+    /** Accept duplicates without checking for them */
+    ALLOW,
+    /** Accept duplicates but count them in the metrics */
+    FLAG,
+    /** Reject the contact with an IllegalArgumentException */
+    REJECT
+}
@@ -0,0 +1,87 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * ImportReport summarizes a bulk import: how many rows were imported and,
+ * for every rejected row, why it was rejected
+ */
+public class ImportReport {
+    private int importedCount;
+    private final List<RowError> errors;
+
+    /**
+     * A rejected row
+     */
+    public static class RowError {
+        private final int row;
+        private final String message;
+
+        public RowError(int row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Row " + row + ": " + message;
+        }
+    }
+
+    ImportReport() {
+        this.errors = new ArrayList<>();
+    }
+
+    void addImported(int count) {
+        importedCount += count;
+    }
+
+    void addError(int row, String message) {
+        errors.add(new RowError(row, message));
+    }
+
+    /**
+     * Returns the number of contacts that were imported
+     *
+     * @return Imported row count
+     */
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    /**
+     * Returns the number of rows that were rejected
+     *
+     * @return Rejected row count
+     */
+    public int getFailedCount() {
+        return errors.size();
+    }
+
+    /**
+     * Returns the rejected rows in row order
+     *
+     * @return Row errors
+     */
+    public List<RowError> getErrors() {
+        List<RowError> sorted = new ArrayList<>(errors);
+        sorted.sort(Comparator.comparingInt(RowError::getRow));
+        return Collections.unmodifiableList(sorted);
+    }
+
+    @Override
+    public String toString() {
+        return "Imported " + importedCount + " contact(s), rejected " + errors.size() + " row(s).";
+    }
+}
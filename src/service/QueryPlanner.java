@@ -0,0 +1,182 @@
+package service;
+
+import index.KeyIndex;
+import index.PhoneIndex;
+import index.PrefixIndex;
+import index.TrigramIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * QueryPlanner decides how one query is answered: from the candidate IDs of
+ * the most selective index, or by scanning every contact when no index
+ * applies or the best one would still return a large part of the list. It
+ * records its decisions for {@link ContactService#explain(ContactQuery)}.
+ *
+ * A planner is created per query and must be used under the same guard as
+ * the indexes it reads.
+ */
+final class QueryPlanner {
+    private static final int MIN_INTERSECT = 64; // Fewer candidates are checked directly
+    private static final int INTERSECT_RATIO = 16; // Larger lists cost more to fetch than to check
+
+    final TrigramIndex names;
+    final PrefixIndex namePrefixes;
+    final PhoneIndex phones;
+    final PrefixIndex domains;
+    final KeyIndex emails; // Null unless duplicates are indexed
+    private final int liveCount;
+    private final List<String> steps;
+
+    QueryPlanner(TrigramIndex names, PrefixIndex namePrefixes, PhoneIndex phones, PrefixIndex domains,
+            KeyIndex emails, int liveCount) {
+        this.names = names;
+        this.namePrefixes = namePrefixes;
+        this.phones = phones;
+        this.domains = domains;
+        this.emails = emails;
+        this.liveCount = liveCount;
+        this.steps = new ArrayList<>();
+    }
+
+    /**
+     * Plans a condition and fetches its candidates if an index pays off
+     *
+     * @param where Condition of the query
+     * @return Candidate IDs in ascending order, or null to scan instead
+     */
+    int[] plan(Criterion where) {
+        int estimate = where.estimate(this, liveCount);
+        if (estimate == Criterion.NOT_INDEXED) {
+            note("no index applies to " + where);
+            return null;
+        }
+        if (estimate > liveCount / 2) {
+            note("best index matches about " + estimate + " of " + liveCount + " contacts, scanning instead");
+            return null;
+        }
+        int noted = steps.size();
+        int[] ids = where.candidates(this);
+        if (steps.size() == noted) {
+            note("index " + where + ": " + ids.length + " candidates");
+        }
+        return ids;
+    }
+
+    /**
+     * Intersects the candidates of the indexed parts of a conjunction,
+     * starting from the most selective one. Further parts are only fetched
+     * while their estimate is within a small multiple of the candidates left;
+     * otherwise checking the candidates against them is cheaper.
+     */
+    int[] allOf(Criterion[] parts) {
+        int[] estimates = new int[parts.length];
+        Integer[] order = new Integer[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            estimates[i] = parts[i].estimate(this, liveCount);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(estimates[a], estimates[b]));
+
+        int[] result = null;
+        for (int i : order) {
+            if (estimates[i] == Criterion.NOT_INDEXED) {
+                continue;
+            }
+            if (result != null && (result.length <= MIN_INTERSECT
+                    || (long) estimates[i] > (long) result.length * INTERSECT_RATIO)) {
+                note("check " + parts[i] + " on the candidates");
+                continue;
+            }
+            int[] ids = parts[i].candidates(this);
+            note("index " + parts[i] + ": " + ids.length + " candidates");
+            result = result == null ? ids : intersect(result, ids);
+        }
+        return result;
+    }
+
+    /**
+     * Merges the candidates of every part of a disjunction
+     */
+    int[] anyOf(Criterion[] parts) {
+        int[] result = new int[0];
+        for (Criterion part : parts) {
+            int[] ids = part.candidates(this);
+            note("index " + part + ": " + ids.length + " candidates");
+            result = unite(result, ids);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the IDs of the names and words that start with a prefix
+     *
+     * @return Distinct IDs in ascending order
+     */
+    int[] namePrefixIds(String prefix) {
+        BitSet ids = new BitSet();
+        namePrefixes.forEachId(prefix, id -> {
+            ids.set(id);
+            return true;
+        });
+        return ids.stream().toArray();
+    }
+
+    /**
+     * Records a planning decision
+     */
+    void note(String step) {
+        steps.add(step);
+    }
+
+    /**
+     * Returns the recorded decisions
+     *
+     * @return One decision per line
+     */
+    String describe() {
+        return String.join("\n", steps);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int[] unite(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                next = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                next = b[j++];
+            } else {
+                next = a[i++];
+                j++;
+            }
+            out[n++] = next;
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
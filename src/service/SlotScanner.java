@@ -0,0 +1,132 @@
+package service;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+
+/**
+ * SlotScanner finds the slots of a contact list that pass a test. Lists of
+ * at least the threshold size are split into chunks that are tested on a
+ * {@link ForkJoinPool}; every chunk collects its matches in its own buffer,
+ * and the buffers are joined in chunk order at the end, so the result is the
+ * same as from a sequential loop. Smaller lists, and pools without spare
+ * threads, are scanned on the calling thread.
+ *
+ * The test runs concurrently on several threads and must only read.
+ */
+final class SlotScanner {
+    private static final int MIN_CHUNK = 2048; // Smaller chunks cost more to schedule than to scan
+    private static final int CHUNKS_PER_THREAD = 4; // Lets idle threads steal from slow chunks
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    /**
+     * Creates a scanner
+     *
+     * @param pool      Pool to run parallel scans on
+     * @param threshold Smallest slot count scanned in parallel,
+     *                  Integer.MAX_VALUE to always scan sequentially
+     */
+    SlotScanner(ForkJoinPool pool, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Parallel scan threshold must be positive.");
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Returns whether a scan over this many slots is split across threads
+     *
+     * @param slots Slot count
+     * @return true if the scan runs on the pool
+     */
+    boolean isParallel(int slots) {
+        return slots >= threshold && pool.getParallelism() > 1;
+    }
+
+    /**
+     * Tests every slot from 0 to slots - 1
+     *
+     * @param slots Slot count
+     * @param test  Slot test, must also reject deleted slots
+     * @return Matching slots in ascending order
+     */
+    int[] scan(int slots, IntPredicate test) {
+        if (!isParallel(slots)) {
+            return scanRange(0, slots, test);
+        }
+
+        int chunkSize = Math.max(MIN_CHUNK, slots / (pool.getParallelism() * CHUNKS_PER_THREAD) + 1);
+        int[][] buffers = new int[(slots + chunkSize - 1) / chunkSize][];
+        pool.invoke(new ScanTask(0, buffers.length, chunkSize, slots, test, buffers));
+
+        int total = 0;
+        for (int[] buffer : buffers) {
+            total += buffer.length;
+        }
+        int[] matches = new int[total];
+        int position = 0;
+        for (int[] buffer : buffers) {
+            System.arraycopy(buffer, 0, matches, position, buffer.length);
+            position += buffer.length;
+        }
+        return matches;
+    }
+
+    /**
+     * Tests a range of slots on the current thread
+     *
+     * @return Matching slots in ascending order
+     */
+    private static int[] scanRange(int from, int to, IntPredicate test) {
+        int[] matches = new int[16];
+        int count = 0;
+        for (int slot = from; slot < to; slot++) {
+            if (test.test(slot)) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = slot;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Scans a range of chunks, halving it until one chunk is left
+     */
+    private static final class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int firstChunk;
+        private final int endChunk;
+        private final int chunkSize;
+        private final int slots;
+        private final IntPredicate test;
+        private final int[][] buffers; // Matches of each chunk, filled in by the leaf tasks
+
+        ScanTask(int firstChunk, int endChunk, int chunkSize, int slots, IntPredicate test, int[][] buffers) {
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+            this.chunkSize = chunkSize;
+            this.slots = slots;
+            this.test = test;
+            this.buffers = buffers;
+        }
+
+        @Override
+        protected void compute() {
+            if (endChunk - firstChunk == 1) {
+                int from = firstChunk * chunkSize;
+                buffers[firstChunk] = scanRange(from, Math.min(slots, from + chunkSize), test);
+                return;
+            }
+            int middle = (firstChunk + endChunk) >>> 1;
+            invokeAll(new ScanTask(firstChunk, middle, chunkSize, slots, test, buffers),
+                    new ScanTask(middle, endChunk, chunkSize, slots, test, buffers));
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package storage;
+
+import model.Contact;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ContactFileFormat reads and writes the compact binary snapshot format of
+ * contacts.dat
+ *
+ * Layout (big-endian):
+ * header: [int magic "CMSF"][int version][int record count][int nextId]
+ * [long journal segment]
+ * record: [int id][long contact version] then name, phone, email and
+ * address, each as [int byte length][UTF-8 bytes]
+ *
+ * The journal segment is the first journal segment the snapshot does not
+ * cover; older segments may be discarded.
+ *
+ * A snapshot is written to a temporary file, forced to disk and then moved
+ * over the target atomically, so a crash mid-write never leaves a truncated
+ * snapshot behind. Snapshots are loaded through a memory-mapped FileChannel,
+ * either fully or record by record through a {@link SnapshotIndex}. Files
+ * written by the old Java serialization format are still readable through
+ * {@link #readLegacy(File)} so they can be migrated once.
+ */
+public final class ContactFileFormat {
+    public static final int MAGIC = 0x434D5346;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    public static final String TEMP_SUFFIX = ".tmp";
+
+    static final int FIELD_OFFSET = 12; // ID and contact version before the first field
+    private static final int MIN_RECORD_SIZE = FIELD_OFFSET + 16; // Plus four empty fields
+
+    private static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private ContactFileFormat() {
+    }
+
+    /**
+     * Contents of a snapshot file
+     */
+    public static class Snapshot {
+        private final ArrayList<Contact> contacts;
+        private final int nextId;
+        private final long journalSegment;
+
+        public Snapshot(ArrayList<Contact> contacts, int nextId, long journalSegment) {
+            this.contacts = contacts;
+            this.nextId = nextId;
+            this.journalSegment = journalSegment;
+        }
+
+        public ArrayList<Contact> getContacts() {
+            return contacts;
+        }
+
+        public int getNextId() {
+            return nextId;
+        }
+
+        public long getJournalSegment() {
+            return journalSegment;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the given contacts
+     *
+     * @param file     Target file
+     * @param contacts Contacts to write
+     * @param nextId   Next ID to hand out
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, List<Contact> contacts, int nextId) throws IOException {
+        write(file, contacts, nextId, 0, PersistenceListener.NONE);
+    }
+
+    /**
+     * Writes a snapshot of the given contacts, forces it to the storage device
+     * and atomically replaces the target with it, reporting the size and
+     * timings to a listener
+     *
+     * @param file           Target file
+     * @param contacts       Contacts to write
+     * @param nextId         Next ID to hand out
+     * @param journalSegment First journal segment not covered by the snapshot
+     * @param listener       Receives the bytes written and the fsync time
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, List<Contact> contacts, int nextId, long journalSegment,
+            PersistenceListener listener) throws IOException {
+        write(file, contacts, nextId, journalSegment, listener, false);
+    }
+
+    /**
+     * Writes a snapshot as above and, if requested, the {@link SnapshotIndex}
+     * of record offsets next to it
+     *
+     * @param file           Target file
+     * @param contacts       Contacts to write
+     * @param nextId         Next ID to hand out
+     * @param journalSegment First journal segment not covered by the snapshot
+     * @param listener       Receives the bytes written and the fsync time
+     * @param withIndex      true to also write the index file
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, List<Contact> contacts, int nextId, long journalSegment,
+            PersistenceListener listener, boolean withIndex) throws IOException {
+        long start = System.nanoTime();
+        int[] ids = withIndex ? new int[contacts.size()] : null;
+        int[] offsets = withIndex ? new int[contacts.size()] : null;
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        long size;
+        long syncNanos;
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(contacts.size()).putInt(nextId).putLong(journalSegment);
+
+            for (int i = 0; i < contacts.size(); i++) {
+                Contact contact = contacts.get(i);
+                ensureRemaining(channel, buffer, 12);
+                if (withIndex) {
+                    long offset = channel.position() + buffer.position();
+                    ids[i] = contact.getId();
+                    offsets[i] = (int) Math.min(offset, Integer.MAX_VALUE); // Larger files cannot be mapped
+                }
+                buffer.putInt(contact.getId()).putLong(contact.getVersion());
+                putString(channel, buffer, contact.getName());
+                putString(channel, buffer, contact.getPhoneNumber());
+                putString(channel, buffer, contact.getEmail());
+                putString(channel, buffer, contact.getAddress());
+            }
+
+            drain(channel, buffer);
+
+            long syncStart = System.nanoTime();
+            channel.force(true);
+            syncNanos = System.nanoTime() - syncStart;
+            size = channel.size();
+        }
+
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncNanos += syncDirectory(target.toAbsolutePath().getParent());
+        if (withIndex && size <= Integer.MAX_VALUE) {
+            SnapshotIndex.write(SnapshotIndex.indexFileOf(file), ids, offsets, nextId, journalSegment, size);
+        }
+        listener.onSync(syncNanos);
+        listener.onSnapshotWrite(size, System.nanoTime() - start);
+    }
+
+    /**
+     * Forces a directory entry change such as a rename to disk. Not every
+     * platform can open a directory for syncing; there the rename is left to
+     * the file system.
+     *
+     * @return Time spent syncing
+     */
+    private static long syncDirectory(Path directory) {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened for syncing on this platform
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Reads a snapshot through a memory-mapped channel
+     *
+     * @param file Snapshot file in the binary format
+     * @return Decoded snapshot
+     * @throws IOException if the file is not a valid snapshot
+     */
+    public static Snapshot read(File file) throws IOException {
+        MappedByteBuffer buffer = map(file);
+        Header header = readHeader(buffer);
+        ArrayList<Contact> contacts = new ArrayList<>(header.count);
+        FieldReader fields = new FieldReader(buffer);
+
+        try {
+            for (int i = 0; i < header.count; i++) {
+                int id = buffer.getInt();
+                long version = buffer.getLong();
+                contacts.add(new Contact(id, fields.next(), fields.next(), fields.next(), fields.next(), version));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Snapshot file is truncated or corrupt.", e);
+        }
+
+        return new Snapshot(contacts, header.nextId, header.journalSegment);
+    }
+
+    /**
+     * Maps a whole snapshot file read-only
+     *
+     * @param file Snapshot file
+     * @return Buffer positioned at the start of the file
+     * @throws IOException if the file cannot be mapped
+     */
+    static MappedByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot file is too large to map: " + size + " bytes.");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Header fields of a snapshot file
+     */
+    static class Header {
+        final int count;
+        final int nextId;
+        final long journalSegment;
+
+        Header(int count, int nextId, long journalSegment) {
+            this.count = count;
+            this.nextId = nextId;
+            this.journalSegment = journalSegment;
+        }
+    }
+
+    /**
+     * Reads and checks the header of a mapped snapshot, leaving the buffer
+     * positioned at the first record
+     *
+     * @param buffer Snapshot buffer positioned at the start of the file
+     * @return Header fields
+     * @throws IOException if the file is not a valid snapshot
+     */
+    static Header readHeader(ByteBuffer buffer) throws IOException {
+        long size = buffer.limit();
+        if (size < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a contact snapshot file.");
+        }
+
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+        if (size < HEADER_SIZE) {
+            throw new IOException("Snapshot file is truncated or corrupt.");
+        }
+
+        int count = buffer.getInt();
+        int nextId = buffer.getInt();
+        long journalSegment = buffer.getLong();
+        if (count < 0 || count > buffer.remaining() / MIN_RECORD_SIZE) {
+            throw new IOException("Snapshot file is truncated or corrupt.");
+        }
+        return new Header(count, nextId, journalSegment);
+    }
+
+    /**
+     * Checks whether a file was written by the old Java serialization format
+     *
+     * @param file File to inspect
+     * @return true if the file starts with the Java serialization stream magic
+     */
+    public static boolean isLegacy(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= 2 && in.readUnsignedShort() == JAVA_SERIALIZATION_MAGIC;
+        }
+    }
+
+    /**
+     * Reads a snapshot written by the old Java serialization format
+     *
+     * @param file Legacy snapshot file
+     * @return Decoded snapshot
+     * @throws IOException if the file cannot be deserialized
+     */
+    @SuppressWarnings("unchecked")
+    public static Snapshot readLegacy(File file) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            ArrayList<Contact> contacts = (ArrayList<Contact>) ois.readObject();
+            int nextId = ois.readInt();
+            for (int i = 0; i < contacts.size(); i++) {
+                Contact c = contacts.get(i);
+                if (c.getVersion() == 0) {
+                    contacts.set(i, new Contact(c.getId(), c.getName(), c.getPhoneNumber(), c.getEmail(),
+                            c.getAddress(), 1));
+                }
+            }
+            return new Snapshot(contacts, nextId, 0);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Legacy snapshot refers to an unknown class: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes length-prefixed UTF-8 fields, reusing one scratch array so that
+     * only the resulting Strings are allocated
+     */
+    private static class FieldReader {
+        private final ByteBuffer buffer;
+        private byte[] scratch = new byte[256];
+
+        FieldReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        String next() {
+            int length = buffer.getInt();
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void putString(FileChannel channel, ByteBuffer buffer, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        ensureRemaining(channel, buffer, 4);
+        buffer.putInt(bytes.length);
+
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                drain(channel, buffer);
+            }
+            int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain(channel, buffer);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,749 @@
+package storage;
+
+import model.Contact;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * ContactJournal is an append-only write-ahead log of contact mutations.
+ * Each add, update or delete is written as one framed record, so the cost of
+ * a mutation no longer depends on how many contacts are stored.
+ *
+ * Record layout: [int length][int crc32][byte op][payload]
+ * Add and update payloads are [int id][long contact version] followed by
+ * name, phone, email and address, each as [int byte length][UTF-8 bytes],
+ * as in the snapshot. Delete payloads are the [int id].
+ *
+ * A record whose frame is incomplete or whose checksum does not match is
+ * treated as a torn write, and a record that cannot be decoded as corrupt.
+ * Replay stops at the first such record: the segment is truncated there and
+ * any later segments are moved aside with the suffix .corrupt, because they
+ * were written on top of the records that were lost.
+ *
+ * The log is split into numbered segments, contacts.log.1, contacts.log.2 and
+ * so on. A checkpoint rotates to a new segment at the moment it captures the
+ * contact set, so the segments before it are exactly what the snapshot
+ * covers and can be discarded once the snapshot is safely written.
+ *
+ * Every record has a position: its segment number in the high 32 bits and
+ * its 1-based index within the segment in the low 32 bits. Positions grow
+ * in append order and stay the same when the records are replayed after a
+ * restart.
+ *
+ * Appends are encoded on the calling thread and handed to a background writer
+ * thread, which owns the file. The writer takes every record queued since its
+ * last write and commits them with a single write call and at most one fsync
+ * (group commit), so the number of syncs per second no longer limits how many
+ * mutations can be made durable. Records are written in the order they were
+ * appended.
+ */
+public class ContactJournal implements Closeable {
+    public static final byte OP_ADD = 1;
+    public static final byte OP_UPDATE = 2;
+    public static final byte OP_DELETE = 3;
+    public static final String CORRUPT_SUFFIX = ".corrupt";
+
+    private static final int MAX_BATCH_WRITES = 4096;
+    private static final int MAX_RECORD_BYTES = 1 << 26; // Larger lengths are read as a torn frame
+
+    private final File file;
+    private final BlockingQueue<PendingWrite> queue;
+    private FileOutputStream out; // Owned by the writer thread once it is started
+    private Thread writer;
+    private long activeSegment;
+    private int recordCount;
+    private long segmentBytes;
+    private long groupCommitWindowNanos;
+    private PersistenceListener listener = PersistenceListener.NONE;
+    private Consumer<IOException> errorHandler = e -> System.err.println("Journal error: " + e.getMessage());
+
+    /**
+     * Callback used while replaying the journal
+     */
+    public interface ReplayHandler {
+        void onAdd(long position, Contact contact);
+
+        void onUpdate(long position, Contact contact);
+
+        void onDelete(long position, int id);
+    }
+
+    /**
+     * Record or control command waiting for the writer thread
+     */
+    private static final class PendingWrite {
+        static final int APPEND = 0;
+        static final int ROTATE = 1;
+        static final int DISCARD = 2;
+        static final int CLOSE = 3;
+
+        final int kind;
+        final byte[] frames;
+        final boolean sync;
+        final long segment;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingWrite(int kind, byte[] frames, boolean sync, long segment) {
+            this.kind = kind;
+            this.frames = frames;
+            this.sync = sync;
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * Creates a journal backed by the given file
+     *
+     * @param fileName Path of the log file
+     */
+    public ContactJournal(String fileName) {
+        this.file = new File(fileName);
+        this.queue = new LinkedBlockingQueue<>();
+    }
+
+    /**
+     * Sets the listener that is told about every write
+     *
+     * @param listener Persistence listener
+     */
+    public void setListener(PersistenceListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the handler for failed appends and for records dropped during
+     * replay. Write failures are reported on the writer thread, records that
+     * cannot be encoded and appends to a journal that is not open on the
+     * calling thread; the futures of the failed records also complete
+     * exceptionally.
+     *
+     * @param errorHandler Receives each write failure
+     */
+    public void setErrorHandler(Consumer<IOException> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Sets how long the writer waits for more records before committing a
+     * batch that has to be synced. Records that only need to be written are
+     * never delayed.
+     *
+     * @param nanos Group commit window, 0 to commit whatever is queued at once
+     */
+    public void setGroupCommitWindow(long nanos) {
+        this.groupCommitWindowNanos = nanos;
+    }
+
+    /**
+     * Replays every intact record of the segments a snapshot does not cover,
+     * deletes the segments it does cover, then opens the newest segment for
+     * appending and starts the writer thread. A torn tail left behind by a
+     * crash is truncated away; so is everything from a corrupt record on,
+     * and the segments after it are moved aside.
+     *
+     * @param handler     Receives each replayed mutation in order
+     * @param fromSegment First segment not covered by the loaded snapshot
+     * @return Number of records replayed
+     * @throws IOException if the log cannot be read or opened, in which case
+     *                     the journal stays closed
+     */
+    public int replay(ReplayHandler handler, long fromSegment) throws IOException {
+        int replayed = 0;
+        long lastSegment = 0;
+        boolean intact = true;
+
+        for (long segment : listSegments()) {
+            File segmentFile = segmentFile(segment);
+            if (segment < fromSegment) {
+                Files.deleteIfExists(segmentFile.toPath());
+                continue;
+            }
+            if (!intact) {
+                File aside = new File(segmentFile.getPath() + CORRUPT_SUFFIX);
+                Files.move(segmentFile.toPath(), aside.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                errorHandler.accept(new IOException("Journal segment " + segment
+                        + " follows lost records and was not replayed; it was kept as " + aside.getName() + "."));
+                continue;
+            }
+            recordCount = 0;
+            long length = segmentFile.length();
+            segmentBytes = replaySegment(segment, segmentFile, handler);
+            replayed += recordCount;
+            lastSegment = segment;
+            intact = segmentBytes == length;
+        }
+
+        // Keep appending to the newest segment
+        activeSegment = Math.max(Math.max(lastSegment, fromSegment), 1);
+        if (activeSegment != lastSegment) {
+            recordCount = 0;
+            segmentBytes = 0;
+        }
+
+        out = new FileOutputStream(segmentFile(activeSegment), true);
+        writer = new Thread(this::runWriter, "contact-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        return replayed;
+    }
+
+    /**
+     * Replays one segment up to its first torn or corrupt record, counting
+     * the records in recordCount, and truncates the segment there
+     *
+     * @return Length of the intact part of the segment
+     */
+    private long replaySegment(long segment, File segmentFile, ReplayHandler handler) throws IOException {
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile)))) {
+            while (true) {
+                byte[] body = readFrame(in);
+                if (body == null) {
+                    break;
+                }
+                Contact contact;
+                try {
+                    contact = decode(body);
+                } catch (IOException e) {
+                    errorHandler.accept(new IOException("Journal record at byte " + validLength + " of "
+                            + segmentFile.getName() + " is corrupt (" + e.getMessage()
+                            + "); it and everything after it were dropped.", e));
+                    break;
+                }
+                long position = position(segment, recordCount + 1);
+                if (body[0] == OP_DELETE) {
+                    handler.onDelete(position, readInt(body, 1));
+                } else if (body[0] == OP_ADD) {
+                    handler.onAdd(position, contact);
+                } else {
+                    handler.onUpdate(position, contact);
+                }
+                validLength += 8 + body.length;
+                recordCount++;
+            }
+        }
+
+        if (validLength < segmentFile.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(segmentFile, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * Appends an add record
+     *
+     * @param contact    Contact that was added
+     * @param durability FSYNC to have the record forced to disk
+     * @return Completes once the record is written, or synced for FSYNC
+     */
+    public CompletableFuture<Void> appendAdd(Contact contact, Durability durability) {
+        try {
+            return append(frame(encodeContact(OP_ADD, contact)), 1, durability);
+        } catch (IOException e) {
+            return failed(e);
+        }
+    }
+
+    /**
+     * Appends one add record per contact as a single write
+     *
+     * @param added      Contacts that were added, in order
+     * @param durability FSYNC to have the records forced to disk
+     * @return Completes once the records are written, or synced for FSYNC
+     */
+    public CompletableFuture<Void> appendAddAll(List<Contact> added, Durability durability) {
+        if (added.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        try {
+            ByteArrayOutputStream frames = new ByteArrayOutputStream(added.size() * 96);
+            for (Contact contact : added) {
+                frames.write(frame(encodeContact(OP_ADD, contact)));
+            }
+            return append(frames.toByteArray(), added.size(), durability);
+        } catch (IOException e) {
+            return failed(e);
+        }
+    }
+
+    /**
+     * Appends an update record carrying the full new image of the contact
+     *
+     * @param contact    Contact after the update
+     * @param durability FSYNC to have the record forced to disk
+     * @return Completes once the record is written, or synced for FSYNC
+     */
+    public CompletableFuture<Void> appendUpdate(Contact contact, Durability durability) {
+        try {
+            return append(frame(encodeContact(OP_UPDATE, contact)), 1, durability);
+        } catch (IOException e) {
+            return failed(e);
+        }
+    }
+
+    /**
+     * Appends a delete record
+     *
+     * @param id         ID of the deleted contact
+     * @param durability FSYNC to have the record forced to disk
+     * @return Completes once the record is written, or synced for FSYNC
+     */
+    public CompletableFuture<Void> appendDelete(int id, Durability durability) {
+        byte[] body = new byte[5];
+        body[0] = OP_DELETE;
+        writeInt(body, 1, id);
+        return append(frame(body), 1, durability);
+    }
+
+    /**
+     * Starts a new segment. Records appended before this call end up in the
+     * previous segments, records appended after it in the new one.
+     *
+     * @return Number of the new segment
+     */
+    public long rotate() {
+        activeSegment++;
+        recordCount = 0;
+        segmentBytes = 0;
+        submit(new PendingWrite(PendingWrite.ROTATE, null, false, activeSegment));
+        return activeSegment;
+    }
+
+    /**
+     * Deletes the segments before the given one, once a snapshot covering
+     * them has been written
+     *
+     * @param segment First segment to keep
+     * @return Completes once the segments are deleted
+     */
+    public CompletableFuture<Void> discardSegmentsBefore(long segment) {
+        return submit(new PendingWrite(PendingWrite.DISCARD, null, false, segment));
+    }
+
+    /**
+     * Forces every record appended so far to the storage device
+     *
+     * @return Completes once the records are synced
+     */
+    public CompletableFuture<Void> sync() {
+        return submit(new PendingWrite(PendingWrite.APPEND, new byte[0], true, 0));
+    }
+
+    /**
+     * Returns the number of records in the current segment, including records
+     * still queued for the writer
+     *
+     * @return Record count
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the position of the last record appended, including records
+     * still queued for the writer. The records of one appendAddAll call are
+     * numbered consecutively up to this position.
+     *
+     * @return Record position, or the position before the first record if
+     *         the current segment is empty
+     */
+    public long getLastPosition() {
+        return position(activeSegment, recordCount);
+    }
+
+    /**
+     * Returns the position of a record
+     *
+     * @param segment Segment number
+     * @param record  1-based index of the record within the segment, or 0
+     *                for the position before its first record
+     * @return Segment number in the high 32 bits, index in the low 32 bits
+     */
+    public static long position(long segment, int record) {
+        return (segment << 32) | record;
+    }
+
+    /**
+     * Returns the size of the current segment, including records still
+     * queued for the writer
+     *
+     * @return Segment size in bytes
+     */
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    /**
+     * Writes and syncs every queued record, stops the writer thread and closes
+     * the log
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            PendingWrite close = new PendingWrite(PendingWrite.CLOSE, null, true, 0);
+            queue.add(close);
+            boolean interrupted = false;
+            while (writer.isAlive()) {
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            writer = null;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private CompletableFuture<Void> append(byte[] frames, int records, Durability durability) {
+        recordCount += records;
+        segmentBytes += frames.length;
+        return submit(new PendingWrite(PendingWrite.APPEND, frames, durability == Durability.FSYNC, 0));
+    }
+
+    private CompletableFuture<Void> submit(PendingWrite pending) {
+        if (writer == null) {
+            return failed(new IOException("Journal is not open."));
+        }
+        queue.add(pending);
+        return pending.done;
+    }
+
+    /**
+     * Reports an append that failed before reaching the writer thread
+     *
+     * @return Future completed with the failure
+     */
+    private CompletableFuture<Void> failed(IOException e) {
+        errorHandler.accept(e);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    /**
+     * Writer thread: takes everything queued, waits up to the group commit
+     * window for more if the batch has to be synced, then commits it
+     */
+    private void runWriter() {
+        List<PendingWrite> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH_WRITES - batch.size());
+                if (groupCommitWindowNanos > 0 && needsSync(batch)) {
+                    long deadline = System.nanoTime() + groupCommitWindowNanos;
+                    long remaining;
+                    while (batch.size() < MAX_BATCH_WRITES && (remaining = deadline - System.nanoTime()) > 0) {
+                        PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        queue.drainTo(batch, MAX_BATCH_WRITES - batch.size());
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Only a close command stops the writer; keep going
+                if (batch.isEmpty()) {
+                    continue;
+                }
+            }
+
+            boolean closed = commit(batch);
+            batch.clear();
+            if (closed) {
+                return;
+            }
+        }
+    }
+
+    private static boolean needsSync(List<PendingWrite> batch) {
+        for (PendingWrite pending : batch) {
+            if (pending.sync) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Commits a batch in order. Appends between two control commands are
+     * written together; a control command first commits what precedes it.
+     *
+     * @return true if the batch ended with a close command
+     */
+    private boolean commit(List<PendingWrite> batch) {
+        int from = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite pending = batch.get(i);
+            if (pending.kind == PendingWrite.APPEND) {
+                continue;
+            }
+
+            boolean closing = pending.kind == PendingWrite.CLOSE;
+            writeAppends(batch.subList(from, i), closing);
+            from = i + 1;
+            try {
+                if (pending.kind == PendingWrite.ROTATE) {
+                    out.close();
+                    out = new FileOutputStream(segmentFile(pending.segment), true);
+                } else if (pending.kind == PendingWrite.DISCARD) {
+                    for (long segment : listSegments()) {
+                        if (segment < pending.segment) {
+                            Files.deleteIfExists(segmentFile(segment).toPath());
+                        }
+                    }
+                }
+                pending.done.complete(null);
+            } catch (IOException e) {
+                fail(Collections.singletonList(pending), e);
+            }
+            if (closing) {
+                return true;
+            }
+        }
+        writeAppends(batch.subList(from, batch.size()), false);
+        return false;
+    }
+
+    /**
+     * Writes a run of appends with one write call, syncs once if any of them
+     * asked for it, then acknowledges them all
+     */
+    private void writeAppends(List<PendingWrite> appends, boolean forceSync) {
+        if (appends.isEmpty() && !forceSync) {
+            return;
+        }
+
+        int length = 0;
+        boolean sync = forceSync;
+        for (PendingWrite pending : appends) {
+            length += pending.frames.length;
+            sync |= pending.sync;
+        }
+
+        try {
+            if (length > 0) {
+                byte[] frames = new byte[length];
+                int offset = 0;
+                for (PendingWrite pending : appends) {
+                    System.arraycopy(pending.frames, 0, frames, offset, pending.frames.length);
+                    offset += pending.frames.length;
+                }
+
+                long start = System.nanoTime();
+                out.write(frames);
+                listener.onJournalWrite(length, System.nanoTime() - start);
+            }
+            if (sync) {
+                long start = System.nanoTime();
+                out.getChannel().force(false);
+                listener.onSync(System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            fail(appends, e);
+            return;
+        }
+
+        for (PendingWrite pending : appends) {
+            pending.done.complete(null);
+        }
+    }
+
+    /**
+     * Reports a failure, then fails the futures of the records, so that
+     * callers woken by their future find the failure already reported
+     */
+    private void fail(List<PendingWrite> failed, IOException e) {
+        errorHandler.accept(e);
+        for (PendingWrite pending : failed) {
+            pending.done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Returns the file of a segment
+     */
+    private File segmentFile(long segment) {
+        return new File(file.getPath() + "." + segment);
+    }
+
+    /**
+     * Lists the numbers of the existing segments in ascending order
+     */
+    private long[] listSegments() {
+        File directory = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName() + ".";
+        String[] names = directory == null ? null : directory.list();
+        if (names == null) {
+            return new long[0];
+        }
+
+        long[] segments = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(prefix) && isDigits(name, prefix.length())) {
+                segments[count++] = Long.parseLong(name.substring(prefix.length()));
+            }
+        }
+        long[] found = Arrays.copyOf(segments, count);
+        Arrays.sort(found);
+        return found;
+    }
+
+    private static boolean isDigits(String value, int from) {
+        if (from == value.length() || value.length() - from > 18) {
+            return false;
+        }
+        for (int i = from; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Prefixes a record body with its length and checksum
+     */
+    private static byte[] frame(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        byte[] frame = new byte[8 + body.length];
+        writeInt(frame, 0, body.length);
+        writeInt(frame, 4, (int) crc.getValue());
+        System.arraycopy(body, 0, frame, 8, body.length);
+        return frame;
+    }
+
+    private static byte[] encodeContact(byte op, Contact contact) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeByte(op);
+        data.writeInt(contact.getId());
+        data.writeLong(contact.getVersion());
+        for (String field : new String[] { contact.getName(), contact.getPhoneNumber(), contact.getEmail(),
+                contact.getAddress() }) {
+            byte[] utf8 = (field == null ? "" : field).getBytes(StandardCharsets.UTF_8);
+            data.writeInt(utf8.length);
+            data.write(utf8);
+        }
+        if (bytes.size() > MAX_RECORD_BYTES) {
+            throw new IOException("Contact " + contact.getId() + " needs " + bytes.size()
+                    + " bytes in the journal, more than the limit of " + MAX_RECORD_BYTES + ".");
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the next frame body, or returns null at end of log or on a torn or
+     * corrupt record
+     */
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        int length;
+        int checksum;
+        try {
+            length = in.readInt();
+            checksum = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+
+        if (length <= 0 || length > MAX_RECORD_BYTES) {
+            return null;
+        }
+
+        byte[] body = new byte[length];
+        try {
+            in.readFully(body);
+        } catch (EOFException e) {
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        return body;
+    }
+
+    /**
+     * Decodes a record body without applying it, so that a record which
+     * cannot be decoded is told apart from a failure of the replay handler
+     *
+     * @return Contact image of an add or update record, null for a delete
+     * @throws IOException if the record is of an unknown type or malformed
+     */
+    private static Contact decode(byte[] body) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(body));
+        byte op = data.readByte();
+        int id = data.readInt();
+
+        Contact contact;
+        switch (op) {
+            case OP_DELETE:
+                contact = null;
+                break;
+            case OP_ADD:
+            case OP_UPDATE: {
+                long version = data.readLong();
+                contact = new Contact(id, readString(data), readString(data), readString(data), readString(data),
+                        version);
+                break;
+            }
+            default:
+                throw new IOException("unknown record type " + op);
+        }
+        if (data.available() > 0) {
+            throw new IOException(data.available() + " unexpected trailing bytes");
+        }
+        return contact;
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        int length = data.readInt();
+        if (length < 0 || length > data.available()) {
+            throw new IOException("field length " + length + " out of range");
+        }
+        byte[] utf8 = new byte[length];
+        data.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) << 24 | (buffer[offset + 1] & 0xFF) << 16 | (buffer[offset + 2] & 0xFF) << 8
+                | buffer[offset + 3] & 0xFF;
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,13 @@
+package storage;
+
+/**
+ * How far a mutation must be persisted before the caller is acknowledged
+ */
+public enum Durability {
+    /** Return as soon as the record is queued for the journal */
+    NONE,
+    /** Wait until the record has been written to the journal file */
+    WRITE,
+    /** Wait until the record has been forced to the storage device */
+    FSYNC
+}
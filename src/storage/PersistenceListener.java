@@ -0,0 +1,44 @@
+package storage;
+
+/**
+ * Receives timings and sizes of persistence calls, e.g. to feed metrics
+ */
+public interface PersistenceListener {
+    /** Listener that ignores every event */
+    PersistenceListener NONE = new PersistenceListener() {
+        @Override
+        public void onJournalWrite(long bytes, long nanos) {
+        }
+
+        @Override
+        public void onSnapshotWrite(long bytes, long nanos) {
+        }
+
+        @Override
+        public void onSync(long nanos) {
+        }
+    };
+
+    /**
+     * Called after records were appended to the journal
+     *
+     * @param bytes Bytes written
+     * @param nanos Time spent writing
+     */
+    void onJournalWrite(long bytes, long nanos);
+
+    /**
+     * Called after a snapshot file was written
+     *
+     * @param bytes Bytes written
+     * @param nanos Time spent writing, including the sync
+     */
+    void onSnapshotWrite(long bytes, long nanos);
+
+    /**
+     * Called after data was forced to the storage device
+     *
+     * @param nanos Time spent in fsync
+     */
+    void onSync(long nanos);
+}
@@ -0,0 +1,330 @@
+package storage;
+
+import model.Contact;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * SnapshotIndex gives random access to the records of a snapshot file
+ * without decoding them up front. The snapshot is memory-mapped together with
+ * a companion index file (contacts.dat.idx) holding the ID and file offset of
+ * every record, so opening a snapshot costs the same for ten contacts as for
+ * ten million; records are decoded only when asked for.
+ *
+ * Index layout (big-endian):
+ * header: [int magic "CMSI"][int version][int record count][int nextId]
+ * [long journal segment][long snapshot length]
+ * body: every record ID as an int, then every record offset as an int
+ *
+ * The header repeats the count, nextId, journal segment and length of the
+ * snapshot it was written for. An index that is missing or does not match
+ * its snapshot is rebuilt by scanning the snapshot once, skipping over the
+ * text of every record instead of decoding it.
+ */
+public final class SnapshotIndex {
+    public static final String SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x434D5349;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final ByteBuffer records;
+    private final IntBuffer ids;
+    private final IntBuffer offsets;
+    private final int count;
+    private final int nextId;
+    private final long journalSegment;
+
+    private SnapshotIndex(ByteBuffer records, IntBuffer ids, IntBuffer offsets, ContactFileFormat.Header header) {
+        this.records = records;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.count = header.count;
+        this.nextId = header.nextId;
+        this.journalSegment = header.journalSegment;
+    }
+
+    /**
+     * Returns the index file that belongs to a snapshot file
+     *
+     * @param snapshot Snapshot file
+     * @return Index file next to it
+     */
+    public static File indexFileOf(File snapshot) {
+        return new File(snapshot.getPath() + SUFFIX);
+    }
+
+    /**
+     * Opens a snapshot for random access. Only the snapshot header and the
+     * index are read; if the index is missing or stale it is rebuilt from the
+     * snapshot and written back for the next start.
+     *
+     * @param snapshot Snapshot file in the binary format
+     * @return Index over the snapshot's records
+     * @throws IOException if the snapshot is not valid
+     */
+    public static SnapshotIndex open(File snapshot) throws IOException {
+        MappedByteBuffer records = ContactFileFormat.map(snapshot);
+        ContactFileFormat.Header header = ContactFileFormat.readHeader(records);
+        long length = records.limit();
+
+        File indexFile = indexFileOf(snapshot);
+        ByteBuffer index = mapIndex(indexFile, header, length);
+        if (index != null) {
+            IntBuffer ids = index.slice(HEADER_SIZE, header.count * 4).asIntBuffer();
+            IntBuffer offsets = index.slice(HEADER_SIZE + header.count * 4, header.count * 4).asIntBuffer();
+            return new SnapshotIndex(records, ids, offsets, header);
+        }
+
+        int[] ids = new int[header.count];
+        int[] offsets = new int[header.count];
+        scan(records, header, ids, offsets);
+        try {
+            write(indexFile, ids, offsets, header.nextId, header.journalSegment, length);
+        } catch (IOException e) {
+            // The index is rebuilt again on the next start
+        }
+        return new SnapshotIndex(records, IntBuffer.wrap(ids), IntBuffer.wrap(offsets), header);
+    }
+
+    /**
+     * Maps an index file if it exists and matches the snapshot
+     *
+     * @return Mapped index, or null if it has to be rebuilt
+     */
+    private static ByteBuffer mapIndex(File indexFile, ContactFileFormat.Header header, long snapshotLength)
+            throws IOException {
+        if (!indexFile.exists()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != HEADER_SIZE + 8L * header.count) {
+                return null;
+            }
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            boolean matches = index.getInt() == MAGIC && index.getInt() == VERSION
+                    && index.getInt() == header.count && index.getInt() == header.nextId
+                    && index.getLong() == header.journalSegment && index.getLong() == snapshotLength;
+            return matches ? index : null;
+        }
+    }
+
+    /**
+     * Collects the ID and offset of every record by skipping over the fields
+     *
+     * @param records Snapshot buffer positioned at the first record
+     * @param header  Header read from the snapshot
+     */
+    private static void scan(ByteBuffer records, ContactFileFormat.Header header, int[] ids, int[] offsets)
+            throws IOException {
+        int position = records.position();
+        int limit = records.limit();
+        for (int i = 0; i < header.count; i++) {
+            if (position > limit - ContactFileFormat.FIELD_OFFSET) {
+                throw new IOException("Snapshot file is truncated or corrupt.");
+            }
+            offsets[i] = position;
+            ids[i] = records.getInt(position);
+            position += ContactFileFormat.FIELD_OFFSET;
+            for (int f = 0; f < 4; f++) {
+                int length = position <= limit - 4 ? records.getInt(position) : -1;
+                if (length < 0 || length > limit - position - 4) {
+                    throw new IOException("Snapshot file is truncated or corrupt.");
+                }
+                position += 4 + length;
+            }
+        }
+    }
+
+    /**
+     * Writes the index of a snapshot, replacing the previous one atomically
+     *
+     * @param indexFile      Target file
+     * @param ids            Record IDs in file order
+     * @param offsets        Record offsets in file order
+     * @param nextId         Next ID stored in the snapshot
+     * @param journalSegment Journal segment stored in the snapshot
+     * @param snapshotLength Length of the snapshot file in bytes
+     * @throws IOException if the file cannot be written
+     */
+    static void write(File indexFile, int[] ids, int[] offsets, int nextId, long journalSegment,
+            long snapshotLength) throws IOException {
+        Path target = indexFile.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ContactFileFormat.TEMP_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(ids.length).putInt(nextId).putLong(journalSegment)
+                    .putLong(snapshotLength);
+            for (int[] column : new int[][] { ids, offsets }) {
+                for (int value : column) {
+                    if (buffer.remaining() < 4) {
+                        drain(channel, buffer);
+                    }
+                    buffer.putInt(value);
+                }
+            }
+            drain(channel, buffer);
+            channel.force(true);
+        }
+
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns the number of records in the snapshot
+     *
+     * @return Record count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the next ID stored in the snapshot
+     *
+     * @return Next ID to hand out
+     */
+    public int getNextId() {
+        return nextId;
+    }
+
+    /**
+     * Returns the first journal segment the snapshot does not cover
+     *
+     * @return Journal segment number
+     */
+    public long getJournalSegment() {
+        return journalSegment;
+    }
+
+    /**
+     * Returns the ID of a record without decoding it
+     *
+     * @param record Record number in file order
+     * @return Contact ID
+     */
+    public int getId(int record) {
+        return ids.get(record);
+    }
+
+    /**
+     * Returns the contact version of a record without decoding it
+     *
+     * @param record Record number in file order
+     * @return Contact version
+     */
+    public long getVersion(int record) {
+        return records.getLong(offsets.get(record) + 4);
+    }
+
+    /**
+     * Decodes a whole record
+     *
+     * @param record Record number in file order
+     * @return Contact stored in the record
+     * @throws IllegalStateException if the record is corrupt
+     */
+    public Contact read(int record) {
+        int position = offsets.get(record) + ContactFileFormat.FIELD_OFFSET;
+        String[] fields = new String[4];
+        for (int f = 0; f < fields.length; f++) {
+            int length = length(record, position);
+            fields[f] = decode(position + 4, length);
+            position += 4 + length;
+        }
+        return new Contact(getId(record), fields[0], fields[1], fields[2], fields[3], getVersion(record));
+    }
+
+    /**
+     * Decodes only the name of a record
+     *
+     * @param record Record number in file order
+     * @return Contact name
+     * @throws IllegalStateException if the record is corrupt
+     */
+    public String readName(int record) {
+        int position = offsets.get(record) + ContactFileFormat.FIELD_OFFSET;
+        return decode(position + 4, length(record, position));
+    }
+
+    /**
+     * Decodes only the phone number of a record
+     *
+     * @param record Record number in file order
+     * @return Phone number
+     * @throws IllegalStateException if the record is corrupt
+     */
+    public String readPhoneNumber(int record) {
+        int position = offsets.get(record) + ContactFileFormat.FIELD_OFFSET;
+        position += 4 + length(record, position);
+        return decode(position + 4, length(record, position));
+    }
+
+    /**
+     * Decodes only the email of a record
+     *
+     * @param record Record number in file order
+     * @return Email
+     * @throws IllegalStateException if the record is corrupt
+     */
+    public String readEmail(int record) {
+        int position = offsets.get(record) + ContactFileFormat.FIELD_OFFSET;
+        position += 4 + length(record, position);
+        position += 4 + length(record, position);
+        return decode(position + 4, length(record, position));
+    }
+
+    /**
+     * Decodes only the address of a record
+     *
+     * @param record Record number in file order
+     * @return Address
+     * @throws IllegalStateException if the record is corrupt
+     */
+    public String readAddress(int record) {
+        int position = offsets.get(record) + ContactFileFormat.FIELD_OFFSET;
+        position += 4 + length(record, position);
+        position += 4 + length(record, position);
+        position += 4 + length(record, position);
+        return decode(position + 4, length(record, position));
+    }
+
+    /**
+     * Reads a field length, checking it against the end of the file
+     */
+    private int length(int record, int position) {
+        int length = position >= 0 && position <= records.limit() - 4 ? records.getInt(position) : -1;
+        if (length < 0 || length > records.limit() - position - 4) {
+            throw new IllegalStateException("Snapshot record " + record + " is truncated or corrupt.");
+        }
+        return length;
+    }
+
+    private String decode(int position, int length) {
+        byte[] bytes = new byte[length];
+        records.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
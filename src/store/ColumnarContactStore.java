@@ -0,0 +1,404 @@
+package store;
+
+import model.Contact;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ColumnarContactStore keeps contacts as primitive columns plus their text as
+ * UTF-8 records in append-only arena chunks, creating Contact objects only
+ * when a contact is read.
+ *
+ * The columns are split into chunks of {@link ContactChunks#CHUNK_SIZE}
+ * slots that a copy shares with its source until one side writes to a chunk,
+ * and the arena chunks are never rewritten, so copying does not copy any
+ * contact data.
+ */
+public class ColumnarContactStore implements ContactStore {
+    private static final int DELETED = Integer.MIN_VALUE;
+    private static final int FIRST_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNK_SIZE = 1 << 20;
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private final boolean offHeap;
+    private static final int CHUNK_BITS = ContactChunks.CHUNK_BITS;
+    private static final int CHUNK_SIZE = ContactChunks.CHUNK_SIZE;
+    private static final int CHUNK_MASK = ContactChunks.CHUNK_MASK;
+
+    private int[][] ids;
+    private long[][] versions;
+    private long[][] records; // (chunk index << 32) | offset of each slot's record
+    private boolean[] owned; // false for column chunks that may be shared with a copy
+    private int size;
+    private ByteBuffer[] chunks;
+    private int chunkCount;
+    private int writePosition; // In the last chunk, -1 if it must not be written
+    private long usedBytes;
+    private long deadBytes;
+
+    /**
+     * Creates a store holding the given contacts
+     *
+     * @param initial Contacts to start with, in slot order
+     * @param offHeap true to keep the text arena in direct buffers
+     */
+    public ColumnarContactStore(List<Contact> initial, boolean offHeap) {
+        this.offHeap = offHeap;
+        int columnChunks = Math.max(4, (initial.size() + CHUNK_MASK) >>> CHUNK_BITS);
+        this.ids = new int[columnChunks][];
+        this.versions = new long[columnChunks][];
+        this.records = new long[columnChunks][];
+        this.owned = new boolean[columnChunks];
+        this.chunks = new ByteBuffer[4];
+        this.writePosition = -1;
+        for (Contact contact : initial) {
+            add(contact);
+        }
+    }
+
+    /**
+     * Creates a view of another store's current columns that shares their
+     * chunks until either store writes to one
+     */
+    private ColumnarContactStore(ColumnarContactStore source) {
+        Arrays.fill(source.owned, false);
+        this.offHeap = source.offHeap;
+        this.ids = source.ids.clone();
+        this.versions = source.versions.clone();
+        this.records = source.records.clone();
+        this.owned = new boolean[ids.length];
+        this.size = source.size;
+        this.chunks = Arrays.copyOf(source.chunks, Math.max(source.chunkCount, 1));
+        this.chunkCount = source.chunkCount;
+        this.writePosition = -1; // The last chunk is still written by the source
+        this.usedBytes = source.usedBytes;
+        this.deadBytes = source.deadBytes;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isLive(int slot) {
+        return id(slot) != DELETED;
+    }
+
+    @Override
+    public int getId(int slot) {
+        return id(slot);
+    }
+
+    @Override
+    public String getName(int slot) {
+        return field(record(slot), 0);
+    }
+
+    @Override
+    public String getPhoneNumber(int slot) {
+        return field(record(slot), 1);
+    }
+
+    @Override
+    public String getEmail(int slot) {
+        return field(record(slot), 2);
+    }
+
+    @Override
+    public String getAddress(int slot) {
+        return field(record(slot), 3);
+    }
+
+    @Override
+    public long getVersion(int slot) {
+        return versions[slot >>> CHUNK_BITS][slot & CHUNK_MASK];
+    }
+
+    @Override
+    public Contact get(int slot) {
+        int id = id(slot);
+        if (id == DELETED) {
+            return null;
+        }
+
+        long address = record(slot);
+        ByteBuffer chunk = chunks[(int) (address >>> 32)];
+        int position = (int) address;
+        String[] fields = new String[4];
+        for (int f = 0; f < fields.length; f++) {
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = chunk.get(position++);
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            fields[f] = decode(chunk, position, length);
+            position += length;
+        }
+        return new Contact(id, fields[0], fields[1], fields[2], fields[3], getVersion(slot));
+    }
+
+    @Override
+    public int add(Contact contact) {
+        if (contact.getId() == DELETED) {
+            throw new IllegalArgumentException("Contact ID " + DELETED + " is reserved.");
+        }
+        int chunk = size >>> CHUNK_BITS;
+        if (chunk == ids.length) {
+            ids = Arrays.copyOf(ids, chunk * 2);
+            versions = Arrays.copyOf(versions, chunk * 2);
+            records = Arrays.copyOf(records, chunk * 2);
+            owned = Arrays.copyOf(owned, chunk * 2);
+        }
+        write(size, contact.getId(), contact.getVersion(), append(contact));
+        return size++;
+    }
+
+    @Override
+    public void set(int slot, Contact contact) {
+        deadBytes += recordLength(record(slot));
+        write(slot, contact.getId(), contact.getVersion(), append(contact));
+        compactArenaIfNeeded();
+    }
+
+    @Override
+    public void remove(int slot) {
+        deadBytes += recordLength(record(slot));
+        write(slot, DELETED, getVersion(slot), record(slot));
+        compactArenaIfNeeded();
+    }
+
+    @Override
+    public void compact() {
+        int kept = 0;
+        for (int slot = 0; slot < size; slot++) {
+            int id = id(slot);
+            if (id != DELETED) {
+                write(kept++, id, getVersion(slot), record(slot));
+            }
+        }
+        size = kept;
+        compactArenaIfNeeded();
+    }
+
+    @Override
+    public ContactStore copy() {
+        return new ColumnarContactStore(this);
+    }
+
+    @Override
+    public List<Contact> toList() {
+        List<Contact> live = new ArrayList<>(size);
+        for (int slot = 0; slot < size; slot++) {
+            if (id(slot) != DELETED) {
+                live.add(get(slot));
+            }
+        }
+        return live;
+    }
+
+    @Override
+    public long memoryBytes() {
+        long bytes = 0;
+        for (int c = 0; c < ids.length && ids[c] != null; c++) {
+            bytes += 3 * ARRAY_HEADER_BYTES + CHUNK_SIZE * (Integer.BYTES + 2 * Long.BYTES);
+        }
+        for (int c = 0; c < chunkCount; c++) {
+            bytes += chunks[c].capacity() + (offHeap ? 0 : ARRAY_HEADER_BYTES);
+        }
+        return bytes;
+    }
+
+    /**
+     * Encodes a contact's text fields as one record at the end of the arena
+     *
+     * @return Address of the record
+     */
+    private long append(Contact contact) {
+        byte[][] fields = { utf8(contact.getName()), utf8(contact.getPhoneNumber()), utf8(contact.getEmail()),
+                utf8(contact.getAddress()) };
+
+        int length = 0;
+        for (byte[] field : fields) {
+            length += varintSize(field.length) + field.length;
+        }
+
+        long address = reserve(length);
+        ByteBuffer chunk = chunks[(int) (address >>> 32)];
+        int position = (int) address;
+        for (byte[] field : fields) {
+            int value = field.length;
+            while ((value & ~0x7F) != 0) {
+                chunk.put(position++, (byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            chunk.put(position++, (byte) value);
+            chunk.put(position, field, 0, field.length);
+            position += field.length;
+        }
+        return address;
+    }
+
+    /**
+     * Reserves room for a record, starting a new chunk if the last one is
+     * full. Records never span chunks.
+     */
+    private long reserve(int length) {
+        ByteBuffer last = chunkCount == 0 ? null : chunks[chunkCount - 1];
+        if (last == null || writePosition < 0 || writePosition + length > last.capacity()) {
+            int capacity = last == null ? FIRST_CHUNK_SIZE : Math.min(MAX_CHUNK_SIZE, last.capacity() * 2);
+            addChunk(Math.max(capacity, length));
+        }
+
+        long address = ((long) (chunkCount - 1) << 32) | writePosition;
+        writePosition += length;
+        usedBytes += length;
+        return address;
+    }
+
+    private void addChunk(int capacity) {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        chunks[chunkCount++] = offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        writePosition = 0;
+    }
+
+    /**
+     * Copies the live records into fresh chunks once at least half of the
+     * arena is garbage. The old chunks are left untouched for any copies
+     * still reading them.
+     */
+    private void compactArenaIfNeeded() {
+        if (deadBytes < MAX_CHUNK_SIZE || deadBytes * 2 < usedBytes) {
+            return;
+        }
+
+        ByteBuffer[] oldChunks = Arrays.copyOf(chunks, chunkCount);
+        chunks = new ByteBuffer[4];
+        chunkCount = 0;
+        writePosition = -1;
+        usedBytes = 0;
+        deadBytes = 0;
+
+        byte[] scratch = new byte[256];
+        for (int slot = 0; slot < size; slot++) {
+            int id = id(slot);
+            if (id == DELETED) {
+                continue;
+            }
+            long address = record(slot);
+            ByteBuffer chunk = oldChunks[(int) (address >>> 32)];
+            int length = recordLength(chunk, (int) address);
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            chunk.get((int) address, scratch, 0, length);
+
+            long moved = reserve(length);
+            chunks[(int) (moved >>> 32)].put((int) moved, scratch, 0, length);
+            write(slot, id, getVersion(slot), moved);
+        }
+    }
+
+    private int id(int slot) {
+        return ids[slot >>> CHUNK_BITS][slot & CHUNK_MASK];
+    }
+
+    private long record(int slot) {
+        return records[slot >>> CHUNK_BITS][slot & CHUNK_MASK];
+    }
+
+    /**
+     * Writes a slot's columns, first cloning its chunk if a copy may still
+     * share it
+     */
+    private void write(int slot, int id, long version, long record) {
+        int chunk = slot >>> CHUNK_BITS;
+        if (ids[chunk] == null) {
+            ids[chunk] = new int[CHUNK_SIZE];
+            versions[chunk] = new long[CHUNK_SIZE];
+            records[chunk] = new long[CHUNK_SIZE];
+            owned[chunk] = true;
+        } else if (!owned[chunk]) {
+            ids[chunk] = ids[chunk].clone();
+            versions[chunk] = versions[chunk].clone();
+            records[chunk] = records[chunk].clone();
+            owned[chunk] = true;
+        }
+        ids[chunk][slot & CHUNK_MASK] = id;
+        versions[chunk][slot & CHUNK_MASK] = version;
+        records[chunk][slot & CHUNK_MASK] = record;
+    }
+
+    private int recordLength(long address) {
+        return recordLength(chunks[(int) (address >>> 32)], (int) address);
+    }
+
+    private static int recordLength(ByteBuffer chunk, int start) {
+        int position = start;
+        for (int f = 0; f < 4; f++) {
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = chunk.get(position++);
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            position += length;
+        }
+        return position - start;
+    }
+
+    /**
+     * Decodes one field of a record without decoding the others
+     */
+    private String field(long address, int field) {
+        ByteBuffer chunk = chunks[(int) (address >>> 32)];
+        int position = (int) address;
+        for (int f = 0;; f++) {
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = chunk.get(position++);
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (f == field) {
+                return decode(chunk, position, length);
+            }
+            position += length;
+        }
+    }
+
+    private static String decode(ByteBuffer chunk, int position, int length) {
+        if (chunk.hasArray()) {
+            return new String(chunk.array(), chunk.arrayOffset() + position, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        chunk.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String value) {
+        return (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int varintSize(int value) {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+}
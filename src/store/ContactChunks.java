@@ -0,0 +1,110 @@
+package store;
+
+import model.Contact;
+
+import java.util.Arrays;
+
+/**
+ * ContactChunks is a growable array of contacts split into fixed-size
+ * chunks. A copy shares every chunk with its source, and whichever of the
+ * two writes to a shared chunk first clones just that chunk, so copying
+ * costs one reference per chunk instead of one per contact. Chunks that were
+ * never written are not allocated and read as null.
+ */
+final class ContactChunks {
+    static final int CHUNK_BITS = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private Contact[][] chunks;
+    private boolean[] owned; // false for chunks that may be shared with a copy
+    private int size;
+
+    /**
+     * Creates an empty array
+     */
+    ContactChunks() {
+        this.chunks = new Contact[4][];
+        this.owned = new boolean[4];
+    }
+
+    /**
+     * Creates an array of the given size with every element null
+     *
+     * @param size Number of elements
+     */
+    ContactChunks(int size) {
+        int count = Math.max(4, (size + CHUNK_MASK) >>> CHUNK_BITS);
+        this.chunks = new Contact[count][];
+        this.owned = new boolean[count];
+        this.size = size;
+    }
+
+    private ContactChunks(Contact[][] chunks, int size) {
+        this.chunks = chunks;
+        this.owned = new boolean[chunks.length];
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Contact get(int index) {
+        Contact[] chunk = chunks[index >>> CHUNK_BITS];
+        return chunk == null ? null : chunk[index & CHUNK_MASK];
+    }
+
+    void set(int index, Contact contact) {
+        writable(index >>> CHUNK_BITS)[index & CHUNK_MASK] = contact;
+    }
+
+    /**
+     * Appends a contact
+     *
+     * @return Index it was stored at
+     */
+    int add(Contact contact) {
+        int chunk = size >>> CHUNK_BITS;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunk * 2);
+            owned = Arrays.copyOf(owned, chunk * 2);
+        }
+        set(size, contact);
+        return size++;
+    }
+
+    /**
+     * Returns a copy that shares every chunk until either side writes to it
+     *
+     * @return Copy of the current contents
+     */
+    ContactChunks copy() {
+        Arrays.fill(owned, false);
+        return new ContactChunks(chunks.clone(), size);
+    }
+
+    /**
+     * Returns the number of chunk slots allocated, for memory estimates
+     */
+    long capacity() {
+        long capacity = chunks.length;
+        for (Contact[] chunk : chunks) {
+            if (chunk != null) {
+                capacity += chunk.length;
+            }
+        }
+        return capacity;
+    }
+
+    private Contact[] writable(int chunk) {
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new Contact[CHUNK_SIZE];
+            owned[chunk] = true;
+        } else if (!owned[chunk]) {
+            chunks[chunk] = chunks[chunk].clone();
+            owned[chunk] = true;
+        }
+        return chunks[chunk];
+    }
+}
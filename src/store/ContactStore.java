@@ -0,0 +1,138 @@
+package store;
+
+import model.Contact;
+
+import java.util.List;
+
+/**
+ * ContactStore holds the contact list of a ContactService as numbered slots.
+ * New contacts are appended, deleted slots stay in place as tombstones until
+ * {@link #compact()} drops them, and slot order is insertion order.
+ *
+ * Implementations decide how contacts are laid out in memory; a Contact
+ * object handed out by {@link #get(int)} may be created on demand.
+ */
+public interface ContactStore {
+    /**
+     * Returns the number of slots, including deleted ones
+     *
+     * @return Slot count
+     */
+    int size();
+
+    /**
+     * Checks whether a slot holds a contact
+     *
+     * @param slot Slot to check
+     * @return false if the slot was deleted
+     */
+    boolean isLive(int slot);
+
+    /**
+     * Returns the ID of the contact in a live slot
+     *
+     * @param slot Live slot
+     * @return Contact ID
+     */
+    int getId(int slot);
+
+    /**
+     * Returns the name of the contact in a live slot
+     *
+     * @param slot Live slot
+     * @return Contact name
+     */
+    String getName(int slot);
+
+    /**
+     * Returns the phone number of the contact in a live slot
+     *
+     * @param slot Live slot
+     * @return Phone number
+     */
+    String getPhoneNumber(int slot);
+
+    /**
+     * Returns the email of the contact in a live slot
+     *
+     * @param slot Live slot
+     * @return Email
+     */
+    String getEmail(int slot);
+
+    /**
+     * Returns the address of the contact in a live slot
+     *
+     * @param slot Live slot
+     * @return Address
+     */
+    String getAddress(int slot);
+
+    /**
+     * Returns the version of the contact in a live slot
+     *
+     * @param slot Live slot
+     * @return Contact version
+     */
+    long getVersion(int slot);
+
+    /**
+     * Returns the contact in a slot
+     *
+     * @param slot Slot to read
+     * @return Contact, or null if the slot was deleted
+     */
+    Contact get(int slot);
+
+    /**
+     * Appends a contact
+     *
+     * @param contact Contact to store
+     * @return Slot it was stored in
+     */
+    int add(Contact contact);
+
+    /**
+     * Replaces the contact in a live slot
+     *
+     * @param slot    Slot to overwrite
+     * @param contact New contact
+     */
+    void set(int slot, Contact contact);
+
+    /**
+     * Deletes the contact in a slot, leaving a tombstone
+     *
+     * @param slot Slot to delete
+     */
+    void remove(int slot);
+
+    /**
+     * Drops all tombstones, keeping the order of the remaining contacts
+     */
+    void compact();
+
+    /**
+     * Returns a point-in-time copy that later changes to this store do not
+     * affect. The copy shares storage with this store until either side
+     * writes to it, so copying does not grow with the number of contacts. The
+     * copy may be read from another thread.
+     *
+     * @return Independent copy
+     */
+    ContactStore copy();
+
+    /**
+     * Returns all live contacts in slot order
+     *
+     * @return Live contacts
+     */
+    List<Contact> toList();
+
+    /**
+     * Estimates the memory held by the stored contacts, on and off the heap
+     *
+     * @return Size in bytes
+     */
+    long memoryBytes();
+}
@@ -0,0 +1,166 @@
+package store;
+
+import model.Contact;
+import storage.SnapshotIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LazyContactStore serves the contacts of a snapshot file straight from the
+ * mapped file. The first slots are the snapshot's records, which are decoded
+ * through a {@link SnapshotIndex} the first time they are read and cached
+ * from then on; contacts added later are appended as objects behind them.
+ *
+ * Updates and deletes of snapshot records are kept in chunked slots that
+ * copies share until one side writes, the file itself is never written.
+ * Compacting decodes every remaining record and leaves an ordinary object
+ * list behind.
+ */
+public class LazyContactStore implements ContactStore {
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+    private static final Contact DELETED = new Contact(0, null, null, null, null, 0);
+
+    private SnapshotIndex base;
+    private ContactChunks slots; // Null for snapshot records not decoded yet, DELETED for deleted slots
+
+    /**
+     * Creates a store over the records of a snapshot without decoding them
+     *
+     * @param base Index of the snapshot file
+     */
+    public LazyContactStore(SnapshotIndex base) {
+        this.base = base;
+        this.slots = new ContactChunks(base.size());
+    }
+
+    private LazyContactStore(SnapshotIndex base, ContactChunks slots) {
+        this.base = base;
+        this.slots = slots;
+    }
+
+    @Override
+    public int size() {
+        return slots.size();
+    }
+
+    @Override
+    public boolean isLive(int slot) {
+        return slots.get(slot) != DELETED;
+    }
+
+    @Override
+    public int getId(int slot) {
+        Contact contact = slots.get(slot);
+        return contact != null ? contact.getId() : base.getId(slot);
+    }
+
+    @Override
+    public String getName(int slot) {
+        Contact contact = slots.get(slot);
+        return contact != null ? contact.getName() : base.readName(slot);
+    }
+
+    @Override
+    public String getPhoneNumber(int slot) {
+        Contact contact = slots.get(slot);
+        return contact != null ? contact.getPhoneNumber() : base.readPhoneNumber(slot);
+    }
+
+    @Override
+    public String getEmail(int slot) {
+        Contact contact = slots.get(slot);
+        return contact != null ? contact.getEmail() : base.readEmail(slot);
+    }
+
+    @Override
+    public String getAddress(int slot) {
+        Contact contact = slots.get(slot);
+        return contact != null ? contact.getAddress() : base.readAddress(slot);
+    }
+
+    @Override
+    public long getVersion(int slot) {
+        Contact contact = slots.get(slot);
+        return contact != null ? contact.getVersion() : base.getVersion(slot);
+    }
+
+    @Override
+    public Contact get(int slot) {
+        Contact contact = slots.get(slot);
+        if (contact == null) {
+            contact = base.read(slot);
+            slots.set(slot, contact);
+        }
+        return contact == DELETED ? null : contact;
+    }
+
+    @Override
+    public int add(Contact contact) {
+        return slots.add(contact);
+    }
+
+    @Override
+    public void set(int slot, Contact contact) {
+        slots.set(slot, contact);
+    }
+
+    @Override
+    public void remove(int slot) {
+        slots.set(slot, DELETED);
+    }
+
+    @Override
+    public void compact() {
+        ContactChunks live = new ContactChunks();
+        for (Contact contact : toList()) {
+            live.add(contact);
+        }
+        base = null;
+        slots = live;
+    }
+
+    /**
+     * Returns a copy sharing the slot chunks of this store; a chunk is
+     * cloned only when one side writes to it
+     */
+    @Override
+    public ContactStore copy() {
+        return new LazyContactStore(base, slots.copy());
+    }
+
+    /**
+     * Decodes the records not read yet without caching them, so listing a
+     * copy does not write to its chunks
+     */
+    @Override
+    public List<Contact> toList() {
+        List<Contact> live = new ArrayList<>(size());
+        for (int slot = 0; slot < size(); slot++) {
+            Contact contact = slots.get(slot);
+            if (contact == null) {
+                live.add(base.read(slot));
+            } else if (contact != DELETED) {
+                live.add(contact);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Estimates the heap held by decoded and added contacts. The snapshot
+     * itself is mapped and lives in the page cache.
+     */
+    @Override
+    public long memoryBytes() {
+        long bytes = ARRAY_HEADER_BYTES + slots.capacity() * REFERENCE_BYTES;
+        for (int slot = 0; slot < slots.size(); slot++) {
+            Contact contact = slots.get(slot);
+            if (contact != null && contact != DELETED) {
+                bytes += ObjectContactStore.contactBytes(contact);
+            }
+        }
+        return bytes;
+    }
+}
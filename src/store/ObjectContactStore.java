@@ -0,0 +1,162 @@
+package store;
+
+import model.Contact;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ObjectContactStore keeps every contact as a Contact object in a chunked
+ * array, with null marking deleted slots. Reads are direct, at the cost of an
+ * object header, five references and four String instances per contact.
+ */
+public class ObjectContactStore implements ContactStore {
+    // Estimated shallow sizes with compressed references
+    private static final int CONTACT_BYTES = 40;
+    private static final int STRING_BYTES = 24;
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+
+    private ContactChunks contacts;
+
+    /**
+     * Creates a store holding the given contacts
+     *
+     * @param initial Contacts to start with, in slot order
+     */
+    public ObjectContactStore(List<Contact> initial) {
+        this.contacts = new ContactChunks();
+        for (Contact contact : initial) {
+            contacts.add(contact);
+        }
+    }
+
+    private ObjectContactStore(ContactChunks contacts) {
+        this.contacts = contacts;
+    }
+
+    @Override
+    public int size() {
+        return contacts.size();
+    }
+
+    @Override
+    public boolean isLive(int slot) {
+        return contacts.get(slot) != null;
+    }
+
+    @Override
+    public int getId(int slot) {
+        return contacts.get(slot).getId();
+    }
+
+    @Override
+    public String getName(int slot) {
+        return contacts.get(slot).getName();
+    }
+
+    @Override
+    public String getPhoneNumber(int slot) {
+        return contacts.get(slot).getPhoneNumber();
+    }
+
+    @Override
+    public String getEmail(int slot) {
+        return contacts.get(slot).getEmail();
+    }
+
+    @Override
+    public String getAddress(int slot) {
+        return contacts.get(slot).getAddress();
+    }
+
+    @Override
+    public long getVersion(int slot) {
+        return contacts.get(slot).getVersion();
+    }
+
+    @Override
+    public Contact get(int slot) {
+        return contacts.get(slot);
+    }
+
+    @Override
+    public int add(Contact contact) {
+        return contacts.add(contact);
+    }
+
+    @Override
+    public void set(int slot, Contact contact) {
+        contacts.set(slot, contact);
+    }
+
+    @Override
+    public void remove(int slot) {
+        contacts.set(slot, null);
+    }
+
+    @Override
+    public void compact() {
+        ContactChunks compacted = new ContactChunks();
+        for (int slot = 0; slot < contacts.size(); slot++) {
+            Contact contact = contacts.get(slot);
+            if (contact != null) {
+                compacted.add(contact);
+            }
+        }
+        contacts = compacted;
+    }
+
+    /**
+     * Returns a copy sharing the chunks of this store; a chunk is cloned
+     * only when one side writes to it
+     */
+    @Override
+    public ContactStore copy() {
+        return new ObjectContactStore(contacts.copy());
+    }
+
+    @Override
+    public List<Contact> toList() {
+        List<Contact> live = new ArrayList<>(contacts.size());
+        for (int slot = 0; slot < contacts.size(); slot++) {
+            Contact contact = contacts.get(slot);
+            if (contact != null) {
+                live.add(contact);
+            }
+        }
+        return live;
+    }
+
+    @Override
+    public long memoryBytes() {
+        long bytes = ARRAY_HEADER_BYTES + contacts.capacity() * REFERENCE_BYTES;
+        for (int slot = 0; slot < contacts.size(); slot++) {
+            Contact contact = contacts.get(slot);
+            if (contact != null) {
+                bytes += contactBytes(contact);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimates a Contact object plus its four Strings
+     */
+    static long contactBytes(Contact contact) {
+        return CONTACT_BYTES + stringBytes(contact.getName()) + stringBytes(contact.getPhoneNumber())
+                + stringBytes(contact.getEmail()) + stringBytes(contact.getAddress());
+    }
+
+    /**
+     * Estimates a String plus its backing array, assuming Latin-1 compact
+     * strings
+     */
+    private static long stringBytes(String value) {
+        return value == null ? 0 : STRING_BYTES + align(ARRAY_HEADER_BYTES + value.length());
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,34 @@
+package store;
+
+import model.Contact;
+
+import java.util.List;
+
+/**
+ * Memory layouts available for the contact list
+ */
+public enum StoreType {
+    /** One Contact object with four Strings per contact */
+    OBJECTS,
+    /** Primitive ID column plus UTF-8 byte arenas on the heap */
+    COLUMNAR,
+    /** Primitive ID column plus UTF-8 byte arenas in direct buffers */
+    COLUMNAR_OFF_HEAP;
+
+    /**
+     * Creates a store of this type holding the given contacts
+     *
+     * @param initial Contacts to start with, in slot order
+     * @return New store
+     */
+    public ContactStore create(List<Contact> initial) {
+        switch (this) {
+            case COLUMNAR:
+                return new ColumnarContactStore(initial, false);
+            case COLUMNAR_OFF_HEAP:
+                return new ColumnarContactStore(initial, true);
+            default:
+                return new ObjectContactStore(initial);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package validation;
+
+/**
+ * The contact fields that can be validated
+ */
+public enum ContactField {
+    NAME("Name"),
+    PHONE("Phone number"),
+    EMAIL("Email"),
+    ADDRESS("Address");
+
+    private final String label;
+
+    ContactField(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the name used for the field in error messages
+     *
+     * @return Human-readable field name
+     */
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,28 @@
+package validation;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when a contact fails validation. Carries every field error that was
+ * found, and its message joins all of them.
+ */
+public class ContactValidationException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final List<FieldError> errors;
+
+    public ContactValidationException(List<FieldError> errors) {
+        super(ContactValidator.describe(errors));
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Returns all field errors
+     *
+     * @return Field errors in field order
+     */
+    public List<FieldError> getErrors() {
+        return errors;
+    }
+}
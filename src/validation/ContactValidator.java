@@ -0,0 +1,223 @@
+package validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ContactValidator checks contact details with hand-written single-pass
+ * scanners instead of regular expressions, so validating a valid contact does
+ * not compile patterns, create matchers or trim strings.
+ *
+ * Every field is checked and all failures are reported together. Extra rules
+ * such as a maximum length or allowed country codes can be added per field.
+ * A validator is immutable once configured and can be shared between threads.
+ */
+public class ContactValidator {
+    private final Map<ContactField, List<ValidationRule>> rules;
+
+    /**
+     * Creates a validator with only the built-in checks
+     */
+    public ContactValidator() {
+        this.rules = new EnumMap<>(ContactField.class);
+    }
+
+    /**
+     * Returns a validator with only the built-in checks
+     *
+     * @return Standard validator
+     */
+    public static ContactValidator standard() {
+        return new ContactValidator();
+    }
+
+    /**
+     * Adds a rule for a field. Rules run after the field's built-in checks
+     * have passed.
+     *
+     * @param field Field to check
+     * @param rule  Rule to apply
+     * @return This validator
+     */
+    public ContactValidator addRule(ContactField field, ValidationRule rule) {
+        List<ValidationRule> fieldRules = rules.get(field);
+        if (fieldRules == null) {
+            fieldRules = new ArrayList<>();
+            rules.put(field, fieldRules);
+        }
+        fieldRules.add(rule);
+        return this;
+    }
+
+    /**
+     * Validates contact details
+     *
+     * @param name        Contact name
+     * @param phoneNumber Phone number
+     * @param email       Email address
+     * @param address     Address, may be null or empty
+     * @return All field errors, empty if the details are valid
+     */
+    public List<FieldError> validate(String name, String phoneNumber, String email, String address) {
+        List<FieldError> errors = null;
+
+        errors = add(errors, ContactField.NAME, checkName(name));
+        errors = add(errors, ContactField.PHONE, checkPhone(phoneNumber));
+        errors = add(errors, ContactField.EMAIL, checkEmail(email));
+        errors = add(errors, ContactField.ADDRESS, applyRules(ContactField.ADDRESS, address == null ? "" : address));
+
+        return errors == null ? Collections.<FieldError>emptyList() : errors;
+    }
+
+    /**
+     * Validates contact details and throws if any field is invalid
+     *
+     * @param name        Contact name
+     * @param phoneNumber Phone number
+     * @param email       Email address
+     * @param address     Address, may be null or empty
+     * @throws ContactValidationException listing every field error
+     */
+    public void validateOrThrow(String name, String phoneNumber, String email, String address) {
+        List<FieldError> errors = validate(name, phoneNumber, email, address);
+        if (!errors.isEmpty()) {
+            throw new ContactValidationException(errors);
+        }
+    }
+
+    /**
+     * Joins the messages of several field errors into one sentence list
+     *
+     * @param errors Field errors
+     * @return Combined message
+     */
+    public static String describe(List<FieldError> errors) {
+        if (errors.size() == 1) {
+            return errors.get(0).getMessage();
+        }
+
+        StringBuilder message = new StringBuilder();
+        for (FieldError error : errors) {
+            if (message.length() > 0) {
+                message.append(' ');
+            }
+            message.append(error.getMessage());
+        }
+        return message.toString();
+    }
+
+    private String checkName(String name) {
+        if (isBlank(name)) {
+            return "Name cannot be empty.";
+        }
+        return applyRules(ContactField.NAME, name);
+    }
+
+    private String checkPhone(String phoneNumber) {
+        if (isBlank(phoneNumber)) {
+            return "Phone number cannot be empty.";
+        }
+
+        // Digits, whitespace, hyphens, parentheses and plus
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (!((c >= '0' && c <= '9') || c == ' ' || c == '-' || c == '(' || c == ')' || c == '+'
+                    || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r')) {
+                return "Phone number contains invalid characters.";
+            }
+        }
+        return applyRules(ContactField.PHONE, phoneNumber);
+    }
+
+    private String checkEmail(String email) {
+        if (isBlank(email)) {
+            return "Email cannot be empty.";
+        }
+        if (!isValidEmail(email)) {
+            return "Invalid email format.";
+        }
+        return applyRules(ContactField.EMAIL, email);
+    }
+
+    /**
+     * Single-pass equivalent of ^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\.[A-Za-z]{2,}$
+     * The top-level domain is letters only, so it must follow the last dot.
+     */
+    private static boolean isValidEmail(String email) {
+        int at = -1;
+        int lastDot = -1;
+
+        for (int i = 0; i < email.length(); i++) {
+            char c = email.charAt(i);
+            if (c == '@') {
+                if (at >= 0) {
+                    return false;
+                }
+                at = i;
+            } else if (c == '.') {
+                if (at >= 0) {
+                    lastDot = i;
+                }
+            } else if (!isLetterOrDigit(c) && c != '-' && !(at < 0 && (c == '+' || c == '_'))) {
+                return false; // '+' and '_' are only allowed before the '@'
+            }
+        }
+
+        if (at < 1 || lastDot < at + 2 || email.length() - lastDot - 1 < 2) {
+            return false;
+        }
+        for (int i = lastDot + 1; i < email.length(); i++) {
+            char c = email.charAt(i);
+            if (!((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * Equivalent of value == null || value.trim().isEmpty() without creating
+     * the trimmed string
+     */
+    private static boolean isBlank(String value) {
+        if (value == null) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String applyRules(ContactField field, String value) {
+        List<ValidationRule> fieldRules = rules.get(field);
+        if (fieldRules == null) {
+            return null;
+        }
+        for (int i = 0; i < fieldRules.size(); i++) {
+            String message = fieldRules.get(i).check(field, value);
+            if (message != null) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    private static List<FieldError> add(List<FieldError> errors, ContactField field, String message) {
+        if (message == null) {
+            return errors;
+        }
+        List<FieldError> result = errors == null ? new ArrayList<>(4) : errors;
+        result.add(new FieldError(field, message));
+        return result;
+    }
+}
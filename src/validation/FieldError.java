@@ -0,0 +1,27 @@
+package validation;
+
+/**
+ * A validation failure for one field of a contact
+ */
+public class FieldError {
+    private final ContactField field;
+    private final String message;
+
+    public FieldError(ContactField field, String message) {
+        this.field = field;
+        this.message = message;
+    }
+
+    public ContactField getField() {
+        return field;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return field + ": " + message;
+    }
+}
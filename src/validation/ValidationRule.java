@@ -0,0 +1,17 @@
+package validation;
+
+/**
+ * A check applied to one field of a contact. Rules are only called for values
+ * that passed the built-in checks for their field, and should not allocate
+ * when the value is valid.
+ */
+public interface ValidationRule {
+    /**
+     * Checks a field value
+     *
+     * @param field Field being checked
+     * @param value Field value, never null
+     * @return Error message, or null if the value passes
+     */
+    String check(ContactField field, String value);
+}
@@ -0,0 +1,78 @@
+package validation;
+
+/**
+ * Factory methods for commonly used validation rules
+ */
+public final class ValidationRules {
+    private ValidationRules() {
+    }
+
+    /**
+     * Rejects values longer than a maximum number of characters
+     *
+     * @param max Maximum length
+     * @return Rule
+     */
+    public static ValidationRule maxLength(int max) {
+        return (field, value) -> value.length() > max
+                ? field.getLabel() + " must be at most " + max + " characters."
+                : null;
+    }
+
+    /**
+     * Restricts international phone numbers to the given country calling
+     * codes. A number is international if it starts with "+" or "00"; other
+     * numbers are treated as national and always pass.
+     *
+     * @param countryCodes Allowed calling codes as digits, e.g. "1", "44"
+     * @return Rule
+     */
+    public static ValidationRule allowedCountryCodes(String... countryCodes) {
+        String[] codes = countryCodes.clone();
+        return (field, value) -> {
+            int start = skipWhitespace(value, 0);
+            if (value.startsWith("+", start)) {
+                start++;
+            } else if (value.startsWith("00", start)) {
+                start += 2;
+            } else {
+                return null;
+            }
+
+            for (String code : codes) {
+                if (startsWithDigits(value, start, code)) {
+                    return null;
+                }
+            }
+            return "Country code is not allowed.";
+        };
+    }
+
+    /**
+     * Checks whether the digits of a value, from a position on and ignoring
+     * spaces, hyphens and parentheses, start with the given digits
+     */
+    private static boolean startsWithDigits(String value, int from, String digits) {
+        int matched = 0;
+        for (int i = from; i < value.length() && matched < digits.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (c != digits.charAt(matched)) {
+                    return false;
+                }
+                matched++;
+            } else if (c != ' ' && c != '-' && c != '(' && c != ')') {
+                return false;
+            }
+        }
+        return matched == digits.length();
+    }
+
+    private static int skipWhitespace(String value, int from) {
+        int i = from;
+        while (i < value.length() && value.charAt(i) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,152 @@
+package http;
+
+import io.ExportFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.ContactService;
+import service.ContactServiceConfig;
+import storage.Durability;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The streaming endpoints of the HTTP API, driven through a real socket
+ */
+class ContactHttpServerTest {
+    @TempDir
+    File directory;
+
+    private ContactService service;
+    private ContactHttpServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        service = new ContactService(new ContactServiceConfig()
+                .setDataFile(new File(directory, "contacts.dat").getPath())
+                .setJournalFile(new File(directory, "contacts.log").getPath())
+                .setConcurrent(true)
+                .setRetainedChanges(4));
+        server = new ContactHttpServer(service, new InetSocketAddress("127.0.0.1", 0), Durability.WRITE);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+        service.close();
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path));
+    }
+
+    private static String nextLine(Iterator<String> lines) {
+        String line;
+        do {
+            assertTrue(lines.hasNext(), "The stream ended");
+            line = lines.next();
+        } while (line.isEmpty()); // Heartbeat
+        return line;
+    }
+
+    @Test
+    void changesStreamFromASequenceAndThenLive() throws Exception {
+        int ann = service.addContactAsync("Ann", "555 1000", "ann@example.com", "", Durability.WRITE).join()
+                .getId();
+        service.updateContactAsync(ann, "Anne", "555 1000", "ann@example.com", "1 Main St", Durability.WRITE)
+                .join();
+        long first = service.getChangeFeed().getOldestSequence();
+
+        HttpResponse<Stream<String>> response = client.send(get("/contacts/changes?from=" + first).build(),
+                HttpResponse.BodyHandlers.ofLines());
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/x-ndjson"));
+        try (Stream<String> body = response.body()) {
+            Iterator<String> lines = body.iterator();
+            String added = nextLine(lines);
+            assertTrue(added.contains("\"type\":\"ADD\",\"id\":" + ann + ",\"before\":null,\"after\":{"), added);
+            assertTrue(added.contains("\"name\":\"Ann\""), added);
+            String updated = nextLine(lines);
+            assertTrue(updated.contains("\"type\":\"UPDATE\""), updated);
+            assertTrue(updated.contains("\"address\":\"1 Main St\""), updated);
+
+            service.deleteContactAsync(ann, Durability.WRITE).join();
+            String deleted = nextLine(lines);
+            assertTrue(deleted.startsWith("{\"sequence\":" + service.getChangeFeed().getLastSequence()
+                    + ",\"type\":\"DELETE\""), deleted);
+            assertTrue(deleted.endsWith("\"after\":null}"), deleted);
+        }
+    }
+
+    @Test
+    void changesThatAreGoneOrNotThereYetAreRefused() throws Exception {
+        long before = service.getChangeFeed().getLastSequence() + 1;
+        for (int i = 0; i < 6; i++) {
+            service.addContactAsync("Name" + i, "555 100" + i, "n" + i + "@example.com", "", Durability.WRITE)
+                    .join();
+        }
+
+        HttpResponse<String> gone = client.send(get("/contacts/changes?from=" + before).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(410, gone.statusCode());
+        assertTrue(gone.body().startsWith("{\"error\":"), gone.body());
+
+        long future = service.getChangeFeed().getLastSequence() + 2;
+        HttpResponse<String> unknown = client.send(get("/contacts/changes?from=" + future).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, unknown.statusCode());
+    }
+
+    @Test
+    void exportMatchesTheServiceAndIsCompressedOnRequest() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            service.addContactAsync("Name " + i, "555 " + (1000 + i), "n" + i + "@example.com",
+                    "Street, \"" + i + "\"", Durability.WRITE).join();
+        }
+
+        for (ExportFormat format : ExportFormat.values()) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            service.exportContacts(Channels.newChannel(expected), format, false);
+            String path = "/contacts/export?format=" + format.name().toLowerCase();
+
+            HttpResponse<byte[]> plain = client.send(get(path).build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(200, plain.statusCode());
+            assertTrue(plain.headers().firstValue("Content-Encoding").isEmpty());
+            assertArrayEquals(expected.toByteArray(), plain.body(), format.toString());
+
+            HttpResponse<byte[]> compressed = client.send(get(path).header("Accept-Encoding", "gzip").build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(200, compressed.statusCode());
+            assertEquals("gzip", compressed.headers().firstValue("Content-Encoding").orElse(null));
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.body()))) {
+                assertArrayEquals(expected.toByteArray(), in.readAllBytes(), format.toString());
+            }
+        }
+
+        HttpResponse<String> ndjson = client.send(get("/contacts/export").build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertTrue(ndjson.headers().firstValue("Content-Type").orElse("").startsWith("application/x-ndjson"));
+        assertEquals(200, ndjson.body().split("\n").length);
+        HttpResponse<String> unknown = client.send(get("/contacts/export?format=xml").build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, unknown.statusCode());
+    }
+}
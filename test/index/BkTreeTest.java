@@ -0,0 +1,109 @@
+package index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BkTree searches must find exactly what comparing the query with every
+ * term finds, before and after the tree is rebuilt to drop removed terms
+ */
+class BkTreeTest {
+    /**
+     * IDs of each term, as a brute-force reference
+     */
+    private final TreeMap<String, TreeSet<Integer>> reference = new TreeMap<>();
+
+    private void add(BkTree tree, int id, String term) {
+        tree.add(id, term);
+        reference.computeIfAbsent(term, ignored -> new TreeSet<>()).add(id);
+    }
+
+    private void remove(BkTree tree, int id, String term) {
+        tree.remove(id, term);
+        TreeSet<Integer> ids = reference.get(term);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                reference.remove(term);
+            }
+        }
+    }
+
+    private void check(BkTree tree, String query, int maxDistance) {
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (Map.Entry<String, TreeSet<Integer>> entry : reference.entrySet()) {
+            int distance = BkTree.distance(query, entry.getKey());
+            if (distance <= maxDistance) {
+                for (int id : entry.getValue()) {
+                    expected.merge(id, distance, Math::min);
+                }
+            }
+        }
+        assertEquals(expected, tree.search(query, maxDistance), query + " within " + maxDistance);
+    }
+
+    private static String term(Random random) {
+        StringBuilder term = new StringBuilder();
+        for (int i = 2 + random.nextInt(6); i > 0; i--) {
+            term.append((char) ('a' + random.nextInt(5)));
+        }
+        return term.toString();
+    }
+
+    @Test
+    void distanceCountsSingleCharacterEdits() {
+        assertEquals(0, BkTree.distance("john", "john"));
+        assertEquals(1, BkTree.distance("jon", "john"));
+        assertEquals(1, BkTree.distance("jhon", "jhn"));
+        assertEquals(2, BkTree.distance("jhon", "john"));
+        assertEquals(3, BkTree.distance("kitten", "sitting"));
+        assertEquals(4, BkTree.distance("", "anna"));
+    }
+
+    @Test
+    void matchesScanUnderAddsAndRemoves() {
+        Random random = new Random(18);
+        BkTree tree = new BkTree();
+        List<Integer> added = new ArrayList<>();
+        List<String> addedTerms = new ArrayList<>();
+
+        // Removing most terms again forces the tree to be rebuilt several times
+        for (int step = 0; step < 30_000; step++) {
+            int op = random.nextInt(10);
+            if (op < 5 || added.isEmpty()) {
+                int id = random.nextInt(20_000);
+                String term = term(random);
+                add(tree, id, term);
+                added.add(id);
+                addedTerms.add(term);
+            } else if (op < 9) {
+                int pick = random.nextInt(added.size());
+                remove(tree, added.get(pick), addedTerms.get(pick));
+                added.set(pick, added.get(added.size() - 1));
+                addedTerms.set(pick, addedTerms.get(addedTerms.size() - 1));
+                added.remove(added.size() - 1);
+                addedTerms.remove(addedTerms.size() - 1);
+            } else if (step % 50 == 0) {
+                check(tree, term(random), random.nextInt(3));
+            }
+        }
+        for (int maxDistance = 0; maxDistance <= 3; maxDistance++) {
+            check(tree, "abcd", maxDistance);
+        }
+
+        tree.clear();
+        reference.clear();
+        check(tree, "abcd", 2);
+        add(tree, 1, "abce");
+        check(tree, "abcd", 1);
+    }
+}
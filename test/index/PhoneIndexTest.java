@@ -0,0 +1,134 @@
+package index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PhoneIndex answers must match a brute-force scan over the same numbers,
+ * however adds, replacements, removals and queries are interleaved
+ */
+class PhoneIndexTest {
+    private static final int INFIX = 0;
+    private static final int PREFIX = 1;
+    private static final int SUFFIX = 2;
+
+    private static int[] find(PhoneIndex index, int mode, String digits) {
+        return mode == INFIX ? index.findContaining(digits)
+                : mode == PREFIX ? index.findByPrefix(digits) : index.findBySuffix(digits);
+    }
+
+    /**
+     * Answers a query by testing every number
+     */
+    private static int[] scan(Map<Integer, String> numbers, int mode, String digits) {
+        TreeSet<Integer> ids = new TreeSet<>();
+        for (Map.Entry<Integer, String> entry : numbers.entrySet()) {
+            String number = PhoneIndex.normalize(entry.getValue());
+            boolean match = mode == INFIX ? number.contains(digits)
+                    : mode == PREFIX ? number.startsWith(digits) : number.endsWith(digits);
+            if (match) {
+                ids.add(entry.getKey());
+            }
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Formats digits the way users enter them, so the index has to normalize
+     */
+    private static String format(Random random, String digits) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return digits;
+            case 1:
+                return "+" + digits.substring(0, 1) + " (" + digits.substring(1, 4) + ") " + digits.substring(4);
+            default:
+                return digits.substring(0, 3) + "-" + digits.substring(3);
+        }
+    }
+
+    private static void checkAll(PhoneIndex index, Map<Integer, String> numbers, Random random, int queries) {
+        for (int i = 0; i < queries; i++) {
+            int mode = random.nextInt(3);
+            String digits = String.valueOf(random.nextInt(random.nextBoolean() ? 100 : 100_000));
+            int[] expected = scan(numbers, mode, digits);
+            assertArrayEquals(expected, find(index, mode, digits), "mode " + mode + ", query " + digits);
+            assertTrue(index.estimate(digits) >= expected.length, "estimate for " + digits);
+        }
+    }
+
+    @Test
+    void matchesScanUnderInterleavedChanges() {
+        Random random = new Random(42);
+        PhoneIndex index = new PhoneIndex();
+        Map<Integer, String> numbers = new HashMap<>();
+
+        for (int step = 0; step < 30_000; step++) {
+            int op = random.nextInt(10);
+            int id = random.nextInt(3000);
+            if (op < 5) {
+                String number = format(random, String.valueOf(1_000_000_000L + random.nextInt(900_000_000)));
+                index.add(id, number); // Replaces the number of an existing ID
+                numbers.put(id, number);
+            } else if (op < 7) {
+                index.remove(id);
+                numbers.remove(id);
+            } else {
+                checkAll(index, numbers, random, 1);
+            }
+        }
+        checkAll(index, numbers, random, 500);
+    }
+
+    @Test
+    void matchesScanAfterBulkLoadAndMassRemoval() {
+        Random random = new Random(7);
+        PhoneIndex index = new PhoneIndex();
+        Map<Integer, String> numbers = new HashMap<>();
+        for (int id = 0; id < 20_000; id++) {
+            String number = String.valueOf(5_550_000_000L + random.nextInt(10_000_000));
+            index.add(id, number);
+            numbers.put(id, number);
+        }
+        checkAll(index, numbers, random, 200);
+
+        // Enough dead numbers to have the runs compacted
+        for (int id = 0; id < 20_000; id += 2) {
+            index.remove(id);
+            numbers.remove(id);
+        }
+        checkAll(index, numbers, random, 200);
+
+        for (int id = 0; id < 5_000; id++) {
+            String number = String.valueOf(4_440_000_000L + random.nextInt(10_000_000));
+            index.add(id, number);
+            numbers.put(id, number);
+        }
+        checkAll(index, numbers, random, 200);
+    }
+
+    @Test
+    void normalizesFormattedNumbers() {
+        assertEquals("5551234", PhoneIndex.normalize("(555) 123-4"));
+        assertEquals("", PhoneIndex.normalize("n/a"));
+
+        PhoneIndex index = new PhoneIndex();
+        index.add(1, "+1 (555) 123-4567");
+        index.add(2, "555.987.6543");
+        index.add(3, "no number");
+        assertArrayEquals(new int[] { 1 }, index.findByPrefix("1555"));
+        assertArrayEquals(new int[] { 2 }, index.findBySuffix("6543"));
+        assertArrayEquals(new int[] { 1, 2 }, index.findContaining("555"));
+
+        index.add(1, "999");
+        assertArrayEquals(new int[] { 2 }, index.findContaining("555"));
+        index.clear();
+        assertArrayEquals(new int[0], index.findContaining("9"));
+    }
+}
@@ -0,0 +1,126 @@
+package index;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PrefixIndex lookups must match a scan of the same terms, and adding IDs
+ * to one term must not get slower as the term grows
+ */
+class PrefixIndexTest {
+    /**
+     * IDs of each term, as a brute-force reference
+     */
+    private final TreeMap<String, TreeSet<Integer>> reference = new TreeMap<>();
+
+    private void add(PrefixIndex index, int id, String term) {
+        index.add(id, term);
+        reference.computeIfAbsent(term, ignored -> new TreeSet<>()).add(id);
+    }
+
+    private void remove(PrefixIndex index, int id, String term) {
+        index.remove(id, term);
+        TreeSet<Integer> ids = reference.get(term);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                reference.remove(term);
+            }
+        }
+    }
+
+    private void check(PrefixIndex index, String prefix) {
+        List<String> terms = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        for (Map.Entry<String, TreeSet<Integer>> entry : reference.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            terms.add(entry.getKey());
+            ids.addAll(entry.getValue());
+        }
+
+        assertEquals(terms, index.terms(prefix, Integer.MAX_VALUE), prefix);
+        assertEquals(terms.subList(0, Math.min(3, terms.size())), index.terms(prefix, 3), prefix);
+        List<Integer> visited = new ArrayList<>();
+        index.forEachId(prefix, visited::add);
+        assertEquals(ids, visited, prefix);
+        assertEquals(Math.min(5, ids.size()), index.countIds(prefix, 5), prefix);
+        for (String term : terms) {
+            int[] expected = reference.get(term).stream().mapToInt(Integer::intValue).toArray();
+            assertArrayEquals(expected, index.get(term), term);
+            assertEquals(expected.length, index.count(term), term);
+        }
+    }
+
+    private static String term(Random random) {
+        StringBuilder term = new StringBuilder();
+        for (int i = 1 + random.nextInt(4); i > 0; i--) {
+            term.append((char) ('a' + random.nextInt(4)));
+        }
+        return term.toString();
+    }
+
+    @Test
+    void matchesScanUnderAddsAndRemoves() {
+        Random random = new Random(20);
+        PrefixIndex index = new PrefixIndex();
+        List<Integer> added = new ArrayList<>();
+        List<String> addedTerms = new ArrayList<>();
+
+        // Enough distinct terms to merge the delta into the array several times
+        for (int step = 0; step < 40_000; step++) {
+            int op = random.nextInt(10);
+            if (op < 6 || added.isEmpty()) {
+                int id = random.nextInt(op < 3 ? 5000 : 50_000); // Out of order now and then
+                String term = random.nextInt(4) == 0 ? term(random) + "x" + step : term(random);
+                add(index, id, term);
+                added.add(id);
+                addedTerms.add(term);
+            } else if (op < 9) {
+                int pick = random.nextInt(added.size());
+                remove(index, added.get(pick), addedTerms.get(pick));
+            } else {
+                String probe = term(random);
+                check(index, probe.substring(0, Math.min(probe.length(), 1 + random.nextInt(2))));
+            }
+        }
+        check(index, "");
+        assertArrayEquals(new int[0], index.get("zzz"));
+        assertEquals(0, index.count("zzz"));
+
+        index.clear();
+        reference.clear();
+        check(index, "");
+    }
+
+    @Test
+    void addsToOneTermStayFast() {
+        // A million postings under one term: quadratic copying would take hours
+        PrefixIndex index = new PrefixIndex();
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int id = 1; id <= 1_000_000; id++) {
+                index.add(id, "example.com");
+            }
+        });
+        assertEquals(1_000_000, index.count("example.com"));
+        assertEquals(3, index.countIds("example", 3));
+
+        // IDs that arrive out of order are inserted in place
+        index.add(0, "example.com");
+        index.remove(500_000, "example.com");
+        int[] ids = index.get("example.com");
+        assertEquals(1_000_000, ids.length);
+        assertEquals(0, ids[0]);
+        assertEquals(500_001, ids[500_000]);
+    }
+}
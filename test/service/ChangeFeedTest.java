@@ -0,0 +1,229 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import storage.Durability;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The change feed delivers committed changes in order, no faster than
+ * subscribers ask for them, lets them resume from any retained sequence,
+ * also after a restart, and tells them when they have fallen too far behind
+ */
+class ChangeFeedTest {
+    @TempDir
+    File directory;
+
+    /**
+     * Queues whatever the feed signals, with onComplete as COMPLETE
+     */
+    private static final class Recorder implements Flow.Subscriber<ChangeEvent> {
+        static final Object COMPLETE = new Object();
+
+        final BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+        private final long initialRequest;
+        private Flow.Subscription subscription;
+
+        Recorder(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(ChangeEvent event) {
+            signals.add(event);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            signals.add(error);
+        }
+
+        @Override
+        public void onComplete() {
+            signals.add(COMPLETE);
+        }
+
+        void request(long n) {
+            subscription.request(n);
+        }
+
+        Object next() throws InterruptedException {
+            Object signal = signals.poll(10, TimeUnit.SECONDS);
+            assertNotNull(signal, "Nothing was signalled");
+            return signal;
+        }
+
+        ChangeEvent nextEvent() throws InterruptedException {
+            Object signal = next();
+            assertInstanceOf(ChangeEvent.class, signal);
+            return (ChangeEvent) signal;
+        }
+
+        List<String> nextEvents(int count) throws InterruptedException {
+            List<String> events = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                ChangeEvent event = nextEvent();
+                events.add(event.getType() + " " + event.getContactId());
+            }
+            return events;
+        }
+
+        void assertQuiet() throws InterruptedException {
+            assertNull(signals.poll(200, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private ContactServiceConfig config() {
+        return StoreMode.PLAIN.config(directory).setDurability(Durability.WRITE);
+    }
+
+    /**
+     * Adds two contacts, updates the first and deletes the second
+     *
+     * @return Sequence of every change, in order
+     */
+    private static List<Long> mutate(ContactService service, Recorder all) throws InterruptedException {
+        int ann = service.addContactAsync("Ann", "555 1000", "ann@example.com", "", Durability.WRITE).join().getId();
+        int bob = service.addContactAsync("Bob", "555 2000", "bob@example.com", "", Durability.WRITE).join().getId();
+        service.updateContactAsync(ann, "Anne", "555 1000", "ann@example.com", "", Durability.WRITE).join();
+        service.deleteContactAsync(bob, Durability.WRITE).join();
+
+        List<Long> sequences = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            sequences.add(all.nextEvent().getSequence());
+        }
+        return sequences;
+    }
+
+    @Test
+    void subscribersResumeFromAnyRetainedSequence() throws Exception {
+        ContactService service = new ContactService(config());
+        List<Long> sequences;
+        try {
+            Recorder live = new Recorder(Long.MAX_VALUE);
+            service.getChangeFeed().subscribe(live);
+            sequences = mutate(service, live);
+            for (int i = 1; i < sequences.size(); i++) {
+                assertTrue(sequences.get(i) > sequences.get(i - 1), sequences.toString());
+            }
+            assertEquals(sequences.get(3), service.getChangeFeed().getLastSequence());
+
+            Recorder resumed = new Recorder(Long.MAX_VALUE);
+            service.getChangeFeed().subscribe(resumed, sequences.get(1));
+            assertEquals(List.of("ADD 2", "UPDATE 1", "DELETE 2"), resumed.nextEvents(3));
+
+            // A sequence in a gap resumes from the next event
+            Recorder between = new Recorder(Long.MAX_VALUE);
+            service.getChangeFeed().subscribe(between, sequences.get(2) + 1);
+            ChangeEvent delete = between.nextEvent();
+            assertEquals(sequences.get(3), delete.getSequence());
+            assertEquals("Bob", delete.getBefore().getName());
+            assertNull(delete.getAfter());
+
+            // Subscribing without a sequence starts after the last change
+            Recorder future = new Recorder(Long.MAX_VALUE);
+            service.getChangeFeed().subscribe(future);
+            future.assertQuiet();
+            service.addContactAsync("Cid", "555 3000", "cid@example.com", "", Durability.WRITE).join();
+            assertEquals(List.of("ADD 3"), future.nextEvents(1));
+            live.nextEvent();
+        } finally {
+            service.close();
+        }
+
+        // Replayed changes keep their sequences
+        ContactService restarted = new ContactService(config());
+        try {
+            Recorder resumed = new Recorder(Long.MAX_VALUE);
+            restarted.getChangeFeed().subscribe(resumed, sequences.get(2));
+            ChangeEvent update = resumed.nextEvent();
+            assertEquals(sequences.get(2), update.getSequence());
+            assertEquals("Ann", update.getBefore().getName());
+            assertEquals("Anne", update.getAfter().getName());
+            assertEquals(List.of("DELETE 2", "ADD 3"), resumed.nextEvents(2));
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void deliveryFollowsDemand() throws Exception {
+        ContactService service = new ContactService(config());
+        try {
+            Recorder slow = new Recorder(1);
+            service.getChangeFeed().subscribe(slow);
+            for (int i = 0; i < 6; i++) {
+                service.addContactAsync("Name" + i, "555 10" + i, "n" + i + "@example.com", "", Durability.WRITE)
+                        .join();
+            }
+
+            assertEquals(List.of("ADD 1"), slow.nextEvents(1));
+            slow.assertQuiet();
+            slow.request(3);
+            assertEquals(List.of("ADD 2", "ADD 3", "ADD 4"), slow.nextEvents(3));
+            slow.assertQuiet();
+
+            slow.request(0);
+            assertInstanceOf(IllegalArgumentException.class, slow.next());
+            assertEquals(0, service.getChangeFeed().getSubscriberCount());
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void subscribersThatFallBehindTheRetainedChangesFail() throws Exception {
+        ContactService service = new ContactService(config().setRetainedChanges(4));
+        Recorder oldest = new Recorder(Long.MAX_VALUE);
+        try {
+            Recorder slow = new Recorder(1);
+            service.getChangeFeed().subscribe(slow);
+            List<Long> sequences = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                Recorder one = new Recorder(1);
+                service.getChangeFeed().subscribe(one);
+                service.addContactAsync("Name" + i, "555 10" + i, "n" + i + "@example.com", "", Durability.WRITE)
+                        .join();
+                sequences.add(one.nextEvent().getSequence());
+                one.subscription.cancel();
+            }
+            long oldestSequence = service.getChangeFeed().getOldestSequence();
+            assertTrue(oldestSequence > sequences.get(5) && oldestSequence <= sequences.get(6));
+
+            assertEquals(List.of("ADD 1"), slow.nextEvents(1));
+            slow.request(1);
+            assertInstanceOf(IllegalStateException.class, slow.next());
+
+            Recorder tooOld = new Recorder(Long.MAX_VALUE);
+            service.getChangeFeed().subscribe(tooOld, sequences.get(5));
+            assertInstanceOf(IllegalStateException.class, tooOld.next());
+            Recorder tooNew = new Recorder(Long.MAX_VALUE);
+            service.getChangeFeed().subscribe(tooNew, sequences.get(9) + 2);
+            assertInstanceOf(IllegalArgumentException.class, tooNew.next());
+
+            service.getChangeFeed().subscribe(oldest, oldestSequence);
+            assertEquals(List.of("ADD 7", "ADD 8", "ADD 9", "ADD 10"), oldest.nextEvents(4));
+            assertEquals(1, service.getChangeFeed().getSubscriberCount());
+        } finally {
+            service.close();
+        }
+
+        // Closing the service completes the subscriptions that are caught up
+        assertSame(Recorder.COMPLETE, oldest.next());
+    }
+}
@@ -0,0 +1,159 @@
+package service;
+
+import model.Contact;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import storage.Durability;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checkpoints followed by restarts must bring back exactly the contacts the
+ * service held, whichever part of them came from the snapshot and which
+ * from the journal
+ */
+class CheckpointTest {
+    @TempDir
+    File directory;
+
+    private static List<String> describe(List<Contact> contacts) {
+        List<String> lines = new ArrayList<>();
+        for (Contact contact : contacts) {
+            lines.add(contact.getId() + " v" + contact.getVersion() + " " + contact.getName() + " | "
+                    + contact.getPhoneNumber() + " | " + contact.getEmail() + " | " + contact.getAddress());
+        }
+        return lines;
+    }
+
+    /**
+     * Adds, updates and deletes contacts at random
+     */
+    private static void mutate(ContactService service, Random random, List<Integer> ids, int steps) {
+        for (int step = 0; step < steps; step++) {
+            int op = random.nextInt(10);
+            if (op < 6 || ids.isEmpty()) {
+                int n = random.nextInt(1_000_000);
+                ids.add(service.addContactAsync("Name " + n, "555 " + n, "n" + n + "@example.com", "Street " + n,
+                        Durability.WRITE).join().getId());
+            } else if (op < 8) {
+                int n = random.nextInt(1_000_000);
+                service.updateContact(ids.get(random.nextInt(ids.size())), "Renamed " + n, "555 " + n,
+                        "r" + n + "@example.com", "Avenue " + n);
+            } else {
+                service.deleteContact(ids.remove(random.nextInt(ids.size())));
+            }
+        }
+    }
+
+    private String[] files() {
+        String[] names = directory.list();
+        Arrays.sort(names);
+        return names;
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = StoreMode.class, names = { "PLAIN", "CONCURRENT", "COLUMNAR", "LAZY" })
+    void restartRestoresSnapshotPlusJournal(StoreMode mode) {
+        Random random = new Random(mode.name().hashCode());
+        List<Integer> ids = new ArrayList<>();
+
+        ContactService service = new ContactService(mode.config(directory));
+        mutate(service, random, ids, 300);
+        service.checkpoint().join();
+        mutate(service, random, ids, 300); // Only in the journal
+        List<String> expected = describe(service.getAllContacts());
+        service.close();
+
+        service = new ContactService(mode.config(directory));
+        assertEquals(expected, describe(service.getAllContacts()));
+
+        // IDs of deleted contacts are not handed out again
+        int maxId = ids.stream().mapToInt(Integer::intValue).max().orElse(0);
+        int freshId = service.addContactAsync("Fresh", "555 0", "fresh@example.com", "Road", Durability.WRITE)
+                .join().getId();
+        assertTrue(freshId > maxId, freshId + " <= " + maxId);
+        expected = describe(service.getAllContacts());
+
+        // A checkpoint covering everything leaves an empty journal to replay
+        service.checkpoint().join();
+        service.close();
+        service = new ContactService(mode.config(directory));
+        assertEquals(expected, describe(service.getAllContacts()));
+        service.close();
+    }
+
+    @Test
+    void checkpointDiscardsCoveredSegments() {
+        ContactService service = new ContactService(StoreMode.PLAIN.config(directory));
+        mutate(service, new Random(1), new ArrayList<>(), 50);
+        assertArrayEquals(new String[] { "contacts.log.1" }, files());
+
+        service.checkpoint().join();
+        service.close();
+        assertArrayEquals(new String[] { "contacts.dat", "contacts.log.2" }, files());
+    }
+
+    @Test
+    void checkpointIsTakenAfterConfiguredMutations() {
+        ContactService service = new ContactService(StoreMode.PLAIN.config(directory).setCheckpointMutations(1000));
+        List<Integer> ids = new ArrayList<>();
+        mutate(service, new Random(2), ids, 1500);
+        List<String> expected = describe(service.getAllContacts());
+        service.close();
+
+        assertTrue(new File(directory, "contacts.dat").exists());
+        assertFalse(new File(directory, "contacts.log.1").exists());
+        service = new ContactService(StoreMode.PLAIN.config(directory));
+        assertEquals(expected, describe(service.getAllContacts()));
+        service.close();
+    }
+
+    @Test
+    void fastStartBuildsTheIdIndexOnFirstLookup() throws Exception {
+        ContactService service = new ContactService(StoreMode.PLAIN.config(directory));
+        List<Integer> ids = new ArrayList<>();
+        mutate(service, new Random(3), ids, 500);
+        service.checkpoint().join();
+        List<String> expected = describe(service.getAllContacts());
+        service.close();
+
+        Field idIndexed = ContactService.class.getDeclaredField("idIndexed");
+        idIndexed.setAccessible(true);
+        int deleted;
+        service = new ContactService(StoreMode.LAZY.config(directory));
+        try {
+            assertFalse(idIndexed.getBoolean(service));
+            assertEquals(expected, describe(service.getAllContacts()));
+            assertFalse(idIndexed.getBoolean(service));
+
+            Contact first = service.getAllContacts().get(0);
+            assertEquals(first.getName(), service.getContact(first.getId()).getName());
+            assertTrue(idIndexed.getBoolean(service));
+            deleted = first.getId();
+            service.deleteContact(deleted);
+            expected.remove(0);
+            assertEquals(expected, describe(service.getAllContacts()));
+        } finally {
+            service.close();
+        }
+
+        // Replaying the delete needs the index at once
+        service = new ContactService(StoreMode.LAZY.config(directory));
+        try {
+            assertTrue(idIndexed.getBoolean(service));
+            assertNull(service.getContact(deleted));
+            assertEquals(expected, describe(service.getAllContacts()));
+        } finally {
+            service.close();
+        }
+    }
+}
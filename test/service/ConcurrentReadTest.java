@@ -0,0 +1,108 @@
+package service;
+
+import model.Contact;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import storage.Durability;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * In concurrent mode, lookups that share the read lock on the search
+ * indexes run while another thread writes, and every contact they return
+ * must match what was asked for
+ */
+class ConcurrentReadTest {
+    @TempDir
+    File directory;
+
+    private static String phone(Random random) {
+        return "+1 555 " + (1_000_000 + random.nextInt(8_999_999));
+    }
+
+    private static String digits(String phoneNumber) {
+        return phoneNumber.replaceAll("[^0-9]", "");
+    }
+
+    @Test
+    void indexReadsRunAlongsideWrites() throws Exception {
+        int readers = 6;
+        ContactService service = new ContactService(new ContactServiceConfig()
+                .setDataFile(new File(directory, "contacts.dat").getPath())
+                .setJournalFile(new File(directory, "contacts.log").getPath())
+                .setConcurrent(true)
+                .setDuplicatePolicy(DuplicatePolicy.FLAG)
+                .setDurability(Durability.NONE));
+        ExecutorService executor = Executors.newFixedThreadPool(readers + 1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        Random random = new Random(6);
+        try {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < 1_000; i++) {
+                ids.add(service.addContactAsync("Name" + i, phone(random), "n" + i + "@host" + (i % 20) + ".com",
+                        "Street", Durability.NONE).join().getId());
+            }
+
+            List<Future<?>> tasks = new ArrayList<>();
+            tasks.add(executor.submit(() -> {
+                Random local = new Random(60);
+                start.await();
+                for (int i = 0; i < 3_000; i++) {
+                    int id = ids.get(local.nextInt(ids.size()));
+                    int n = local.nextInt(100_000);
+                    service.updateContact(id, "Name" + n, phone(local), "u" + n + "@host" + (n % 20) + ".com",
+                            "Street");
+                }
+                writing.set(false);
+                return null;
+            }));
+            for (int t = 0; t < readers; t++) {
+                long seed = t;
+                tasks.add(executor.submit(() -> {
+                    Random local = new Random(seed);
+                    start.await();
+                    int rounds = 0;
+                    while (writing.get() || rounds < 20) {
+                        rounds++;
+                        String domain = "host" + local.nextInt(20) + ".com";
+                        for (Contact contact : service.findByEmailDomain(domain)) {
+                            assertTrue(contact.getEmail().endsWith("@" + domain), contact.getEmail());
+                        }
+                        String prefix = "name" + local.nextInt(10);
+                        for (Contact contact : service.suggestByName(prefix, 10)) {
+                            assertTrue(contact.getName().toLowerCase().startsWith(prefix), contact.getName());
+                        }
+                        String suffix = String.format("%02d", local.nextInt(100));
+                        for (Contact contact : service.query(new ContactQuery()
+                                .where(Criterion.phoneEndsWith(suffix)))) {
+                            assertTrue(digits(contact.getPhoneNumber()).endsWith(suffix), contact.getPhoneNumber());
+                        }
+                        Contact sample = service.getContact(ids.get(local.nextInt(ids.size())));
+                        for (Contact contact : service.findByEmail(sample.getEmail())) {
+                            assertEquals(sample.getEmail(), contact.getEmail());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package service;
+
+import model.Contact;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import storage.Durability;
+import store.StoreType;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Planned queries must return exactly what filtering, sorting and paging
+ * every contact by hand returns, whether the planner picks indexes or scans
+ */
+class ContactQueryTest {
+    @TempDir
+    File directory;
+
+    private int planned;
+    private int scanned;
+
+    /**
+     * A criterion together with the predicate it should be equivalent to
+     */
+    private static final class Case {
+        final Criterion criterion;
+        final Predicate<Contact> predicate;
+
+        Case(Criterion criterion, Predicate<Contact> predicate) {
+            this.criterion = criterion;
+            this.predicate = predicate;
+        }
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        word.append((char) ('A' + random.nextInt(6)));
+        for (int i = 1 + random.nextInt(5); i > 0; i--) {
+            word.append((char) ('a' + random.nextInt(5)));
+        }
+        return word.toString();
+    }
+
+    private static String email(Random random) {
+        return "u" + random.nextInt(1000) + "@" + word(random).toLowerCase() + (random.nextBoolean() ? ".com" : ".org");
+    }
+
+    private static String digits(String phoneNumber) {
+        return phoneNumber.replaceAll("[^0-9]", "");
+    }
+
+    private static String domain(String email) {
+        String trimmed = email.trim().toLowerCase();
+        return trimmed.substring(trimmed.lastIndexOf('@') + 1);
+    }
+
+    private static boolean anyWordStartsWith(String name, String prefix) {
+        for (String word : name.toLowerCase().trim().split("\\s+")) {
+            if (word.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Picks a single condition, mostly built from the values of an existing
+     * contact so that it matches something
+     */
+    private static Case leaf(Random random, List<Contact> all) {
+        Contact sample = all.get(random.nextInt(all.size()));
+        String phone = digits(sample.getPhoneNumber());
+        switch (random.nextInt(9)) {
+            case 0: {
+                String name = sample.getName().toLowerCase();
+                int from = random.nextInt(name.length());
+                String text = name.substring(from, Math.min(name.length(), from + 1 + random.nextInt(5))).trim();
+                String query = text.isEmpty() ? "a" : text;
+                return new Case(Criterion.nameContains(query.toUpperCase()),
+                        c -> c.getName().toLowerCase().contains(query));
+            }
+            case 1: {
+                String prefix = word(random).substring(0, 1 + random.nextInt(2)).toLowerCase();
+                return new Case(Criterion.nameStartsWith(prefix), c -> anyWordStartsWith(c.getName(), prefix));
+            }
+            case 2: {
+                int from = random.nextInt(phone.length() - 3);
+                String part = phone.substring(from, from + 1 + random.nextInt(4));
+                return new Case(Criterion.phoneContains(part), c -> digits(c.getPhoneNumber()).contains(part));
+            }
+            case 3: {
+                String prefix = phone.substring(0, 4 + random.nextInt(5));
+                return new Case(Criterion.phoneStartsWith(prefix),
+                        c -> digits(c.getPhoneNumber()).startsWith(prefix));
+            }
+            case 4: {
+                String suffix = phone.substring(phone.length() - 1 - random.nextInt(4));
+                return new Case(Criterion.phoneEndsWith(suffix), c -> digits(c.getPhoneNumber()).endsWith(suffix));
+            }
+            case 5: {
+                String email = sample.getEmail();
+                return new Case(Criterion.emailIs(" " + email.toUpperCase()),
+                        c -> c.getEmail().trim().equalsIgnoreCase(email.trim()));
+            }
+            case 6: {
+                String domain = domain(sample.getEmail());
+                return new Case(Criterion.emailDomain(domain), c -> domain(c.getEmail()).equals(domain));
+            }
+            case 7: {
+                String text = String.valueOf(random.nextInt(10));
+                return new Case(Criterion.addressContains(text), c -> c.getAddress().toLowerCase().contains(text));
+            }
+            default: {
+                int modulus = 2 + random.nextInt(5);
+                return new Case(Criterion.matching("id % " + modulus, c -> c.getId() % modulus == 0),
+                        c -> c.getId() % modulus == 0);
+            }
+        }
+    }
+
+    private static Case tree(Random random, List<Contact> all, int depth) {
+        if (depth == 0 || random.nextInt(3) == 0) {
+            return leaf(random, all);
+        }
+        Case a = tree(random, all, depth - 1);
+        Case b = tree(random, all, depth - 1);
+        switch (random.nextInt(4)) {
+            case 0:
+                return new Case(a.criterion.or(b.criterion), a.predicate.or(b.predicate));
+            case 1:
+                return new Case(Criterion.not(a.criterion), a.predicate.negate());
+            default: {
+                Case c = tree(random, all, depth - 1);
+                return new Case(Criterion.allOf(a.criterion, b.criterion, c.criterion),
+                        a.predicate.and(b.predicate).and(c.predicate));
+            }
+        }
+    }
+
+    private static Comparator<Contact> comparator(ContactQuery.SortKey key) {
+        switch (key) {
+            case ID:
+                return Comparator.comparingInt(Contact::getId);
+            case NAME:
+                return Comparator.comparing(Contact::getName, String.CASE_INSENSITIVE_ORDER);
+            case PHONE:
+                return Comparator.comparing(c -> digits(c.getPhoneNumber()));
+            case EMAIL:
+                return Comparator.comparing(Contact::getEmail, String.CASE_INSENSITIVE_ORDER);
+            default:
+                return Comparator.comparing(Contact::getAddress, String.CASE_INSENSITIVE_ORDER);
+        }
+    }
+
+    private static List<Integer> ids(List<Contact> contacts) {
+        List<Integer> ids = new ArrayList<>();
+        for (Contact contact : contacts) {
+            ids.add(contact.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Runs one random query and compares it with filtering by hand
+     */
+    private void checkQuery(ContactService service, Random random, String mode) {
+        List<Contact> all = service.getAllContacts();
+        Case where = tree(random, all, 3);
+        ContactQuery query = new ContactQuery().where(where.criterion);
+        List<Contact> expected = new ArrayList<>();
+        for (Contact contact : all) {
+            if (where.predicate.test(contact)) {
+                expected.add(contact);
+            }
+        }
+
+        if (random.nextBoolean()) {
+            ContactQuery.SortKey[] keys = ContactQuery.SortKey.values();
+            ContactQuery.SortKey key = keys[random.nextInt(keys.length)];
+            boolean descending = random.nextBoolean();
+            query.sortBy(key, descending);
+            expected.sort(descending ? comparator(key).reversed() : comparator(key));
+        }
+        int offset = random.nextInt(3) == 0 ? random.nextInt(20) : 0;
+        int limit = random.nextBoolean() ? 1 + random.nextInt(30) : Integer.MAX_VALUE;
+        query.offset(offset).limit(limit);
+        expected = expected.subList(Math.min(offset, expected.size()),
+                (int) Math.min(expected.size(), (long) offset + limit));
+
+        String plan = service.explain(query);
+        assertEquals(ids(expected), ids(service.query(query)), mode + ": " + query + "\n" + plan);
+        if (plan.contains("scan")) {
+            scanned++;
+        } else {
+            planned++;
+        }
+    }
+
+    /**
+     * Adds, updates and deletes contacts at random, checking a query now
+     * and then so that the indexes are queried between changes
+     */
+    private void mutate(ContactService service, Random random, String mode, int steps) {
+        List<Integer> ids = new ArrayList<>();
+        for (int step = 0; step < steps; step++) {
+            int op = random.nextInt(10);
+            if (op < 6 || ids.isEmpty()) {
+                ids.add(service.addContactAsync(word(random) + " " + word(random),
+                        "+1 555 " + (1_000_000 + random.nextInt(8_999_999)), email(random),
+                        random.nextInt(100) + " Main St", Durability.NONE).join().getId());
+            } else if (op < 7) {
+                service.updateContact(ids.get(random.nextInt(ids.size())), word(random) + " " + word(random),
+                        "+1 555 " + (1_000_000 + random.nextInt(8_999_999)), email(random),
+                        "Berlin " + random.nextInt(10));
+            } else if (op < 8) {
+                service.deleteContact(ids.remove(random.nextInt(ids.size())));
+            } else if (step % 50 == 0) {
+                checkQuery(service, random, mode);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = StoreMode.class, names = { "PLAIN", "CONCURRENT", "COLUMNAR", "UNIQUE" })
+    void plannedQueriesMatchFilteringEveryContact(StoreMode mode) {
+        Random random = new Random(mode.name().hashCode());
+        ContactService service = new ContactService(mode.config(directory));
+        try {
+            mutate(service, random, mode.name(), 6_000);
+            for (int i = 0; i < 200; i++) {
+                checkQuery(service, random, mode.name());
+            }
+        } finally {
+            service.close();
+        }
+
+        // The same contacts restarted in fast-start mode, with the indexes built on first use
+        ContactService lazy = new ContactService(mode.config(directory).setConcurrent(false)
+                .setStoreType(StoreType.OBJECTS).setLazyLoad(true));
+        try {
+            for (int i = 0; i < 100; i++) {
+                checkQuery(lazy, random, mode + " lazy");
+            }
+        } finally {
+            lazy.close();
+        }
+        assertTrue(planned > 0 && scanned > 0, planned + " planned, " + scanned + " scanned");
+    }
+
+    @Test
+    void concurrentPhoneQueriesMatchFiltering() throws Exception {
+        int threads = 8;
+        ContactService service = new ContactService(StoreMode.CONCURRENT.config(directory)
+                .setDurability(Durability.NONE));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Random random = new Random(22);
+        try {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                ids.add(service.addContactAsync(word(random), "+1 555 " + (1_000_000 + random.nextInt(8_999_999)),
+                        email(random), "Street", Durability.NONE).join().getId());
+            }
+            for (int round = 0; round < 5; round++) {
+                // A batch of writes, then many readers planning from the phone index at once
+                for (int i = 0; i < 500; i++) {
+                    int id = ids.get(random.nextInt(ids.size()));
+                    Contact contact = service.getContact(id);
+                    service.updateContact(id, contact.getName(), "+1 555 " + (1_000_000 + random.nextInt(8_999_999)),
+                            contact.getEmail(), contact.getAddress());
+                }
+                List<Contact> all = service.getAllContacts();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> readers = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    long seed = random.nextLong();
+                    readers.add(executor.submit(() -> {
+                        Random local = new Random(seed);
+                        start.await();
+                        for (int i = 0; i < 50; i++) {
+                            String suffix = String.format("%03d", local.nextInt(1000));
+                            List<Contact> expected = new ArrayList<>();
+                            for (Contact contact : all) {
+                                if (digits(contact.getPhoneNumber()).endsWith(suffix)) {
+                                    expected.add(contact);
+                                }
+                            }
+                            ContactQuery query = new ContactQuery().where(Criterion.phoneEndsWith(suffix));
+                            assertEquals(ids(expected), ids(service.query(query)), suffix);
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> reader : readers) {
+                    reader.get();
+                }
+            }
+        } finally {
+            executor.shutdown();
+            service.close();
+        }
+    }
+
+    @Test
+    void explainShowsIndexOrScan() {
+        ContactService service = new ContactService(StoreMode.PLAIN.config(directory));
+        try {
+            for (int i = 0; i < 200; i++) {
+                service.addContactAsync("Person " + i, "555 " + (1000 + i), "p" + i + "@host" + (i % 50) + ".com",
+                        "Street " + i, Durability.NONE).join();
+            }
+
+            String indexed = service.explain(new ContactQuery().where(Criterion.emailDomain("host7.com")));
+            assertTrue(indexed.contains("index"), indexed);
+            assertFalse(indexed.contains("scan"), indexed);
+            assertEquals(4, service.query(new ContactQuery().where(Criterion.emailDomain("host7.com"))).size());
+
+            String unindexed = service.explain(new ContactQuery()
+                    .where(Criterion.matching("even id", c -> c.getId() % 2 == 0)));
+            assertTrue(unindexed.contains("no index applies"), unindexed);
+            assertTrue(unindexed.contains("scan"), unindexed);
+        } finally {
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package service;
+
+import model.Contact;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Duplicate detection: the unique indexes find, flag or refuse contacts that
+ * share an email or phone number as they are added and updated, and the
+ * cluster report links contacts through any chain of shared keys
+ */
+class DuplicateTest {
+    @TempDir
+    File directory;
+
+    private static List<Integer> ids(List<Contact> contacts) {
+        List<Integer> ids = new ArrayList<>();
+        for (Contact contact : contacts) {
+            ids.add(contact.getId());
+        }
+        return ids;
+    }
+
+    private static List<String> describe(List<DuplicateCluster> clusters) {
+        List<String> described = new ArrayList<>();
+        for (DuplicateCluster cluster : clusters) {
+            described.add(cluster.toString());
+        }
+        return described;
+    }
+
+    @ParameterizedTest
+    @EnumSource(StoreMode.class)
+    void clustersFollowChainsOfSharedKeys(StoreMode mode) {
+        ContactService service = new ContactService(mode.config(directory).setDuplicatePolicy(DuplicatePolicy.ALLOW));
+        try {
+            service.addContact("Ann", "555 1000", "ann@example.com", "");
+            service.addContact("Ann B", "555 2000", "ANN@example.com", "");
+            service.addContact("Cid", "(555) 2000", "cid@example.com", "");
+            service.addContact("Dan", "555 9000", "dan@example.com", "");
+            service.addContact("Eve", "555-7000", "eve@example.com", "");
+            service.addContact("Fay", "5557000", "fay@example.com", "");
+
+            List<DuplicateCluster> clusters = service.findDuplicateClusters();
+            assertEquals(List.of("IDs 1, 2, 3 share email ann@example.com and phone 5552000",
+                    "IDs 5, 6 share phone 5557000"), describe(clusters));
+            assertEquals(List.of(1, 2, 3), ids(clusters.get(0).getContacts()));
+            assertEquals(List.of("ann@example.com"), clusters.get(0).getSharedEmails());
+            assertEquals(List.of(), clusters.get(1).getSharedEmails());
+
+            // Breaking the middle link splits the first cluster
+            service.updateContact(2, "Ann B", "555 2001", "annb@example.com", "");
+            service.deleteContact(6);
+            assertEquals(List.of(), describe(service.findDuplicateClusters()));
+        } finally {
+            service.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StoreMode.class)
+    void flaggedDuplicatesAreKeptAndCounted(StoreMode mode) {
+        ContactService service = new ContactService(mode.config(directory).setDuplicatePolicy(DuplicatePolicy.FLAG));
+        try {
+            service.addContact("Ann", "555 1000", "ann@example.com", "");
+            service.addContact("Bob", "555 2000", "Ann@Example.com", "");
+            service.addContact("Cid", "(555) 2000", "cid@example.com", "");
+            assertEquals(2, service.getMetrics().getDuplicatesFlagged());
+            assertEquals(List.of(1, 2), ids(service.findByEmail("ANN@example.com")));
+
+            service.updateContact(2, "Bob", "555 2000", "bob@example.com", "");
+            assertEquals(List.of(1), ids(service.findByEmail("ann@example.com")));
+            assertEquals(List.of(2), ids(service.findByEmail("bob@example.com")));
+            assertEquals(3, service.getMetrics().getDuplicatesFlagged()); // Still shares Cid's phone number
+        } finally {
+            service.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StoreMode.class)
+    void rejectedDuplicatesLeaveNoTrace(StoreMode mode) {
+        ContactService service = new ContactService(mode.config(directory).setDuplicatePolicy(DuplicatePolicy.REJECT));
+        try {
+            service.addContact("Ann", "555 1000", "ann@example.com", "");
+            service.addContact("Bob", "555 2000", "bob@example.com", "");
+            assertThrows(IllegalArgumentException.class,
+                    () -> service.addContact("Cid", "555 3000", "ANN@example.com", ""));
+            assertThrows(IllegalArgumentException.class,
+                    () -> service.addContact("Cid", "555-1000", "cid@example.com", ""));
+            assertThrows(IllegalArgumentException.class,
+                    () -> service.updateContact(2, "Bob", "555 2000", "ann@example.com", ""));
+            assertEquals(3, service.getMetrics().getDuplicatesRejected());
+            assertEquals(List.of("Ann", "Bob"), List.of(service.getContact(1).getName(),
+                    service.getContact(2).getName()));
+            assertEquals(List.of(2), ids(service.findByEmail("bob@example.com")));
+
+            // A contact may keep its own keys, and deleted ones are free again
+            service.updateContact(2, "Robert", "(555) 2000", "BOB@example.com", "");
+            service.deleteContact(1);
+            service.addContact("Cid", "555 1000", "ann@example.com", "");
+            assertEquals(List.of(3), ids(service.findByEmail("ann@example.com")));
+        } finally {
+            service.close();
+        }
+
+        // The unique indexes are rebuilt from what was kept
+        ContactService restarted = new ContactService(mode.config(directory)
+                .setDuplicatePolicy(DuplicatePolicy.REJECT));
+        try {
+            assertThrows(IllegalArgumentException.class,
+                    () -> restarted.addContact("Dan", "555 4000", "bob@example.com", ""));
+            restarted.addContact("Dan", "555 4000", "dan@example.com", "");
+            assertEquals(List.of(2, 3, 4), ids(restarted.getAllContacts()));
+        } finally {
+            restarted.close();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package service;
+
+import io.ExportFormat;
+import io.ImportFormat;
+import model.Contact;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exports in either format, compressed or not, must read back through the
+ * import as the same contacts, however awkward their text
+ */
+class ExportTest {
+    @TempDir
+    File directory;
+
+    private static final String[] ADDRESSES = { "1 Main St, Springfield", "Flat \"B\"\r\n2 High St",
+            "Back\\slash\tand tab", "Zoë's café, 東京", "Emoji 😀 street", "Bell \u0007 and \u001f" };
+
+    private static List<String> describe(List<Contact> contacts) {
+        List<String> lines = new ArrayList<>();
+        for (Contact contact : contacts) {
+            lines.add(contact.getName() + " | " + contact.getPhoneNumber() + " | " + contact.getEmail() + " | "
+                    + contact.getAddress());
+        }
+        return lines;
+    }
+
+    private static byte[] export(ContactService service, ExportFormat format, boolean gzip, long expected)
+            throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(expected, service.exportContacts(Channels.newChannel(out), format, gzip));
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws Exception {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StoreMode.class)
+    void exportsReadBackAsTheSameContacts(StoreMode mode) throws Exception {
+        ContactService service = new ContactService(mode.config(directory));
+        List<String> expected;
+        try {
+            // Longer than several export buffers
+            for (int i = 0; i < 3_000; i++) {
+                String address = ADDRESSES[i % ADDRESSES.length] + " #" + "x".repeat(i % 50);
+                service.addContact("Name, \"" + i + "\" Zoë", "555 " + (10_000 + i), "n" + i + "@example.com",
+                        address);
+            }
+            for (int id = 1; id <= 3_000; id += 7) {
+                service.deleteContact(id);
+            }
+
+            // A fast-start service then exports straight from the mapped snapshot
+            service.checkpoint().join();
+            service.close();
+            service = new ContactService(mode.config(directory));
+            service.addContact("Last", "555 0", "last@example.com", "");
+            expected = describe(service.getAllContacts());
+
+            for (ExportFormat format : ExportFormat.values()) {
+                byte[] plain = export(service, format, false, expected.size());
+                byte[] compressed = export(service, format, true, expected.size());
+                assertTrue(compressed.length < plain.length / 2, format + " was not compressed");
+                assertArrayEquals(plain, gunzip(compressed), format.toString());
+
+                String text = new String(plain, StandardCharsets.UTF_8);
+                if (format == ExportFormat.CSV) {
+                    assertTrue(text.startsWith("id,name,phone,email,address\r\n2,\"Name, \"\"1\"\" Zoë\","), text);
+                } else {
+                    assertTrue(text.startsWith("{\"id\":2,\"name\":\"Name, \\\"1\\\" Zoë\",\"phone\":\"555 10001\""),
+                            text);
+                }
+
+                File imported = new File(directory, format.name());
+                assertTrue(imported.mkdir());
+                ContactService reader = new ContactService(StoreMode.PLAIN.config(imported));
+                try {
+                    ImportReport report = reader.importContacts(new InputStreamReader(
+                            new ByteArrayInputStream(plain), StandardCharsets.UTF_8),
+                            ImportFormat.valueOf(format.name()), 500);
+                    assertEquals(0, report.getFailedCount(), report.getErrors().toString());
+                    assertEquals(expected, describe(reader.getAllContacts()), format.toString());
+                } finally {
+                    reader.close();
+                }
+            }
+        } finally {
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package service;
+
+import model.Contact;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fuzzy name search matches whole names and single words despite typos,
+ * closest first, and follows updates and deletes in every store mode
+ */
+class FuzzySearchTest {
+    @TempDir
+    File directory;
+
+    private static List<String> names(List<Contact> contacts) {
+        List<String> names = new ArrayList<>();
+        for (Contact contact : contacts) {
+            names.add(contact.getName());
+        }
+        return names;
+    }
+
+    private static int add(ContactService service, String name, int n) {
+        service.addContact(name, "555 " + (1000 + n), "c" + n + "@example.com", "");
+        return service.getAllContacts().get(service.getAllContacts().size() - 1).getId();
+    }
+
+    @ParameterizedTest
+    @EnumSource(StoreMode.class)
+    void typosFindNamesClosestFirst(StoreMode mode) {
+        ContactService initial = new ContactService(mode.config(directory));
+        add(initial, "John Smith", 1);
+        int jon = add(initial, "Jon Snow", 2);
+        add(initial, "Joan Baez", 3);
+        add(initial, "Smyth Johnson", 4);
+        add(initial, "Alice Jones", 5);
+        initial.checkpoint().join();
+        initial.close();
+
+        // The search indexes of a fast-start service are built by the first search
+        ContactService service = new ContactService(mode.config(directory));
+        try {
+            assertEquals(List.of("Jon Snow", "John Smith", "Joan Baez"), names(service.searchByNameFuzzy("jon", 1)));
+            assertEquals(List.of("Jon Snow", "John Smith"), names(service.searchByNameFuzzy("JON ", 1, 2)));
+            assertEquals(List.of("John Smith", "Smyth Johnson"), names(service.searchByNameFuzzy("smith", 1)));
+            assertEquals(List.of("John Smith"), names(service.searchByNameFuzzy("jhon smith", 2)));
+            assertEquals(List.of(), names(service.searchByNameFuzzy("jon", 1, 0)));
+            assertEquals(List.of(), names(service.searchByNameFuzzy("xavier", 2)));
+            assertThrows(IllegalArgumentException.class, () -> service.searchByNameFuzzy("jon", -1));
+
+            service.updateContact(jon, "Jan Snow", "555 1002", "c2@example.com", "");
+            assertEquals(List.of("John Smith", "Jan Snow", "Joan Baez"), names(service.searchByNameFuzzy("jon", 1)));
+            service.deleteContact(jon);
+            assertEquals(List.of("John Smith", "Joan Baez"), names(service.searchByNameFuzzy("jon", 1)));
+        } finally {
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package service;
+
+import io.ImportFormat;
+import model.Contact;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bulk imports report every rejected row by its number and carry on with
+ * the rest, and the imported rows survive a restart in file order
+ */
+class ImportTest {
+    @TempDir
+    File directory;
+
+    private static List<String> rows(ImportReport report) {
+        List<String> rows = new ArrayList<>();
+        for (ImportReport.RowError error : report.getErrors()) {
+            rows.add(error.getRow() + " " + error.getMessage());
+        }
+        return rows;
+    }
+
+    private static List<String> describe(List<Contact> contacts) {
+        List<String> lines = new ArrayList<>();
+        for (Contact contact : contacts) {
+            lines.add(contact.getId() + " " + contact.getName() + " | " + contact.getPhoneNumber() + " | "
+                    + contact.getEmail() + " | " + contact.getAddress());
+        }
+        return lines;
+    }
+
+    @Test
+    void csvRowsAreMappedByHeaderAndBadRowsReported() throws Exception {
+        String csv = "email,name,address,phone\n"
+                + "ann@example.com,Ann,\"1 Main St, Springfield\",555 1000\n"
+                + "not-an-email,Bob,,555 2000\n"
+                + "\n"
+                + "cid@example.com,\"Cid \"\"The Kid\"\"\",\"Line one\nLine two\",555 3000\n"
+                + "CID@example.com,Cid Again,,555 4000\n"
+                + "dan@example.com,,,555 5000\n"
+                + "eve@example.com,Eve,,555 6000\n";
+        ContactService service = new ContactService(StoreMode.PLAIN.config(directory)
+                .setDuplicatePolicy(DuplicatePolicy.REJECT));
+        List<String> imported;
+        try {
+            ImportReport report = service.importContacts(new StringReader(csv), ImportFormat.CSV, 2);
+            assertEquals(3, report.getImportedCount());
+            assertEquals(4, report.getFailedCount());
+            assertEquals(List.of("2 Invalid email format.", "3 Empty row.",
+                    "5 Email CID@example.com is already used by an earlier row.", "6 Name cannot be empty."),
+                    rows(report));
+
+            imported = describe(service.getAllContacts());
+            assertEquals(List.of("1 Ann | 555 1000 | ann@example.com | 1 Main St, Springfield",
+                    "2 Cid \"The Kid\" | 555 3000 | cid@example.com | Line one\nLine two",
+                    "3 Eve | 555 6000 | eve@example.com | "), imported);
+        } finally {
+            service.close();
+        }
+
+        ContactService restarted = new ContactService(StoreMode.PLAIN.config(directory));
+        try {
+            assertEquals(imported, describe(restarted.getAllContacts()));
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void ndjsonSkipsBlankLinesAndReportsMalformedOnes() throws Exception {
+        String ndjson = "{\"name\": \"Ann\", \"phone\": \"555 1000\", \"email\": \"ann@example.com\"}\n"
+                + "\n"
+                + "{\"name\": \"Bob\", \"phoneNumber\": \"555 2000\", \"email\": \"bob@example.com\", "
+                + "\"address\": \"2 High St\"}\n"
+                + "{\"name\": \"Cid\", \"phone\": \n"
+                + "{\"name\": \"Dan\", \"phone\": \"\", \"email\": \"dan@example.com\"}\n";
+        ContactService service = new ContactService(StoreMode.PLAIN.config(directory));
+        try {
+            ImportReport report = service.importContacts(new StringReader(ndjson), ImportFormat.NDJSON, 0);
+            assertEquals(2, report.getImportedCount());
+            assertEquals(2, report.getFailedCount());
+            assertEquals(3, report.getErrors().get(0).getRow());
+            assertEquals(4, report.getErrors().get(1).getRow());
+            assertEquals("Phone number cannot be empty.", report.getErrors().get(1).getMessage());
+            assertEquals("Imported 2 contact(s), rejected 2 row(s).", report.toString());
+            assertEquals(List.of("1 Ann | 555 1000 | ann@example.com | ",
+                    "2 Bob | 555 2000 | bob@example.com | 2 High St"), describe(service.getAllContacts()));
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void importedRowsConflictWithExistingContacts() throws Exception {
+        ContactService service = new ContactService(StoreMode.PLAIN.config(directory)
+                .setDuplicatePolicy(DuplicatePolicy.REJECT));
+        try {
+            service.addContact("Ann", "555 1000", "ann@example.com", "");
+            String csv = "Bob,(555) 1000,bob@example.com,\n"
+                    + "Cid,555 3000,ANN@example.com,\n"
+                    + "Dan,555 4000,dan@example.com,\n";
+            ImportReport report = service.importContacts(new StringReader(csv), ImportFormat.CSV, 100);
+            assertEquals(1, report.getImportedCount());
+            assertEquals(List.of("1 Phone number (555) 1000 is already used by contact ID 1.",
+                    "2 Email ANN@example.com is already used by contact ID 1."), rows(report));
+            assertEquals(2, service.getAllContacts().size());
+            assertEquals("Dan", service.getAllContacts().get(1).getName());
+        } finally {
+            service.close();
+        }
+    }
+}
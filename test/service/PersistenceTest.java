@@ -0,0 +1,151 @@
+package service;
+
+import model.Contact;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import storage.Durability;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Durability modes, group commit and how journal write failures reach the
+ * caller
+ */
+class PersistenceTest {
+    @TempDir
+    File directory;
+
+    private ContactServiceConfig config() {
+        return new ContactServiceConfig()
+                .setDataFile(new File(directory, "contacts.dat").getPath())
+                .setJournalFile(new File(directory, "contacts.log").getPath());
+    }
+
+    /**
+     * Points the first journal segment at a device on which every write
+     * fails, as on a full disk
+     */
+    private void failJournalWrites() throws IOException {
+        File full = new File("/dev/full");
+        assumeTrue(full.exists(), "needs /dev/full");
+        Files.createSymbolicLink(new File(directory, "contacts.log.1").toPath(), full.toPath());
+    }
+
+    @Test
+    void synchronousMutationFailsWhenJournalWriteFails() throws IOException {
+        failJournalWrites();
+        ContactService service = new ContactService(config());
+        try {
+            UncheckedIOException e = assertThrows(UncheckedIOException.class,
+                    () -> service.addContact("Ann", "555 1000", "ann@example.com", "Main St"));
+            assertTrue(e.getMessage().startsWith("The change was applied but could not be persisted"),
+                    e.getMessage());
+
+            // The change stays applied in memory and the failure is counted
+            assertNotNull(service.getContact(1));
+            assertTrue(service.getMetrics().getPersistenceErrors() >= 1);
+
+            assertThrows(UncheckedIOException.class,
+                    () -> service.updateContact(1, "Bea", "555 1000", "ann@example.com", "Main St"));
+            assertThrows(UncheckedIOException.class, () -> service.deleteContact(1));
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void asynchronousMutationCompletesExceptionallyWhenJournalWriteFails() throws IOException {
+        failJournalWrites();
+        ContactService service = new ContactService(config());
+        try {
+            CompletableFuture<Contact> added = service.addContactAsync("Ann", "555 1000", "ann@example.com",
+                    "Main St", Durability.WRITE);
+            CompletionException e = assertThrows(CompletionException.class, added::join);
+            assertInstanceOf(IOException.class, e.getCause());
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void failureOfClosedJournalIsReported() {
+        ContactService service = new ContactService(config());
+        service.close();
+        assertThrows(UncheckedIOException.class,
+                () -> service.addContact("Ann", "555 1000", "ann@example.com", "Main St"));
+        assertEquals(1, service.getMetrics().getPersistenceErrors());
+    }
+
+    @Test
+    void everyDurabilityModeSurvivesRestart() {
+        for (Durability durability : Durability.values()) {
+            ContactService service = new ContactService(config().setDurability(durability));
+            for (int i = 0; i < 100; i++) {
+                service.addContact("Name " + durability + " " + i, "555 " + (1000 + i), "n" + i + "@example.com",
+                        "Main St");
+            }
+            if (durability == Durability.FSYNC) {
+                assertTrue(service.getMetrics().getSyncCount() >= 1);
+            }
+            service.close();
+        }
+
+        ContactService service = new ContactService(config());
+        try {
+            assertEquals(300, service.getContactCount());
+            assertEquals("Name FSYNC 99", service.getContact(300).getName());
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void concurrentSyncedWritersShareSyncs() throws Exception {
+        int threads = 8;
+        int perThread = 25;
+        ContactService service = new ContactService(config().setConcurrent(true)
+                .setDurability(Durability.FSYNC).setGroupCommitWindowMicros(2000));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        service.addContact("Name " + thread + " " + i, "555 " + (1000 + i),
+                                "n" + thread + "x" + i + "@example.com", "Main St");
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+
+            long syncs = service.getMetrics().getSyncCount();
+            assertTrue(syncs >= 1 && syncs < threads * perThread, syncs + " syncs");
+        } finally {
+            executor.shutdown();
+            service.close();
+        }
+
+        ContactService reopened = new ContactService(config());
+        try {
+            assertEquals(threads * perThread, reopened.getContactCount());
+        } finally {
+            reopened.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package service;
+
+import model.Contact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import storage.Durability;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Parallel scans must find the same slots, in the same order, as a plain
+ * loop, for every list size and chunk split
+ */
+class SlotScannerTest {
+    @TempDir
+    File directory;
+
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void createPool() {
+        pool = new ForkJoinPool(4); // Parallel even on a single-core machine
+    }
+
+    @AfterEach
+    void shutDownPool() {
+        pool.shutdown();
+    }
+
+    private static int[] loop(int slots, IntPredicate test) {
+        return IntStream.range(0, slots).filter(test).toArray();
+    }
+
+    private static List<Integer> ids(List<Contact> contacts) {
+        List<Integer> ids = new ArrayList<>();
+        for (Contact contact : contacts) {
+            ids.add(contact.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void parallelScanMatchesLoop() {
+        SlotScanner scanner = new SlotScanner(pool, 1);
+        Random random = new Random(23);
+        int[] sizes = { 0, 1, 2047, 2048, 2049, 10_000, 65_536, 100_003, 1_000_000 };
+        for (int slots : sizes) {
+            assertTrue(slots == 0 || scanner.isParallel(slots));
+
+            BitSet live = new BitSet(slots);
+            for (int slot = 0; slot < slots; slot++) {
+                if (random.nextInt(10) != 0) {
+                    live.set(slot); // Every tenth slot is a tombstone
+                }
+            }
+            IntPredicate[] tests = {
+                    slot -> false,
+                    live::get,
+                    slot -> live.get(slot) && slot % 7 == 3,
+                    slot -> slot == slots - 1,
+            };
+            for (IntPredicate test : tests) {
+                assertArrayEquals(loop(slots, test), scanner.scan(slots, test), slots + " slots");
+            }
+        }
+    }
+
+    @Test
+    void matchesDenseAndSparseResults() {
+        SlotScanner scanner = new SlotScanner(pool, 1);
+        int slots = 300_000;
+        assertArrayEquals(loop(slots, slot -> true), scanner.scan(slots, slot -> true));
+        int[] found = scanner.scan(slots, slot -> slot == 0 || slot == 150_000 || slot == slots - 1);
+        assertArrayEquals(new int[] { 0, 150_000, slots - 1 }, found);
+    }
+
+    @Test
+    void smallListsAndSingleThreadPoolsScanSequentially() {
+        SlotScanner scanner = new SlotScanner(pool, 10_000);
+        assertFalse(scanner.isParallel(9_999));
+        assertTrue(scanner.isParallel(10_000));
+
+        // The test sees the calling thread only when the scan is not forked
+        Thread caller = Thread.currentThread();
+        int[] small = scanner.scan(5_000, slot -> Thread.currentThread() == caller);
+        assertEquals(5_000, small.length);
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            SlotScanner sequential = new SlotScanner(single, 1);
+            assertFalse(sequential.isParallel(1_000_000));
+            int[] all = sequential.scan(100_000, slot -> Thread.currentThread() == caller);
+            assertArrayEquals(loop(100_000, slot -> true), all);
+        } finally {
+            single.shutdown();
+        }
+
+        SlotScanner never = new SlotScanner(pool, Integer.MAX_VALUE);
+        assertFalse(never.isParallel(Integer.MAX_VALUE - 1));
+    }
+
+    @Test
+    void rejectsThresholdBelowOne() {
+        assertThrows(IllegalArgumentException.class, () -> new SlotScanner(pool, 0));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = StoreMode.class, names = { "PLAIN", "CONCURRENT", "COLUMNAR" })
+    void serviceScansMatchFilteringEveryContact(StoreMode mode) {
+        assumeTrue(ForkJoinPool.getCommonPoolParallelism() > 1, "needs a parallel common pool");
+        ContactService service = new ContactService(mode.config(directory).setParallelScanThreshold(1000));
+        try {
+            Random random = new Random(mode.name().hashCode());
+            for (int i = 0; i < 20_000; i++) {
+                int n = random.nextInt(100_000);
+                service.addContactAsync("Name " + n, "555 " + n, "n" + n + "@example.com", "Street " + n,
+                        Durability.NONE);
+            }
+            for (int id = 1; id <= 20_000; id += 3) {
+                service.deleteContact(id); // Leaves tombstones for the scan to skip
+            }
+            List<Contact> all = service.getAllContacts();
+
+            List<Contact> expected = new ArrayList<>();
+            for (Contact contact : all) {
+                if (contact.getAddress().toLowerCase().contains("street 12")) {
+                    expected.add(contact);
+                }
+            }
+            assertEquals(ids(expected), ids(service.searchByAddress("Street 12")));
+
+            ContactQuery query = new ContactQuery()
+                    .where(Criterion.matching("id % 5 == 1", contact -> contact.getId() % 5 == 1));
+            assertTrue(service.explain(query).contains("in parallel"), service.explain(query));
+            expected.clear();
+            for (Contact contact : all) {
+                if (contact.getId() % 5 == 1) {
+                    expected.add(contact);
+                }
+            }
+            assertEquals(ids(expected), ids(service.query(query)));
+        } finally {
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package service;
+
+import store.StoreType;
+
+import java.io.File;
+
+/**
+ * Service configurations that tests of behavior shared by every mode run
+ * against, each keeping its files in the given directory
+ */
+enum StoreMode {
+    PLAIN,
+    CONCURRENT,
+    COLUMNAR,
+    LAZY,
+    UNIQUE; // Also indexes whole emails and phone numbers
+
+    ContactServiceConfig config(File directory) {
+        ContactServiceConfig config = new ContactServiceConfig()
+                .setDataFile(new File(directory, "contacts.dat").getPath())
+                .setJournalFile(new File(directory, "contacts.log").getPath());
+        switch (this) {
+            case CONCURRENT:
+                return config.setConcurrent(true);
+            case COLUMNAR:
+                return config.setStoreType(StoreType.COLUMNAR);
+            case LAZY:
+                return config.setLazyLoad(true);
+            case UNIQUE:
+                return config.setDuplicatePolicy(DuplicatePolicy.FLAG);
+            default:
+                return config;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package service;
+
+import model.Contact;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import storage.Durability;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compare-and-set updates: conflicts are refused without changing the
+ * contact, concurrent read-modify-write loops lose no updates, the swap does
+ * not wait for the write lock, and versions survive a restart
+ */
+class VersionedUpdateTest {
+    @TempDir
+    File directory;
+
+    private static String describe(Contact contact) {
+        return contact.getId() + " v" + contact.getVersion() + " " + contact.getName() + " " + contact.getAddress();
+    }
+
+    private static List<Integer> ids(List<Contact> contacts) {
+        List<Integer> ids = new ArrayList<>();
+        for (Contact contact : contacts) {
+            ids.add(contact.getId());
+        }
+        return ids;
+    }
+
+    private static int add(ContactService service, String name) {
+        return service.addContactAsync(name, "555 1000", name.toLowerCase() + "@example.com", "0", Durability.WRITE)
+                .join().getId();
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = StoreMode.class, names = { "PLAIN", "CONCURRENT", "COLUMNAR", "LAZY" })
+    void conflictingVersionIsRefused(StoreMode mode) {
+        ContactService service = new ContactService(mode.config(directory));
+        try {
+            int id = add(service, "Ann");
+            assertEquals(1, service.getContact(id).getVersion());
+
+            assertFalse(service.updateIfVersion(id, 2, "Bea", "555 2000", "bea@example.com", "1"));
+            assertFalse(service.updateIfVersion(id, -1, "Bea", "555 2000", "bea@example.com", "1"));
+            assertEquals("Ann", service.getContact(id).getName());
+            assertEquals(1, service.getContact(id).getVersion());
+            assertEquals(2, service.getMetrics().getVersionConflicts());
+
+            assertTrue(service.updateIfVersion(id, 1, "Bea", "555 2000", "bea@example.com", "1"));
+            assertEquals("Bea", service.getContact(id).getName());
+            assertEquals(2, service.getContact(id).getVersion());
+
+            // The version just used is now stale
+            assertFalse(service.updateIfVersion(id, 1, "Cid", "555 3000", "cid@example.com", "2"));
+
+            // Unconditional updates also move the version on
+            service.updateContact(id, "Cid", "555 3000", "cid@example.com", "2");
+            assertEquals(3, service.getContact(id).getVersion());
+
+            Contact updated = service.updateIfVersionAsync(id, 3, "Dan", "555 4000", "dan@example.com", "3",
+                    Durability.WRITE).join();
+            assertEquals(4, updated.getVersion());
+            assertNull(service.updateIfVersionAsync(id, 3, "Eve", "555 5000", "eve@example.com", "4",
+                    Durability.WRITE).join());
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void missingContactIsReportedNotTreatedAsConflict() {
+        ContactService service = new ContactService(StoreMode.CONCURRENT.config(directory));
+        try {
+            assertThrows(IllegalArgumentException.class,
+                    () -> service.updateIfVersion(42, 1, "Ann", "555 1000", "ann@example.com", "0"));
+            int id = add(service, "Ann");
+            service.deleteContact(id);
+            assertThrows(IllegalArgumentException.class,
+                    () -> service.updateIfVersion(id, 1, "Ann", "555 1000", "ann@example.com", "0"));
+            assertEquals(0, service.getMetrics().getVersionConflicts());
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void concurrentIncrementsLoseNoUpdates() throws Exception {
+        int threads = 8;
+        int perThread = 100;
+        ContactService service = new ContactService(StoreMode.CONCURRENT.config(directory)
+                .setDurability(Durability.NONE));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger conflicts = new AtomicInteger();
+        int id = add(service, "Counter");
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        while (true) {
+                            Contact current = service.getContact(id);
+                            String next = String.valueOf(Integer.parseInt(current.getAddress()) + 1);
+                            if (service.updateIfVersion(id, current.getVersion(), current.getName(),
+                                    current.getPhoneNumber(), current.getEmail(), next)) {
+                                break;
+                            }
+                            conflicts.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+
+            Contact end = service.getContact(id);
+            assertEquals(String.valueOf(threads * perThread), end.getAddress());
+            assertEquals(1 + threads * perThread, end.getVersion());
+            assertEquals(conflicts.get(), service.getMetrics().getVersionConflicts());
+        } finally {
+            executor.shutdown();
+            service.close();
+        }
+    }
+
+    @Test
+    void swapDoesNotWaitForTheWriteLock() throws Exception {
+        ContactService service = new ContactService(StoreMode.CONCURRENT.config(directory));
+        ExecutorService holder = Executors.newSingleThreadExecutor();
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            int id = add(service, "Ann");
+            Field field = ContactService.class.getDeclaredField("writeLock");
+            field.setAccessible(true);
+            Lock writeLock = (Lock) field.get(service);
+            Future<?> holding = holder.submit(() -> {
+                writeLock.lock();
+                try {
+                    held.countDown();
+                    release.await();
+                } finally {
+                    writeLock.unlock();
+                }
+                return null;
+            });
+            held.await();
+
+            // Every other writer is blocked now, but compare-and-set goes through
+            CompletableFuture<Contact> written = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> service.updateIfVersionAsync(id, 1, "Bea", "555 2000", "bea@example.com", "1",
+                            Durability.WRITE));
+            assertEquals(2, service.getContact(id).getVersion());
+            assertEquals("Bea", service.getContact(id).getName());
+            assertNull(assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> service.updateIfVersionAsync(id, 1, "Cid", "555 3000", "cid@example.com", "2",
+                            Durability.WRITE)).join());
+            assertFalse(written.isDone());
+
+            // The rest of the update is applied once the lock is free
+            release.countDown();
+            holding.get();
+            assertEquals("Bea", written.join().getName());
+            assertEquals("Bea", service.getAllContacts().get(0).getName());
+        } finally {
+            release.countDown();
+            holder.shutdown();
+            service.close();
+        }
+    }
+
+    @Test
+    void swapsStillRefuseDuplicates() {
+        ContactService service = new ContactService(StoreMode.CONCURRENT.config(directory)
+                .setDuplicatePolicy(DuplicatePolicy.REJECT));
+        try {
+            int ann = service.addContactAsync("Ann", "555 1000", "ann@example.com", "0", Durability.WRITE).join()
+                    .getId();
+            int bob = service.addContactAsync("Bob", "555 2000", "bob@example.com", "0", Durability.WRITE).join()
+                    .getId();
+
+            assertThrows(IllegalArgumentException.class,
+                    () -> service.updateIfVersion(bob, 1, "Bob", "555 2000", " ANN@example.com", "0"));
+            assertThrows(IllegalArgumentException.class,
+                    () -> service.updateIfVersion(bob, 1, "Bob", "(555) 1000", "bob@example.com", "0"));
+            assertEquals(1, service.getContact(bob).getVersion());
+
+            // Keeping the email and phone number, or moving to free ones, is fine
+            assertTrue(service.updateIfVersion(bob, 1, "Robert", "555-2000", "BOB@example.com", "1"));
+            assertTrue(service.updateIfVersion(bob, 2, "Robert", "555 3000", "robert@example.com", "1"));
+            assertEquals(List.of(bob), ids(service.findByEmail("robert@example.com")));
+            assertTrue(service.findByEmail("bob@example.com").isEmpty());
+            assertTrue(service.updateIfVersion(ann, 1, "Ann", "555 1000", "bob@example.com", "1"));
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void swapsAndDeletesReplayInOrder() throws Exception {
+        int threads = 4;
+        ContactService service = new ContactService(StoreMode.CONCURRENT.config(directory)
+                .setDurability(Durability.NONE));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<?>> changes = new CopyOnWriteArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(add(service, "Name" + i));
+        }
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                workers.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 2_000; i++) {
+                        int id = ids.get(random.nextInt(ids.size()));
+                        Contact current = service.getContact(id);
+                        try {
+                            if (current == null) {
+                                continue;
+                            } else if (random.nextInt(100) == 0) {
+                                changes.add(service.deleteContactAsync(id, Durability.NONE));
+                            } else {
+                                changes.add(service.updateIfVersionAsync(id, current.getVersion(),
+                                        current.getName(), current.getPhoneNumber(), current.getEmail(),
+                                        String.valueOf(i), Durability.NONE));
+                            }
+                        } catch (IllegalArgumentException e) {
+                            // Deleted by another thread in the meantime
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            for (CompletableFuture<?> change : changes) {
+                change.join();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // The ID map, the list and the journal all end up with the same contacts
+        List<String> byId = new ArrayList<>();
+        for (int id : ids) {
+            Contact contact = service.getContact(id);
+            if (contact != null) {
+                byId.add(describe(contact));
+            }
+        }
+        List<String> listed = new ArrayList<>();
+        for (Contact contact : service.getAllContacts()) {
+            listed.add(describe(contact));
+        }
+        assertEquals(byId, listed);
+        service.close();
+
+        ContactService restarted = new ContactService(StoreMode.PLAIN.config(directory));
+        try {
+            List<String> replayed = new ArrayList<>();
+            for (Contact contact : restarted.getAllContacts()) {
+                replayed.add(describe(contact));
+            }
+            assertEquals(listed, replayed);
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = StoreMode.class, names = { "PLAIN", "CONCURRENT", "COLUMNAR", "LAZY" })
+    void versionsSurviveReplayAndCheckpoint(StoreMode mode) {
+        ContactService service = new ContactService(mode.config(directory));
+        int id = add(service, "Ann");
+        int untouched = add(service, "Bob");
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(service.updateIfVersion(id, i, "Ann", "555 1000", "ann@example.com", String.valueOf(i)));
+        }
+        service.close();
+
+        // Versions come back from the journal
+        service = new ContactService(mode.config(directory));
+        assertEquals(6, service.getContact(id).getVersion());
+        assertEquals(1, service.getContact(untouched).getVersion());
+        assertFalse(service.updateIfVersion(id, 5, "Ann", "555 1000", "ann@example.com", "x"));
+        service.checkpoint().join();
+        service.close();
+
+        // And from the snapshot
+        service = new ContactService(mode.config(directory));
+        try {
+            assertEquals(6, service.getContact(id).getVersion());
+            assertTrue(service.updateIfVersion(id, 6, "Ann", "555 1000", "ann@example.com", "y"));
+            assertEquals(7, service.getContact(id).getVersion());
+        } finally {
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package storage;
+
+import model.Contact;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips through the binary snapshot format and its record index
+ */
+class ContactFileFormatTest {
+    @TempDir
+    File directory;
+
+    private static List<Contact> sampleContacts() {
+        List<Contact> contacts = new ArrayList<>();
+        contacts.add(new Contact(1, "Ann", "+1 555 1000", "ann@example.com", "Main St 1", 1));
+        contacts.add(new Contact(4, "Zoë Ångström", "555-2000", "zoe@example.org", "Straße 5, 中文 😀", 7));
+        contacts.add(new Contact(9, "", "", "", "", 2));
+        contacts.add(new Contact(12, "Long", "555 3000", "long@example.com", "x".repeat(100_000), 3));
+        return contacts;
+    }
+
+    private static void assertSameContacts(List<Contact> expected, List<Contact> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Contact e = expected.get(i);
+            Contact a = actual.get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getVersion(), a.getVersion());
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getPhoneNumber(), a.getPhoneNumber());
+            assertEquals(e.getEmail(), a.getEmail());
+            assertEquals(e.getAddress(), a.getAddress());
+        }
+    }
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        File file = new File(directory, "contacts.dat");
+        List<Contact> contacts = sampleContacts();
+        ContactFileFormat.write(file, contacts, 13, 5, PersistenceListener.NONE);
+
+        ContactFileFormat.Snapshot snapshot = ContactFileFormat.read(file);
+        assertSameContacts(contacts, snapshot.getContacts());
+        assertEquals(13, snapshot.getNextId());
+        assertEquals(5, snapshot.getJournalSegment());
+        assertFalse(new File(file.getPath() + ContactFileFormat.TEMP_SUFFIX).exists());
+    }
+
+    @Test
+    void replacesEarlierSnapshot() throws IOException {
+        File file = new File(directory, "contacts.dat");
+        ContactFileFormat.write(file, sampleContacts(), 13, 5, PersistenceListener.NONE);
+        List<Contact> smaller = sampleContacts().subList(0, 1);
+        ContactFileFormat.write(file, smaller, 20, 6, PersistenceListener.NONE);
+
+        ContactFileFormat.Snapshot snapshot = ContactFileFormat.read(file);
+        assertSameContacts(smaller, snapshot.getContacts());
+        assertEquals(20, snapshot.getNextId());
+        assertEquals(6, snapshot.getJournalSegment());
+    }
+
+    @Test
+    void rejectsTruncatedSnapshot() throws IOException {
+        File file = new File(directory, "contacts.dat");
+        ContactFileFormat.write(file, sampleContacts(), 13, 5, PersistenceListener.NONE);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        assertThrows(IOException.class, () -> ContactFileFormat.read(file));
+    }
+
+    @Test
+    void indexReadsRecordsAndIsRebuiltWhenStale() throws IOException {
+        File file = new File(directory, "contacts.dat");
+        List<Contact> contacts = sampleContacts();
+        ContactFileFormat.write(file, contacts, 13, 5, PersistenceListener.NONE, true);
+        assertTrue(SnapshotIndex.indexFileOf(file).exists());
+
+        SnapshotIndex index = SnapshotIndex.open(file);
+        assertEquals(contacts.size(), index.size());
+        assertEquals(13, index.getNextId());
+        assertEquals(5, index.getJournalSegment());
+        List<Contact> read = new ArrayList<>();
+        for (int record = 0; record < index.size(); record++) {
+            assertEquals(contacts.get(record).getId(), index.getId(record));
+            assertEquals(contacts.get(record).getName(), index.readName(record));
+            read.add(index.read(record));
+        }
+        assertSameContacts(contacts, read);
+
+        // A snapshot written without an index leaves the old one stale
+        List<Contact> smaller = contacts.subList(1, 3);
+        ContactFileFormat.write(file, smaller, 14, 6, PersistenceListener.NONE);
+        SnapshotIndex rebuilt = SnapshotIndex.open(file);
+        assertEquals(2, rebuilt.size());
+        assertEquals(6, rebuilt.getJournalSegment());
+        assertSameContacts(smaller, List.of(rebuilt.read(0), rebuilt.read(1)));
+    }
+}
@@ -0,0 +1,223 @@
+package storage;
+
+import model.Contact;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Recovery of the journal after clean shutdowns, torn writes and corrupt
+ * records
+ */
+class ContactJournalTest {
+    @TempDir
+    File directory;
+
+    /**
+     * Replay handler that records each mutation as a line of text
+     */
+    private static final class Recorder implements ContactJournal.ReplayHandler {
+        final List<String> records = new ArrayList<>();
+        final List<Long> positions = new ArrayList<>();
+        final List<Contact> contacts = new ArrayList<>();
+
+        @Override
+        public void onAdd(long position, Contact contact) {
+            positions.add(position);
+            contacts.add(contact);
+            records.add("add " + contact.getId() + " " + contact.getName() + " v" + contact.getVersion());
+        }
+
+        @Override
+        public void onUpdate(long position, Contact contact) {
+            positions.add(position);
+            contacts.add(contact);
+            records.add("update " + contact.getId() + " " + contact.getName() + " v" + contact.getVersion());
+        }
+
+        @Override
+        public void onDelete(long position, int id) {
+            positions.add(position);
+            records.add("delete " + id);
+        }
+    }
+
+    private String logPath() {
+        return new File(directory, "contacts.log").getPath();
+    }
+
+    private File segment(long number) {
+        return new File(logPath() + "." + number);
+    }
+
+    private ContactJournal open(Recorder recorder, List<IOException> errors) throws IOException {
+        ContactJournal journal = new ContactJournal(logPath());
+        journal.setErrorHandler(errors::add);
+        journal.replay(recorder, 0);
+        return journal;
+    }
+
+    private static Contact contact(int id, String name, long version) {
+        return new Contact(id, name, "+1 555 " + (1000 + id), name.toLowerCase() + "@example.com", "Main St " + id,
+                version);
+    }
+
+    /**
+     * Writes the given mutations to a fresh journal and closes it
+     */
+    private void writeRecords(int count) throws IOException {
+        List<IOException> errors = new ArrayList<>();
+        try (ContactJournal journal = open(new Recorder(), errors)) {
+            for (int id = 1; id <= count; id++) {
+                journal.appendAdd(contact(id, "Name" + id, 1), Durability.NONE);
+            }
+        }
+        assertEquals(List.of(), errors);
+    }
+
+    @Test
+    void replaysEveryRecordInOrderAfterClose() throws IOException {
+        List<IOException> errors = new ArrayList<>();
+        try (ContactJournal journal = open(new Recorder(), errors)) {
+            journal.appendAdd(contact(1, "Ann", 1), Durability.NONE);
+            journal.appendAddAll(List.of(contact(2, "Bob", 1), contact(3, "Cid", 1)), Durability.NONE);
+            journal.appendUpdate(contact(2, "Bea", 2), Durability.FSYNC).join();
+            journal.appendDelete(1, Durability.NONE);
+            assertEquals(ContactJournal.position(1, 5), journal.getLastPosition());
+        }
+
+        Recorder recorder = new Recorder();
+        try (ContactJournal journal = open(recorder, errors)) {
+            assertEquals(List.of("add 1 Ann v1", "add 2 Bob v1", "add 3 Cid v1", "update 2 Bea v2", "delete 1"),
+                    recorder.records);
+            List<Long> expected = new ArrayList<>();
+            for (int record = 1; record <= 5; record++) {
+                expected.add(ContactJournal.position(1, record));
+            }
+            assertEquals(expected, recorder.positions);
+            assertEquals(ContactJournal.position(1, 5), journal.getLastPosition());
+        }
+        assertEquals(List.of(), errors);
+    }
+
+    @Test
+    void keepsFieldsLongerThanModifiedUtf8Allows() throws IOException {
+        String address = "x".repeat(70_000) + "é中😀";
+        List<IOException> errors = new ArrayList<>();
+        try (ContactJournal journal = open(new Recorder(), errors)) {
+            journal.appendAdd(new Contact(1, "Ann", "555 1000", "ann@example.com", address, 1), Durability.NONE)
+                    .join();
+        }
+
+        Recorder recorder = new Recorder();
+        open(recorder, errors).close();
+        assertEquals(1, recorder.contacts.size());
+        assertEquals(address, recorder.contacts.get(0).getAddress());
+        assertEquals(List.of(), errors);
+    }
+
+    @Test
+    void truncatesTornTailAndAppendsAfterIt() throws IOException {
+        writeRecords(3);
+        long intactLength;
+        try (RandomAccessFile raf = new RandomAccessFile(segment(1), "rw")) {
+            long length = raf.length();
+            intactLength = length - (length / 3);
+            // Cut into the middle of the last record, as a crash during the write would
+            raf.setLength(length - 5);
+        }
+
+        Recorder recorder = new Recorder();
+        List<IOException> errors = new ArrayList<>();
+        try (ContactJournal journal = open(recorder, errors)) {
+            assertEquals(List.of("add 1 Name1 v1", "add 2 Name2 v1"), recorder.records);
+            assertEquals(intactLength, segment(1).length());
+            journal.appendAdd(contact(4, "Dan", 1), Durability.NONE);
+        }
+
+        Recorder reopened = new Recorder();
+        open(reopened, errors).close();
+        assertEquals(List.of("add 1 Name1 v1", "add 2 Name2 v1", "add 4 Dan v1"), reopened.records);
+        assertEquals(List.of(), errors);
+    }
+
+    @Test
+    void stopsAtRecordWithBadChecksum() throws IOException {
+        writeRecords(3);
+        long recordLength = segment(1).length() / 3;
+        try (RandomAccessFile raf = new RandomAccessFile(segment(1), "rw")) {
+            raf.seek(recordLength + 20); // Inside the body of the second record
+            int value = raf.read();
+            raf.seek(recordLength + 20);
+            raf.write(value ^ 0x5A);
+        }
+
+        Recorder recorder = new Recorder();
+        open(recorder, new ArrayList<>()).close();
+        assertEquals(List.of("add 1 Name1 v1"), recorder.records);
+        assertEquals(recordLength, segment(1).length());
+    }
+
+    @Test
+    void stopsAtUndecodableRecordAndMovesLaterSegmentsAside() throws IOException {
+        List<IOException> errors = new ArrayList<>();
+        try (ContactJournal journal = open(new Recorder(), errors)) {
+            journal.appendAdd(contact(1, "Ann", 1), Durability.NONE);
+            journal.rotate();
+            journal.appendAdd(contact(2, "Bob", 1), Durability.NONE);
+        }
+        long intactLength = segment(1).length();
+
+        // A record with a valid frame and checksum but an unknown type
+        byte[] body = { 99, 0, 0, 0, 7 };
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        try (FileOutputStream out = new FileOutputStream(segment(1), true)) {
+            out.write(ByteBuffer.allocate(8).putInt(body.length).putInt((int) crc.getValue()).array());
+            out.write(body);
+            out.write(ByteBuffer.allocate(8).putInt(3).putInt(0).array()); // Lost behind the corrupt record
+        }
+
+        Recorder recorder = new Recorder();
+        try (ContactJournal journal = open(recorder, errors)) {
+            assertEquals(List.of("add 1 Ann v1"), recorder.records);
+            assertEquals(intactLength, segment(1).length());
+            assertFalse(segment(2).exists());
+            assertTrue(new File(segment(2).getPath() + ContactJournal.CORRUPT_SUFFIX).exists());
+            assertEquals(ContactJournal.position(1, 1), journal.getLastPosition());
+        }
+        assertEquals(2, errors.size(), errors.toString());
+        assertTrue(errors.get(0).getMessage().contains("corrupt"), errors.get(0).getMessage());
+    }
+
+    @Test
+    void skipsSegmentsCoveredBySnapshot() throws IOException {
+        List<IOException> errors = new ArrayList<>();
+        long next;
+        try (ContactJournal journal = open(new Recorder(), errors)) {
+            journal.appendAdd(contact(1, "Ann", 1), Durability.NONE);
+            next = journal.rotate();
+            journal.appendAdd(contact(2, "Bob", 1), Durability.NONE);
+        }
+
+        Recorder recorder = new Recorder();
+        ContactJournal journal = new ContactJournal(logPath());
+        journal.setErrorHandler(errors::add);
+        assertEquals(1, journal.replay(recorder, next));
+        journal.close();
+        assertEquals(List.of("add 2 Bob v1"), recorder.records);
+        assertEquals(List.of(ContactJournal.position(next, 1)), recorder.positions);
+        assertFalse(segment(1).exists());
+        assertEquals(List.of(), errors);
+    }
+}
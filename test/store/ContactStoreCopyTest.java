@@ -0,0 +1,111 @@
+package store;
+
+import model.Contact;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import storage.ContactFileFormat;
+import storage.SnapshotIndex;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A copy shares its store's chunks, and neither later writes to the store
+ * nor arena compaction may show through in the copy
+ */
+class ContactStoreCopyTest {
+    @TempDir
+    File directory;
+
+    private static String describe(Contact contact) {
+        return contact.getId() + " v" + contact.getVersion() + " " + contact.getName() + " "
+                + contact.getPhoneNumber() + " " + contact.getEmail() + " " + contact.getAddress();
+    }
+
+    private static List<String> describe(List<Contact> contacts) {
+        List<String> described = new ArrayList<>();
+        for (Contact contact : contacts) {
+            described.add(describe(contact));
+        }
+        return described;
+    }
+
+    private static List<Contact> initial() {
+        List<Contact> contacts = new ArrayList<>();
+        for (int id = 1; id <= 3_000; id++) { // Spans several chunks
+            contacts.add(new Contact(id, "Name" + id, "555 " + id, "n" + id + "@example.com", "Street " + id));
+        }
+        return contacts;
+    }
+
+    /**
+     * Takes copies between rounds of updates, deletes and adds, then checks
+     * that each copy still holds what the store held when it was taken
+     */
+    private static void check(ContactStore store) {
+        Random random = new Random(12);
+        List<ContactStore> copies = new ArrayList<>();
+        List<List<String>> expected = new ArrayList<>();
+        int nextId = store.size() + 1;
+        for (int round = 0; round < 4; round++) {
+            copies.add(store.copy());
+            expected.add(describe(store.toList()));
+
+            // Enough rewritten text to compact the columnar arena at least once
+            for (int i = 0; i < 8_000; i++) {
+                int slot = random.nextInt(store.size());
+                int op = random.nextInt(20);
+                if (!store.isLive(slot)) {
+                    continue;
+                } else if (op == 0) {
+                    store.remove(slot);
+                } else if (op == 1) {
+                    int id = nextId++;
+                    store.add(new Contact(id, "New" + id, "555 " + id, "new" + id + "@example.com", "Road"));
+                } else {
+                    Contact current = store.get(slot);
+                    store.set(slot, new Contact(current.getId(), current.getName(), current.getPhoneNumber(),
+                            current.getEmail(), "Avenue " + round + "-" + i + " ".repeat(random.nextInt(200)),
+                            current.getVersion() + 1));
+                }
+            }
+        }
+        store.compact();
+        copies.add(store.copy());
+        expected.add(describe(store.toList()));
+        store.add(new Contact(nextId, "Last", "555 0", "last@example.com", "Road"));
+
+        for (int c = 0; c < copies.size(); c++) {
+            ContactStore copy = copies.get(c);
+            assertEquals(expected.get(c), describe(copy.toList()), "copy " + c);
+            List<Contact> read = new ArrayList<>();
+            for (int slot = 0; slot < copy.size(); slot++) {
+                if (copy.isLive(slot)) {
+                    read.add(copy.get(slot));
+                    assertEquals(copy.get(slot).getId(), copy.getId(slot));
+                    assertEquals(copy.get(slot).getAddress(), copy.getAddress(slot));
+                }
+            }
+            assertEquals(expected.get(c), describe(read), "copy " + c);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StoreType.class)
+    void copiesIgnoreLaterWrites(StoreType type) {
+        check(type.create(initial()));
+    }
+
+    @Test
+    void lazyCopiesIgnoreLaterWrites() throws Exception {
+        File snapshot = new File(directory, "contacts.dat");
+        ContactFileFormat.write(snapshot, initial(), 3_001);
+        check(new LazyContactStore(SnapshotIndex.open(snapshot)));
+    }
+}